@@ -63,6 +63,7 @@ import org.openjdk.jmc.common.unit.UnitLookup;
 import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
 import org.openjdk.jmc.flightrecorder.JfrAttributes;
 import org.openjdk.jmc.flightrecorder.internal.ChunkInfo;
+import org.openjdk.jmc.flightrecorder.internal.ChunkScanIndex;
 import org.openjdk.jmc.flightrecorder.internal.EventArray;
 import org.openjdk.jmc.flightrecorder.internal.EventArrays;
 import org.openjdk.jmc.flightrecorder.internal.FlightRecordingLoader;
@@ -203,8 +204,16 @@ public class RecordingLoader extends Job {
 		boolean hideExperimentals = !FlightRecorderUI.getDefault().includeExperimentalEventsAndFields();
 		boolean ignoreTruncatedChunk = FlightRecorderUI.getDefault().allowIncompleteRecordingFile();
 		try (RandomAccessFile raf = new RandomAccessFile(unzippedFile, "r")) { //$NON-NLS-1$
-			List<ChunkInfo> allChunks = FlightRecordingLoader
-					.readChunkInfo(FlightRecordingLoader.createChunkSupplier(raf));
+			ChunkScanIndex index = ChunkScanIndex.isEnabled() ? ChunkScanIndex.read(unzippedFile) : null;
+			List<ChunkInfo> allChunks;
+			if (index != null) {
+				allChunks = index.getChunks();
+			} else {
+				allChunks = FlightRecordingLoader.readChunkInfo(FlightRecordingLoader.createChunkSupplier(raf));
+				if (ChunkScanIndex.isEnabled()) {
+					ChunkScanIndex.create(allChunks).write(unzippedFile);
+				}
+			}
 			IRange<IQuantity> fullRange = getRange(allChunks);
 			long maxLoadSize = availableMemory / UNZIPPED_FILE_TO_MEMORY_QUOTA;
 			List<ChunkInfo> toLoad = (unzippedFile.length() > maxLoadSize) ? getLastChunks(allChunks, maxLoadSize)
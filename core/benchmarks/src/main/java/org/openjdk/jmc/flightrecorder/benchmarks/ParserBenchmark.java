@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.JfrLoaderToolkit;
+import org.openjdk.jmc.flightrecorder.parser.EventStreamParser;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Chunk parsing throughput. The {@code events} and {@code megabytes} secondary results are the
+ * number of parsed events and recording megabytes per second. Run with {@code -prof gc} and divide
+ * the normalized allocation rate of {@link #stream(WorkloadRecording, Throughput, Blackhole)
+ * stream} by the event count of the recording to get the allocation per event. Allocations made by
+ * the parser threads of {@link #load(WorkloadRecording, Throughput) load} are not included in the
+ * normalized allocation rate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParserBenchmark {
+	private static final double BYTES_PER_MEGABYTE = 1024 * 1024;
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Throughput {
+		public long events;
+		public double megabytes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			events = 0;
+			megabytes = 0;
+		}
+
+		void add(WorkloadRecording recording, long eventCount) {
+			events += eventCount;
+			megabytes += recording.getFile().length() / BYTES_PER_MEGABYTE;
+		}
+	}
+
+	/**
+	 * Stream the events through the parser in the benchmark thread without storing them.
+	 */
+	@Benchmark
+	public long stream(WorkloadRecording recording, Throughput throughput, Blackhole blackhole)
+			throws IOException, CouldNotLoadRecordingException {
+		BlackholeSinkFactory sinkFactory = new BlackholeSinkFactory(blackhole);
+		EventStreamParser.parse(recording.getFile(), sinkFactory);
+		throughput.add(recording, sinkFactory.getEventCount());
+		return sinkFactory.getEventCount();
+	}
+
+	/**
+	 * Load the events into an item collection using the default parser threads.
+	 */
+	@Benchmark
+	public IItemCollection load(WorkloadRecording recording, Throughput throughput)
+			throws IOException, CouldNotLoadRecordingException {
+		IItemCollection items = JfrLoaderToolkit.loadEvents(recording.getFile());
+		throughput.add(recording, recording.getEventCount());
+		return items;
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmc.common.util.IPreferenceValueProvider;
+import org.openjdk.jmc.flightrecorder.rules.IRule;
+import org.openjdk.jmc.flightrecorder.rules.Result;
+import org.openjdk.jmc.flightrecorder.rules.RuleRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Evaluation time of the registered rules. By default all rules are evaluated in each operation.
+ * Use {@link #main(String[])} to get a separate result for each rule.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RuleBenchmark {
+	private static final String ALL_RULES = "all"; //$NON-NLS-1$
+
+	/**
+	 * The id of the rule to evaluate, or {@value #ALL_RULES} to evaluate all rules.
+	 */
+	@Param(ALL_RULES)
+	private String rule;
+
+	private List<IRule> rules;
+
+	@Setup
+	public void setup() {
+		rules = new ArrayList<>();
+		for (IRule r : RuleRegistry.getRules()) {
+			if (rule.equals(ALL_RULES) || r.getId().equals(rule)) {
+				rules.add(r);
+			}
+		}
+		if (rules.isEmpty()) {
+			throw new IllegalArgumentException("No rule with id " + rule); //$NON-NLS-1$
+		}
+	}
+
+	@Benchmark
+	public void evaluate(WorkloadRecording recording, Blackhole blackhole)
+			throws InterruptedException, ExecutionException {
+		for (IRule r : rules) {
+			RunnableFuture<Result> future = r.evaluate(recording.getItems(), IPreferenceValueProvider.DEFAULT_VALUES);
+			future.run();
+			blackhole.consume(future.get());
+		}
+	}
+
+	/**
+	 * Run the rule benchmark once for each registered rule. Any JMH command line options, such as
+	 * {@code -rf json}, are passed on to the runner.
+	 */
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		List<String> ids = new ArrayList<>();
+		for (IRule r : RuleRegistry.getRules()) {
+			ids.add(r.getId());
+		}
+		Collections.sort(ids);
+		new Runner(new OptionsBuilder().parent(new CommandLineOptions(args)).include(RuleBenchmark.class.getName())
+				.param("rule", ids.toArray(new String[ids.size()])) //$NON-NLS-1$
+				.build()).run();
+	}
+}
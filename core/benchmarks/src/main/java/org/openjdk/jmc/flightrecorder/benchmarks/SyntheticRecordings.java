@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.StackTrace;
+
+/**
+ * Generates recordings with synthetic events using the JDK Flight Recorder API of the running JVM.
+ */
+public final class SyntheticRecordings {
+	private static final long SEED = 4711;
+
+	private SyntheticRecordings() {
+	}
+
+	@Name("org.openjdk.jmc.benchmarks.StringEvent")
+	@Label("String Event")
+	@Category("Benchmarks")
+	@StackTrace(false)
+	static class StringEvent extends Event {
+		@Label("Host")
+		String host;
+		@Label("Path")
+		String path;
+		@Label("Operation")
+		String operation;
+	}
+
+	/**
+	 * Create a recording with events that have several string fields. The values are drawn from a
+	 * limited set, so each distinct value is repeated many times.
+	 * <p>
+	 * The JDK moves repeated strings with a length between 16 and 128 chars to the constant pool,
+	 * so the values are either shorter or longer than that to make sure that they are written
+	 * inline in each event.
+	 *
+	 * @param eventCount
+	 *            number of events to write
+	 * @param distinctValues
+	 *            number of distinct values for each field
+	 * @return a temporary recording file that is deleted on exit
+	 */
+	public static File createStringRecording(int eventCount, int distinctValues) throws IOException {
+		String[] hosts = new String[distinctValues];
+		String[] paths = new String[distinctValues];
+		String[] operations = new String[distinctValues];
+		StringBuilder directory = new StringBuilder();
+		while (directory.length() < 128) {
+			directory.append("/opt/application/data/partitions"); //$NON-NLS-1$
+		}
+		for (int i = 0; i < distinctValues; i++) {
+			hosts[i] = "host" + i + ".local"; //$NON-NLS-1$ //$NON-NLS-2$
+			paths[i] = directory + "/segment-" + i + ".dat"; //$NON-NLS-1$ //$NON-NLS-2$
+			operations[i] = (i % 2 == 0 ? "read-" : "write-") + i; //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		Random random = new Random(SEED);
+		try (Recording recording = new Recording()) {
+			recording.enable(StringEvent.class);
+			recording.start();
+			for (int i = 0; i < eventCount; i++) {
+				StringEvent event = new StringEvent();
+				event.host = hosts[random.nextInt(distinctValues)];
+				event.path = paths[random.nextInt(distinctValues)];
+				event.operation = operations[random.nextInt(distinctValues)];
+				event.commit();
+			}
+			recording.stop();
+			return dump(recording);
+		}
+	}
+
+	/**
+	 * Create a recording with the JDK {@code profile} settings while running a workload that
+	 * allocates, contends on locks, throws exceptions, writes files and has deep stack traces. The
+	 * recording contains the event types that the rules and the stack trace model work on.
+	 *
+	 * @param durationMillis
+	 *            how long to run the workload
+	 * @param threadCount
+	 *            number of workload threads
+	 * @return a temporary recording file that is deleted on exit
+	 */
+	public static File createWorkloadRecording(long durationMillis, int threadCount) throws IOException {
+		Configuration configuration;
+		try {
+			configuration = Configuration.getConfiguration("profile"); //$NON-NLS-1$
+		} catch (ParseException e) {
+			throw new IOException(e);
+		}
+		File scratch = File.createTempFile("workload", ".dat"); //$NON-NLS-1$ //$NON-NLS-2$
+		scratch.deleteOnExit();
+		try (Recording recording = new Recording(configuration)) {
+			recording.enable(StringEvent.class);
+			recording.start();
+			long end = System.currentTimeMillis() + durationMillis;
+			Object lock = new Object();
+			List<Thread> threads = new ArrayList<>();
+			for (int i = 0; i < threadCount; i++) {
+				Thread thread = new Thread(new Workload(i, end, lock, scratch), "Workload-" + i); //$NON-NLS-1$
+				thread.start();
+				threads.add(thread);
+			}
+			for (Thread thread : threads) {
+				try {
+					thread.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException(e);
+				}
+			}
+			recording.stop();
+			return dump(recording);
+		} finally {
+			scratch.delete();
+		}
+	}
+
+	private static class Workload implements Runnable {
+		private final Random random;
+		private final long end;
+		private final Object lock;
+		private final File scratch;
+		private final List<Object> retained = new ArrayList<>();
+
+		Workload(int index, long end, Object lock, File scratch) {
+			this.random = new Random(SEED + index);
+			this.end = end;
+			this.lock = lock;
+			this.scratch = scratch;
+		}
+
+		@Override
+		public void run() {
+			while (System.currentTimeMillis() < end) {
+				recurse(10 + random.nextInt(40));
+			}
+		}
+
+		private long recurse(int depth) {
+			if (depth > 0) {
+				return recurse(depth - 1) + depth;
+			}
+			switch (random.nextInt(4)) {
+			case 0:
+				return allocate();
+			case 1:
+				return contend();
+			case 2:
+				return fail();
+			default:
+				return write();
+			}
+		}
+
+		private long allocate() {
+			byte[] data = new byte[1024 + random.nextInt(64 * 1024)];
+			retained.add(data);
+			if (retained.size() > 1000) {
+				retained.clear();
+			}
+			return data.length;
+		}
+
+		private long contend() {
+			synchronized (lock) {
+				long sum = 0;
+				for (int i = 0; i < 100000; i++) {
+					sum += i ^ random.nextInt();
+				}
+				if (random.nextInt(100) == 0) {
+					try {
+						Thread.sleep(20);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				return sum;
+			}
+		}
+
+		private long fail() {
+			try {
+				throw new IllegalStateException("Workload " + random.nextInt(100)); //$NON-NLS-1$
+			} catch (IllegalStateException e) {
+				StringEvent event = new StringEvent();
+				event.host = "localhost"; //$NON-NLS-1$
+				event.path = scratch.getPath();
+				event.operation = e.getMessage();
+				event.commit();
+				return e.getMessage().length();
+			}
+		}
+
+		private long write() {
+			byte[] data = new byte[4096];
+			random.nextBytes(data);
+			try (OutputStream out = new FileOutputStream(scratch)) {
+				out.write(data);
+			} catch (IOException e) {
+				return 0;
+			}
+			return data.length;
+		}
+	}
+
+	private static File dump(Recording recording) throws IOException {
+		File file = File.createTempFile("synthetic", ".jfr"); //$NON-NLS-1$ //$NON-NLS-2$
+		file.deleteOnExit();
+		recording.dump(file.toPath());
+		return file;
+	}
+}
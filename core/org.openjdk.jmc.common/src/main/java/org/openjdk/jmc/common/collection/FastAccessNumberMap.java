@@ -51,6 +51,9 @@ import java.util.NoSuchElementException;
  * <p>
  * If you try to access an index outside of the max page count then an overflow hash map is used as
  * a fallback mechanism. In that case access will be slower than O(1).
+ * <p>
+ * The map is not synchronized, but reads do not modify it. It is therefore safe to read from
+ * multiple threads as long as no thread is modifying the map.
  *
  * @param <T>
  *            type of objects to store in this map
@@ -97,7 +100,13 @@ public class FastAccessNumberMap<T> implements Iterable<T> {
 	}
 
 	private T getLow(int index) {
-		Object value = getPage(index / pageSize)[index % pageSize];
+		// Do not create missing pages here, so that concurrent reads do not modify the map
+		int pageIndex = index / pageSize;
+		Object[][] pages = this.pages;
+		if (pageIndex >= pages.length || pages[pageIndex] == null) {
+			return null;
+		}
+		Object value = pages[pageIndex][index % pageSize];
 		@SuppressWarnings("unchecked")
 		T tValue = (T) value;
 		return tValue;
@@ -118,7 +127,7 @@ public class FastAccessNumberMap<T> implements Iterable<T> {
 		if (index >= 0 && index < pagesUpperLimit) {
 			return getLow((int) index);
 		} else {
-			return getOverflowMap().get(index);
+			return overflow == null ? null : overflow.get(index);
 		}
 	}
 
@@ -131,10 +131,10 @@ public class IteratorToolkit {
 	 * @param offset
 	 *            array index to start the iterator on
 	 * @param len
-	 *            number of elements to iterate over
+	 *            array index to stop the iterator at, exclusive
 	 * @return an iterator
 	 */
-	static <T> Iterator<T> of(final T[] elements, final int offset, final int len) {
+	public static <T> Iterator<T> of(final T[] elements, final int offset, final int len) {
 		if (offset < 0 || offset > len || len > elements.length) {
 			throw new IllegalArgumentException("Cannnot contruct iterator with offset=" + offset + " and len=" + len //$NON-NLS-1$ //$NON-NLS-2$
 					+ " for an array of length " + elements.length); //$NON-NLS-1$
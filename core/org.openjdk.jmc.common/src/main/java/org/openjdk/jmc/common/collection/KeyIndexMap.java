@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.common.collection;
+
+import java.util.Arrays;
+
+/**
+ * A map that assigns dense int indexes, starting from 0, to keys in the order that they are first
+ * seen. Keys that are equal get the same index.
+ * <p>
+ * Keys are first looked up in a small cache of recently seen key instances, compared by identity,
+ * which avoids calling {@link Object#hashCode()} and {@link Object#equals(Object)} on them. This
+ * makes lookups cheap for keys that are shared instances with expensive hash code or equality
+ * calculations, like the constant pool values of a recording. Other keys are looked up by equality
+ * in an open addressing table. The identity cache has one slot per identity hash code bucket, and a
+ * new key instance replaces the one in its slot, so its size is bounded by the number of distinct
+ * keys and does not grow with the number of key instances.
+ * <p>
+ * The map is not synchronized.
+ *
+ * @param <K>
+ *            key type
+ */
+public class KeyIndexMap<K> {
+
+	private static final int INITIAL_CAPACITY = 16;
+	private static final int MAX_IDENTITY_CAPACITY = 4096;
+
+	private Object[] identityKeys = new Object[INITIAL_CAPACITY];
+	private int[] identityIndexes = new int[INITIAL_CAPACITY];
+
+	private int[] equalityIndexes = newEqualityTable(INITIAL_CAPACITY);
+
+	private Object[] keys = new Object[INITIAL_CAPACITY];
+	private int size;
+
+	/**
+	 * Get the index for a key, assigning the next free index if no equal key has been seen before.
+	 *
+	 * @param key
+	 *            key, not {@code null}
+	 * @return the index of the key
+	 */
+	public int indexOf(K key) {
+		int i = mix(System.identityHashCode(key)) & (identityKeys.length - 1);
+		if (identityKeys[i] == key) {
+			return identityIndexes[i];
+		}
+		int index = equalityIndexOf(key);
+		// The equality table may have grown the identity cache
+		i = mix(System.identityHashCode(key)) & (identityKeys.length - 1);
+		identityKeys[i] = key;
+		identityIndexes[i] = index;
+		return index;
+	}
+
+	/**
+	 * Get the index for a key, without assigning a new index.
+	 *
+	 * @param key
+	 *            key, not {@code null}
+	 * @return the index of the key, or -1 if no equal key has been seen
+	 */
+	public int getIndex(K key) {
+		int i = mix(System.identityHashCode(key)) & (identityKeys.length - 1);
+		if (identityKeys[i] == key) {
+			return identityIndexes[i];
+		}
+		int mask = equalityIndexes.length - 1;
+		i = mix(key.hashCode()) & mask;
+		int index;
+		while ((index = equalityIndexes[i]) >= 0) {
+			if (key.equals(keys[index])) {
+				return index;
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Get the key for an index. If several equal keys have been added, then the first one is
+	 * returned.
+	 *
+	 * @param index
+	 *            an index in the range [0, {@link #size()})
+	 * @return the key for the index
+	 */
+	@SuppressWarnings("unchecked")
+	public K getKey(int index) {
+		if (index >= size) {
+			throw new IndexOutOfBoundsException(Integer.toString(index));
+		}
+		return (K) keys[index];
+	}
+
+	/**
+	 * @return the number of distinct keys, which is also the next index to be assigned
+	 */
+	public int size() {
+		return size;
+	}
+
+	private int equalityIndexOf(K key) {
+		int mask = equalityIndexes.length - 1;
+		int i = mix(key.hashCode()) & mask;
+		int index;
+		while ((index = equalityIndexes[i]) >= 0) {
+			if (key.equals(keys[index])) {
+				return index;
+			}
+			i = (i + 1) & mask;
+		}
+		index = size++;
+		if (index == keys.length) {
+			keys = Arrays.copyOf(keys, index * 2);
+		}
+		keys[index] = key;
+		equalityIndexes[i] = index;
+		if (size * 2 > equalityIndexes.length) {
+			rehashEqualities();
+		}
+		return index;
+	}
+
+	private void rehashEqualities() {
+		equalityIndexes = newEqualityTable(equalityIndexes.length * 2);
+		if (identityKeys.length < MAX_IDENTITY_CAPACITY) {
+			// Keep the identity cache about as large as the number of distinct keys
+			identityKeys = new Object[identityKeys.length * 2];
+			identityIndexes = new int[identityKeys.length];
+		}
+		int mask = equalityIndexes.length - 1;
+		for (int index = 0; index < size; index++) {
+			int i = mix(keys[index].hashCode()) & mask;
+			while (equalityIndexes[i] >= 0) {
+				i = (i + 1) & mask;
+			}
+			equalityIndexes[i] = index;
+		}
+	}
+
+	private static int[] newEqualityTable(int capacity) {
+		int[] table = new int[capacity];
+		Arrays.fill(table, -1);
+		return table;
+	}
+
+	private static int mix(int hash) {
+		// Spread the bits, since the table sizes are powers of two
+		int h = hash * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.common.collection;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A mergeable histogram of double values with logarithmically sized buckets. Each bucket covers the
+ * values from {@code gamma^(i-1)} (exclusive) to {@code gamma^i} (inclusive), where {@code gamma}
+ * is chosen so that any value in a bucket is within the relative accuracy of the bucket value.
+ * Quantiles read from the histogram therefore have a bounded relative error, regardless of the
+ * value distribution.
+ * <p>
+ * Positive and negative values are kept in separate bucket stores, and zeros are counted
+ * separately. Each store holds at most a fixed number of buckets. If values span more buckets than
+ * that, then the buckets for the values with the smallest magnitude are collapsed into one. This
+ * keeps the memory use fixed while retaining the accuracy for the high quantiles, which are
+ * normally the interesting ones for latencies and sizes.
+ * <p>
+ * Two histograms with the same relative accuracy can be merged, and the result is the same as if
+ * all values had been added to one histogram. This makes the histogram suitable for aggregating
+ * parts of a data set independently.
+ * <p>
+ * The histogram is not synchronized.
+ */
+public class LogHistogram {
+
+	/**
+	 * A histogram bucket.
+	 */
+	public static final class Bucket {
+		private final double lowerBound;
+		private final double upperBound;
+		private final double value;
+		private final long count;
+
+		Bucket(double lowerBound, double upperBound, double value, long count) {
+			this.lowerBound = lowerBound;
+			this.upperBound = upperBound;
+			this.value = value;
+			this.count = count;
+		}
+
+		/**
+		 * @return the lowest value that can be in the bucket
+		 */
+		public double getLowerBound() {
+			return lowerBound;
+		}
+
+		/**
+		 * @return the highest value that can be in the bucket
+		 */
+		public double getUpperBound() {
+			return upperBound;
+		}
+
+		/**
+		 * @return the value that represents all values in the bucket, within the relative accuracy
+		 *         of the histogram
+		 */
+		public double getValue() {
+			return value;
+		}
+
+		/**
+		 * @return the number of values in the bucket
+		 */
+		public long getCount() {
+			return count;
+		}
+	}
+
+	private static final int INITIAL_CAPACITY = 32;
+	// Keeps differences between bucket indexes within the int range for very small accuracies
+	private static final int MAX_INDEX = 1 << 29;
+
+	private final double relativeAccuracy;
+	private final int maxBuckets;
+	private final double gamma;
+	private final double logGamma;
+	private final Store positive;
+	private final Store negative;
+	private long zeroCount;
+	private long count;
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * Create a new empty histogram.
+	 *
+	 * @param relativeAccuracy
+	 *            the relative accuracy of the values read from the histogram, larger than 0 and
+	 *            smaller than 1
+	 * @param maxBuckets
+	 *            the maximum number of buckets to use for positive values and for negative values
+	 *            respectively, at least 1
+	 */
+	public LogHistogram(double relativeAccuracy, int maxBuckets) {
+		if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+			throw new IllegalArgumentException("Relative accuracy must be between 0 and 1"); //$NON-NLS-1$
+		} else if (maxBuckets < 1) {
+			throw new IllegalArgumentException("Must allow at least one bucket"); //$NON-NLS-1$
+		}
+		this.relativeAccuracy = relativeAccuracy;
+		this.maxBuckets = maxBuckets;
+		gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+		logGamma = Math.log(gamma);
+		positive = new Store(maxBuckets);
+		negative = new Store(maxBuckets);
+	}
+
+	/**
+	 * @return the relative accuracy of the histogram
+	 */
+	public double getRelativeAccuracy() {
+		return relativeAccuracy;
+	}
+
+	/**
+	 * Add a value to the histogram. NaN values are ignored.
+	 *
+	 * @param value
+	 *            value to add
+	 */
+	public void add(double value) {
+		add(value, 1);
+	}
+
+	/**
+	 * Add a value to the histogram a number of times. NaN values are ignored.
+	 *
+	 * @param value
+	 *            value to add
+	 * @param times
+	 *            number of times to add the value, not negative
+	 */
+	public void add(double value, long times) {
+		if (Double.isNaN(value) || times <= 0) {
+			return;
+		}
+		if (value > 0) {
+			positive.add(getIndex(value), times);
+		} else if (value < 0) {
+			negative.add(getIndex(-value), times);
+		} else {
+			zeroCount += times;
+		}
+		count += times;
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+	}
+
+	private int getIndex(double magnitude) {
+		double index = Math.ceil(Math.log(magnitude) / logGamma);
+		return (int) Math.max(Math.min(index, MAX_INDEX), -MAX_INDEX);
+	}
+
+	private double getValue(int index) {
+		return 2 * Math.pow(gamma, index) / (gamma + 1);
+	}
+
+	/**
+	 * Add all values of another histogram to this histogram.
+	 *
+	 * @param other
+	 *            histogram to merge, with the same relative accuracy as this histogram
+	 */
+	public void merge(LogHistogram other) {
+		if (other.relativeAccuracy != relativeAccuracy) {
+			throw new IllegalArgumentException("Can only merge histograms with the same relative accuracy"); //$NON-NLS-1$
+		}
+		positive.merge(other.positive);
+		negative.merge(other.negative);
+		zeroCount += other.zeroCount;
+		count += other.count;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * @return the number of values in the histogram
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the smallest value in the histogram, or NaN if the histogram is empty
+	 */
+	public double getMin() {
+		return count == 0 ? Double.NaN : min;
+	}
+
+	/**
+	 * @return the largest value in the histogram, or NaN if the histogram is empty
+	 */
+	public double getMax() {
+		return count == 0 ? Double.NaN : max;
+	}
+
+	/**
+	 * Get an approximate quantile. The returned value is within the relative accuracy of the value
+	 * that has the rank {@code quantile * (count - 1)} among all values in the histogram. The
+	 * quantiles 0 and 1 are exactly the smallest and the largest value.
+	 *
+	 * @param quantile
+	 *            quantile to get, between 0 and 1 inclusive
+	 * @return the quantile value, or NaN if the histogram is empty
+	 */
+	public double getQuantile(double quantile) {
+		if (!(quantile >= 0 && quantile <= 1)) {
+			throw new IllegalArgumentException("Quantile must be between 0 and 1"); //$NON-NLS-1$
+		}
+		if (count == 0) {
+			return Double.NaN;
+		} else if (quantile == 0) {
+			return min;
+		} else if (quantile == 1) {
+			return max;
+		}
+		double rank = quantile * (count - 1);
+		long seen = 0;
+		if (negative.lo <= negative.hi) {
+			for (int i = negative.hi; i >= negative.lo; i--) {
+				seen += negative.get(i);
+				if (seen > rank) {
+					return clamp(-getValue(i));
+				}
+			}
+		}
+		seen += zeroCount;
+		if (seen > rank) {
+			return clamp(0);
+		}
+		for (int i = positive.lo; i <= positive.hi; i++) {
+			seen += positive.get(i);
+			if (seen > rank) {
+				return clamp(getValue(i));
+			}
+		}
+		return max;
+	}
+
+	private double clamp(double value) {
+		return Math.max(min, Math.min(max, value));
+	}
+
+	/**
+	 * Get the non-empty buckets of the histogram, ordered by value. Zero values, if any, are
+	 * returned as a bucket with both bounds set to zero.
+	 *
+	 * @return a list of buckets
+	 */
+	public List<Bucket> getBuckets() {
+		List<Bucket> buckets = new ArrayList<>();
+		for (int i = negative.hi; i >= negative.lo; i--) {
+			long n = negative.get(i);
+			if (n > 0) {
+				buckets.add(new Bucket(-Math.pow(gamma, i), -Math.pow(gamma, i - 1), -getValue(i), n));
+			}
+		}
+		if (zeroCount > 0) {
+			buckets.add(new Bucket(0, 0, 0, zeroCount));
+		}
+		for (int i = positive.lo; i <= positive.hi; i++) {
+			long n = positive.get(i);
+			if (n > 0) {
+				buckets.add(new Bucket(Math.pow(gamma, i - 1), Math.pow(gamma, i), getValue(i), n));
+			}
+		}
+		return buckets;
+	}
+
+	/**
+	 * Bucket counts for a contiguous range of bucket indexes, {@code lo} to {@code hi} inclusive.
+	 * The store is empty if {@code lo > hi}.
+	 */
+	private static class Store {
+		private final int maxBuckets;
+		private long[] counts;
+		private int base;
+		private int lo = 0;
+		private int hi = -1;
+
+		Store(int maxBuckets) {
+			this.maxBuckets = maxBuckets;
+		}
+
+		long get(int index) {
+			return counts[index - base];
+		}
+
+		void add(int index, long n) {
+			if (counts == null) {
+				counts = new long[Math.min(INITIAL_CAPACITY, maxBuckets)];
+				base = index - counts.length / 2;
+				lo = index;
+				hi = index;
+			} else if (index < lo) {
+				setRange(index, hi);
+			} else if (index > hi) {
+				setRange(lo, index);
+			}
+			// Values below a collapsed range end up in the lowest bucket
+			counts[Math.max(index, lo) - base] += n;
+		}
+
+		void merge(Store other) {
+			for (int i = other.hi; i >= other.lo; i--) {
+				long n = other.get(i);
+				if (n > 0) {
+					add(i, n);
+				}
+			}
+		}
+
+		private void setRange(int newLo, int newHi) {
+			long collapsed = 0;
+			if (newHi - newLo >= maxBuckets) {
+				newLo = newHi - maxBuckets + 1;
+				for (int i = lo; i <= Math.min(hi, newLo - 1); i++) {
+					collapsed += counts[i - base];
+					counts[i - base] = 0;
+				}
+			}
+			if (newLo < base || newHi >= base + counts.length) {
+				int size = Math.max(newHi - newLo + 1, Math.min(maxBuckets, counts.length * 2));
+				// Leave free space in the direction that the range grows in
+				int newBase = newLo < lo ? newHi - size + 1 : newLo;
+				long[] newCounts = new long[size];
+				int from = Math.max(lo, newLo);
+				int to = Math.min(hi, newHi);
+				if (from <= to) {
+					System.arraycopy(counts, from - base, newCounts, from - newBase, to - from + 1);
+				}
+				counts = newCounts;
+				base = newBase;
+			}
+			lo = newLo;
+			hi = newHi;
+			counts[lo - base] += collapsed;
+		}
+	}
+}
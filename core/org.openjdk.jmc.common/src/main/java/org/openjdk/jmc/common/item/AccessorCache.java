@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.common.item;
+
+import java.util.Arrays;
+
+/**
+ * A cache of the accessors that {@link ICanonicalAccessorFactory accessor factories} have resolved
+ * for a type. The cache is held by the type, so it lives exactly as long as the type and its items.
+ * <p>
+ * Accessors are cached by the identity of the factory, since factories that are equal as
+ * {@link IAccessorKey accessor keys} may still create different custom accessors. Types that do not
+ * provide an accessor for a factory are cached as well.
+ * <p>
+ * The cache is thread safe. Lookups do not lock and do not allocate. Adding an accessor copies the
+ * cache table, which is cheap since a type is only used with a limited number of factories. Each
+ * {@link #clear()} starts a new generation, and accessors that were resolved during an earlier
+ * generation are not stored, since they may have been resolved from the accessors that the type
+ * provided before it changed.
+ *
+ * @param <T>
+ *            the type of objects that the cached accessors are used for
+ */
+final class AccessorCache<T> {
+
+	private static final Object NO_ACCESSOR = new Object();
+	private static final Object[] EMPTY_TABLE = new Object[0];
+	// Limits the cache size if factories are created on the fly instead of being reused
+	private static final int MAX_SIZE = 1024;
+
+	// Factories at even indexes, accessors at odd indexes. Replaced, never modified, once published.
+	private volatile Object[] table = EMPTY_TABLE;
+	private volatile int generation;
+	private int size;
+
+	/**
+	 * Get the accessor for a factory, resolving and caching it if it has not been resolved before.
+	 *
+	 * @param factory
+	 *            the accessor factory
+	 * @param type
+	 *            the type that holds this cache
+	 * @return the accessor, or {@code null} if the factory does not provide an accessor for the
+	 *         type
+	 */
+	<V> IMemberAccessor<V, T> getAccessor(CanonicalAccessorFactory<V> factory, IType<T> type) {
+		Object value = lookup(table, factory);
+		if (value == null) {
+			int resolvedGeneration = generation;
+			// Resolve without holding the lock, since factories may use accessors of other types
+			IMemberAccessor<V, T> accessor = factory.resolveAccessor(type);
+			value = store(factory, accessor == null ? NO_ACCESSOR : accessor, resolvedGeneration);
+		}
+		if (value == NO_ACCESSOR) {
+			return null;
+		}
+		@SuppressWarnings("unchecked")
+		IMemberAccessor<V, T> accessor = (IMemberAccessor<V, T>) value;
+		return accessor;
+	}
+
+	/**
+	 * Forget all cached accessors. Must be called if the accessors that the type provides change.
+	 */
+	synchronized void clear() {
+		table = EMPTY_TABLE;
+		size = 0;
+		generation++;
+	}
+
+	private synchronized Object store(Object factory, Object value, int resolvedGeneration) {
+		if (resolvedGeneration != generation) {
+			// The cache was cleared while resolving, so the accessor may be stale
+			return value;
+		}
+		Object[] current = table;
+		Object existing = lookup(current, factory);
+		if (existing != null) {
+			// Another thread resolved the accessor first, use the same one
+			return existing;
+		} else if (size >= MAX_SIZE) {
+			return value;
+		}
+		int capacity = current.length / 2;
+		Object[] newTable;
+		if ((size + 1) * 2 > capacity) {
+			newTable = new Object[Math.max(16, capacity * 2) * 2];
+			for (int i = 0; i < current.length; i += 2) {
+				if (current[i] != null) {
+					insert(newTable, current[i], current[i + 1]);
+				}
+			}
+		} else {
+			newTable = Arrays.copyOf(current, current.length);
+		}
+		insert(newTable, factory, value);
+		size++;
+		table = newTable;
+		return value;
+	}
+
+	private static Object lookup(Object[] table, Object factory) {
+		if (table.length == 0) {
+			return null;
+		}
+		int mask = table.length / 2 - 1;
+		int i = hash(factory) & mask;
+		Object key;
+		while ((key = table[i * 2]) != null) {
+			if (key == factory) {
+				return table[i * 2 + 1];
+			}
+			i = (i + 1) & mask;
+		}
+		return null;
+	}
+
+	private static void insert(Object[] table, Object factory, Object value) {
+		int mask = table.length / 2 - 1;
+		int i = hash(factory) & mask;
+		while (table[i * 2] != null) {
+			i = (i + 1) & mask;
+		}
+		table[i * 2] = factory;
+		table[i * 2 + 1] = value;
+	}
+
+	private static int hash(Object factory) {
+		int h = System.identityHashCode(factory);
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.common.item;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.openjdk.jmc.common.util.PredicateToolkit;
+
+/**
+ * A batch of aggregates that are calculated together in a single pass over an item collection.
+ * <p>
+ * Calling {@link IItemCollection#apply(IItemFilter)} and
+ * {@link IItemCollection#getAggregate(IAggregator)} for several filter and aggregator pairs means
+ * that the items of each type are iterated once per pair. With a batch, all pairs are registered up
+ * front, and {@link #execute(IItemCollection)} then iterates the items of each type once, passing
+ * every item to the consumers of all pairs that match it.
+ * <p>
+ * Example:
+ *
+ * <pre>
+ * AggregationBatch batch = new AggregationBatch();
+ * AggregationBatch.Aggregate&lt;IQuantity&gt; count = batch.add(JdkFilters.EXECUTION_SAMPLE, Aggregators.count());
+ * AggregationBatch.Aggregate&lt;IQuantity&gt; longest = batch.add(JdkFilters.GARBAGE_COLLECTION,
+ * 		Aggregators.max(JfrAttributes.DURATION));
+ * batch.execute(items);
+ * IQuantity sampleCount = count.getValue();
+ * </pre>
+ * <p>
+ * A batch is not thread safe, and can only be executed once.
+ */
+public class AggregationBatch {
+
+	/**
+	 * A handle to an aggregate in a batch.
+	 *
+	 * @param <V>
+	 *            aggregate value type
+	 */
+	public static abstract class Aggregate<V> {
+		private final IItemFilter filter;
+		private V value;
+		private boolean done;
+
+		private Aggregate(IItemFilter filter) {
+			this.filter = filter;
+		}
+
+		/**
+		 * @return the aggregate value
+		 * @throws IllegalStateException
+		 *             if the batch has not been executed
+		 */
+		public V getValue() {
+			if (!done) {
+				throw new IllegalStateException("The aggregation batch has not been executed"); //$NON-NLS-1$
+			}
+			return value;
+		}
+
+		abstract boolean acceptType(IType<IItem> type);
+
+		abstract IItemConsumer<?> addConsumer(IType<IItem> type);
+
+		abstract V buildValue();
+
+		void finish() {
+			value = buildValue();
+			done = true;
+		}
+	}
+
+	private static class TypedAggregate<V, C extends IItemConsumer<C>> extends Aggregate<V> {
+		private final IAggregator<V, C> aggregator;
+		private final List<C> consumers = new ArrayList<>();
+
+		TypedAggregate(IItemFilter filter, IAggregator<V, C> aggregator) {
+			super(filter);
+			this.aggregator = aggregator;
+		}
+
+		@Override
+		boolean acceptType(IType<IItem> type) {
+			return aggregator.acceptType(type);
+		}
+
+		@Override
+		IItemConsumer<?> addConsumer(IType<IItem> type) {
+			C consumer = aggregator.newItemConsumer(type);
+			consumers.add(consumer);
+			return consumer;
+		}
+
+		@Override
+		V buildValue() {
+			return aggregator.getValue(consumers.iterator());
+		}
+	}
+
+	private final List<Aggregate<?>> aggregates = new ArrayList<>();
+	private boolean executed;
+
+	/**
+	 * Add an aggregate to calculate over all items.
+	 *
+	 * @param aggregator
+	 *            the aggregator
+	 * @return a handle to get the value from when the batch has been executed
+	 */
+	public <V, C extends IItemConsumer<C>> Aggregate<V> add(IAggregator<V, C> aggregator) {
+		return add(null, aggregator);
+	}
+
+	/**
+	 * Add an aggregate to calculate over the items that match a filter.
+	 *
+	 * @param filter
+	 *            the filter to apply before aggregating, or {@code null} to aggregate over all
+	 *            items
+	 * @param aggregator
+	 *            the aggregator
+	 * @return a handle to get the value from when the batch has been executed
+	 */
+	public <V, C extends IItemConsumer<C>> Aggregate<V> add(IItemFilter filter, IAggregator<V, C> aggregator) {
+		if (executed) {
+			throw new IllegalStateException("The aggregation batch has already been executed"); //$NON-NLS-1$
+		}
+		TypedAggregate<V, C> aggregate = new TypedAggregate<>(filter, aggregator);
+		aggregates.add(aggregate);
+		return aggregate;
+	}
+
+	/**
+	 * Calculate all aggregates in the batch, iterating over the items of each type in the
+	 * collection once.
+	 *
+	 * @param items
+	 *            the items to aggregate over
+	 */
+	public void execute(IItemCollection items) {
+		if (executed) {
+			throw new IllegalStateException("The aggregation batch has already been executed"); //$NON-NLS-1$
+		}
+		executed = true;
+		List<IItemConsumer<?>> consumers = new ArrayList<>();
+		List<Predicate<IItem>> predicates = new ArrayList<>();
+		for (IItemIterable iterable : items) {
+			IType<IItem> type = iterable.getType();
+			consumers.clear();
+			predicates.clear();
+			boolean filtered = false;
+			for (Aggregate<?> aggregate : aggregates) {
+				if (!aggregate.acceptType(type)) {
+					continue;
+				}
+				Predicate<IItem> predicate = aggregate.filter == null ? null : aggregate.filter.getPredicate(type);
+				if (predicate != null && PredicateToolkit.isFalseGuaranteed(predicate)) {
+					continue;
+				}
+				if (predicate != null && PredicateToolkit.isTrueGuaranteed(predicate)) {
+					predicate = null;
+				}
+				filtered |= predicate != null;
+				consumers.add(aggregate.addConsumer(type));
+				predicates.add(predicate);
+			}
+			if (consumers.isEmpty()) {
+				continue;
+			}
+			int count = consumers.size();
+			if (filtered) {
+				for (IItem item : iterable) {
+					for (int i = 0; i < count; i++) {
+						Predicate<IItem> predicate = predicates.get(i);
+						if (predicate == null || predicate.test(item)) {
+							consumers.get(i).consume(item);
+						}
+					}
+				}
+			} else {
+				for (IItem item : iterable) {
+					for (int i = 0; i < count; i++) {
+						consumers.get(i).consume(item);
+					}
+				}
+			}
+		}
+		for (Aggregate<?> aggregate : aggregates) {
+			aggregate.finish();
+		}
+	}
+}
@@ -32,24 +32,36 @@
  */
 package org.openjdk.jmc.common.item;
 
+import java.math.BigDecimal;
 import java.text.MessageFormat;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.function.Predicate;
 
+import org.openjdk.jmc.common.collection.LogHistogram;
 import org.openjdk.jmc.common.messages.internal.Messages;
 import org.openjdk.jmc.common.unit.ContentType;
 import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.IRange;
+import org.openjdk.jmc.common.unit.IScalarAffineTransform;
 import org.openjdk.jmc.common.unit.IUnit;
 import org.openjdk.jmc.common.unit.KindOfQuantity;
 import org.openjdk.jmc.common.unit.LinearKindOfQuantity;
+import org.openjdk.jmc.common.unit.QuantityRange;
 import org.openjdk.jmc.common.unit.UnitLookup;
 import org.openjdk.jmc.common.util.PredicateToolkit;
 import org.openjdk.jmc.common.util.StringToolkit;
 
 public class Aggregators {
 
+	// Default relative accuracy and bucket limit for log histograms. With these, a histogram covers
+	// values spanning more than 17 orders of magnitude, like nanoseconds up to years, in at most 32 kB.
+	private static final double DEFAULT_HISTOGRAM_ACCURACY = 0.01;
+	private static final int MAX_HISTOGRAM_BUCKETS = 2048;
+
 	public static abstract class AggregatorBase<V, C extends IItemConsumer<C>> implements IAggregator<V, C> {
 		private final String name;
 		private final String description;
@@ -129,13 +141,41 @@ public class Aggregators {
 	private static abstract class QuantityConsumer<C> implements IItemConsumer<C> {
 
 		IMemberAccessor<? extends IQuantity, IItem> accessor;
+		// Set if the accessor can read values without creating quantity objects
+		private final ILongAccessor<IItem> longAccessor;
+		private final IDoubleAccessor<IItem> doubleAccessor;
 
+		@SuppressWarnings("unchecked")
 		QuantityConsumer(IMemberAccessor<? extends IQuantity, IItem> accessor) {
 			this.accessor = accessor;
+			longAccessor = accessor instanceof ILongAccessor ? (ILongAccessor<IItem>) accessor : null;
+			doubleAccessor = accessor instanceof IDoubleAccessor ? (IDoubleAccessor<IItem>) accessor : null;
+		}
+
+		/**
+		 * @return {@code true} if the value of the item can be read using
+		 *         {@link #getPrimitiveValue(IItem, IUnit)}, expressed in the given unit
+		 */
+		final boolean isPrimitive(IItem item, IUnit unit) {
+			return unit != null && ((longAccessor != null && longAccessor.getLongUnit(item) == unit)
+					|| (doubleAccessor != null && doubleAccessor.getDoubleUnit(item) == unit));
+		}
+
+		/**
+		 * Read the value of an item from the representation that is in the given unit. Must only be
+		 * called if {@link #isPrimitive(IItem, IUnit)} returns {@code true} for the unit, since the
+		 * long and double representations may be in different units.
+		 */
+		final double getPrimitiveValue(IItem item, IUnit unit) {
+			if (longAccessor != null && longAccessor.getLongUnit(item) == unit) {
+				return longAccessor.getLong(item);
+			}
+			return doubleAccessor.getDouble(item);
 		}
 	}
 
-	private static class SumConsumer extends QuantityConsumer<SumConsumer> {
+	private static class SumConsumer extends QuantityConsumer<SumConsumer>
+			implements ICopyableItemConsumer<SumConsumer> {
 
 		double sum = 0.0;
 		IUnit unit = null;
@@ -146,6 +186,10 @@ public class Aggregators {
 
 		@Override
 		public void consume(IItem item) {
+			if (isPrimitive(item, unit)) {
+				sum += getPrimitiveValue(item, unit);
+				return;
+			}
 			IQuantity fieldValue = accessor.getMember(item);
 			if (unit == null) {
 				unit = fieldValue.getUnit();
@@ -165,6 +209,14 @@ public class Aggregators {
 			return other;
 		}
 
+		@Override
+		public SumConsumer copy() {
+			SumConsumer copy = new SumConsumer(accessor);
+			copy.sum = sum;
+			copy.unit = unit;
+			return copy;
+		}
+
 	}
 
 	public static abstract class Sum extends FieldAggregatorBase<IQuantity, SumConsumer> {
@@ -173,6 +225,11 @@ public class Aggregators {
 			super(name, description, ct);
 		}
 
+		@Override
+		public boolean isParallelSafe() {
+			return true;
+		}
+
 		@Override
 		public SumConsumer newItemConsumer(IType<IItem> type) {
 			return new SumConsumer(getAccessor(type));
@@ -193,6 +250,11 @@ public class Aggregators {
 			this.besselCorrection = besselCorrection;
 		}
 
+		@Override
+		public boolean isParallelSafe() {
+			return true;
+		}
+
 		@Override
 		public VarianceConsumer newItemConsumer(IType<IItem> type) {
 			return new VarianceConsumer(getAccessor(type));
@@ -216,6 +278,11 @@ public class Aggregators {
 			this.besselCorrection = besselCorrection;
 		}
 
+		@Override
+		public boolean isParallelSafe() {
+			return true;
+		}
+
 		@Override
 		public VarianceConsumer newItemConsumer(IType<IItem> type) {
 			return new VarianceConsumer(getAccessor(type));
@@ -234,7 +301,8 @@ public class Aggregators {
 	/**
 	 * Consumer for calculating stddev and variance in a one pass, numerically stable way.
 	 */
-	public static class VarianceConsumer extends QuantityConsumer<VarianceConsumer> {
+	public static class VarianceConsumer extends QuantityConsumer<VarianceConsumer>
+			implements ICopyableItemConsumer<VarianceConsumer> {
 		public long n = 0;
 		public double mean = 0.0;
 		public double M2 = 0.0;
@@ -265,15 +333,20 @@ public class Aggregators {
 
 		@Override
 		public void consume(IItem item) {
-			IQuantity fieldValue = accessor.getMember(item);
 			n++;
-			if (fieldValue == null) {
-				return;
-			}
-			if (unit == null) {
-				unit = fieldValue.getUnit();
+			double x;
+			if (isPrimitive(item, unit)) {
+				x = getPrimitiveValue(item, unit);
+			} else {
+				IQuantity fieldValue = accessor.getMember(item);
+				if (fieldValue == null) {
+					return;
+				}
+				if (unit == null) {
+					unit = fieldValue.getUnit();
+				}
+				x = fieldValue.doubleValueIn(unit);
 			}
-			double x = fieldValue.doubleValueIn(unit);
 			double delta = x - mean;
 			mean = mean + delta / n;
 			M2 = M2 + delta * (x - mean);
@@ -301,10 +374,21 @@ public class Aggregators {
 			}
 			return other;
 		}
+
+		@Override
+		public VarianceConsumer copy() {
+			VarianceConsumer copy = new VarianceConsumer(accessor);
+			copy.n = n;
+			copy.mean = mean;
+			copy.M2 = M2;
+			copy.unit = unit;
+			return copy;
+		}
 	}
 
 	// FIXME: Would like to extend SumConsumer, but this currently causes generics problems
-	public static class AvgConsumer extends QuantityConsumer<AvgConsumer> {
+	public static class AvgConsumer extends QuantityConsumer<AvgConsumer>
+			implements ICopyableItemConsumer<AvgConsumer> {
 
 		public double sum = 0.0;
 		public IUnit unit = null;
@@ -316,6 +400,11 @@ public class Aggregators {
 
 		@Override
 		public void consume(IItem item) {
+			if (isPrimitive(item, unit)) {
+				sum += getPrimitiveValue(item, unit);
+				count++;
+				return;
+			}
 			IQuantity fieldValue = accessor.getMember(item);
 			if (fieldValue == null) {
 				count++;
@@ -343,6 +432,15 @@ public class Aggregators {
 			return other;
 		}
 
+		@Override
+		public AvgConsumer copy() {
+			AvgConsumer copy = new AvgConsumer(accessor);
+			copy.sum = sum;
+			copy.unit = unit;
+			copy.count = count;
+			return copy;
+		}
+
 	}
 
 	public static abstract class Avg extends FieldAggregatorBase<IQuantity, AvgConsumer> {
@@ -351,6 +449,11 @@ public class Aggregators {
 			super(name, description, ct);
 		}
 
+		@Override
+		public boolean isParallelSafe() {
+			return true;
+		}
+
 		@Override
 		public AvgConsumer newItemConsumer(IType<IItem> type) {
 			return new AvgConsumer(getAccessor(type));
@@ -362,36 +465,152 @@ public class Aggregators {
 		}
 	}
 
-	public static class MinMaxConsumer<V extends Comparable<V>> implements IItemConsumer<MinMaxConsumer<V>> {
+	private static class LogHistogramConsumer extends QuantityConsumer<LogHistogramConsumer> {
+
+		final LogHistogram histogram;
+		IUnit unit = null;
+
+		LogHistogramConsumer(IMemberAccessor<? extends IQuantity, IItem> accessor, double relativeAccuracy) {
+			super(accessor);
+			histogram = new LogHistogram(relativeAccuracy, MAX_HISTOGRAM_BUCKETS);
+		}
+
+		@Override
+		public void consume(IItem item) {
+			if (isPrimitive(item, unit)) {
+				histogram.add(getPrimitiveValue(item, unit));
+				return;
+			}
+			IQuantity fieldValue = accessor.getMember(item);
+			if (fieldValue != null) {
+				if (unit == null) {
+					unit = fieldValue.getUnit();
+				}
+				histogram.add(fieldValue.doubleValueIn(unit));
+			}
+		}
+
+		@Override
+		public LogHistogramConsumer merge(LogHistogramConsumer other) {
+			if (other.unit == null) {
+				return this;
+			} else if (unit == null) {
+				return other;
+			} else if (unit.equals(other.unit)) {
+				histogram.merge(other.histogram);
+			} else {
+				// Rebucket the other histogram, which stays within the accuracy for linear units
+				IScalarAffineTransform transform = other.unit.valueTransformTo(unit);
+				for (LogHistogram.Bucket bucket : other.histogram.getBuckets()) {
+					histogram.add(transform.targetValue(bucket.getValue()), bucket.getCount());
+				}
+			}
+			return this;
+		}
+	}
+
+	private static abstract class LogHistogramAggregator<V> extends MergingAggregator<V, LogHistogramConsumer> {
+
+		private final IAccessorFactory<IQuantity> attribute;
+		private final double relativeAccuracy;
+
+		LogHistogramAggregator(String name, String description, IType<? super V> ct,
+				IAccessorFactory<IQuantity> attribute, double relativeAccuracy) {
+			super(name, description, ct);
+			this.attribute = attribute;
+			this.relativeAccuracy = relativeAccuracy;
+		}
+
+		@Override
+		public boolean acceptType(IType<IItem> type) {
+			return attribute.getAccessor(type) != null;
+		}
+
+		@Override
+		public boolean isParallelSafe() {
+			return true;
+		}
+
+		@Override
+		public LogHistogramConsumer newItemConsumer(IType<IItem> type) {
+			return new LogHistogramConsumer(attribute.getAccessor(type), relativeAccuracy);
+		}
+	}
+
+	public static class MinMaxConsumer<V extends Comparable<V>> implements ICopyableItemConsumer<MinMaxConsumer<V>> {
 
 		private final IMemberAccessor<? extends V, IItem> accessor;
+		private final ILongAccessor<IItem> longAccessor;
 		private final boolean max;
 		private V value;
 		private IItem item;
+		// Set when the current value has been read as a primitive long, in which case value is only
+		// created when needed
+		private IUnit longUnit;
+		private long longValue;
 
+		@SuppressWarnings("unchecked")
 		public MinMaxConsumer(IMemberAccessor<? extends V, IItem> accessor, boolean max) {
 			this.accessor = accessor;
 			this.max = max;
+			longAccessor = accessor instanceof ILongAccessor ? (ILongAccessor<IItem>) accessor : null;
 		}
 
 		@Override
 		public void consume(IItem item) {
+			if (longAccessor != null) {
+				IUnit unit = longAccessor.getLongUnit(item);
+				if (unit != null && unit == longUnit) {
+					long newValue = longAccessor.getLong(item);
+					if (newValue > longValue == max) {
+						longValue = newValue;
+						this.item = item;
+						value = null;
+					}
+					return;
+				}
+				add(accessor.getMember(item), item);
+				if (unit != null && this.item == item) {
+					longUnit = unit;
+					longValue = longAccessor.getLong(item);
+				}
+				return;
+			}
 			add(accessor.getMember(item), item);
 		}
 
 		// FIXME: "add" is not an ideal name for this method, rename to something better
 		private void add(V newValue, IItem newItem) {
-			if (newValue != null && (value == null || newValue.compareTo(value) > 0 == max)) {
+			V currentValue = getCurrentValue();
+			if (newValue != null && (currentValue == null || newValue.compareTo(currentValue) > 0 == max)) {
 				value = newValue;
 				item = newItem;
+				longUnit = null;
+			}
+		}
+
+		private V getCurrentValue() {
+			if (value == null && longUnit != null) {
+				value = accessor.getMember(item);
 			}
+			return value;
 		}
 
 		@Override
 		public MinMaxConsumer<V> merge(MinMaxConsumer<V> other) {
-			add(other.value, other.item);
+			add(other.getCurrentValue(), other.item);
 			return this;
 		}
+
+		@Override
+		public MinMaxConsumer<V> copy() {
+			MinMaxConsumer<V> copy = new MinMaxConsumer<>(accessor, max);
+			copy.value = value;
+			copy.item = item;
+			copy.longUnit = longUnit;
+			copy.longValue = longValue;
+			return copy;
+		}
 	}
 
 	public static abstract class MinMax<V extends Comparable<V>> extends FieldAggregatorBase<V, MinMaxConsumer<V>> {
@@ -402,6 +621,11 @@ public class Aggregators {
 			this.max = max;
 		}
 
+		@Override
+		public boolean isParallelSafe() {
+			return true;
+		}
+
 		@Override
 		public MinMaxConsumer<V> newItemConsumer(IType<IItem> type) {
 			return new MinMaxConsumer<>(getAccessor(type), max);
@@ -409,11 +633,11 @@ public class Aggregators {
 
 		@Override
 		public V getValue(MinMaxConsumer<V> consumer) {
-			return consumer.value;
+			return consumer.getCurrentValue();
 		}
 	}
 
-	public static class CountConsumer implements IItemConsumer<CountConsumer> {
+	public static class CountConsumer implements ICopyableItemConsumer<CountConsumer> {
 
 		private int count = 0;
 
@@ -428,6 +652,13 @@ public class Aggregators {
 			return this;
 		}
 
+		@Override
+		public CountConsumer copy() {
+			CountConsumer copy = new CountConsumer();
+			copy.count = count;
+			return copy;
+		}
+
 		public int getCount() {
 			return count;
 		}
@@ -469,6 +700,11 @@ public class Aggregators {
 			return true;
 		}
 
+		@Override
+		public boolean isParallelSafe() {
+			return true;
+		}
+
 		@Override
 		public CountConsumer newItemConsumer(IType<IItem> type) {
 			return new CountConsumer();
@@ -482,7 +718,7 @@ public class Aggregators {
 
 	private static final Count COUNT = new Count(Messages.getString(Messages.ItemAggregate_COUNT), null);
 
-	private static class AndOrConsumer implements IItemConsumer<AndOrConsumer> {
+	private static class AndOrConsumer implements ICopyableItemConsumer<AndOrConsumer> {
 		boolean and;
 		Boolean b;
 		IMemberAccessor<? extends Boolean, IItem> accessor;
@@ -511,6 +747,13 @@ public class Aggregators {
 			return this;
 		}
 
+		@Override
+		public AndOrConsumer copy() {
+			AndOrConsumer copy = new AndOrConsumer(accessor, and);
+			copy.b = b;
+			return copy;
+		}
+
 	}
 
 	private static abstract class AndOr extends FieldAggregatorBase<Boolean, AndOrConsumer> {
@@ -519,6 +762,11 @@ public class Aggregators {
 			super(name, description, ct);
 		}
 
+		@Override
+		public boolean isParallelSafe() {
+			return true;
+		}
+
 		@Override
 		public Boolean getValue(AndOrConsumer consumer) {
 			return consumer.b;
@@ -535,6 +783,11 @@ public class Aggregators {
 				return attribute.getAccessor(type) != null;
 			}
 
+			@Override
+			public boolean isParallelSafe() {
+				return true;
+			}
+
 			@Override
 			public MinMaxConsumer<V> newItemConsumer(IType<IItem> type) {
 				return new MinMaxConsumer<>(attribute.getAccessor(type), true);
@@ -571,6 +824,11 @@ public class Aggregators {
 				return aggregator.acceptType(type) && !PredicateToolkit.isFalseGuaranteed(filter.getPredicate(type));
 			}
 
+			@Override
+			public boolean isParallelSafe() {
+				return aggregator.isParallelSafe();
+			}
+
 			@Override
 			public FilterConsumer<C> newItemConsumer(IType<IItem> type) {
 				return new FilterConsumer<>(filter.getPredicate(type), aggregator.newItemConsumer(type));
@@ -726,6 +984,116 @@ public class Aggregators {
 		throw new IllegalArgumentException("Can only use LinearKindOfQuantity"); //$NON-NLS-1$
 	}
 
+	/**
+	 * Calculates an approximate quantile for a linear quantity attribute. The values are kept in a
+	 * fixed size histogram with logarithmic buckets, so the memory use does not depend on the
+	 * number of items. The returned quantile is within 1% of the exact value.
+	 *
+	 * @param attribute
+	 *            the attribute to calculate the quantile for
+	 * @param quantile
+	 *            the quantile to calculate, between 0 and 1 inclusive. For example 0.99 for the
+	 *            99th percentile.
+	 * @return an aggregator that calculates the quantile for the attribute
+	 */
+	public static IAggregator<IQuantity, ?> quantile(IAttribute<IQuantity> attribute, double quantile) {
+		return quantile(getPercentileName(attribute.getName(), quantile), attribute.getDescription(), attribute,
+				quantile, DEFAULT_HISTOGRAM_ACCURACY);
+	}
+
+	/**
+	 * Calculates an approximate quantile for a linear quantity attribute. The values are kept in a
+	 * fixed size histogram with logarithmic buckets, so the memory use does not depend on the
+	 * number of items.
+	 *
+	 * @param name
+	 *            aggregator name
+	 * @param description
+	 *            aggregator description
+	 * @param attribute
+	 *            the attribute to calculate the quantile for
+	 * @param quantile
+	 *            the quantile to calculate, between 0 and 1 inclusive
+	 * @param relativeAccuracy
+	 *            the maximum relative error of the returned quantile, larger than 0 and smaller
+	 *            than 1
+	 * @return an aggregator that calculates the quantile for the attribute
+	 */
+	public static IAggregator<IQuantity, ?> quantile(
+		String name, String description, IAttribute<IQuantity> attribute, final double quantile,
+		double relativeAccuracy) {
+		if (!(quantile >= 0 && quantile <= 1)) {
+			throw new IllegalArgumentException("Quantile must be between 0 and 1"); //$NON-NLS-1$
+		}
+		ContentType<?> contentType = attribute.getContentType();
+		if (contentType instanceof LinearKindOfQuantity) {
+			return new LogHistogramAggregator<IQuantity>(name, description, (LinearKindOfQuantity) contentType,
+					attribute, relativeAccuracy) {
+
+				@Override
+				public IQuantity getValue(LogHistogramConsumer consumer) {
+					return consumer.unit == null ? null
+							: consumer.unit.quantity(consumer.histogram.getQuantile(quantile));
+				}
+			};
+		}
+		throw new IllegalArgumentException("Can only use LinearKindOfQuantity"); //$NON-NLS-1$
+	}
+
+	/**
+	 * Calculates a histogram with logarithmic buckets for a linear quantity attribute. The bucket
+	 * bounds are spaced so that the bucket width is about 2% of the bucket values.
+	 *
+	 * @param attribute
+	 *            the attribute to calculate the histogram for
+	 * @return an aggregator that calculates a map from the range of each non-empty bucket to the
+	 *         number of values in the bucket, ordered by value
+	 */
+	public static IAggregator<Map<IRange<IQuantity>, Long>, ?> logHistogram(IAttribute<IQuantity> attribute) {
+		return logHistogram(getHistogramName(attribute.getName()), attribute.getDescription(), attribute,
+				DEFAULT_HISTOGRAM_ACCURACY);
+	}
+
+	/**
+	 * Calculates a histogram with logarithmic buckets for a linear quantity attribute.
+	 *
+	 * @param name
+	 *            aggregator name
+	 * @param description
+	 *            aggregator description
+	 * @param attribute
+	 *            the attribute to calculate the histogram for
+	 * @param relativeAccuracy
+	 *            the relative accuracy of the bucket values, which decides the bucket widths
+	 * @return an aggregator that calculates a map from the range of each non-empty bucket to the
+	 *         number of values in the bucket, ordered by value
+	 */
+	public static IAggregator<Map<IRange<IQuantity>, Long>, ?> logHistogram(
+		String name, String description, IAttribute<IQuantity> attribute, double relativeAccuracy) {
+		if (attribute.getContentType() instanceof LinearKindOfQuantity) {
+			return new LogHistogramAggregator<Map<IRange<IQuantity>, Long>>(name, description, UnitLookup.UNKNOWN,
+					attribute, relativeAccuracy) {
+
+				@Override
+				public Map<IRange<IQuantity>, Long> getValue(LogHistogramConsumer consumer) {
+					Map<IRange<IQuantity>, Long> histogram = new LinkedHashMap<>();
+					if (consumer.unit != null) {
+						IUnit unit = consumer.unit;
+						for (LogHistogram.Bucket bucket : consumer.histogram.getBuckets()) {
+							IRange<IQuantity> range = bucket.getLowerBound() == bucket.getUpperBound()
+									? QuantityRange.createPoint(unit.quantity(bucket.getLowerBound()))
+									: QuantityRange.createWithEnd(unit.quantity(bucket.getLowerBound()),
+											unit.quantity(bucket.getUpperBound()));
+							histogram.put(range, bucket.getCount());
+						}
+					}
+					return histogram;
+				}
+			};
+		}
+		throw new IllegalArgumentException("Can only use LinearKindOfQuantity"); //$NON-NLS-1$
+	}
+
 	public static IAggregator<IQuantity, ?> sum(final String typeId, final IAttribute<IQuantity> attribute) {
 		return sum(getSumName(attribute.getName()), null, typeId, attribute);
 	}
@@ -966,7 +1334,7 @@ public class Aggregators {
 		};
 	}
 
-	public static class SetConsumer<T> implements IItemConsumer<SetConsumer<T>> {
+	public static class SetConsumer<T> implements ICopyableItemConsumer<SetConsumer<T>> {
 		Set<T> distinct = new HashSet<>();
 		private final IMemberAccessor<? extends T, IItem> accessor;
 
@@ -987,6 +1355,13 @@ public class Aggregators {
 			distinct.addAll(other.distinct);
 			return this;
 		}
+
+		@Override
+		public SetConsumer<T> copy() {
+			SetConsumer<T> copy = new SetConsumer<>(accessor);
+			copy.distinct.addAll(distinct);
+			return copy;
+		}
 	}
 
 	private abstract static class SetAggregator<V, T> extends MergingAggregator<V, SetConsumer<T>> {
@@ -1003,6 +1378,11 @@ public class Aggregators {
 			return attribute.getAccessor(type) != null;
 		}
 
+		@Override
+		public boolean isParallelSafe() {
+			return true;
+		}
+
 		@Override
 		public SetConsumer<T> newItemConsumer(IType<IItem> itemType) {
 			return new SetConsumer<>(attribute.getAccessor(itemType));
@@ -1045,6 +1425,11 @@ public class Aggregators {
 				return aggregator.acceptType(type);
 			}
 
+			@Override
+			public boolean isParallelSafe() {
+				return aggregator.isParallelSafe();
+			}
+
 			@Override
 			public C newItemConsumer(IType<IItem> type) {
 				return aggregator.newItemConsumer(type);
@@ -1130,6 +1515,15 @@ public class Aggregators {
 				+ " " + name; //$NON-NLS-1$
 	}
 
+	static String getPercentileName(String name, double quantile) {
+		String percentile = BigDecimal.valueOf(quantile).movePointRight(2).stripTrailingZeros().toPlainString();
+		return MessageFormat.format(Messages.getString(Messages.ItemAggregate_PERCENTILE), percentile, name);
+	}
+
+	static String getHistogramName(String name) {
+		return MessageFormat.format(Messages.getString(Messages.ItemAggregate_HISTOGRAM), name);
+	}
+
 	static String getAvgName(String name) {
 		return Messages.getString(Messages.ItemAggregate_AVERAGE) + " " + name; //$NON-NLS-1$
 	}
@@ -1210,7 +1604,7 @@ public class Aggregators {
 	 *            the value type for the ordering
 	 */
 	public static class AdvancedMinMaxConsumer<V, T extends Comparable<T>>
-			implements IItemConsumer<AdvancedMinMaxConsumer<V, T>> {
+			implements ICopyableItemConsumer<AdvancedMinMaxConsumer<V, T>> {
 		private final IMemberAccessor<? extends V, IItem> accessor;
 		private final IMemberAccessor<T, IItem> comparatorAccessor;
 		private final boolean max;
@@ -1255,6 +1649,13 @@ public class Aggregators {
 			return this;
 		}
 
+		@Override
+		public AdvancedMinMaxConsumer<V, T> copy() {
+			AdvancedMinMaxConsumer<V, T> copy = new AdvancedMinMaxConsumer<>(accessor, comparatorAccessor, max);
+			copy.item = item;
+			return copy;
+		}
+
 		public V getValue() {
 			if (item == null) {
 				return null;
@@ -1287,6 +1688,11 @@ public class Aggregators {
 			this.max = max;
 		}
 
+		@Override
+		public boolean isParallelSafe() {
+			return true;
+		}
+
 		@Override
 		public AdvancedMinMaxConsumer<V, T> newItemConsumer(IType<IItem> type) {
 			return new AdvancedMinMaxConsumer<>(attribute.getAccessor(type), comparator.getAccessor(type), max);
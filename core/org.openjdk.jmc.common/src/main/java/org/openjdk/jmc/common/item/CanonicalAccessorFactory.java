@@ -41,6 +41,13 @@ class CanonicalAccessorFactory<V> extends AccessorKey<V> implements ICanonicalAc
 
 	@Override
 	public final <U> IMemberAccessor<V, U> getAccessor(IType<U> type) {
+		if (type instanceof AccessorCachingType) {
+			return ((AccessorCachingType<U>) type).getAccessorCache().getAccessor(this, type);
+		}
+		return resolveAccessor(type);
+	}
+
+	<U> IMemberAccessor<V, U> resolveAccessor(IType<U> type) {
 		IMemberAccessor<V, U> standard = type.getAccessor(this);
 		return (standard != null) ? standard : customAccessor(type);
 	}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.common.item;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.function.Supplier;
+
+/**
+ * A cache of values derived from an item collection, such as aggregates or values calculated by
+ * helper functions. Each value is calculated once, also if it is requested by several threads at
+ * the same time. The other threads then wait for the first one to calculate the value.
+ * <p>
+ * Values are keyed by the chain of filters that has been applied to the collection and an object
+ * that identifies the calculation. Both are compared by identity, since filters and calculations in
+ * general do not implement equality, so constants should be used to benefit from the cache.
+ * <p>
+ * The cache is meant to be held by an item collection. The collections created by applying filters
+ * to it hold views of the same cache, created with {@link #forFilter(IItemFilter)}, so the cached
+ * values are released when the collections are. The number of cached values is limited, so that a
+ * collection that is kept and filtered with new filters for a long time does not grow without
+ * bounds. When the cache is full, the least recently used value is evicted, so values keyed by
+ * filters or calculations that are created for each call do not stay in the cache.
+ */
+public final class DerivedValueCache {
+
+	private static final int DEFAULT_MAX_SIZE = 1024;
+
+	private static final class Key {
+		private final List<Object> path;
+
+		Key(List<Object> path) {
+			this.path = path;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = 1;
+			for (Object o : path) {
+				hash = 31 * hash + System.identityHashCode(o);
+			}
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			List<Object> other = ((Key) obj).path;
+			if (other.size() != path.size()) {
+				return false;
+			}
+			for (int i = 0; i < path.size(); i++) {
+				if (path.get(i) != other.get(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	private final List<Object> filters;
+	// Guarded by itself
+	private final Map<Key, Future<Object>> values;
+
+	/**
+	 * Create a cache that holds a default maximum number of values.
+	 */
+	public DerivedValueCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * Create a cache.
+	 *
+	 * @param maxSize
+	 *            the maximum number of values to hold
+	 */
+	public DerivedValueCache(final int maxSize) {
+		// Access ordered, so that the least recently used value is the eldest
+		this(Collections.emptyList(), new LinkedHashMap<Key, Future<Object>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Future<Object>> eldest) {
+				return size() > maxSize;
+			}
+		});
+	}
+
+	private DerivedValueCache(List<Object> filters, Map<Key, Future<Object>> values) {
+		this.filters = filters;
+		this.values = values;
+	}
+
+	/**
+	 * Get a view of this cache for the collection that is created by applying a filter.
+	 *
+	 * @param filter
+	 *            the applied filter
+	 * @return a cache that shares values with this cache
+	 */
+	public DerivedValueCache forFilter(IItemFilter filter) {
+		List<Object> path = new ArrayList<>(filters.size() + 1);
+		path.addAll(filters);
+		path.add(filter);
+		return new DerivedValueCache(path, values);
+	}
+
+	/**
+	 * Get a cached value, or calculate it if it is not cached. If the calculation throws an
+	 * exception, then the exception is thrown to all threads waiting for the value, and the value
+	 * is calculated again the next time it is requested.
+	 *
+	 * @param calculation
+	 *            an object that identifies the calculation, compared by identity
+	 * @param supplier
+	 *            supplier that calculates the value
+	 * @return the value
+	 */
+	public <V> V get(Object calculation, final Supplier<V> supplier) {
+		List<Object> path = new ArrayList<>(filters.size() + 1);
+		path.addAll(filters);
+		path.add(calculation);
+		Key key = new Key(path);
+		FutureTask<Object> task = null;
+		Future<Object> value;
+		synchronized (values) {
+			value = values.get(key);
+			if (value == null) {
+				task = new FutureTask<>(new Callable<Object>() {
+
+					@Override
+					public Object call() throws Exception {
+						return supplier.get();
+					}
+				});
+				values.put(key, task);
+				value = task;
+			}
+		}
+		if (task != null) {
+			// Calculated outside the lock, since the calculation may use the cache
+			task.run();
+		}
+		try {
+			@SuppressWarnings("unchecked")
+			V result = (V) value.get();
+			return result;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return supplier.get();
+		} catch (ExecutionException e) {
+			synchronized (values) {
+				values.remove(key, value);
+			}
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+}
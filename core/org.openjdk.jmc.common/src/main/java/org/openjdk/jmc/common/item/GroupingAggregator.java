@@ -35,12 +35,14 @@ package org.openjdk.jmc.common.item;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Predicate;
 
-import org.openjdk.jmc.common.collection.EntryHashMap;
-import org.openjdk.jmc.common.collection.EntryHashMap.Entry;
+import org.openjdk.jmc.common.collection.KeyIndexMap;
 import org.openjdk.jmc.common.item.Aggregators.MergingAggregator;
 import org.openjdk.jmc.common.unit.IQuantity;
 import org.openjdk.jmc.common.unit.UnitLookup;
@@ -65,24 +67,60 @@ public class GroupingAggregator {
 		V getValue(List<IQuantity> values, IQuantity total);
 	}
 
-	private static class ObjectEntry<K, V> extends Entry<K> implements GroupEntry<K, V> {
-		private V value;
+	/**
+	 * A key with an item count, as calculated by an aggregator created with
+	 * {@link GroupingAggregator#buildTopCounts}.
+	 */
+	public interface TopEntry<K> {
+		K getKey();
+
+		/**
+		 * @return the counted number of items with the key. This may overestimate the real count by
+		 *         at most {@link #getMaxError()}.
+		 */
+		long getCount();
+
+		/**
+		 * @return the maximum overestimation of the count, which is 0 for exact counts
+		 */
+		long getMaxError();
+	}
+
+	private static class ObjectEntry<K, V> implements GroupEntry<K, V> {
+		private final K key;
+		private final V value;
 
 		public ObjectEntry(K key, V value) {
-			super(key);
+			this.key = key;
 			this.value = value;
 		}
 
+		@Override
+		public K getKey() {
+			return key;
+		}
+
 		@Override
 		public V getConsumer() {
 			return value;
 		}
 	}
 
+	/**
+	 * Groups items by key. Each distinct key is given a dense index using a {@link KeyIndexMap},
+	 * which mostly looks up keys by identity, and the group consumers are kept in an array indexed
+	 * by it. This avoids calculating hash codes and comparing rich key objects, like types or stack
+	 * traces, for each item.
+	 */
 	private static class GroupingConsumer<K, G extends IItemConsumer<G>>
 			implements IItemConsumer<GroupingConsumer<K, G>> {
 
-		private EntryHashMap<K, ObjectEntry<K, G>> map;
+		private KeyIndexMap<K> keys;
+		private Object[] groups;
+		private IType<IItem> type;
+		// Items often come in runs with the same key
+		private K lastKey;
+		private G lastGroup;
 		private final IMemberAccessor<? extends K, IItem> keyAccessor;
 		private final IItemConsumerFactory<G> groupAggregator;
 
@@ -94,40 +132,73 @@ public class GroupingAggregator {
 
 		@Override
 		public void consume(IItem item) {
-			initialize(ItemToolkit.getItemType(item));
 			K key = keyAccessor.getMember(item);
 			if (key != null) {
-				map.get(key, true).value.consume(item);
+				if (key != lastKey) {
+					initialize(ItemToolkit.getItemType(item));
+					lastGroup = getGroup(keys.indexOf(key));
+					lastKey = key;
+				}
+				lastGroup.consume(item);
 			}
 		}
 
-		private void initialize(final IType<IItem> type) {
-			if (map == null) {
-				map = new EntryHashMap<K, ObjectEntry<K, G>>(1000, 0.5f) {
+		private void initialize(IType<IItem> type) {
+			if (keys == null) {
+				this.type = type;
+				keys = new KeyIndexMap<>();
+				groups = new Object[16];
+			}
+		}
 
-					@Override
-					protected ObjectEntry<K, G> computeValue(K key) {
-						return new ObjectEntry<>(key, groupAggregator.newItemConsumer(type));
-					}
-				};
+		private G getGroup(int index) {
+			if (index >= groups.length) {
+				groups = Arrays.copyOf(groups, Math.max(index + 1, groups.length * 2));
 			}
+			@SuppressWarnings("unchecked")
+			G group = (G) groups[index];
+			if (group == null) {
+				group = groupAggregator.newItemConsumer(type);
+				groups[index] = group;
+			}
+			return group;
 		}
 
 		@Override
 		public GroupingConsumer<K, G> merge(GroupingConsumer<K, G> other) {
-			if (map != null && other != null && other.map != null) {
-				for (ObjectEntry<K, G> otherEntry : other.map) {
-					ObjectEntry<K, G> thisEntry = map.get(otherEntry.getKey(), true);
-					thisEntry.value = thisEntry.value.merge(otherEntry.value);
+			if (keys != null && other != null && other.keys != null) {
+				for (int i = 0; i < other.keys.size(); i++) {
+					@SuppressWarnings("unchecked")
+					G otherGroup = (G) other.groups[i];
+					int index = keys.indexOf(other.keys.getKey(i));
+					if (index >= groups.length) {
+						groups = Arrays.copyOf(groups, Math.max(index + 1, groups.length * 2));
+					}
+					@SuppressWarnings("unchecked")
+					G group = (G) groups[index];
+					groups[index] = group == null ? otherGroup : group.merge(otherGroup);
 				}
-			} else if (other != null && other.map != null) {
-				map = other.map;
+				lastKey = null;
+				lastGroup = null;
+			} else if (other != null && other.keys != null) {
+				keys = other.keys;
+				groups = other.groups;
+				type = other.type;
 			}
 			return this;
 		}
 
 		Iterator<ObjectEntry<K, G>> getGroups() {
-			return map == null ? Collections.<ObjectEntry<K, G>> emptyList().iterator() : map.iterator();
+			if (keys == null) {
+				return Collections.<ObjectEntry<K, G>> emptyList().iterator();
+			}
+			List<ObjectEntry<K, G>> entries = new ArrayList<>(keys.size());
+			for (int i = 0; i < keys.size(); i++) {
+				@SuppressWarnings("unchecked")
+				G group = (G) groups[i];
+				entries.add(new ObjectEntry<>(keys.getKey(i), group));
+			}
+			return entries.iterator();
 		}
 	}
 
@@ -154,6 +225,11 @@ public class GroupingAggregator {
 			return keyField.getAccessor(type) != null && acceptType.test(type);
 		}
 
+		@Override
+		public boolean isParallelSafe() {
+			return consumerFactory instanceof IAggregator && ((IAggregator<?, ?>) consumerFactory).isParallelSafe();
+		}
+
 		@Override
 		public GroupingConsumer<K, G> newItemConsumer(IType<IItem> type) {
 			return new GroupingConsumer<>(keyField.getAccessor(type), consumerFactory);
@@ -171,6 +247,245 @@ public class GroupingAggregator {
 		}
 	}
 
+	private static class Counter<K> implements TopEntry<K> {
+		private K key;
+		private long count;
+		private long error;
+		private int heapIndex;
+
+		Counter(K key, long count, long error) {
+			this.key = key;
+			this.count = count;
+			this.error = error;
+		}
+
+		@Override
+		public K getKey() {
+			return key;
+		}
+
+		@Override
+		public long getCount() {
+			return count;
+		}
+
+		@Override
+		public long getMaxError() {
+			return error;
+		}
+	}
+
+	private static final Comparator<Counter<?>> BY_COUNT_DESCENDING = new Comparator<Counter<?>>() {
+		@Override
+		public int compare(Counter<?> c1, Counter<?> c2) {
+			return Long.compare(c2.count, c1.count);
+		}
+	};
+
+	/**
+	 * Counts items per key using the space-saving algorithm. A fixed number of counters is used.
+	 * While there are at most as many distinct keys as counters, the counts are exact. When a new
+	 * key is found and all counters are used, then the counter with the lowest count is taken over
+	 * by the new key. The count of that counter is then an upper bound of the count that the new
+	 * key could have had, which is kept as the maximum error. Keys with high counts are thereby
+	 * never lost.
+	 */
+	private static class TopCountsConsumer<K> implements IItemConsumer<TopCountsConsumer<K>> {
+
+		private final IMemberAccessor<? extends K, IItem> keyAccessor;
+		private final int capacity;
+		private final Map<K, Counter<K>> counters = new HashMap<>();
+		// Min-heap on count
+		private final List<Counter<K>> heap = new ArrayList<>();
+		private Counter<K> lastCounter;
+
+		TopCountsConsumer(IMemberAccessor<? extends K, IItem> keyAccessor, int capacity) {
+			this.keyAccessor = keyAccessor;
+			this.capacity = capacity;
+		}
+
+		@Override
+		public void consume(IItem item) {
+			K key = keyAccessor.getMember(item);
+			if (key != null) {
+				Counter<K> counter = lastCounter != null && lastCounter.key == key ? lastCounter : counters.get(key);
+				if (counter != null) {
+					counter.count++;
+					siftDown(counter.heapIndex);
+				} else if (heap.size() < capacity) {
+					counter = new Counter<>(key, 1, 0);
+					add(counter);
+				} else {
+					counter = heap.get(0);
+					counters.remove(counter.key);
+					counter.key = key;
+					counter.error = counter.count;
+					counter.count++;
+					counters.put(key, counter);
+					siftDown(0);
+				}
+				lastCounter = counter;
+			}
+		}
+
+		private void add(Counter<K> counter) {
+			counters.put(counter.key, counter);
+			counter.heapIndex = heap.size();
+			heap.add(counter);
+			siftUp(counter.heapIndex);
+		}
+
+		private long getMinCount() {
+			return heap.size() < capacity ? 0 : heap.get(0).count;
+		}
+
+		@Override
+		public TopCountsConsumer<K> merge(TopCountsConsumer<K> other) {
+			long minCount = getMinCount();
+			long otherMinCount = other.getMinCount();
+			List<Counter<K>> merged = new ArrayList<>(heap.size() + other.heap.size());
+			for (Counter<K> counter : heap) {
+				Counter<K> otherCounter = other.counters.get(counter.key);
+				if (otherCounter != null) {
+					merged.add(new Counter<>(counter.key, counter.count + otherCounter.count,
+							counter.error + otherCounter.error));
+				} else {
+					merged.add(
+							new Counter<>(counter.key, counter.count + otherMinCount, counter.error + otherMinCount));
+				}
+			}
+			for (Counter<K> otherCounter : other.heap) {
+				if (!counters.containsKey(otherCounter.key)) {
+					merged.add(new Counter<>(otherCounter.key, otherCounter.count + minCount,
+							otherCounter.error + minCount));
+				}
+			}
+			Collections.sort(merged, BY_COUNT_DESCENDING);
+			counters.clear();
+			heap.clear();
+			lastCounter = null;
+			for (Counter<K> counter : merged.subList(0, Math.min(capacity, merged.size()))) {
+				add(counter);
+			}
+			return this;
+		}
+
+		List<TopEntry<K>> getTopEntries(int count) {
+			List<Counter<K>> sorted = new ArrayList<>(heap);
+			Collections.sort(sorted, BY_COUNT_DESCENDING);
+			List<TopEntry<K>> entries = new ArrayList<>(Math.min(count, sorted.size()));
+			for (Counter<K> counter : sorted.subList(0, Math.min(count, sorted.size()))) {
+				entries.add(new Counter<>(counter.key, counter.count, counter.error));
+			}
+			return entries;
+		}
+
+		private void siftUp(int index) {
+			Counter<K> counter = heap.get(index);
+			while (index > 0) {
+				int parentIndex = (index - 1) >>> 1;
+				Counter<K> parent = heap.get(parentIndex);
+				if (parent.count <= counter.count) {
+					break;
+				}
+				place(parent, index);
+				index = parentIndex;
+			}
+			place(counter, index);
+		}
+
+		private void siftDown(int index) {
+			Counter<K> counter = heap.get(index);
+			int size = heap.size();
+			while (true) {
+				int childIndex = 2 * index + 1;
+				if (childIndex >= size) {
+					break;
+				}
+				Counter<K> child = heap.get(childIndex);
+				if (childIndex + 1 < size && heap.get(childIndex + 1).count < child.count) {
+					childIndex++;
+					child = heap.get(childIndex);
+				}
+				if (counter.count <= child.count) {
+					break;
+				}
+				place(child, index);
+				index = childIndex;
+			}
+			place(counter, index);
+		}
+
+		private void place(Counter<K> counter, int index) {
+			heap.set(index, counter);
+			counter.heapIndex = index;
+		}
+	}
+
+	private static class TopCountsAggregator<K> extends MergingAggregator<List<TopEntry<K>>, TopCountsConsumer<K>> {
+
+		private final IAccessorFactory<K> keyField;
+		private final Predicate<IType<IItem>> acceptType;
+		private final int count;
+		private final int capacity;
+
+		TopCountsAggregator(String name, String description, IAccessorFactory<K> keyField,
+				Predicate<IType<IItem>> acceptType, int count, int capacity) {
+			super(name, description, UnitLookup.UNKNOWN);
+			this.keyField = keyField;
+			this.acceptType = acceptType;
+			this.count = count;
+			this.capacity = capacity;
+		}
+
+		@Override
+		public boolean acceptType(IType<IItem> type) {
+			return keyField.getAccessor(type) != null && acceptType.test(type);
+		}
+
+		@Override
+		public TopCountsConsumer<K> newItemConsumer(IType<IItem> type) {
+			return new TopCountsConsumer<>(keyField.getAccessor(type), capacity);
+		}
+
+		@Override
+		public List<TopEntry<K>> getValue(TopCountsConsumer<K> consumer) {
+			return consumer.getTopEntries(count);
+		}
+	}
+
+	/**
+	 * Create an aggregator that finds the keys with the highest item counts, using a fixed amount
+	 * of memory regardless of the number of distinct keys.
+	 * <p>
+	 * The counts are exact as long as there are at most {@code capacity} distinct keys. With more
+	 * keys, the counts are approximate, but any key with a count higher than the total item count
+	 * divided by {@code capacity} is guaranteed to be found.
+	 *
+	 * @param name
+	 *            aggregator name
+	 * @param description
+	 *            aggregator description
+	 * @param keyField
+	 *            the attribute to group by
+	 * @param acceptType
+	 *            predicate for the types to include
+	 * @param count
+	 *            the maximum number of entries in the result
+	 * @param capacity
+	 *            the number of counters to keep, at least {@code count}. A higher number gives more
+	 *            exact results.
+	 * @return an aggregator that gives the entries with the highest counts, in descending order
+	 */
+	public static <K> IAggregator<List<TopEntry<K>>, ?> buildTopCounts(
+		String name, String description, IAccessorFactory<K> keyField, Predicate<IType<IItem>> acceptType, int count,
+		int capacity) {
+		if (capacity < count || count < 1) {
+			throw new IllegalArgumentException("Capacity must be at least the count, which must be positive"); //$NON-NLS-1$
+		}
+		return new TopCountsAggregator<>(name, description, keyField, acceptType, count, capacity);
+	}
+
 	public static <V, K, C extends IItemConsumer<C>> IAggregator<V, ?> build(
 		String name, String description, IAccessorFactory<K> keyField, IItemConsumerFactory<C> groupAggregator,
 		Predicate<IType<IItem>> acceptType, IGroupsFinisher<V, K, C> finisher) {
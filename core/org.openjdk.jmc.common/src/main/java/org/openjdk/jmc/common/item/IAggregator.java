@@ -54,4 +54,18 @@ import org.openjdk.jmc.common.IDescribable;
 public interface IAggregator<V, C extends IItemConsumer<C>>
 		extends IItemConsumerFactory<C>, IDescribable, IValueBuilder<V, Iterator<C>> {
 
+	/**
+	 * Check if the items can be consumed in parallel. Item collections may then consume ranges of
+	 * the items of a type with separate consumers on different threads, and merge the consumers in
+	 * item order before calling {@link #getValue(Object)}.
+	 * <p>
+	 * This requires that the consumers do not share any mutable state, and that merging the
+	 * consumers for consecutive ranges of items gives the same value as consuming all the items
+	 * with one consumer.
+	 *
+	 * @return {@code true} if the items can be consumed in parallel, {@code false} by default
+	 */
+	default boolean isParallelSafe() {
+		return false;
+	}
 }
@@ -33,6 +33,7 @@
 package org.openjdk.jmc.common.item;
 
 import java.util.Set;
+import java.util.function.Function;
 
 import org.openjdk.jmc.common.unit.IQuantity;
 import org.openjdk.jmc.common.unit.IRange;
@@ -78,4 +79,24 @@ public interface IItemCollection extends Iterable<IItemIterable> {
 	 *         IItemCollection
 	 */
 	Set<IRange<IQuantity>> getTimeRanges();
+
+	/**
+	 * Calculates a value derived from the items in this collection. Implementations may cache the
+	 * value, typically in a {@link DerivedValueCache}, so that it is only calculated once even if
+	 * several threads request it at the same time.
+	 * <p>
+	 * Cached values are keyed by the function instance and the filter instances that have been
+	 * applied to get this collection, so the function should be a constant. The function must not,
+	 * directly or indirectly, request its own value for the same collection, and the returned value
+	 * must not be modified.
+	 *
+	 * @param <V>
+	 *            derived value type
+	 * @param function
+	 *            the function that calculates the value from this collection
+	 * @return the derived value
+	 */
+	default <V> V getDerivedValue(Function<IItemCollection, V> function) {
+		return function.apply(this);
+	}
 }
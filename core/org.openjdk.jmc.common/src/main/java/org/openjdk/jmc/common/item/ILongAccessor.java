@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.common.item;
+
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.IUnit;
+
+/**
+ * Optional interface for {@link IMemberAccessor} implementations that can read quantity members
+ * stored as primitive {@code long} values without creating {@link IQuantity} objects. Aggregators
+ * check for this interface and use it to aggregate values in tight loops, only creating a quantity
+ * for the result.
+ * <p>
+ * Whether a member is available as a primitive value may differ between container objects, so
+ * {@link #getLongUnit(Object)} must be checked for each container before calling
+ * {@link #getLong(Object)}.
+ *
+ * @param <O>
+ *            Container class
+ */
+public interface ILongAccessor<O> {
+
+	/**
+	 * Get the unit of a member value that is available as a primitive {@code long}.
+	 *
+	 * @param inObject
+	 *            Container object
+	 * @return the unit of the value returned by {@link #getLong(Object)}, or {@code null} if the
+	 *         member is {@code null} or not available as a primitive {@code long} for this
+	 *         container
+	 */
+	IUnit getLongUnit(O inObject);
+
+	/**
+	 * Gets a member value as a primitive {@code long}. Must only be called if
+	 * {@link #getLongUnit(Object)} returns a unit for the container.
+	 *
+	 * @param inObject
+	 *            Container object
+	 * @return member value, in the unit returned by {@link #getLongUnit(Object)}
+	 */
+	long getLong(O inObject);
+}
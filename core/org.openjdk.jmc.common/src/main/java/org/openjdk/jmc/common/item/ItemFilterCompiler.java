@@ -0,0 +1,571 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.common.item;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmc.common.item.ItemFilters.AttributeFilter;
+import org.openjdk.jmc.common.item.ItemFilters.AttributeValue;
+import org.openjdk.jmc.common.item.ItemFilters.Composite;
+import org.openjdk.jmc.common.item.ItemFilters.MemberOf;
+import org.openjdk.jmc.common.item.ItemFilters.Not;
+import org.openjdk.jmc.common.item.PersistableItemFilter.Kind;
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.IUnit;
+import org.openjdk.jmc.common.util.PredicateToolkit;
+
+/**
+ * Compiles item filters into predicates that are specialized for a single type.
+ * <p>
+ * A compiled predicate accepts the same items as the predicate returned by
+ * {@link IItemFilter#getPredicate(IType)}, but is cheaper to evaluate per item:
+ * <ul>
+ * <li>All accessors are resolved when the filter is compiled.</li>
+ * <li>Comparisons of the same attribute in a conjunction, such as those created by
+ * {@link ItemFilters#interval}, are merged so that the attribute value is only read once.</li>
+ * <li>Operands of conjunctions and disjunctions are ordered so that cheap checks, like equality
+ * checks, are done before expensive ones, like regular expression matching. Operands are never
+ * moved across filters that are unknown to the compiler, since those may depend on the preceding
+ * operands.</li>
+ * <li>Regular expressions are compiled once. Expressions that are plain literals, or literals
+ * preceded and/or followed by {@code .*}, are replaced by the corresponding string operations.</li>
+ * <li>Membership in small value sets is checked with a sequence of equality tests instead of a hash
+ * lookup.</li>
+ * </ul>
+ * Filters that are not known by the compiler are evaluated using their own predicates.
+ */
+public final class ItemFilterCompiler {
+
+	private static final int COST_CONSTANT = 0;
+	private static final int COST_EQUALS = 1;
+	private static final int COST_COMPARE = 2;
+	private static final int COST_RANGE = 3;
+	private static final int COST_STRING = 4;
+	private static final int COST_UNKNOWN = 6;
+	private static final int COST_REGEXP = 10;
+	private static final int COST_MAX = 1000;
+
+	private static final int MAX_UNROLLED_MEMBERS = 8;
+	private static final String ANY = ".*"; //$NON-NLS-1$
+	private static final String REGEXP_METACHARACTERS = "\\[](){}.*+?^$|"; //$NON-NLS-1$
+
+	// Bit masks for the accepted results of limit.compareTo(value)
+	private static final int LIMIT_LESS = 1;
+	private static final int LIMIT_EQUAL = 2;
+	private static final int LIMIT_GREATER = 4;
+
+	private static final Comparator<CompiledFilter> BY_COST = new Comparator<CompiledFilter>() {
+		@Override
+		public int compare(CompiledFilter f1, CompiledFilter f2) {
+			return Integer.compare(f1.cost, f2.cost);
+		}
+	};
+
+	private static class CompiledFilter {
+		final Predicate<IItem> predicate;
+		final int cost;
+		// Pure predicates only depend on the item and can be evaluated in any order
+		final boolean pure;
+
+		CompiledFilter(Predicate<IItem> predicate, int cost) {
+			this(predicate, cost, true);
+		}
+
+		CompiledFilter(Predicate<IItem> predicate, int cost, boolean pure) {
+			this.predicate = predicate;
+			this.cost = cost;
+			this.pure = pure;
+		}
+
+		boolean isTrue() {
+			return PredicateToolkit.isTrueGuaranteed(predicate);
+		}
+
+		boolean isFalse() {
+			return PredicateToolkit.isFalseGuaranteed(predicate);
+		}
+	}
+
+	private static final CompiledFilter TRUE = new CompiledFilter(PredicateToolkit.<IItem> truePredicate(),
+			COST_CONSTANT);
+	private static final CompiledFilter FALSE = new CompiledFilter(PredicateToolkit.<IItem> falsePredicate(),
+			COST_CONSTANT);
+
+	private ItemFilterCompiler() {
+		// Not creating instances.
+	}
+
+	/**
+	 * Compile a filter into a predicate for items of a specific type.
+	 *
+	 * @param filter
+	 *            the filter to compile
+	 * @param type
+	 *            the type of the items that the predicate will be used on
+	 * @return a predicate that accepts the same items as {@code filter.getPredicate(type)}. If the
+	 *         filter matches all or no items of the type, then the predicate will be recognized by
+	 *         {@link PredicateToolkit#isTrueGuaranteed(Predicate)} or
+	 *         {@link PredicateToolkit#isFalseGuaranteed(Predicate)} respectively.
+	 */
+	public static Predicate<IItem> compile(IItemFilter filter, IType<IItem> type) {
+		return compileFilter(filter, type).predicate;
+	}
+
+	private static CompiledFilter compileFilter(IItemFilter filter, IType<IItem> type) {
+		if (filter instanceof MemberOf) {
+			return compileMemberOf((MemberOf<?>) filter, type);
+		} else if (filter instanceof ItemFilters.Types) {
+			return constant(filter.getPredicate(type));
+		} else if (filter instanceof Composite) {
+			return compileComposite((Composite) filter, type);
+		} else if (filter instanceof Not) {
+			CompiledFilter inner = compileFilter(((Not) filter).getFilter(), type);
+			return new CompiledFilter(PredicateToolkit.not(inner.predicate), inner.cost, inner.pure);
+		} else if (filter instanceof AttributeValue) {
+			return compileAttributeValue((AttributeValue<?>) filter, type);
+		} else if (filter instanceof AttributeFilter) {
+			return compileAttributeFilter((AttributeFilter<?>) filter, type);
+		}
+		// Type filters and unknown filters
+		return constant(filter.getPredicate(type));
+	}
+
+	private static CompiledFilter constant(Predicate<IItem> predicate) {
+		if (PredicateToolkit.isTrueGuaranteed(predicate)) {
+			return TRUE;
+		} else if (PredicateToolkit.isFalseGuaranteed(predicate)) {
+			return FALSE;
+		}
+		return new CompiledFilter(predicate, COST_UNKNOWN, false);
+	}
+
+	private static CompiledFilter compileComposite(Composite composite, IType<IItem> type) {
+		boolean union = composite.isUnion();
+		List<CompiledFilter> operands = new ArrayList<>();
+		List<CompiledFilter> segment = new ArrayList<>();
+		// Comparisons in conjunctions are grouped by attribute, keeping the order of first appearance
+		Map<ICanonicalAccessorFactory<?>, List<AttributeValue<?>>> comparisons = new LinkedHashMap<>();
+		for (IItemFilter f : composite.getFilters()) {
+			if (!union && isComparison(f)) {
+				AttributeValue<?> comparison = (AttributeValue<?>) f;
+				List<AttributeValue<?>> list = comparisons.get(comparison.getAttribute());
+				if (list == null) {
+					list = new ArrayList<>();
+					comparisons.put(comparison.getAttribute(), list);
+				}
+				list.add(comparison);
+			} else {
+				CompiledFilter operand = compileFilter(f, type);
+				if (union ? operand.isTrue() : operand.isFalse()) {
+					return operand;
+				} else if (!(union ? operand.isFalse() : operand.isTrue())) {
+					if (operand.pure) {
+						segment.add(operand);
+					} else {
+						/*
+						 * Unknown filters may rely on the preceding operands, e.g. as a guard
+						 * against values that they can not handle, so operands are not moved across
+						 * them.
+						 */
+						if (!addSegment(segment, comparisons, operands, type)) {
+							return FALSE;
+						}
+						operands.add(operand);
+					}
+				}
+			}
+		}
+		if (!addSegment(segment, comparisons, operands, type)) {
+			return FALSE;
+		}
+		switch (operands.size()) {
+		case 0:
+			return union ? FALSE : TRUE;
+		case 1:
+			return operands.get(0);
+		default:
+			@SuppressWarnings("unchecked")
+			final Predicate<IItem>[] predicates = new Predicate[operands.size()];
+			int cost = 0;
+			boolean pure = true;
+			for (int i = 0; i < predicates.length; i++) {
+				predicates[i] = operands.get(i).predicate;
+				cost = Math.min(COST_MAX, cost + operands.get(i).cost);
+				pure &= operands.get(i).pure;
+			}
+			if (union) {
+				return new CompiledFilter(new Predicate<IItem>() {
+					@Override
+					public boolean test(IItem item) {
+						for (Predicate<IItem> p : predicates) {
+							if (p.test(item)) {
+								return true;
+							}
+						}
+						return false;
+					}
+				}, cost, pure);
+			}
+			return new CompiledFilter(new Predicate<IItem>() {
+				@Override
+				public boolean test(IItem item) {
+					for (Predicate<IItem> p : predicates) {
+						if (!p.test(item)) {
+							return false;
+						}
+					}
+					return true;
+				}
+			}, cost, pure);
+		}
+	}
+
+	/**
+	 * Add the operands of a segment, ordered by cost, to a list of operands. Comparisons are merged
+	 * into one operand per attribute. Both the segment and the comparisons are cleared.
+	 *
+	 * @return {@code false} if a merged comparison can never match
+	 */
+	private static boolean addSegment(
+		List<CompiledFilter> segment, Map<ICanonicalAccessorFactory<?>, List<AttributeValue<?>>> comparisons,
+		List<CompiledFilter> operands, IType<IItem> type) {
+		for (Map.Entry<ICanonicalAccessorFactory<?>, List<AttributeValue<?>>> e : comparisons.entrySet()) {
+			CompiledFilter operand = compileComparisons(e.getKey(), e.getValue(), type);
+			if (operand.isFalse()) {
+				return false;
+			}
+			segment.add(operand);
+		}
+		Collections.sort(segment, BY_COST);
+		operands.addAll(segment);
+		segment.clear();
+		comparisons.clear();
+		return true;
+	}
+
+	private static boolean isComparison(IItemFilter filter) {
+		if (filter instanceof AttributeValue) {
+			switch (((AttributeValue<?>) filter).getKind()) {
+			case LESS:
+			case LESS_OR_EQUAL:
+			case MORE:
+			case MORE_OR_EQUAL:
+				return true;
+			default:
+				return false;
+			}
+		}
+		return false;
+	}
+
+	private static CompiledFilter compileComparisons(
+		ICanonicalAccessorFactory<?> attribute, List<AttributeValue<?>> comparisons, IType<IItem> type) {
+		final IMemberAccessor<?, IItem> accessor = attribute.getAccessor(type);
+		if (accessor == null) {
+			return FALSE;
+		}
+		@SuppressWarnings("unchecked")
+		final Comparable<Object>[] limits = new Comparable[comparisons.size()];
+		final int[] accepted = new int[limits.length];
+		for (int i = 0; i < limits.length; i++) {
+			AttributeValue<?> comparison = comparisons.get(i);
+			@SuppressWarnings("unchecked")
+			Comparable<Object> limit = (Comparable<Object>) comparison.getValue();
+			limits[i] = limit;
+			accepted[i] = getAcceptedComparisons(comparison.getKind());
+		}
+		Predicate<IItem> quantityComparisons = new Predicate<IItem>() {
+			@Override
+			public boolean test(IItem item) {
+				Object value = accessor.getMember(item);
+				if (value == null) {
+					return false;
+				}
+				for (int i = 0; i < limits.length; i++) {
+					int c = limits[i].compareTo(value);
+					int result = c < 0 ? LIMIT_LESS : (c == 0 ? LIMIT_EQUAL : LIMIT_GREATER);
+					if ((accepted[i] & result) == 0) {
+						return false;
+					}
+				}
+				return true;
+			}
+		};
+		if (accessor instanceof ILongAccessor) {
+			@SuppressWarnings("unchecked")
+			Predicate<IItem> longComparisons = compileLongComparisons((ILongAccessor<IItem>) accessor, limits, accepted,
+					quantityComparisons);
+			if (longComparisons != null) {
+				return new CompiledFilter(longComparisons, COST_COMPARE);
+			}
+		}
+		return new CompiledFilter(quantityComparisons, COST_COMPARE);
+	}
+
+	/**
+	 * Compile comparisons that compare values read as primitive longs when the values are stored in
+	 * the same unit as the limits. Other values are compared as quantities.
+	 *
+	 * @return the compiled comparisons, or {@code null} if the limits are not long quantities in a
+	 *         common unit
+	 */
+	private static Predicate<IItem> compileLongComparisons(
+		final ILongAccessor<IItem> longAccessor, Comparable<Object>[] limits, final int[] accepted,
+		final Predicate<IItem> quantityComparisons) {
+		IUnit unit = null;
+		final long[] longLimits = new long[limits.length];
+		for (int i = 0; i < limits.length; i++) {
+			// Quantities with long values in the same unit are compared by their long values, so the
+			// result is the same as when comparing quantities
+			Object limitValue = limits[i];
+			if (!(limitValue instanceof IQuantity)) {
+				return null;
+			}
+			IQuantity limit = (IQuantity) limitValue;
+			if (!(limit.numberValue() instanceof Long) || (unit != null && !unit.equals(limit.getUnit()))) {
+				return null;
+			}
+			unit = limit.getUnit();
+			longLimits[i] = limit.longValue();
+		}
+		final IUnit limitUnit = unit;
+		return new Predicate<IItem>() {
+			@Override
+			public boolean test(IItem item) {
+				if (longAccessor.getLongUnit(item) != limitUnit) {
+					return quantityComparisons.test(item);
+				}
+				long value = longAccessor.getLong(item);
+				for (int i = 0; i < longLimits.length; i++) {
+					int result = longLimits[i] < value ? LIMIT_LESS
+							: (longLimits[i] == value ? LIMIT_EQUAL : LIMIT_GREATER);
+					if ((accepted[i] & result) == 0) {
+						return false;
+					}
+				}
+				return true;
+			}
+		};
+	}
+
+	private static int getAcceptedComparisons(Kind kind) {
+		switch (kind) {
+		case LESS:
+			return LIMIT_GREATER;
+		case LESS_OR_EQUAL:
+			return LIMIT_GREATER | LIMIT_EQUAL;
+		case MORE:
+			return LIMIT_LESS;
+		case MORE_OR_EQUAL:
+			return LIMIT_LESS | LIMIT_EQUAL;
+		default:
+			throw new IllegalArgumentException("Not a comparison: " + kind); //$NON-NLS-1$
+		}
+	}
+
+	private static CompiledFilter compileAttributeValue(AttributeValue<?> filter, IType<IItem> type) {
+		final IMemberAccessor<?, IItem> accessor = filter.getAttribute().getAccessor(type);
+		if (accessor == null) {
+			return FALSE;
+		}
+		final Object value = filter.getValue();
+		switch (filter.getKind()) {
+		case EQUALS:
+			return compileEquals(accessor, value, false);
+		case NOT_EQUALS:
+			return compileEquals(accessor, value, true);
+		case LESS:
+		case LESS_OR_EQUAL:
+		case MORE:
+		case MORE_OR_EQUAL:
+			return compileComparisons(filter.getAttribute(), Collections.<AttributeValue<?>> singletonList(filter),
+					type);
+		case MATCHES:
+		case NOT_MATCHES: {
+			String regexp = (String) value;
+			if (regexp.isEmpty()) {
+				return TRUE;
+			}
+			CompiledFilter matches = compileMatches(asStringAccessor(accessor), regexp);
+			return filter.getKind() == Kind.MATCHES ? matches
+					: new CompiledFilter(PredicateToolkit.not(matches.predicate), matches.cost);
+		}
+		case CONTAINS:
+		case NOT_CONTAINS: {
+			Predicate<IItem> contains = PredicateToolkit.contains(asStringAccessor(accessor), (String) value);
+			return new CompiledFilter(filter.getKind() == Kind.CONTAINS ? contains : PredicateToolkit.not(contains),
+					COST_STRING);
+		}
+		case RANGE_INTERSECTS:
+		case RANGE_CONTAINED:
+		case CENTER_CONTAINED:
+		case RANGE_NOT_INTERSECTS:
+		case RANGE_NOT_CONTAINED:
+		case CENTER_NOT_CONTAINED:
+			return new CompiledFilter(filter.getPredicate(type), COST_RANGE);
+		default:
+			return constant(filter.getPredicate(type));
+		}
+	}
+
+	private static CompiledFilter compileAttributeFilter(AttributeFilter<?> filter, IType<IItem> type) {
+		switch (filter.getKind()) {
+		case IS_NULL:
+		case IS_NOT_NULL: {
+			IMemberAccessor<?, IItem> accessor = filter.getAttribute().getAccessor(type);
+			if (accessor == null) {
+				return filter.getKind() == Kind.IS_NULL ? TRUE : FALSE;
+			}
+			return compileEquals(accessor, null, filter.getKind() == Kind.IS_NOT_NULL);
+		}
+		default:
+			return constant(filter.getPredicate(type));
+		}
+	}
+
+	private static CompiledFilter compileEquals(
+		final IMemberAccessor<?, IItem> accessor, final Object expected, final boolean negate) {
+		if (expected == null) {
+			return new CompiledFilter(new Predicate<IItem>() {
+				@Override
+				public boolean test(IItem item) {
+					return (accessor.getMember(item) == null) != negate;
+				}
+			}, COST_EQUALS);
+		}
+		return new CompiledFilter(new Predicate<IItem>() {
+			@Override
+			public boolean test(IItem item) {
+				return expected.equals(accessor.getMember(item)) != negate;
+			}
+		}, COST_EQUALS);
+	}
+
+	private static CompiledFilter compileMatches(
+		final IMemberAccessor<? extends String, IItem> accessor, final String regexp) {
+		if (isLiteral(regexp)) {
+			return new CompiledFilter(new Predicate<IItem>() {
+				@Override
+				public boolean test(IItem item) {
+					return regexp.equals(accessor.getMember(item));
+				}
+			}, COST_STRING);
+		}
+		// Pattern.DOTALL is used by PredicateToolkit, so .* matches any sequence of characters
+		boolean anyPrefix = regexp.startsWith(ANY);
+		boolean anySuffix = regexp.length() >= (anyPrefix ? 2 : 1) * ANY.length() && regexp.endsWith(ANY);
+		final String literal = regexp.substring(anyPrefix ? ANY.length() : 0,
+				regexp.length() - (anySuffix ? ANY.length() : 0));
+		if ((anyPrefix || anySuffix) && isLiteral(literal)) {
+			if (anyPrefix && anySuffix) {
+				return new CompiledFilter(PredicateToolkit.contains(accessor, literal), COST_STRING);
+			} else if (anySuffix) {
+				return new CompiledFilter(new Predicate<IItem>() {
+					@Override
+					public boolean test(IItem item) {
+						String value = accessor.getMember(item);
+						return value != null && value.startsWith(literal);
+					}
+				}, COST_STRING);
+			}
+			return new CompiledFilter(new Predicate<IItem>() {
+				@Override
+				public boolean test(IItem item) {
+					String value = accessor.getMember(item);
+					return value != null && value.endsWith(literal);
+				}
+			}, COST_STRING);
+		}
+		final Pattern pattern = PredicateToolkit.getValidPattern(regexp);
+		return new CompiledFilter(new Predicate<IItem>() {
+			@Override
+			public boolean test(IItem item) {
+				String value = accessor.getMember(item);
+				return value != null && pattern.matcher(value).matches();
+			}
+		}, COST_REGEXP);
+	}
+
+	private static boolean isLiteral(String regexp) {
+		for (int i = 0; i < regexp.length(); i++) {
+			if (REGEXP_METACHARACTERS.indexOf(regexp.charAt(i)) >= 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static CompiledFilter compileMemberOf(MemberOf<?> filter, IType<IItem> type) {
+		final IMemberAccessor<?, IItem> accessor = filter.getAttribute().getAccessor(type);
+		if (accessor == null || filter.getValues().isEmpty()) {
+			return FALSE;
+		}
+		final Set<?> values = filter.getValues();
+		if (values.size() <= MAX_UNROLLED_MEMBERS && values instanceof HashSet) {
+			// Only done for sets using equals, as the result could differ for sorted sets
+			final Object[] members = values.toArray();
+			return new CompiledFilter(new Predicate<IItem>() {
+				@Override
+				public boolean test(IItem item) {
+					Object value = accessor.getMember(item);
+					for (Object member : members) {
+						if (value == null ? member == null : value.equals(member)) {
+							return true;
+						}
+					}
+					return false;
+				}
+			}, COST_EQUALS * members.length);
+		}
+		return new CompiledFilter(new Predicate<IItem>() {
+			@Override
+			public boolean test(IItem item) {
+				return values.contains(accessor.getMember(item));
+			}
+		}, COST_COMPARE);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static IMemberAccessor<? extends String, IItem> asStringAccessor(IMemberAccessor<?, IItem> accessor) {
+		return (IMemberAccessor<? extends String, IItem>) accessor;
+	}
+}
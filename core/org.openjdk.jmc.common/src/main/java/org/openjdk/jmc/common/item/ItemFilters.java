@@ -116,7 +116,7 @@ public class ItemFilters {
 		}
 	}
 
-	private static class MemberOf<M> extends Composite {
+	static class MemberOf<M> extends Composite {
 		private final IAccessorFactory<M> attribute;
 		private final Set<M> values;
 
@@ -126,6 +126,14 @@ public class ItemFilters {
 			this.values = values;
 		}
 
+		IAccessorFactory<M> getAttribute() {
+			return attribute;
+		}
+
+		Set<M> getValues() {
+			return values;
+		}
+
 		@Override
 		public Predicate<IItem> getPredicate(IType<IItem> type) {
 			IMemberAccessor<? extends M, IItem> accessor = attribute.getAccessor(type);
@@ -38,6 +38,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.openjdk.jmc.common.IDescribable;
+import org.openjdk.jmc.common.item.AccessorCachingType;
 import org.openjdk.jmc.common.item.IAccessorKey;
 import org.openjdk.jmc.common.item.IAttribute;
 import org.openjdk.jmc.common.item.ICanonicalAccessorFactory;
@@ -54,7 +55,7 @@ import org.openjdk.jmc.common.messages.internal.Messages;
  * @param <T>
  *            the type of values that the content type is used for
  */
-public class ContentType<T> implements IType<T> {
+public class ContentType<T> extends AccessorCachingType<T> implements IType<T> {
 	private final List<DisplayFormatter<T>> m_formatters = new ArrayList<>();
 
 	protected final String m_identifier;
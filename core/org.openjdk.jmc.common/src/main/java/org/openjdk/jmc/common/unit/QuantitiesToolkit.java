@@ -53,4 +53,17 @@ public class QuantitiesToolkit {
 	public static <M extends Comparable<? super M>> boolean same(M a, M b) {
 		return (a == null) ? (b == null) : ((b == null) ? false : (a.compareTo(b) == 0));
 	}
+
+	/**
+	 * Check if the numerical value of a quantity is stored as a {@code long}. The value can then be
+	 * read exactly using {@link IQuantity#longValue()}, without boxing it as
+	 * {@link IQuantity#numberValue()} does.
+	 *
+	 * @param quantity
+	 *            the quantity to check
+	 * @return {@code true} if the numerical value is stored as a {@code long}
+	 */
+	public static boolean isLongStored(IQuantity quantity) {
+		return quantity instanceof ScalarQuantity.LongStored;
+	}
 }
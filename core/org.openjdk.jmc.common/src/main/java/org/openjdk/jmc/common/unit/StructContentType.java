@@ -92,6 +92,7 @@ public class StructContentType<T> extends ContentType<T> {
 		IAttribute<M> attr = Attribute.attr(identifier, name, desc, contentType);
 		m_attributes.add(attr);
 		m_accessors.put(attr.getKey(), new AccessorEntry<>(accessor, name, desc));
+		clearAccessorCache();
 	}
 
 	// IType.getAttributes is deprecated
@@ -34,10 +34,13 @@ package org.openjdk.jmc.common.util;
 
 import javax.management.openmbean.CompositeData;
 
+import org.openjdk.jmc.common.item.ILongAccessor;
 import org.openjdk.jmc.common.item.IMemberAccessor;
 import org.openjdk.jmc.common.unit.IQuantity;
 import org.openjdk.jmc.common.unit.IRange;
+import org.openjdk.jmc.common.unit.IScalarAffineTransform;
 import org.openjdk.jmc.common.unit.ITypedQuantity;
+import org.openjdk.jmc.common.unit.IUnit;
 import org.openjdk.jmc.common.unit.LinearUnit;
 import org.openjdk.jmc.common.unit.QuantityRange;
 
@@ -55,10 +58,14 @@ public class MemberAccessorToolkit {
 	 *            accessor retrieving the value to subtract from
 	 * @param subtrahend
 	 *            accessor retrieving the value to subtract
-	 * @return an accessor returning the difference between the input accessor values
+	 * @return an accessor returning the difference between the input accessor values. If both input
+	 *         accessors implement {@link ILongAccessor}, then so does the returned accessor.
 	 */
 	public static <T> IMemberAccessor<IQuantity, T> difference(
 		final IMemberAccessor<IQuantity, T> minuend, final IMemberAccessor<IQuantity, T> subtrahend) {
+		if (minuend instanceof ILongAccessor && subtrahend instanceof ILongAccessor) {
+			return new LongArithmeticAccessor<>(minuend, subtrahend, true);
+		}
 		return new IMemberAccessor<IQuantity, T>() {
 
 			@Override
@@ -77,10 +84,14 @@ public class MemberAccessorToolkit {
 	 *            accessor retrieving the first value to add
 	 * @param term2
 	 *            accessor retrieving the second value to add
-	 * @return an accessor returning the sum of the input accessor values
+	 * @return an accessor returning the sum of the input accessor values. If both input accessors
+	 *         implement {@link ILongAccessor}, then so does the returned accessor.
 	 */
 	public static <T> IMemberAccessor<IQuantity, T> sum(
 		final IMemberAccessor<IQuantity, T> term1, final IMemberAccessor<IQuantity, T> term2) {
+		if (term1 instanceof ILongAccessor && term2 instanceof ILongAccessor) {
+			return new LongArithmeticAccessor<>(term1, term2, false);
+		}
 		return new IMemberAccessor<IQuantity, T>() {
 
 			@Override
@@ -92,6 +103,116 @@ public class MemberAccessorToolkit {
 		};
 	}
 
+	/**
+	 * Accessor that adds or subtracts the values of two accessors that can read primitive values.
+	 * The primitive result is only available when it is exactly the numerical value of the quantity
+	 * that {@link #getMember(Object)} returns, which is the case when the second value can be
+	 * converted to the unit of the first value using integer arithmetic. For example when adding a
+	 * duration in nanoseconds or coarser to a timestamp in epoch nanoseconds.
+	 */
+	private static final class LongArithmeticAccessor<T> implements IMemberAccessor<IQuantity, T>, ILongAccessor<T> {
+
+		/**
+		 * The result unit and conversion for a pair of operand units, or no result unit if the
+		 * result can not be calculated with integer arithmetic.
+		 */
+		private static final class Units {
+			final IUnit first;
+			final IUnit second;
+			final IUnit result;
+			final IScalarAffineTransform secondTransform;
+
+			Units(IUnit first, IUnit second, boolean subtract) {
+				this.first = first;
+				this.second = second;
+				IUnit resultUnit = null;
+				IScalarAffineTransform transform = null;
+				if (second.isLinear()) {
+					// Same conversion as when adding or subtracting quantities in the unit of the first
+					transform = second.valueTransformTo(first.getDeltaUnit());
+					resultUnit = first;
+				} else if (subtract && !first.isLinear()) {
+					transform = second.valueTransformTo(first);
+					resultUnit = first.getDeltaUnit();
+				}
+				if (transform != null && transform.isInteger()) {
+					result = resultUnit;
+					secondTransform = transform;
+				} else {
+					result = null;
+					secondTransform = null;
+				}
+			}
+		}
+
+		private final IMemberAccessor<IQuantity, T> first;
+		private final IMemberAccessor<IQuantity, T> second;
+		private final ILongAccessor<T> firstLong;
+		private final ILongAccessor<T> secondLong;
+		private final boolean subtract;
+		// The units of a column rarely change, so remember the last combination
+		private Units lastUnits;
+
+		@SuppressWarnings("unchecked")
+		LongArithmeticAccessor(IMemberAccessor<IQuantity, T> first, IMemberAccessor<IQuantity, T> second,
+				boolean subtract) {
+			this.first = first;
+			this.second = second;
+			this.subtract = subtract;
+			firstLong = (ILongAccessor<T>) first;
+			secondLong = (ILongAccessor<T>) second;
+		}
+
+		@Override
+		public IQuantity getMember(T inObject) {
+			IQuantity v1 = first.getMember(inObject);
+			IQuantity v2 = second.getMember(inObject);
+			if (v1 == null || v2 == null) {
+				return null;
+			}
+			return subtract ? v1.subtract(v2) : v1.add(v2);
+		}
+
+		@Override
+		public IUnit getLongUnit(T inObject) {
+			Units units = getUnits(inObject);
+			if (units == null || units.result == null) {
+				return null;
+			}
+			long v1 = firstLong.getLong(inObject);
+			long v2 = secondLong.getLong(inObject);
+			if (units.secondTransform.targetOutOfRange(subtract ? -v2 : v2, Long.MAX_VALUE - Math.abs(v1))) {
+				return null;
+			}
+			return units.result;
+		}
+
+		@Override
+		public long getLong(T inObject) {
+			long v2 = getUnits(inObject).secondTransform.targetValue(secondLong.getLong(inObject));
+			long v1 = firstLong.getLong(inObject);
+			return subtract ? v1 - v2 : v1 + v2;
+		}
+
+		private Units getUnits(T inObject) {
+			IUnit firstUnit = firstLong.getLongUnit(inObject);
+			if (firstUnit == null) {
+				return null;
+			}
+			IUnit secondUnit = secondLong.getLongUnit(inObject);
+			if (secondUnit == null) {
+				return null;
+			}
+			Units units = lastUnits;
+			if (units == null || units.first != firstUnit || units.second != secondUnit) {
+				units = new Units(firstUnit, secondUnit, subtract);
+				// Units is immutable, so it is safe to share it between threads without synchronization
+				lastUnits = units;
+			}
+			return units;
+		}
+	}
+
 	/**
 	 * Create an accessor that calculates the average of the values from two accessors.
 	 *
@@ -35,6 +35,7 @@ package org.openjdk.jmc.flightrecorder.rules.jdk.cpu;
 import static org.openjdk.jmc.common.unit.UnitLookup.EPOCH_NS;
 
 import java.text.MessageFormat;
+import java.util.Map;
 
 import org.openjdk.jmc.common.IDisplayable;
 import org.openjdk.jmc.common.item.IItem;
@@ -55,10 +56,14 @@ import org.openjdk.jmc.flightrecorder.rules.jdk.combine.SpanLimit;
 import org.openjdk.jmc.flightrecorder.rules.jdk.combine.SpanToolkit;
 import org.openjdk.jmc.flightrecorder.rules.jdk.messages.internal.Messages;
 import org.openjdk.jmc.flightrecorder.rules.util.JfrRuleTopics;
+import org.openjdk.jmc.flightrecorder.rules.util.RequiredEventsBuilder;
 import org.openjdk.jmc.flightrecorder.rules.util.RulesToolkit;
 import org.openjdk.jmc.flightrecorder.rules.util.RulesToolkit.EventAvailability;
 
 public class CompareCpuRule extends AbstractRule {
+	private static final Map<String, EventAvailability> REQUIRED_EVENTS = RequiredEventsBuilder.create()
+			.addEventType(JdkTypeIDs.CPU_LOAD, EventAvailability.AVAILABLE).build();
+
 	public static final TypedPreference<IQuantity> OTHER_CPU_WARNING_LIMIT = new TypedPreference<>(
 			"other.cpu.warning.limit", //$NON-NLS-1$
 			Messages.getString(Messages.CompareCpuRule_WARNING_LIMIT),
@@ -76,9 +81,9 @@ public class CompareCpuRule extends AbstractRule {
 
 	@Override
 	protected Result getResult(IItemCollection items, IPreferenceValueProvider vp) {
-		EventAvailability eventAvailability = RulesToolkit.getEventAvailability(items, JdkTypeIDs.CPU_LOAD);
-		if (eventAvailability != EventAvailability.AVAILABLE) {
-			return RulesToolkit.getEventAvailabilityResult(this, items, eventAvailability, JdkTypeIDs.CPU_LOAD);
+		Result requiredEventsResult = RulesToolkit.getRequiredEventsResult(this, items);
+		if (requiredEventsResult != null) {
+			return requiredEventsResult;
 		}
 
 		double warningLimit = vp.getPreferenceValue(OTHER_CPU_WARNING_LIMIT).doubleValue() / 100;
@@ -114,4 +119,9 @@ public class CompareCpuRule extends AbstractRule {
 		}
 		return new Result(this, score, message, longMessage, null);
 	}
+
+	@Override
+	public Map<String, EventAvailability> getRequiredEvents() {
+		return REQUIRED_EVENTS;
+	}
 }
@@ -39,6 +39,7 @@ import java.text.MessageFormat;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.RunnableFuture;
@@ -61,11 +62,14 @@ import org.openjdk.jmc.flightrecorder.rules.IRule;
 import org.openjdk.jmc.flightrecorder.rules.Result;
 import org.openjdk.jmc.flightrecorder.rules.jdk.messages.internal.Messages;
 import org.openjdk.jmc.flightrecorder.rules.util.JfrRuleTopics;
+import org.openjdk.jmc.flightrecorder.rules.util.RequiredEventsBuilder;
 import org.openjdk.jmc.flightrecorder.rules.util.RulesToolkit;
 import org.openjdk.jmc.flightrecorder.rules.util.RulesToolkit.EventAvailability;
 
 // FIXME: This rule seems to be a precondition for other rules (Method profiling rules). Remove?
 public class HighJvmCpuRule implements IRule {
+	private static final Map<String, EventAvailability> REQUIRED_EVENTS = RequiredEventsBuilder.create()
+			.addEventType(JdkTypeIDs.CPU_LOAD, EventAvailability.AVAILABLE).build();
 
 	private static final int MAX_SAMPLED_THREADS = 5;
 
@@ -97,9 +101,9 @@ public class HighJvmCpuRule implements IRule {
 
 	// FIXME: The implementation seems to assume that all quantities have the same unit
 	private Result getResult(IItemCollection items, IPreferenceValueProvider vp) {
-		EventAvailability eventAvailability = RulesToolkit.getEventAvailability(items, JdkTypeIDs.CPU_LOAD);
-		if (eventAvailability != EventAvailability.AVAILABLE) {
-			return RulesToolkit.getEventAvailabilityResult(this, items, eventAvailability, JdkTypeIDs.CPU_LOAD);
+		Result requiredEventsResult = RulesToolkit.getRequiredEventsResult(this, items);
+		if (requiredEventsResult != null) {
+			return requiredEventsResult;
 		}
 
 		String periodNotBelow = RulesToolkit.getPeriodIfGreaterThan(items,
@@ -184,4 +188,9 @@ public class HighJvmCpuRule implements IRule {
 	public String getTopic() {
 		return JfrRuleTopics.JAVA_APPLICATION;
 	}
+
+	@Override
+	public Map<String, EventAvailability> getRequiredEvents() {
+		return REQUIRED_EVENTS;
+	}
 }
@@ -32,6 +32,8 @@
  */
 package org.openjdk.jmc.flightrecorder.rules.jdk.dataproviders;
 
+import java.util.function.Function;
+
 import org.openjdk.jmc.common.item.IItem;
 import org.openjdk.jmc.common.item.IItemCollection;
 import org.openjdk.jmc.common.item.IItemFilter;
@@ -52,6 +54,18 @@ import org.openjdk.jmc.flightrecorder.rules.util.SlidingWindowToolkit.IUnordered
  * dumps and so on).
  */
 public class HaltsProvider {
+
+	/*
+	 * Derived value function, so that the halts for the whole recording are only calculated once.
+	 */
+	private static final Function<IItemCollection, ApplicationHaltsInfoHolder> APPLICATION_HALTS = new Function<IItemCollection, ApplicationHaltsInfoHolder>() {
+		@Override
+		public ApplicationHaltsInfoHolder apply(IItemCollection items) {
+			IRange<IQuantity> itemRange = createRange(items);
+			return calculateHaltsRatiosWithEncapsulationTree(items, itemRange.getStart(), itemRange.getEnd());
+		}
+	};
+
 	/**
 	 * Calculates the ratio of GC pauses to the total time.
 	 *
@@ -89,8 +103,7 @@ public class HaltsProvider {
 	 * @return pauses/total ratio in percent
 	 */
 	public static ApplicationHaltsInfoHolder calculateApplicationHaltsRatio(IItemCollection items) {
-		IRange<IQuantity> itemRange = createRange(items);
-		return calculateHaltsRatiosWithEncapsulationTree(items, itemRange.getStart(), itemRange.getEnd());
+		return items.getDerivedValue(APPLICATION_HALTS);
 	}
 
 	private static ApplicationHaltsInfoHolder calculateHaltsRatiosWithEncapsulationTree(
@@ -40,6 +40,7 @@ import java.text.MessageFormat;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.RunnableFuture;
@@ -61,10 +62,13 @@ import org.openjdk.jmc.flightrecorder.rules.jdk.combine.SpanSquare;
 import org.openjdk.jmc.flightrecorder.rules.jdk.combine.SpanToolkit;
 import org.openjdk.jmc.flightrecorder.rules.jdk.messages.internal.Messages;
 import org.openjdk.jmc.flightrecorder.rules.util.JfrRuleTopics;
+import org.openjdk.jmc.flightrecorder.rules.util.RequiredEventsBuilder;
 import org.openjdk.jmc.flightrecorder.rules.util.RulesToolkit;
 import org.openjdk.jmc.flightrecorder.rules.util.RulesToolkit.EventAvailability;
 
 public class ExceptionRule implements IRule {
+	private static final Map<String, EventAvailability> REQUIRED_EVENTS = RequiredEventsBuilder.create()
+			.addEventType(JdkTypeIDs.THROWABLES_STATISTICS, EventAvailability.AVAILABLE).build();
 
 	private static final String RESULT_ID = "Exceptions"; //$NON-NLS-1$
 
@@ -80,11 +84,9 @@ public class ExceptionRule implements IRule {
 			.<TypedPreference<?>> asList(EXCEPTIONS_INFO_LIMIT, EXCEPTIONS_WARNING_LIMIT);
 
 	private Result getResult(IItemCollection items, IPreferenceValueProvider vp) {
-		EventAvailability eventAvailability = RulesToolkit.getEventAvailability(items,
-				JdkTypeIDs.THROWABLES_STATISTICS);
-		if (eventAvailability != EventAvailability.AVAILABLE) {
-			return RulesToolkit.getEventAvailabilityResult(this, items, eventAvailability,
-					JdkTypeIDs.THROWABLES_STATISTICS);
+		Result requiredEventsResult = RulesToolkit.getRequiredEventsResult(this, items);
+		if (requiredEventsResult != null) {
+			return requiredEventsResult;
 		}
 
 		long infoLimit = vp.getPreferenceValue(EXCEPTIONS_INFO_LIMIT).clampedLongValueIn(NUMBER_UNITY);
@@ -144,4 +146,9 @@ public class ExceptionRule implements IRule {
 	public String getTopic() {
 		return JfrRuleTopics.EXCEPTIONS;
 	}
+
+	@Override
+	public Map<String, EventAvailability> getRequiredEvents() {
+		return REQUIRED_EVENTS;
+	}
 }
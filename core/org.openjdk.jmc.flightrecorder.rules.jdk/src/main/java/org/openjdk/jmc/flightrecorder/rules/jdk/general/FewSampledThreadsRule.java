@@ -36,11 +36,13 @@ import static org.openjdk.jmc.common.unit.UnitLookup.NUMBER;
 import static org.openjdk.jmc.common.unit.UnitLookup.NUMBER_UNITY;
 import static org.openjdk.jmc.common.unit.UnitLookup.PERCENT;
 import static org.openjdk.jmc.common.unit.UnitLookup.PERCENTAGE;
+import static org.openjdk.jmc.common.unit.UnitLookup.PERCENT_UNITY;
 import static org.openjdk.jmc.common.unit.UnitLookup.SECOND;
 import static org.openjdk.jmc.common.unit.UnitLookup.TIMESPAN;
 import static org.openjdk.jmc.flightrecorder.rules.jdk.RulePreferences.SHORT_RECORDING_LIMIT;
 
 import java.text.MessageFormat;
+import java.util.Map;
 import java.util.function.Predicate;
 
 import org.openjdk.jmc.common.IDisplayable;
@@ -61,7 +63,6 @@ import org.openjdk.jmc.common.util.Pair;
 import org.openjdk.jmc.common.util.StringToolkit;
 import org.openjdk.jmc.common.util.TypedPreference;
 import org.openjdk.jmc.flightrecorder.JfrAttributes;
-import org.openjdk.jmc.flightrecorder.jdk.JdkAggregators;
 import org.openjdk.jmc.flightrecorder.jdk.JdkAttributes;
 import org.openjdk.jmc.flightrecorder.jdk.JdkFilters;
 import org.openjdk.jmc.flightrecorder.jdk.JdkQueries;
@@ -70,15 +71,21 @@ import org.openjdk.jmc.flightrecorder.rules.AbstractRule;
 import org.openjdk.jmc.flightrecorder.rules.Result;
 import org.openjdk.jmc.flightrecorder.rules.jdk.messages.internal.Messages;
 import org.openjdk.jmc.flightrecorder.rules.util.JfrRuleTopics;
+import org.openjdk.jmc.flightrecorder.rules.util.RequiredEventsBuilder;
 import org.openjdk.jmc.flightrecorder.rules.util.RulesToolkit;
 import org.openjdk.jmc.flightrecorder.rules.util.RulesToolkit.EventAvailability;
+import org.openjdk.jmc.flightrecorder.rules.util.RunningWindowStatistics;
 import org.openjdk.jmc.flightrecorder.rules.util.SlidingWindowToolkit;
-import org.openjdk.jmc.flightrecorder.rules.util.SlidingWindowToolkit.IUnorderedWindowValueFunction;
+import org.openjdk.jmc.flightrecorder.rules.util.SlidingWindowToolkit.IWindowStatisticsValueFunction;
 
 /**
  */
 // FIXME: Could possible be merged into the HighJvmCpuRule
 public class FewSampledThreadsRule extends AbstractRule {
+	private static final Map<String, EventAvailability> REQUIRED_EVENTS = RequiredEventsBuilder.create()
+			.addEventType(JdkTypeIDs.RECORDING_SETTING, EventAvailability.AVAILABLE)
+			.addEventType(JdkTypeIDs.EXECUTION_SAMPLE, EventAvailability.AVAILABLE)
+			.addEventType(JdkTypeIDs.CPU_INFORMATION, EventAvailability.AVAILABLE).build();
 
 	private static final String NEW_PARAGRAPH = "<p>"; //$NON-NLS-1$
 
@@ -215,14 +222,16 @@ public class FewSampledThreadsRule extends AbstractRule {
 	private Result getIdleResult(
 		IItemCollection items, IQuantity minCpuRatio, IQuantity windowSize, int sampledThreads) {
 		IItemCollection cpuItems = getCpuItems(items);
-		Pair<IQuantity, IRange<IQuantity>> jvmUsageMaxWindow = SlidingWindowToolkit.slidingWindowUnorderedMinMaxValue(
-				cpuItems, windowSize, evaluationTask, new IUnorderedWindowValueFunction<IQuantity>() {
+		Pair<IQuantity, IRange<IQuantity>> jvmUsageMaxWindow = SlidingWindowToolkit.slidingWindowStatisticsMinMaxValue(
+				cpuItems, JdkAttributes.JVM_TOTAL, PERCENT_UNITY, windowSize, evaluationTask,
+				new IWindowStatisticsValueFunction() {
 
 					@Override
-					public IQuantity getValue(IItemCollection items, IQuantity startTime, IQuantity endTime) {
-						return items.getAggregate(JdkAggregators.AVG_JVM_TOTAL_CPU);
+					public IQuantity getValue(
+						RunningWindowStatistics statistics, IQuantity startTime, IQuantity endTime) {
+						return statistics.getCount() == 0 ? null : PERCENT_UNITY.quantity(statistics.getAverage());
 					}
-				}, true, false);
+				}, true);
 		if (jvmUsageMaxWindow != null) {
 			IQuantity jvmUsage = jvmUsageMaxWindow.left;
 
@@ -250,11 +259,9 @@ public class FewSampledThreadsRule extends AbstractRule {
 
 	private Result checkAvailability(IItemCollection items) {
 		// Check event availability
-		EventAvailability eventAvailability = RulesToolkit.getEventAvailability(items, JdkTypeIDs.RECORDING_SETTING,
-				JdkTypeIDs.EXECUTION_SAMPLE, JdkTypeIDs.CPU_INFORMATION);
-		if (eventAvailability != EventAvailability.AVAILABLE) {
-			return RulesToolkit.getEventAvailabilityResult(this, items, eventAvailability, JdkTypeIDs.RECORDING_SETTING,
-					JdkTypeIDs.EXECUTION_SAMPLE, JdkTypeIDs.CPU_INFORMATION);
+		Result requiredEventsResult = RulesToolkit.getRequiredEventsResult(this, items);
+		if (requiredEventsResult != null) {
+			return requiredEventsResult;
 		}
 		IItemCollection cpuItems = getCpuItems(items);
 		IType<IItem> cpuLoadType = RulesToolkit.getType(cpuItems, JdkTypeIDs.CPU_LOAD);
@@ -288,4 +295,9 @@ public class FewSampledThreadsRule extends AbstractRule {
 		return items.apply(ItemFilters.type(JdkTypeIDs.CPU_INFORMATION))
 				.getAggregate((IAggregator<IQuantity, ?>) Aggregators.max(JdkAttributes.HW_THREADS));
 	}
+
+	@Override
+	public Map<String, EventAvailability> getRequiredEvents() {
+		return REQUIRED_EVENTS;
+	}
 }
@@ -36,6 +36,7 @@ import java.text.MessageFormat;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.RunnableFuture;
@@ -59,10 +60,13 @@ import org.openjdk.jmc.flightrecorder.rules.Result;
 import org.openjdk.jmc.flightrecorder.rules.Severity;
 import org.openjdk.jmc.flightrecorder.rules.jdk.messages.internal.Messages;
 import org.openjdk.jmc.flightrecorder.rules.util.JfrRuleTopics;
+import org.openjdk.jmc.flightrecorder.rules.util.RequiredEventsBuilder;
 import org.openjdk.jmc.flightrecorder.rules.util.RulesToolkit;
 import org.openjdk.jmc.flightrecorder.rules.util.RulesToolkit.EventAvailability;
 
 public class FileWriteRule implements IRule {
+	private static final Map<String, EventAvailability> REQUIRED_EVENTS = RequiredEventsBuilder.create()
+			.addEventType(JdkTypeIDs.FILE_WRITE, EventAvailability.AVAILABLE).build();
 
 	public static final TypedPreference<IQuantity> WRITE_WARNING_LIMIT = new TypedPreference<>(
 			"io.file.write.warning.limit", //$NON-NLS-1$
@@ -78,9 +82,9 @@ public class FileWriteRule implements IRule {
 		IQuantity warningLimit = vp.getPreferenceValue(WRITE_WARNING_LIMIT);
 		IQuantity infoLimit = warningLimit.multiply(0.5);
 
-		EventAvailability eventAvailability = RulesToolkit.getEventAvailability(items, JdkTypeIDs.FILE_WRITE);
-		if (eventAvailability != EventAvailability.AVAILABLE) {
-			return RulesToolkit.getEventAvailabilityResult(this, items, eventAvailability, JdkTypeIDs.FILE_WRITE);
+		Result requiredEventsResult = RulesToolkit.getRequiredEventsResult(this, items);
+		if (requiredEventsResult != null) {
+			return requiredEventsResult;
 		}
 		IItemCollection fileWriteEvents = items.apply(JdkFilters.FILE_WRITE);
 		IItem longestEvent = fileWriteEvents.getAggregate(Aggregators.itemWithMax(JfrAttributes.DURATION));
@@ -154,4 +158,8 @@ public class FileWriteRule implements IRule {
 		return JfrRuleTopics.FILE_IO;
 	}
 
+	@Override
+	public Map<String, EventAvailability> getRequiredEvents() {
+		return REQUIRED_EVENTS;
+	}
 }
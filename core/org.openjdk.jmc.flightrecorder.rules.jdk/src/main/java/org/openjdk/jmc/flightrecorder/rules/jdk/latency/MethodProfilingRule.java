@@ -86,6 +86,7 @@ import org.openjdk.jmc.flightrecorder.rules.Result;
 import org.openjdk.jmc.flightrecorder.rules.jdk.dataproviders.MethodProfilingDataProvider;
 import org.openjdk.jmc.flightrecorder.rules.jdk.messages.internal.Messages;
 import org.openjdk.jmc.flightrecorder.rules.util.JfrRuleTopics;
+import org.openjdk.jmc.flightrecorder.rules.util.RequiredEventsBuilder;
 import org.openjdk.jmc.flightrecorder.rules.util.RulesToolkit;
 import org.openjdk.jmc.flightrecorder.rules.util.RulesToolkit.EventAvailability;
 import org.openjdk.jmc.flightrecorder.rules.util.SlidingWindowToolkit;
@@ -97,6 +98,9 @@ import org.owasp.encoder.Encode;
  * relevance calculated by the ratio of samples to maximum samples for that period.
  */
 public class MethodProfilingRule implements IRule {
+	private static final Map<String, EventAvailability> REQUIRED_EVENTS = RequiredEventsBuilder.create()
+			.addEventType(JdkTypeIDs.EXECUTION_SAMPLE, EventAvailability.AVAILABLE)
+			.addEventType(JdkTypeIDs.RECORDING_SETTING, EventAvailability.AVAILABLE).build();
 
 	/**
 	 * Constant value of the maximum number of samples the JVM attempts per sampling period.
@@ -217,11 +221,9 @@ public class MethodProfilingRule implements IRule {
 
 	private Result getResult(
 		IItemCollection items, IPreferenceValueProvider valueProvider, FutureTask<Result> evaluationTask) {
-		EventAvailability eventAvailability = RulesToolkit.getEventAvailability(items, JdkTypeIDs.EXECUTION_SAMPLE,
-				JdkTypeIDs.RECORDING_SETTING);
-		if (eventAvailability != EventAvailability.AVAILABLE) {
-			return RulesToolkit.getEventAvailabilityResult(this, items, eventAvailability, JdkTypeIDs.EXECUTION_SAMPLE,
-					JdkTypeIDs.RECORDING_SETTING);
+		Result requiredEventsResult = RulesToolkit.getRequiredEventsResult(this, items);
+		if (requiredEventsResult != null) {
+			return requiredEventsResult;
 		}
 
 		PeriodRangeMap settings = new PeriodRangeMap();
@@ -571,4 +573,8 @@ public class MethodProfilingRule implements IRule {
 		return JfrRuleTopics.METHOD_PROFILING;
 	}
 
+	@Override
+	public Map<String, EventAvailability> getRequiredEvents() {
+		return REQUIRED_EVENTS;
+	}
 }
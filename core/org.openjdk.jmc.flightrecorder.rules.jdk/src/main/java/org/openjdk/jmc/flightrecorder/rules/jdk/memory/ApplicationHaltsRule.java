@@ -34,6 +34,7 @@ package org.openjdk.jmc.flightrecorder.rules.jdk.memory;
 
 import java.text.MessageFormat;
 import java.util.Comparator;
+import java.util.Map;
 
 import org.openjdk.jmc.common.IDisplayable;
 import org.openjdk.jmc.common.item.IItemCollection;
@@ -51,11 +52,15 @@ import org.openjdk.jmc.flightrecorder.rules.jdk.dataproviders.HaltsProvider;
 import org.openjdk.jmc.flightrecorder.rules.jdk.dataproviders.HaltsProvider.ApplicationHaltsInfoHolder;
 import org.openjdk.jmc.flightrecorder.rules.jdk.messages.internal.Messages;
 import org.openjdk.jmc.flightrecorder.rules.util.JfrRuleTopics;
+import org.openjdk.jmc.flightrecorder.rules.util.RequiredEventsBuilder;
 import org.openjdk.jmc.flightrecorder.rules.util.RulesToolkit;
 import org.openjdk.jmc.flightrecorder.rules.util.RulesToolkit.EventAvailability;
 import org.openjdk.jmc.flightrecorder.rules.util.SlidingWindowToolkit;
 
 public class ApplicationHaltsRule extends AbstractRule {
+	private static final Map<String, EventAvailability> REQUIRED_EVENTS = RequiredEventsBuilder.create()
+			.addEventType(JdkTypeIDs.GC_PAUSE, EventAvailability.ENABLED)
+			.addEventType(JdkTypeIDs.VM_OPERATIONS, EventAvailability.ENABLED).build();
 
 	public static final TypedPreference<IQuantity> APP_HALTS_INFO_LIMIT = new TypedPreference<>("app.halts.info.limit", //$NON-NLS-1$
 			Messages.getString(Messages.ApplicationHaltsRule_HALTS_INFO_LIMIT),
@@ -77,11 +82,10 @@ public class ApplicationHaltsRule extends AbstractRule {
 
 	@Override
 	protected Result getResult(IItemCollection items, IPreferenceValueProvider vp) {
-		String[] requiredTypes = new String[] {JdkTypeIDs.GC_PAUSE, JdkTypeIDs.VM_OPERATIONS};
 		String[] extraTypes = new String[] {JdkTypeIDs.SAFEPOINT_BEGIN};
-		EventAvailability eventAvailability = RulesToolkit.getEventAvailability(items, requiredTypes);
-		if (!(eventAvailability == EventAvailability.AVAILABLE || eventAvailability == EventAvailability.ENABLED)) {
-			return RulesToolkit.getEventAvailabilityResult(this, items, eventAvailability, requiredTypes);
+		Result requiredEventsResult = RulesToolkit.getRequiredEventsResult(this, items);
+		if (requiredEventsResult != null) {
+			return requiredEventsResult;
 		}
 		String extraTypesInfo = null;
 		EventAvailability extraEventAvailability = RulesToolkit.getEventAvailability(items, extraTypes);
@@ -136,4 +140,8 @@ public class ApplicationHaltsRule extends AbstractRule {
 		};
 	}
 
+	@Override
+	public Map<String, EventAvailability> getRequiredEvents() {
+		return REQUIRED_EVENTS;
+	}
 }
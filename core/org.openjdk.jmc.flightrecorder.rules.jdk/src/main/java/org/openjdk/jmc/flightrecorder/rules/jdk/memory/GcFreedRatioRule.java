@@ -41,6 +41,8 @@ import java.util.Iterator;
 import java.util.Set;
 
 import org.openjdk.jmc.common.IDisplayable;
+import org.openjdk.jmc.common.item.AggregationBatch;
+import org.openjdk.jmc.common.item.AggregationBatch.Aggregate;
 import org.openjdk.jmc.common.item.Aggregators;
 import org.openjdk.jmc.common.item.IAggregator;
 import org.openjdk.jmc.common.item.IItemCollection;
@@ -181,9 +183,14 @@ public class GcFreedRatioRule extends AbstractRule {
 				Pair<IItemCollection, IRange<IQuantity>> windowRangePair = getWindowWithPairedHeapSummaryEvents(
 						windowItems, startTime, endTime);
 				windowItems = windowRangePair.left;
-				IQuantity beforeGc = windowItems.getAggregate(JdkAggregators.SUM_HEAP_USED_BEFORE_GC);
-				IQuantity afterGc = windowItems.getAggregate(JdkAggregators.SUM_HEAP_USED_AFTER_GC);
-				IQuantity averageLiveset = windowItems.getAggregate(JdkAggregators.AVG_HEAP_USED_AFTER_GC);
+				AggregationBatch batch = new AggregationBatch();
+				Aggregate<IQuantity> beforeGcAggregate = batch.add(JdkAggregators.SUM_HEAP_USED_BEFORE_GC);
+				Aggregate<IQuantity> afterGcAggregate = batch.add(JdkAggregators.SUM_HEAP_USED_AFTER_GC);
+				Aggregate<IQuantity> averageLivesetAggregate = batch.add(JdkAggregators.AVG_HEAP_USED_AFTER_GC);
+				batch.execute(windowItems);
+				IQuantity beforeGc = beforeGcAggregate.getValue();
+				IQuantity afterGc = afterGcAggregate.getValue();
+				IQuantity averageLiveset = averageLivesetAggregate.getValue();
 				if (beforeGc == null || afterGc == null || averageLiveset == null) {
 					return;
 				}
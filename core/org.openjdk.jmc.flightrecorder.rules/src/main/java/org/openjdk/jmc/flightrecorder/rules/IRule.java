@@ -33,11 +33,16 @@
 package org.openjdk.jmc.flightrecorder.rules;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
 import java.util.concurrent.RunnableFuture;
 
 import org.openjdk.jmc.common.item.IItemCollection;
 import org.openjdk.jmc.common.util.IPreferenceValueProvider;
 import org.openjdk.jmc.common.util.TypedPreference;
+import org.openjdk.jmc.flightrecorder.rules.util.RequiredEventsBuilder;
+import org.openjdk.jmc.flightrecorder.rules.util.RulesToolkit;
+import org.openjdk.jmc.flightrecorder.rules.util.RulesToolkit.EventAvailability;
 
 /**
  * Rules are used for analyzing flight recordings and creating results that can inform a user about
@@ -87,4 +92,26 @@ public interface IRule {
 	 * @return the topic for this rule, may be {@code null}
 	 */
 	String getTopic();
+
+	/**
+	 * Gets the event types that this rule requires, and the least availability of each type that
+	 * the rule can be evaluated with. If the events in a collection are less available than
+	 * required, then the rule is not evaluated and the result is the same "Not Applicable" result
+	 * as from
+	 * {@link RulesToolkit#getEventAvailabilityResult(IRule, IItemCollection, EventAvailability, String...)}.
+	 * Types with the same required availability are checked together, as with
+	 * {@link RulesToolkit#getEventAvailability(IItemCollection, String...)}.
+	 * <p>
+	 * Rules that declare their required events should still check them when they are evaluated,
+	 * since callers are not required to check them. This is done with
+	 * {@link RulesToolkit#getRequiredEventsResult(IRule, IItemCollection)}, so that the
+	 * requirements are only stated once.
+	 *
+	 * @return a map from event type identifiers to required availabilities, typically built with
+	 *         {@link RequiredEventsBuilder}. The default is an empty map, meaning that the rule is
+	 *         always evaluated.
+	 */
+	default Map<String, EventAvailability> getRequiredEvents() {
+		return Collections.emptyMap();
+	}
 }
@@ -0,0 +1,979 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.rules.report;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.openjdk.jmc.common.item.IAttribute;
+import org.openjdk.jmc.common.item.IItem;
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.item.IItemIterable;
+import org.openjdk.jmc.common.item.IItemQuery;
+import org.openjdk.jmc.common.item.IMemberAccessor;
+import org.openjdk.jmc.common.util.ExceptionToolkit;
+import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.JfrLoaderToolkit;
+import org.openjdk.jmc.flightrecorder.rules.IRule;
+import org.openjdk.jmc.flightrecorder.rules.Result;
+import org.openjdk.jmc.flightrecorder.rules.RuleRegistry;
+import org.openjdk.jmc.flightrecorder.rules.Severity;
+import org.openjdk.jmc.flightrecorder.rules.util.RulesToolkit;
+
+/**
+ * Automated analysis of many recordings, for example all recordings in a directory.
+ * <p>
+ * The recordings are analyzed by a bounded pool of worker threads. A worker only starts loading a
+ * recording when the estimated memory needed for it fits in the memory budget, so the memory used
+ * depends on the budget rather than on the number of recordings. The report for each recording is
+ * written to the output as soon as the recording has been analyzed, and the recording is then
+ * released. Reports are therefore written in the order that the recordings are completed, not in
+ * the order that they were given.
+ * <p>
+ * The output is either JSON Lines, with one JSON object per recording using the same fields as the
+ * json format of {@link JfrRulesReport}, or XML with the same elements as the xml format of
+ * {@link JfrRulesReport}. The XML is written with a streaming writer, so no document is kept in
+ * memory.
+ */
+public class JfrRulesBatchReport {
+
+	/**
+	 * Output formats for batch reports.
+	 */
+	public enum Format {
+	/**
+	 * One JSON object per line and recording.
+	 */
+	JSONL,
+	/**
+	 * A {@code reportcollection} XML document with one {@code report} element per recording.
+	 */
+	XML
+	}
+
+	private static final String JFR_FILE_SUFFIX = ".jfr"; //$NON-NLS-1$
+	private static final String GLOB_CHARACTERS = "*?[{"; //$NON-NLS-1$
+	// Rough estimate of heap needed for a recording, same as when loading the chunks of a recording
+	private static final int MEMORY_PER_FILE_BYTE = 10;
+	private static final AtomicInteger BATCH_COUNT = new AtomicInteger();
+
+	private final Format format;
+	private final Severity minSeverity;
+	private final boolean verbose;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private long memoryBudget = getDefaultMemoryBudget();
+	private long timeoutMillis;
+
+	/**
+	 * @param format
+	 *            the output format
+	 * @param minSeverity
+	 *            the minimum severity to report
+	 * @param verbose
+	 *            true to include detailed messages and the items of the results
+	 */
+	public JfrRulesBatchReport(Format format, Severity minSeverity, boolean verbose) {
+		this.format = format;
+		this.minSeverity = minSeverity;
+		this.verbose = verbose;
+	}
+
+	/**
+	 * @param threads
+	 *            the maximum number of recordings to analyze at the same time. Defaults to the
+	 *            number of available processors.
+	 * @return this batch report
+	 */
+	public JfrRulesBatchReport setThreads(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Number of threads must be positive: " + threads); //$NON-NLS-1$
+		}
+		this.threads = threads;
+		return this;
+	}
+
+	/**
+	 * @param memoryBudget
+	 *            the number of bytes of heap that may be used for recordings that are analyzed at
+	 *            the same time. A recording that does not fit in the budget on its own is analyzed
+	 *            alone. Defaults to half of the currently available memory.
+	 * @return this batch report
+	 */
+	public JfrRulesBatchReport setMemoryBudget(long memoryBudget) {
+		if (memoryBudget < 1) {
+			throw new IllegalArgumentException("Memory budget must be positive: " + memoryBudget); //$NON-NLS-1$
+		}
+		this.memoryBudget = memoryBudget;
+		return this;
+	}
+
+	/**
+	 * @param timeoutMillis
+	 *            the maximum time in milliseconds to spend on loading and analyzing a single
+	 *            recording, or 0 for no limit. Defaults to 0.
+	 * @return this batch report
+	 */
+	public JfrRulesBatchReport setTimeout(long timeoutMillis) {
+		if (timeoutMillis < 0) {
+			throw new IllegalArgumentException("Timeout must not be negative: " + timeoutMillis); //$NON-NLS-1$
+		}
+		this.timeoutMillis = timeoutMillis;
+		return this;
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length == 0) {
+			System.out.println(
+					"Enter one or more JDK Flight Recorder files, directories or glob patterns as arguments to this program."); //$NON-NLS-1$
+			System.out.println("Directories are searched recursively for files ending with .jfr."); //$NON-NLS-1$
+			System.out.println();
+			System.out.println("Optional arguments:"); //$NON-NLS-1$
+			System.out.println();
+			System.out.println(" -format <format>"); //$NON-NLS-1$
+			System.out.println("    Selects an output format. Available formats are:"); //$NON-NLS-1$
+			System.out.println("      jsonl (default)"); //$NON-NLS-1$
+			System.out.println("      xml"); //$NON-NLS-1$
+			System.out.println();
+			System.out.println(" -threads <count>"); //$NON-NLS-1$
+			System.out.println("    Maximum number of recordings to analyze at the same time."); //$NON-NLS-1$
+			System.out.println("    Defaults to the number of available processors."); //$NON-NLS-1$
+			System.out.println();
+			System.out.println(" -memory <megabytes>"); //$NON-NLS-1$
+			System.out.println("    Memory budget for the recordings that are analyzed at the same time."); //$NON-NLS-1$
+			System.out.println("    Defaults to half of the available memory."); //$NON-NLS-1$
+			System.out.println();
+			System.out.println(" -timeout <seconds>"); //$NON-NLS-1$
+			System.out.println("    Maximum time to spend on a single recording. No limit by default."); //$NON-NLS-1$
+			System.out.println();
+			System.out.println(" -verbose"); //$NON-NLS-1$
+			System.out.println("    Verbose output (including all events from rules)."); //$NON-NLS-1$
+			System.out.println();
+			System.out.println(" -min <severity>"); //$NON-NLS-1$
+			System.out.println("    Minimum result severity to include in report."); //$NON-NLS-1$
+			System.out.println("    ok (default), info, or warning"); //$NON-NLS-1$
+			return;
+		}
+		Format format = Format.JSONL;
+		Severity minSeverity = Severity.OK;
+		boolean verbose = false;
+		Integer threads = null;
+		Long memoryBudget = null;
+		long timeoutMillis = 0;
+		List<String> patterns = new ArrayList<>();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equalsIgnoreCase("-format")) { //$NON-NLS-1$
+					String formatName = getArgument(args, ++i, "-format"); //$NON-NLS-1$
+					if (formatName.equalsIgnoreCase("jsonl")) { //$NON-NLS-1$
+						format = Format.JSONL;
+					} else if (formatName.equalsIgnoreCase("xml")) { //$NON-NLS-1$
+						format = Format.XML;
+					} else {
+						System.out.println("Format not available: " + formatName); //$NON-NLS-1$
+						return;
+					}
+				} else if (args[i].equalsIgnoreCase("-threads")) { //$NON-NLS-1$
+					threads = Integer.parseInt(getArgument(args, ++i, "-threads")); //$NON-NLS-1$
+				} else if (args[i].equalsIgnoreCase("-memory")) { //$NON-NLS-1$
+					memoryBudget = Long.parseLong(getArgument(args, ++i, "-memory")) * 1024 * 1024; //$NON-NLS-1$
+				} else if (args[i].equalsIgnoreCase("-timeout")) { //$NON-NLS-1$
+					timeoutMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(getArgument(args, ++i, "-timeout"))); //$NON-NLS-1$
+				} else if (args[i].equalsIgnoreCase("-min")) { //$NON-NLS-1$
+					String minString = getArgument(args, ++i, "-min"); //$NON-NLS-1$
+					if (minString.equalsIgnoreCase("ok")) { //$NON-NLS-1$
+						minSeverity = Severity.OK;
+					} else if (minString.equalsIgnoreCase("info")) { //$NON-NLS-1$
+						minSeverity = Severity.INFO;
+					} else if (minString.equalsIgnoreCase("warning")) { //$NON-NLS-1$
+						minSeverity = Severity.WARNING;
+					} else {
+						System.out.println("Unrecognized value of -min"); //$NON-NLS-1$
+						return;
+					}
+				} else if (args[i].equalsIgnoreCase("-verbose")) { //$NON-NLS-1$
+					verbose = true;
+				} else {
+					patterns.add(args[i]);
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+			return;
+		}
+		JfrRulesBatchReport batchReport = new JfrRulesBatchReport(format, minSeverity, verbose);
+		try {
+			if (threads != null) {
+				batchReport.setThreads(threads);
+			}
+			if (memoryBudget != null) {
+				batchReport.setMemoryBudget(memoryBudget);
+			}
+			batchReport.setTimeout(timeoutMillis);
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+			return;
+		}
+		List<File> files = findRecordings(patterns.toArray(new String[patterns.size()]));
+		int failed = batchReport.printReports(files, System.out);
+		System.err.println("Analyzed " + files.size() + " recordings, " + failed + " failed"); //$NON-NLS-1$ //$NON-NLS-2$
+		if (failed > 0) {
+			System.exit(1);
+		}
+	}
+
+	private static String getArgument(String[] args, int index, String option) {
+		if (index >= args.length) {
+			throw new IllegalArgumentException(option + " requires an argument"); //$NON-NLS-1$
+		}
+		return args[index];
+	}
+
+	/**
+	 * Find the recordings matching a number of file names, directories or glob patterns.
+	 * Directories are searched recursively for files ending with {@code .jfr}. Glob patterns use
+	 * the syntax of {@link java.nio.file.FileSystem#getPathMatcher(String)}, e.g.
+	 * {@code dumps/**}{@code /*.jfr}. Other arguments are treated as file names, whether the files
+	 * exist or not.
+	 *
+	 * @param patterns
+	 *            file names, directories or glob patterns
+	 * @return the matching files, sorted by path for each pattern
+	 * @throws IOException
+	 *             if a directory could not be searched
+	 */
+	public static List<File> findRecordings(String ... patterns) throws IOException {
+		List<File> files = new ArrayList<>();
+		for (String pattern : patterns) {
+			int globStart = indexOfGlob(pattern);
+			if (globStart >= 0) {
+				int separator = Math.max(pattern.lastIndexOf('/', globStart),
+						pattern.lastIndexOf(File.separatorChar, globStart));
+				Path base = Paths.get(separator < 0 ? "" : pattern.substring(0, separator + 1)); //$NON-NLS-1$
+				PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern); //$NON-NLS-1$
+				files.addAll(findFiles(base, matcher));
+			} else if (new File(pattern).isDirectory()) {
+				files.addAll(findFiles(Paths.get(pattern), new PathMatcher() {
+					@Override
+					public boolean matches(Path path) {
+						return path.getFileName().toString().toLowerCase(Locale.ENGLISH).endsWith(JFR_FILE_SUFFIX);
+					}
+				}));
+			} else {
+				files.add(new File(pattern));
+			}
+		}
+		return files;
+	}
+
+	private static int indexOfGlob(String pattern) {
+		for (int i = 0; i < pattern.length(); i++) {
+			if (GLOB_CHARACTERS.indexOf(pattern.charAt(i)) >= 0) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static List<File> findFiles(Path base, PathMatcher matcher) throws IOException {
+		List<File> files = new ArrayList<>();
+		if (Files.isDirectory(base) || base.toString().isEmpty()) {
+			try (Stream<Path> paths = Files.walk(base)) {
+				Iterator<Path> it = paths.iterator();
+				while (it.hasNext()) {
+					Path path = it.next();
+					if (Files.isRegularFile(path) && matcher.matches(path)) {
+						files.add(path.toFile());
+					}
+				}
+			}
+		}
+		Collections.sort(files);
+		return files;
+	}
+
+	/**
+	 * Analyze recordings and write a report for each of them. A recording that can not be loaded,
+	 * or that is not analyzed before the timeout, is reported with an error.
+	 *
+	 * @param files
+	 *            the recordings to analyze
+	 * @param out
+	 *            the stream to write the reports to. The stream is flushed after each report, but
+	 *            not closed.
+	 * @return the number of recordings that failed to load or timed out
+	 * @throws IOException
+	 *             if the reports could not be written
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the recordings to be analyzed
+	 */
+	public int printReports(List<File> files, OutputStream out) throws IOException, InterruptedException {
+		final ReportWriter writer = format == Format.XML ? new XmlReportWriter(out) : new JsonLinesReportWriter(out);
+		final MemoryBudget budget = new MemoryBudget(memoryBudget);
+		final String namePrefix = "Batch Report-" + BATCH_COUNT.incrementAndGet() + "-"; //$NON-NLS-1$ //$NON-NLS-2$
+		ThreadFactory threadFactory = new ThreadFactory() {
+			private final AtomicInteger threadCount = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, namePrefix + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+		ExecutorService workers = Executors.newFixedThreadPool(Math.min(threads, Math.max(files.size(), 1)),
+				threadFactory);
+		final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(threadFactory);
+		try {
+			writer.begin();
+			List<Future<Boolean>> reports = new ArrayList<>(files.size());
+			for (final File file : files) {
+				reports.add(workers.submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() throws Exception {
+						return analyze(file, writer, budget, timer);
+					}
+				}));
+			}
+			int failed = 0;
+			for (Future<Boolean> report : reports) {
+				try {
+					if (!report.get()) {
+						failed++;
+					}
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof IOException) {
+						throw (IOException) cause;
+					}
+					throw new IOException(cause);
+				}
+			}
+			writer.end();
+			return failed;
+		} finally {
+			workers.shutdownNow();
+			timer.shutdownNow();
+		}
+	}
+
+	/*
+	 * Analyze a recording and write its report. Returns false if the recording could not be loaded
+	 * or timed out.
+	 */
+	private boolean analyze(File file, ReportWriter writer, MemoryBudget budget, ScheduledExecutorService timer)
+			throws IOException, InterruptedException {
+		// Held by this thread and by the rule evaluations, which may outlive a timeout
+		Runnable reservation = budget.reserve(file.length() * MEMORY_PER_FILE_BYTE, 2);
+		boolean evaluating = false;
+		try {
+			Watchdog watchdog = new Watchdog(Thread.currentThread());
+			ScheduledFuture<?> alarm = timeoutMillis > 0
+					? timer.schedule(watchdog, timeoutMillis, TimeUnit.MILLISECONDS) : null;
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+			IItemCollection events = null;
+			String error = null;
+			List<RuleOutcome> outcomes = new ArrayList<>();
+			try {
+				events = JfrLoaderToolkit.loadEvents(file);
+				if (watchdog.hasExpired()) {
+					error = getTimeoutMessage();
+				} else {
+					Map<IRule, Future<Result>> resultFutures = RulesToolkit.evaluateParallel(RuleRegistry.getRules(),
+							events, null, 0, reservation);
+					evaluating = true;
+					error = evaluate(resultFutures, deadline, watchdog, outcomes);
+				}
+			} catch (IOException | CouldNotLoadRecordingException | RuntimeException e) {
+				error = watchdog.hasExpired() ? getTimeoutMessage() : ExceptionToolkit.toString(e);
+			} finally {
+				watchdog.disarm();
+				if (alarm != null) {
+					alarm.cancel(false);
+				}
+				// Clear any interrupt from the watchdog so that it does not affect the next recording
+				if (Thread.interrupted() && !watchdog.hasExpired()) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			synchronized (writer) {
+				writer.writeReport(file.getPath(), events, outcomes, error);
+			}
+			return error == null;
+		} finally {
+			reservation.run();
+			if (!evaluating) {
+				reservation.run();
+			}
+		}
+	}
+
+	/*
+	 * Evaluate the rules and add their outcomes. Returns an error message if the rules could not be
+	 * evaluated before the deadline.
+	 */
+	private String evaluate(
+		Map<IRule, Future<Result>> resultFutures, long deadline, Watchdog watchdog, List<RuleOutcome> outcomes)
+			throws InterruptedException {
+		String error = null;
+		for (Map.Entry<IRule, Future<Result>> resultEntry : JfrRulesReport.sortByRuleId(resultFutures)) {
+			Future<Result> future = resultEntry.getValue();
+			try {
+				Result result;
+				if (error != null) {
+					if (!future.isDone() || future.isCancelled()) {
+						outcomes.add(new RuleOutcome(resultEntry.getKey(), null, error));
+						continue;
+					}
+					result = future.get();
+				} else if (timeoutMillis > 0) {
+					result = future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+				} else {
+					result = future.get();
+				}
+				if (result != null && Severity.get(result.getScore()).compareTo(minSeverity) >= 0) {
+					outcomes.add(new RuleOutcome(resultEntry.getKey(), result, null));
+				}
+			} catch (TimeoutException | InterruptedException e) {
+				if (e instanceof InterruptedException && !watchdog.hasExpired()) {
+					cancelAll(resultFutures.values());
+					throw (InterruptedException) e;
+				}
+				error = getTimeoutMessage();
+				cancelAll(resultFutures.values());
+				outcomes.add(new RuleOutcome(resultEntry.getKey(), null, error));
+			} catch (ExecutionException | CancellationException e) {
+				Throwable t = e instanceof ExecutionException ? e.getCause() : e;
+				outcomes.add(new RuleOutcome(resultEntry.getKey(), null, ExceptionToolkit.toString(t)));
+			}
+		}
+		return error;
+	}
+
+	private static void cancelAll(Collection<Future<Result>> futures) {
+		for (Future<Result> future : futures) {
+			future.cancel(true);
+		}
+	}
+
+	private String getTimeoutMessage() {
+		return "Timed out after " + timeoutMillis + " ms"; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private static long getDefaultMemoryBudget() {
+		Runtime rt = Runtime.getRuntime();
+		long availableMemory = rt.maxMemory() - rt.totalMemory() + rt.freeMemory();
+		return Math.max(availableMemory / 2, 1);
+	}
+
+	/*
+	 * Interrupts a thread when the time for a recording has run out, unless it has been disarmed
+	 * before that.
+	 */
+	private static final class Watchdog implements Runnable {
+		private final Thread thread;
+		private boolean disarmed;
+		private boolean expired;
+
+		Watchdog(Thread thread) {
+			this.thread = thread;
+		}
+
+		@Override
+		public synchronized void run() {
+			if (!disarmed) {
+				expired = true;
+				thread.interrupt();
+			}
+		}
+
+		synchronized void disarm() {
+			disarmed = true;
+		}
+
+		synchronized boolean hasExpired() {
+			return expired;
+		}
+	}
+
+	/*
+	 * Memory reserved by the recordings that are being analyzed. At least one recording is always
+	 * admitted, even if its estimate is larger than the budget. A reservation is released when all
+	 * of its holders have released it, since the rule evaluations of a recording that has timed out
+	 * may still be using its events.
+	 */
+	private static final class MemoryBudget {
+		private final long budget;
+		private long reserved;
+		private int reservations;
+
+		MemoryBudget(long budget) {
+			this.budget = budget;
+		}
+
+		synchronized Runnable reserve(long estimate, int holders) throws InterruptedException {
+			final long amount = Math.min(Math.max(estimate, 0), budget);
+			while (reservations > 0 && reserved + amount > budget) {
+				wait();
+			}
+			reserved += amount;
+			reservations++;
+			final AtomicInteger remainingHolders = new AtomicInteger(holders);
+			return new Runnable() {
+				@Override
+				public void run() {
+					if (remainingHolders.decrementAndGet() == 0) {
+						release(amount);
+					}
+				}
+			};
+		}
+
+		private synchronized void release(long amount) {
+			reserved -= amount;
+			reservations--;
+			notifyAll();
+		}
+	}
+
+	private static final class RuleOutcome {
+		final IRule rule;
+		final Result result;
+		final String error;
+
+		RuleOutcome(IRule rule, Result result, String error) {
+			this.rule = rule;
+			this.result = result;
+			this.error = error;
+		}
+	}
+
+	/*
+	 * Writes reports in a specific format. The report for one recording is written at a time, with
+	 * the elements of the report passed to the abstract methods in document order.
+	 */
+	private abstract class ReportWriter {
+
+		abstract void begin() throws IOException;
+
+		abstract void end() throws IOException;
+
+		abstract void startReport(String fileName) throws IOException;
+
+		abstract void endReport(String error) throws IOException;
+
+		abstract void startRule(IRule rule) throws IOException;
+
+		abstract void writeRuleError(String error) throws IOException;
+
+		abstract void writeResult(Result result) throws IOException;
+
+		abstract void startItems(List<String> fields) throws IOException;
+
+		abstract void writeItem(List<String> values) throws IOException;
+
+		abstract void endItems() throws IOException;
+
+		abstract void endRule() throws IOException;
+
+		void writeReport(String fileName, IItemCollection events, List<RuleOutcome> outcomes, String error)
+				throws IOException {
+			startReport(fileName);
+			for (RuleOutcome outcome : outcomes) {
+				startRule(outcome.rule);
+				if (outcome.error != null) {
+					writeRuleError(outcome.error);
+				} else {
+					writeResult(outcome.result);
+					IItemQuery itemQuery = outcome.result.getItemQuery();
+					if (verbose && itemQuery != null && !itemQuery.getAttributes().isEmpty()) {
+						writeItems(events.apply(itemQuery.getFilter()), itemQuery.getAttributes());
+					}
+				}
+				endRule();
+			}
+			endReport(error);
+		}
+
+		private void writeItems(IItemCollection items, Collection<? extends IAttribute<?>> attributes)
+				throws IOException {
+			List<String> fields = new ArrayList<>(attributes.size());
+			for (IAttribute<?> attribute : attributes) {
+				fields.add(attribute.getName());
+			}
+			startItems(fields);
+			List<String> values = new ArrayList<>(attributes.size());
+			for (IItemIterable ii : items) {
+				List<IMemberAccessor<?, IItem>> accessors = new ArrayList<>(attributes.size());
+				for (IAttribute<?> a : attributes) {
+					accessors.add(a.getAccessor(ii.getType()));
+				}
+				for (IItem item : ii) {
+					values.clear();
+					for (IMemberAccessor<?, IItem> a : accessors) {
+						values.add(JfrRulesReport.toString(a.getMember(item)));
+					}
+					writeItem(values);
+				}
+			}
+			endItems();
+		}
+	}
+
+	/*
+	 * Writes each report as a JSON object on a single line.
+	 */
+	private class JsonLinesReportWriter extends ReportWriter {
+		private final Writer out;
+		private boolean firstRule;
+		private boolean firstItem;
+		private List<String> fields;
+
+		JsonLinesReportWriter(OutputStream out) {
+			this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		}
+
+		@Override
+		void begin() {
+		}
+
+		@Override
+		void end() throws IOException {
+			out.flush();
+		}
+
+		@Override
+		void startReport(String fileName) throws IOException {
+			out.write("{\"file\":"); //$NON-NLS-1$
+			writeString(fileName);
+			firstRule = true;
+		}
+
+		@Override
+		void endReport(String error) throws IOException {
+			if (!firstRule) {
+				out.write(']');
+			}
+			if (error != null) {
+				out.write(",\"error\":"); //$NON-NLS-1$
+				writeString(error);
+			}
+			out.write("}\n"); //$NON-NLS-1$
+			out.flush();
+		}
+
+		@Override
+		void startRule(IRule rule) throws IOException {
+			out.write(firstRule ? ",\"rules\":[" : ","); //$NON-NLS-1$ //$NON-NLS-2$
+			firstRule = false;
+			out.write("{\"id\":"); //$NON-NLS-1$
+			writeString(rule.getId());
+			out.write(",\"name\":"); //$NON-NLS-1$
+			writeString(rule.getName());
+		}
+
+		@Override
+		void writeRuleError(String error) throws IOException {
+			out.write(",\"error\":"); //$NON-NLS-1$
+			writeString(error);
+		}
+
+		@Override
+		void writeResult(Result result) throws IOException {
+			out.write(",\"severity\":"); //$NON-NLS-1$
+			writeString(Severity.get(result.getScore()).getLocalizedName());
+			out.write(",\"score\":"); //$NON-NLS-1$
+			double score = result.getScore();
+			out.write(Double.isNaN(score) || Double.isInfinite(score) ? "null" : String.valueOf(score)); //$NON-NLS-1$
+			out.write(",\"message\":"); //$NON-NLS-1$
+			writeString(result.getShortDescription());
+			if (verbose) {
+				out.write(",\"detailedMessage\":"); //$NON-NLS-1$
+				writeString(result.getLongDescription());
+			}
+		}
+
+		@Override
+		void startItems(List<String> fields) throws IOException {
+			this.fields = new ArrayList<>(fields);
+			out.write(",\"items\":["); //$NON-NLS-1$
+			firstItem = true;
+		}
+
+		@Override
+		void writeItem(List<String> values) throws IOException {
+			out.write(firstItem ? "{" : ",{"); //$NON-NLS-1$ //$NON-NLS-2$
+			firstItem = false;
+			for (int i = 0; i < fields.size(); i++) {
+				if (i > 0) {
+					out.write(',');
+				}
+				writeString(fields.get(i));
+				out.write(':');
+				writeString(values.get(i));
+			}
+			out.write('}');
+		}
+
+		@Override
+		void endItems() throws IOException {
+			out.write(']');
+		}
+
+		@Override
+		void endRule() throws IOException {
+			out.write('}');
+		}
+
+		private void writeString(String value) throws IOException {
+			if (value == null) {
+				out.write("\"\""); //$NON-NLS-1$
+				return;
+			}
+			out.write('"');
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				switch (c) {
+				case '"':
+					out.write("\\\""); //$NON-NLS-1$
+					break;
+				case '\\':
+					out.write("\\\\"); //$NON-NLS-1$
+					break;
+				case '\n':
+					out.write("\\n"); //$NON-NLS-1$
+					break;
+				case '\r':
+					out.write("\\r"); //$NON-NLS-1$
+					break;
+				case '\t':
+					out.write("\\t"); //$NON-NLS-1$
+					break;
+				default:
+					if (c < 0x20) {
+						out.write(String.format("\\u%04x", (int) c)); //$NON-NLS-1$
+					} else {
+						out.write(c);
+					}
+				}
+			}
+			out.write('"');
+		}
+	}
+
+	/*
+	 * Writes the reports as elements of a reportcollection document.
+	 */
+	private class XmlReportWriter extends ReportWriter {
+		private final XMLStreamWriter out;
+		private List<String> fields;
+
+		XmlReportWriter(OutputStream out) throws IOException {
+			try {
+				this.out = XMLOutputFactory.newInstance().createXMLStreamWriter(out, StandardCharsets.UTF_8.name());
+			} catch (XMLStreamException e) {
+				throw new IOException(e);
+			}
+		}
+
+		@Override
+		void begin() throws IOException {
+			try {
+				out.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0"); //$NON-NLS-1$
+				out.writeCharacters("\n"); //$NON-NLS-1$
+				out.writeStartElement("reportcollection"); //$NON-NLS-1$
+				out.writeCharacters("\n"); //$NON-NLS-1$
+				out.flush();
+			} catch (XMLStreamException e) {
+				throw new IOException(e);
+			}
+		}
+
+		@Override
+		void end() throws IOException {
+			try {
+				out.writeEndElement();
+				out.writeEndDocument();
+				out.flush();
+			} catch (XMLStreamException e) {
+				throw new IOException(e);
+			}
+		}
+
+		@Override
+		void startReport(String fileName) throws IOException {
+			try {
+				out.writeStartElement("report"); //$NON-NLS-1$
+				writeValue("file", fileName); //$NON-NLS-1$
+			} catch (XMLStreamException e) {
+				throw new IOException(e);
+			}
+		}
+
+		@Override
+		void endReport(String error) throws IOException {
+			try {
+				if (error != null) {
+					writeValue("error", error); //$NON-NLS-1$
+				}
+				out.writeEndElement();
+				out.writeCharacters("\n"); //$NON-NLS-1$
+				out.flush();
+			} catch (XMLStreamException e) {
+				throw new IOException(e);
+			}
+		}
+
+		@Override
+		void startRule(IRule rule) throws IOException {
+			try {
+				out.writeStartElement("rule"); //$NON-NLS-1$
+				writeValue("id", rule.getId()); //$NON-NLS-1$
+				writeValue("name", rule.getName()); //$NON-NLS-1$
+			} catch (XMLStreamException e) {
+				throw new IOException(e);
+			}
+		}
+
+		@Override
+		void writeRuleError(String error) throws IOException {
+			try {
+				writeValue("error", error); //$NON-NLS-1$
+			} catch (XMLStreamException e) {
+				throw new IOException(e);
+			}
+		}
+
+		@Override
+		void writeResult(Result result) throws IOException {
+			try {
+				writeValue("severity", Severity.get(result.getScore()).getLocalizedName()); //$NON-NLS-1$
+				writeValue("score", String.valueOf(result.getScore())); //$NON-NLS-1$
+				writeValue("message", result.getShortDescription()); //$NON-NLS-1$
+				if (verbose) {
+					writeValue("detailedmessage", result.getLongDescription()); //$NON-NLS-1$
+				}
+			} catch (XMLStreamException e) {
+				throw new IOException(e);
+			}
+		}
+
+		@Override
+		void startItems(List<String> fields) throws IOException {
+			try {
+				out.writeStartElement("itemset"); //$NON-NLS-1$
+				out.writeStartElement("fields"); //$NON-NLS-1$
+				for (String field : fields) {
+					out.writeStartElement("field"); //$NON-NLS-1$
+					writeValue("name", field); //$NON-NLS-1$
+					out.writeEndElement();
+				}
+				out.writeEndElement();
+				out.writeStartElement("items"); //$NON-NLS-1$
+			} catch (XMLStreamException e) {
+				throw new IOException(e);
+			}
+		}
+
+		@Override
+		void writeItem(List<String> values) throws IOException {
+			try {
+				out.writeStartElement("item"); //$NON-NLS-1$
+				for (String value : values) {
+					writeValue("value", value); //$NON-NLS-1$
+				}
+				out.writeEndElement();
+			} catch (XMLStreamException e) {
+				throw new IOException(e);
+			}
+		}
+
+		@Override
+		void endItems() throws IOException {
+			try {
+				out.writeEndElement();
+				out.writeEndElement();
+			} catch (XMLStreamException e) {
+				throw new IOException(e);
+			}
+		}
+
+		@Override
+		void endRule() throws IOException {
+			try {
+				out.writeEndElement();
+			} catch (XMLStreamException e) {
+				throw new IOException(e);
+			}
+		}
+
+		private void writeValue(String name, String value) throws XMLStreamException {
+			out.writeStartElement(name);
+			out.writeCharacters(value != null ? value : ""); //$NON-NLS-1$
+			out.writeEndElement();
+		}
+	}
+}
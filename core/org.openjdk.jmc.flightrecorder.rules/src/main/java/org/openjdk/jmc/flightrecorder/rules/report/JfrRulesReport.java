@@ -257,13 +257,7 @@ public class JfrRulesReport {
 			// TODO: Provide configuration
 			Map<IRule, Future<Result>> resultFutures = RulesToolkit.evaluateParallel(RuleRegistry.getRules(), events,
 					null, 0);
-			List<Map.Entry<IRule, Future<Result>>> resultFutureList = new ArrayList<>(resultFutures.entrySet());
-			Collections.sort(resultFutureList, new Comparator<Map.Entry<IRule, ?>>() {
-				@Override
-				public int compare(Entry<IRule, ?> o1, Entry<IRule, ?> o2) {
-					return o1.getKey().getId().compareTo(o2.getKey().getId());
-				}
-			});
+			List<Map.Entry<IRule, Future<Result>>> resultFutureList = sortByRuleId(resultFutures);
 			for (Map.Entry<IRule, Future<Result>> resultEntry : resultFutureList) {
 				Result result = null;
 				try {
@@ -335,8 +329,19 @@ public class JfrRulesReport {
 		}
 	}
 
+	static <T> List<Map.Entry<IRule, T>> sortByRuleId(Map<IRule, T> resultsByRule) {
+		List<Map.Entry<IRule, T>> sorted = new ArrayList<>(resultsByRule.entrySet());
+		Collections.sort(sorted, new Comparator<Map.Entry<IRule, ?>>() {
+			@Override
+			public int compare(Entry<IRule, ?> o1, Entry<IRule, ?> o2) {
+				return o1.getKey().getId().compareTo(o2.getKey().getId());
+			}
+		});
+		return sorted;
+	}
+
 	// Best effort string conversion
-	private static String toString(Object member) {
+	static String toString(Object member) {
 		if (member instanceof IQuantity) {
 			// FIXME: Exact will not work in the general case, usually limiting time stamps to seconds (intervals will be ok).
 			// That said, this is infinitely more readable and for most practical purposes more than good enough.
@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.rules.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openjdk.jmc.common.item.IAggregator;
+import org.openjdk.jmc.common.item.ICopyableItemConsumer;
+import org.openjdk.jmc.common.item.IItem;
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.item.IItemConsumer;
+import org.openjdk.jmc.common.item.IItemFilter;
+import org.openjdk.jmc.common.item.IItemIterable;
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.IRange;
+
+/**
+ * An item collection made up of segments that have been added over time, for example the chunks of
+ * a recording that is dumped repeatedly. Segments may also be removed over time, for example when
+ * old chunks are removed from the disk repository.
+ * <p>
+ * The collection keeps the consumers of each aggregate for each segment between snapshots. When an
+ * aggregate is requested, only the segments that have been added since the last request are
+ * consumed, and copies of the kept consumers of all segments are merged to calculate the value. The
+ * consumers of segments that have been removed are dropped. This requires the consumers to be
+ * {@link ICopyableItemConsumer copyable}, since merging modifies the consumers, and so may the
+ * aggregator when it calculates the value. Aggregates with other consumers are calculated from all
+ * segments each time.
+ * <p>
+ * As for {@link SharedScanItemCollection}, filters and aggregators are compared by identity. The
+ * states of the least recently requested aggregates are evicted, so that states for filters and
+ * aggregators that are created for each evaluation do not accumulate.
+ */
+class IncrementalItemCollection implements IItemCollection {
+
+	private final List<IItemCollection> segments;
+	// The unfiltered segments, which identify the segments between snapshots
+	private final List<IItemCollection> segmentKeys;
+	private final StateCache states;
+
+	/**
+	 * @param segments
+	 *            the segments of the collection. Segments are identified by identity, so later
+	 *            snapshots of the same collection must use the same instances for the segments that
+	 *            they have in common.
+	 * @param states
+	 *            cache for the aggregate states, shared by all snapshots of the collection
+	 */
+	IncrementalItemCollection(List<IItemCollection> segments, StateCache states) {
+		this(segments, segments, states);
+	}
+
+	private IncrementalItemCollection(List<IItemCollection> segments, List<IItemCollection> segmentKeys,
+			StateCache states) {
+		this.segments = segments;
+		this.segmentKeys = segmentKeys;
+		this.states = states;
+	}
+
+	@Override
+	public Iterator<IItemIterable> iterator() {
+		List<IItemIterable> iterables = new ArrayList<>();
+		for (IItemCollection segment : segments) {
+			for (IItemIterable ii : segment) {
+				iterables.add(ii);
+			}
+		}
+		return iterables.iterator();
+	}
+
+	@Override
+	public IItemCollection apply(IItemFilter filter) {
+		List<IItemCollection> filteredSegments = new ArrayList<>(segments.size());
+		for (IItemCollection segment : segments) {
+			filteredSegments.add(segment.apply(filter));
+		}
+		return new IncrementalItemCollection(filteredSegments, segmentKeys, states.forFilter(filter));
+	}
+
+	@Override
+	public <V, C extends IItemConsumer<C>> V getAggregate(IAggregator<V, C> aggregator) {
+		AggregateState state = states.get(aggregator);
+		Map<String, C> consumers = new LinkedHashMap<>();
+		synchronized (state) {
+			if (state.segmentConsumers != null) {
+				@SuppressWarnings("unchecked")
+				Map<IItemCollection, Map<String, C>> kept = (Map<IItemCollection, Map<String, C>>) (Map<?, ?>) state.segmentConsumers;
+				if (!consumeSegments(aggregator, kept, consumers)) {
+					// Not all consumers can be kept, so calculate later values from scratch
+					state.segmentConsumers = null;
+				}
+				return aggregator.getValue(consumers.values().iterator());
+			}
+		}
+		for (IItemCollection segment : segments) {
+			merge(consumers, consume(aggregator, segment));
+		}
+		return aggregator.getValue(consumers.values().iterator());
+	}
+
+	/*
+	 * Drop the kept consumers of removed segments, consume the new segments, and merge copies of
+	 * the kept consumers into the given map. If any of the consumers can not be copied, then the
+	 * consumers of that and the following segments are merged without being kept, and false is
+	 * returned.
+	 */
+	private <C extends IItemConsumer<C>> boolean consumeSegments(
+		IAggregator<?, C> aggregator, Map<IItemCollection, Map<String, C>> kept, Map<String, C> consumers) {
+		Set<IItemCollection> current = Collections.newSetFromMap(new IdentityHashMap<IItemCollection, Boolean>());
+		current.addAll(segmentKeys);
+		kept.keySet().retainAll(current);
+		boolean copyable = true;
+		for (int i = 0; i < segments.size(); i++) {
+			Map<String, C> segmentConsumers = copyable ? kept.get(segmentKeys.get(i)) : null;
+			if (segmentConsumers == null) {
+				segmentConsumers = consume(aggregator, segments.get(i));
+				if (copyable) {
+					kept.put(segmentKeys.get(i), segmentConsumers);
+				}
+			}
+			if (copyable) {
+				Map<String, C> copies = copy(segmentConsumers);
+				if (copies == null) {
+					copyable = false;
+				} else {
+					segmentConsumers = copies;
+				}
+			}
+			merge(consumers, segmentConsumers);
+		}
+		return copyable;
+	}
+
+	/*
+	 * Consume the items in a segment, with one consumer per type.
+	 */
+	private static <C extends IItemConsumer<C>> Map<String, C> consume(
+		IAggregator<?, C> aggregator, IItemCollection segment) {
+		Map<String, C> consumers = new LinkedHashMap<>();
+		for (IItemIterable ii : segment) {
+			if (aggregator.acceptType(ii.getType())) {
+				C consumer = aggregator.newItemConsumer(ii.getType());
+				for (IItem item : ii) {
+					consumer.consume(item);
+				}
+				String typeId = ii.getType().getIdentifier();
+				C previous = consumers.get(typeId);
+				consumers.put(typeId, previous == null ? consumer : previous.merge(consumer));
+			}
+		}
+		return consumers;
+	}
+
+	private static <C extends IItemConsumer<C>> void merge(Map<String, C> consumers, Map<String, C> other) {
+		for (Map.Entry<String, C> entry : other.entrySet()) {
+			C previous = consumers.get(entry.getKey());
+			consumers.put(entry.getKey(), previous == null ? entry.getValue() : previous.merge(entry.getValue()));
+		}
+	}
+
+	/*
+	 * Copy the consumers, or return null if any of them can not be copied.
+	 */
+	private static <C extends IItemConsumer<C>> Map<String, C> copy(Map<String, C> consumers) {
+		Map<String, C> copies = new LinkedHashMap<>();
+		for (Map.Entry<String, C> entry : consumers.entrySet()) {
+			if (!(entry.getValue() instanceof ICopyableItemConsumer)) {
+				return null;
+			}
+			@SuppressWarnings("unchecked")
+			ICopyableItemConsumer<C> consumer = (ICopyableItemConsumer<C>) entry.getValue();
+			copies.put(entry.getKey(), consumer.copy());
+		}
+		return copies;
+	}
+
+	@Override
+	public boolean hasItems() {
+		for (IItemCollection segment : segments) {
+			if (segment.hasItems()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Set<IRange<IQuantity>> getTimeRanges() {
+		Set<IRange<IQuantity>> timeRanges = new HashSet<>();
+		for (IItemCollection segment : segments) {
+			timeRanges.addAll(segment.getTimeRanges());
+		}
+		return timeRanges;
+	}
+
+	/*
+	 * The kept consumers of an aggregate for each segment, or null if the consumers can not be
+	 * kept.
+	 */
+	private static final class AggregateState {
+		private Map<IItemCollection, Map<String, ?>> segmentConsumers = new IdentityHashMap<>();
+	}
+
+	/**
+	 * The aggregate states of a collection and of the collections created from it by applying
+	 * filters. Only a limited number of states are held, and the least recently used state is
+	 * evicted when a new one is added.
+	 */
+	static final class StateCache {
+		private static final int DEFAULT_MAX_SIZE = 256;
+
+		private final List<Object> filters;
+		private final Map<IdentityKey, AggregateState> states;
+
+		StateCache() {
+			this(DEFAULT_MAX_SIZE);
+		}
+
+		StateCache(final int maxSize) {
+			// Access ordered, so that the least recently used state is the eldest
+			this(Collections.emptyList(), new LinkedHashMap<IdentityKey, AggregateState>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<IdentityKey, AggregateState> eldest) {
+					return size() > maxSize;
+				}
+			});
+		}
+
+		private StateCache(List<Object> filters, Map<IdentityKey, AggregateState> states) {
+			this.filters = filters;
+			this.states = states;
+		}
+
+		StateCache forFilter(IItemFilter filter) {
+			List<Object> path = new ArrayList<>(filters.size() + 1);
+			path.addAll(filters);
+			path.add(filter);
+			return new StateCache(path, states);
+		}
+
+		AggregateState get(IAggregator<?, ?> aggregator) {
+			List<Object> path = new ArrayList<>(filters.size() + 1);
+			path.addAll(filters);
+			path.add(aggregator);
+			IdentityKey key = new IdentityKey(path);
+			synchronized (states) {
+				AggregateState state = states.get(key);
+				if (state == null) {
+					state = new AggregateState();
+					states.put(key, state);
+				}
+				return state;
+			}
+		}
+	}
+
+	/*
+	 * A list of objects that are compared by identity.
+	 */
+	private static final class IdentityKey {
+		private final List<Object> path;
+
+		IdentityKey(List<Object> path) {
+			this.path = path;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = 1;
+			for (Object o : path) {
+				hash = 31 * hash + System.identityHashCode(o);
+			}
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof IdentityKey)) {
+				return false;
+			}
+			List<Object> other = ((IdentityKey) obj).path;
+			if (other.size() != path.size()) {
+				return false;
+			}
+			for (int i = 0; i < path.size(); i++) {
+				if (path.get(i) != other.get(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
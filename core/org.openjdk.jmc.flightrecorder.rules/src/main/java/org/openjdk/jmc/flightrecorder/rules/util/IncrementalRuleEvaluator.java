@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.rules.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+
+import org.openjdk.jmc.common.item.ICopyableItemConsumer;
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.util.IPreferenceValueProvider;
+import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.JfrLoaderToolkit;
+import org.openjdk.jmc.flightrecorder.rules.IRule;
+import org.openjdk.jmc.flightrecorder.rules.Result;
+import org.openjdk.jmc.flightrecorder.rules.util.IncrementalItemCollection.StateCache;
+import org.openjdk.jmc.flightrecorder.util.ChunkReader;
+
+/**
+ * Evaluates rules repeatedly over a recording that grows over time, for example a continuous
+ * recording that is dumped every few minutes.
+ * <p>
+ * Each time the recording is dumped, the dump can be given to {@link #addRecording(File)}. Only the
+ * chunks that have not been added before are loaded, and chunks that are no longer in the dump, for
+ * example because they have been removed from the disk repository due to its maximum age or size,
+ * are dropped. The events from all added chunks are then evaluated by {@link #evaluate()}.
+ * <p>
+ * The rules themselves are evaluated from scratch each time, but the aggregates that they request
+ * are updated incrementally. For each aggregate, only the chunks that have been added since the
+ * aggregate was last requested are consumed, as long as the aggregate uses
+ * {@link ICopyableItemConsumer copyable consumers}. This is the case for the common aggregators
+ * such as counts, sums, averages, minimum and maximum values. Other aggregates, and rules that
+ * iterate over the items directly, still process all chunks. The consumers are kept for each chunk,
+ * so when chunks have been dropped, the aggregates are calculated from the kept consumers of the
+ * remaining chunks without consuming them again.
+ * <p>
+ * Filters and aggregators are compared by identity, so only aggregates that use the same filter and
+ * aggregator instances each time, such as the constants in {@code JdkFilters} and
+ * {@code JdkAggregators}, are updated incrementally.
+ */
+public final class IncrementalRuleEvaluator {
+	// The chunk header, which includes the start time and duration of the chunk in recent versions
+	private static final int CHUNK_KEY_SIZE = 68;
+
+	private final Collection<IRule> rules;
+	private final IPreferenceValueProvider preferences;
+	// The added segments, and the keys of the chunks that they were loaded from. The key is null for
+	// events that were added by other means.
+	private List<IItemCollection> segments = Collections.emptyList();
+	private List<Object> segmentKeys = Collections.emptyList();
+	private final StateCache aggregateStates = new StateCache();
+	private volatile IItemCollection items = new IncrementalItemCollection(segments, aggregateStates);
+
+	/**
+	 * @param rules
+	 *            rules to evaluate
+	 * @param preferences
+	 *            See {@link IRule#evaluate(IItemCollection, IPreferenceValueProvider)}. If
+	 *            {@code null}, then default values will be used.
+	 */
+	public IncrementalRuleEvaluator(Collection<IRule> rules, IPreferenceValueProvider preferences) {
+		this.rules = rules;
+		this.preferences = preferences;
+	}
+
+	/**
+	 * Add the chunks of a recording that have not already been added, and drop the chunks that were
+	 * loaded from an earlier dump but are not in this one. Chunks are identified by their size and
+	 * header, so a recording that is dumped again will only have its new chunks added. Events that
+	 * were added with {@link #addEvents(IItemCollection)} are kept.
+	 *
+	 * @param file
+	 *            the recording file
+	 * @return {@code true} if any chunks were added or dropped
+	 * @throws IOException
+	 *             if the file could not be read
+	 * @throws CouldNotLoadRecordingException
+	 *             if the new chunks could not be loaded
+	 */
+	public synchronized boolean addRecording(File file) throws IOException, CouldNotLoadRecordingException {
+		Set<Object> dumpKeys = new HashSet<>();
+		List<Object> newKeys = new ArrayList<>();
+		List<byte[]> newChunks = new ArrayList<>();
+		try {
+			Iterator<byte[]> chunks = ChunkReader.readChunks(file);
+			while (chunks.hasNext()) {
+				byte[] chunk = chunks.next();
+				Object key = getChunkKey(chunk);
+				if (dumpKeys.add(key) && !segmentKeys.contains(key)) {
+					newKeys.add(key);
+					newChunks.add(chunk);
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			// Thrown by the chunk reader for corrupt chunks
+			throw new CouldNotLoadRecordingException(e);
+		}
+		List<IItemCollection> newSegments = new ArrayList<>();
+		List<Object> newSegmentKeys = new ArrayList<>();
+		for (int i = 0; i < segments.size(); i++) {
+			Object key = segmentKeys.get(i);
+			if (key == null || dumpKeys.contains(key)) {
+				newSegments.add(segments.get(i));
+				newSegmentKeys.add(key);
+			}
+		}
+		boolean dropped = newSegments.size() < segments.size();
+		if (newChunks.isEmpty() && !dropped) {
+			return false;
+		}
+		for (int i = 0; i < newChunks.size(); i++) {
+			try (InputStream stream = new ByteArrayInputStream(newChunks.get(i))) {
+				newSegments.add(JfrLoaderToolkit.loadEvents(stream));
+			}
+			newSegmentKeys.add(newKeys.get(i));
+		}
+		setSegments(newSegments, newSegmentKeys);
+		return true;
+	}
+
+	private static Object getChunkKey(byte[] chunk) {
+		ByteBuffer header = ByteBuffer.wrap(Arrays.copyOf(chunk, Math.min(chunk.length, CHUNK_KEY_SIZE)));
+		return Arrays.asList(chunk.length, header);
+	}
+
+	/**
+	 * Add events that have been loaded by other means. The events must not overlap with the events
+	 * that have already been added.
+	 *
+	 * @param events
+	 *            the new events
+	 */
+	public synchronized void addEvents(IItemCollection events) {
+		List<IItemCollection> newSegments = new ArrayList<>(segments);
+		newSegments.add(events);
+		List<Object> newSegmentKeys = new ArrayList<>(segmentKeys);
+		newSegmentKeys.add(null);
+		setSegments(newSegments, newSegmentKeys);
+	}
+
+	private void setSegments(List<IItemCollection> newSegments, List<Object> newSegmentKeys) {
+		segments = Collections.unmodifiableList(newSegments);
+		segmentKeys = newSegmentKeys;
+		items = new IncrementalItemCollection(segments, aggregateStates);
+	}
+
+	/**
+	 * @return all events that have been added so far
+	 */
+	public IItemCollection getItems() {
+		return items;
+	}
+
+	/**
+	 * Evaluate the rules on all events that have been added so far, in the same way as
+	 * {@link RulesToolkit#evaluateParallel(Collection, IItemCollection, IPreferenceValueProvider, int)}.
+	 *
+	 * @return a map from rules to result futures
+	 */
+	public Map<IRule, Future<Result>> evaluate() {
+		return RulesToolkit.evaluateParallel(rules, getItems(), preferences, 0);
+	}
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.rules.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmc.flightrecorder.rules.IRule;
+import org.openjdk.jmc.flightrecorder.rules.Result;
+
+/**
+ * Schedules rule evaluations on a bounded pool of daemon threads that is reused by all evaluations,
+ * so that evaluating rules for many recordings does not start new threads for each recording. Idle
+ * threads are stopped after a while.
+ * <p>
+ * The scheduler remembers how long each rule has taken to evaluate and starts the slowest rules
+ * first, so that an expensive rule is not left to run alone at the end of an evaluation. Rules that
+ * have not been evaluated before are started before all other rules.
+ * <p>
+ * The time of a rule is measured as the CPU time of the evaluating thread, when supported by the
+ * JVM, so that time spent waiting for values that another rule is calculating is not counted. A
+ * rule that calculates a value that is shared with other rules is still charged for all of it.
+ */
+final class RuleScheduler {
+	/**
+	 * Size of the shared pool. Defaults to the number of available processors.
+	 */
+	private static final String THREADS_PROPERTY_KEY = "org.openjdk.jmc.flightrecorder.rules.threads"; //$NON-NLS-1$
+	private static final long KEEP_ALIVE_SECONDS = 30;
+	private static final int MAX_TRACKED_RULES = 4096;
+	private static final Long UNKNOWN_COST = Long.MAX_VALUE;
+	private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+
+	private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+	private static volatile RuleScheduler sharedScheduler;
+
+	private final ThreadPoolExecutor executor;
+	private final ConcurrentMap<String, Long> costs = new ConcurrentHashMap<>();
+
+	RuleScheduler(int poolSize) {
+		final String namePrefix = "Rule Evaluator-" + POOL_COUNT.incrementAndGet() + "-"; //$NON-NLS-1$ //$NON-NLS-2$
+		executor = new ThreadPoolExecutor(poolSize, poolSize, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					private final AtomicInteger threadCount = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, namePrefix + threadCount.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * @return the scheduler that is shared by all rule evaluations
+	 */
+	static RuleScheduler getShared() {
+		RuleScheduler scheduler = sharedScheduler;
+		if (scheduler == null) {
+			synchronized (RuleScheduler.class) {
+				scheduler = sharedScheduler;
+				if (scheduler == null) {
+					int poolSize = Integer.getInteger(THREADS_PROPERTY_KEY, 0);
+					if (poolSize < 1) {
+						poolSize = Runtime.getRuntime().availableProcessors();
+					}
+					scheduler = new RuleScheduler(poolSize);
+					sharedScheduler = scheduler;
+				}
+			}
+		}
+		return scheduler;
+	}
+
+	/**
+	 * Start evaluating rules. At most {@code parallelism} of the rules are evaluated at the same
+	 * time, and never more than the size of the pool.
+	 *
+	 * @param evaluations
+	 *            rules and the futures that evaluate them
+	 * @param parallelism
+	 *            the maximum number of rules to evaluate at the same time
+	 */
+	void schedule(Map<IRule, RunnableFuture<Result>> evaluations, int parallelism) {
+		schedule(evaluations, parallelism, null);
+	}
+
+	/**
+	 * Start evaluating rules. At most {@code parallelism} of the rules are evaluated at the same
+	 * time, and never more than the size of the pool.
+	 *
+	 * @param evaluations
+	 *            rules and the futures that evaluate them
+	 * @param parallelism
+	 *            the maximum number of rules to evaluate at the same time
+	 * @param whenFinished
+	 *            run when no rule is being evaluated any more, or {@code null}. Futures that are
+	 *            cancelled while running are only finished when their evaluation has returned.
+	 */
+	void schedule(Map<IRule, RunnableFuture<Result>> evaluations, int parallelism, Runnable whenFinished) {
+		List<Map.Entry<IRule, RunnableFuture<Result>>> ordered = new ArrayList<>(evaluations.entrySet());
+		Collections.sort(ordered, new Comparator<Map.Entry<IRule, ?>>() {
+			@Override
+			public int compare(Map.Entry<IRule, ?> o1, Map.Entry<IRule, ?> o2) {
+				return getCost(o2.getKey()).compareTo(getCost(o1.getKey()));
+			}
+		});
+		Queue<Map.Entry<IRule, RunnableFuture<Result>>> queue = new ConcurrentLinkedQueue<>(ordered);
+		int nEvaluators = Math.min(Math.min(parallelism, executor.getMaximumPoolSize()), ordered.size());
+		if (nEvaluators == 0) {
+			if (whenFinished != null) {
+				whenFinished.run();
+			}
+			return;
+		}
+		AtomicInteger runningEvaluators = new AtomicInteger(nEvaluators);
+		for (int i = 0; i < nEvaluators; i++) {
+			executor.execute(new RuleEvaluator(queue, runningEvaluators, whenFinished));
+		}
+	}
+
+	/**
+	 * @return the rule ids in the order that they would be started in
+	 */
+	List<String> getOrder(Iterable<IRule> rules) {
+		List<IRule> ordered = new ArrayList<>();
+		for (IRule rule : rules) {
+			ordered.add(rule);
+		}
+		Collections.sort(ordered, new Comparator<IRule>() {
+			@Override
+			public int compare(IRule o1, IRule o2) {
+				return getCost(o2).compareTo(getCost(o1));
+			}
+		});
+		List<String> ids = new ArrayList<>(ordered.size());
+		for (IRule rule : ordered) {
+			ids.add(rule.getId());
+		}
+		return ids;
+	}
+
+	private Long getCost(IRule rule) {
+		Long cost = costs.get(rule.getId());
+		return cost == null ? UNKNOWN_COST : cost;
+	}
+
+	private static boolean isCpuTimeAvailable() {
+		return THREAD_BEAN.isCurrentThreadCpuTimeSupported() && THREAD_BEAN.isThreadCpuTimeEnabled();
+	}
+
+	private static long getTime(boolean cpuTime) {
+		return cpuTime ? THREAD_BEAN.getCurrentThreadCpuTime() : System.nanoTime();
+	}
+
+	private void recordCost(IRule rule, long nanos) {
+		String id = rule.getId();
+		Long previous = costs.get(id);
+		if (previous != null) {
+			// Smooth out the variation between recordings
+			costs.put(id, (previous + nanos) / 2);
+		} else if (costs.size() < MAX_TRACKED_RULES) {
+			costs.put(id, nanos);
+		}
+	}
+
+	private class RuleEvaluator implements Runnable {
+		private final Queue<Map.Entry<IRule, RunnableFuture<Result>>> queue;
+		private final AtomicInteger runningEvaluators;
+		private final Runnable whenFinished;
+
+		RuleEvaluator(Queue<Map.Entry<IRule, RunnableFuture<Result>>> queue, AtomicInteger runningEvaluators,
+				Runnable whenFinished) {
+			this.queue = queue;
+			this.runningEvaluators = runningEvaluators;
+			this.whenFinished = whenFinished;
+		}
+
+		@Override
+		public void run() {
+			try {
+				Map.Entry<IRule, RunnableFuture<Result>> evaluation;
+				while ((evaluation = queue.poll()) != null) {
+					RunnableFuture<Result> resultFuture = evaluation.getValue();
+					if (resultFuture.isDone()) {
+						continue;
+					}
+					boolean cpuTime = isCpuTimeAvailable();
+					long start = getTime(cpuTime);
+					resultFuture.run();
+					recordCost(evaluation.getKey(), getTime(cpuTime) - start);
+				}
+			} finally {
+				if (runningEvaluators.decrementAndGet() == 0 && whenFinished != null) {
+					whenFinished.run();
+				}
+			}
+		}
+	}
+}
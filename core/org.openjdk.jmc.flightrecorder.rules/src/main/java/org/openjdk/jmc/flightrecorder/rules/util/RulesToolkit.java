@@ -44,12 +44,15 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.RunnableFuture;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -131,6 +134,57 @@ public class RulesToolkit {
 	};
 	private final static LinearUnit MEBIBYTES = UnitLookup.MEMORY.getUnit(BinaryPrefix.MEBI);
 
+	/*
+	 * Derived value functions for calculations that several rules may need for the same items.
+	 */
+	private static final Function<IItemCollection, IQuantity> EARLIEST_START_TIME = new Function<IItemCollection, IQuantity>() {
+		@Override
+		public IQuantity apply(IItemCollection items) {
+			return calculateEarliestStartTime(items);
+		}
+	};
+	private static final Function<IItemCollection, IQuantity> LATEST_END_TIME = new Function<IItemCollection, IQuantity>() {
+		@Override
+		public IQuantity apply(IItemCollection items) {
+			return calculateLatestEndTime(items);
+		}
+	};
+	private static final Function<IItemCollection, String> SECOND_FRAME_IN_MOST_COMMON_TRACE = new Function<IItemCollection, String>() {
+		@Override
+		public String apply(IItemCollection items) {
+			return calculateSecondFrameInMostCommonTrace(items);
+		}
+	};
+	private static final Function<IItemCollection, EventTypeInventory> EVENT_TYPE_INVENTORY = new Function<IItemCollection, EventTypeInventory>() {
+		@Override
+		public EventTypeInventory apply(IItemCollection items) {
+			return new EventTypeInventory(items);
+		}
+	};
+
+	/*
+	 * The availability of event types in a collection. Many rules check the same types, so each
+	 * availability is only calculated once.
+	 */
+	private static final class EventTypeInventory {
+		private final IItemCollection items;
+		private final ConcurrentMap<List<String>, EventAvailability> availabilities = new ConcurrentHashMap<>();
+
+		EventTypeInventory(IItemCollection items) {
+			this.items = items;
+		}
+
+		EventAvailability getAvailability(String ... typeIds) {
+			List<String> key = Arrays.asList(typeIds.clone());
+			EventAvailability availability = availabilities.get(key);
+			if (availability == null) {
+				availability = calculateEventAvailability(items, typeIds);
+				availabilities.putIfAbsent(key, availability);
+			}
+			return availability;
+		}
+	}
+
 	/**
 	 * Matches strings containing an identifiable version number as presented in a JVM info event.
 	 * The minimal matching form is "JRE (" followed by 1 to 4 numbers on the format a.b.c_d or
@@ -446,6 +500,10 @@ public class RulesToolkit {
 	 * @return the availability for the event types
 	 */
 	public static EventAvailability getEventAvailability(IItemCollection items, final String ... typeIds) {
+		return items.getDerivedValue(EVENT_TYPE_INVENTORY).getAvailability(typeIds);
+	}
+
+	private static EventAvailability calculateEventAvailability(IItemCollection items, String ... typeIds) {
 		// Only AVAILABLE if exactly all types have events
 		if (hasEvents(items, typeIds)) {
 			return EventAvailability.AVAILABLE;
@@ -584,6 +642,44 @@ public class RulesToolkit {
 		}
 	}
 
+	/**
+	 * Checks the availability of the {@link IRule#getRequiredEvents() required events} of a rule.
+	 * The event types with the same required availability are checked together, in the order that
+	 * they are returned by the rule.
+	 *
+	 * @param rule
+	 *            the rule to check the required events for
+	 * @param items
+	 *            the items that the rule is to be evaluated on
+	 * @return a "Not Applicable" result from
+	 *         {@link #getEventAvailabilityResult(IRule, IItemCollection, EventAvailability, String...)}
+	 *         if the events are less available than required, or {@code null} if the rule can be
+	 *         evaluated
+	 */
+	public static Result getRequiredEventsResult(IRule rule, IItemCollection items) {
+		Map<String, EventAvailability> requiredEvents = rule.getRequiredEvents();
+		if (requiredEvents.isEmpty()) {
+			return null;
+		}
+		Map<EventAvailability, List<String>> typesByAvailability = new LinkedHashMap<>();
+		for (Map.Entry<String, EventAvailability> entry : requiredEvents.entrySet()) {
+			List<String> typeIds = typesByAvailability.get(entry.getValue());
+			if (typeIds == null) {
+				typeIds = new ArrayList<>();
+				typesByAvailability.put(entry.getValue(), typeIds);
+			}
+			typeIds.add(entry.getKey());
+		}
+		for (Map.Entry<EventAvailability, List<String>> entry : typesByAvailability.entrySet()) {
+			String[] typeIds = entry.getValue().toArray(new String[entry.getValue().size()]);
+			EventAvailability availability = getEventAvailability(items, typeIds);
+			if (availability.isLessAvailableThan(entry.getKey())) {
+				return getEventAvailabilityResult(rule, items, availability, typeIds);
+			}
+		}
+		return null;
+	}
+
 	/**
 	 * Creates a {@link Result} object for the given {@link IRule} object representing a result
 	 * where there are too few events to properly evaluate a rule.
@@ -1223,7 +1319,7 @@ public class RulesToolkit {
 
 	/**
 	 * Evaluates a collection of rules in parallel threads. The method returns a map of rules and
-	 * {@link Future future} results that are scheduled to run using the specified number of
+	 * {@link Future future} results that are scheduled to run using at most the specified number of
 	 * threads.
 	 * <p>
 	 * You can use a single threaded loop over the returned futures to {@link Future#get() get} the
@@ -1231,6 +1327,18 @@ public class RulesToolkit {
 	 * <p>
 	 * If evaluation of a rule fails, then the get method of the corresponding future will throw an
 	 * {@link ExecutionException}.
+	 * <p>
+	 * The rules are evaluated on a view of the items that shares aggregate values between the
+	 * rules, so that an aggregate that is requested by several rules is only calculated once.
+	 * Values derived with {@link IItemCollection#getDerivedValue(Function)} are shared in the same
+	 * way.
+	 * <p>
+	 * Rules that {@link IRule#getRequiredEvents() declare their required events} are not evaluated
+	 * if the events are less available than required. The result is then the "Not Applicable"
+	 * result from {@link #getRequiredEventsResult(IRule, IItemCollection)}.
+	 * <p>
+	 * The rules are evaluated by a pool of threads that is shared by all evaluations. The rules
+	 * that have been the slowest to evaluate before are started first.
 	 *
 	 * @param rules
 	 *            rules to run
@@ -1240,47 +1348,98 @@ public class RulesToolkit {
 	 *            See {@link IRule#evaluate(IItemCollection, IPreferenceValueProvider)}. If
 	 *            {@code null}, then default values will be used.
 	 * @param nThreads
-	 *            The number or parallel threads to use when evaluating. If 0, then the number of
-	 *            available processors will be used.
+	 *            The maximum number of parallel threads to use when evaluating. If 0, then the
+	 *            number of available processors will be used. The number of threads is also limited
+	 *            by the size of the shared pool.
 	 * @return a map from rules to result futures
 	 */
 	public static Map<IRule, Future<Result>> evaluateParallel(
 		Collection<IRule> rules, IItemCollection items, IPreferenceValueProvider preferences, int nThreads) {
+		return evaluateParallel(rules, items, preferences, nThreads, null);
+	}
+
+	/**
+	 * Evaluates a collection of rules in parallel threads, in the same way as
+	 * {@link #evaluateParallel(Collection, IItemCollection, IPreferenceValueProvider, int)}, and
+	 * tells when the evaluations are no longer running.
+	 * <p>
+	 * A future that is cancelled is done at once, but a rule that does not respond to interrupts
+	 * may still be evaluating the items. Use {@code whenFinished} to find out when the items are no
+	 * longer used by any of the rules, for example to release resources held by the items.
+	 *
+	 * @param rules
+	 *            rules to run
+	 * @param items
+	 *            items to evaluate
+	 * @param preferences
+	 *            See {@link IRule#evaluate(IItemCollection, IPreferenceValueProvider)}. If
+	 *            {@code null}, then default values will be used.
+	 * @param nThreads
+	 *            The maximum number of parallel threads to use when evaluating. If 0, then the
+	 *            number of available processors will be used. The number of threads is also limited
+	 *            by the size of the shared pool.
+	 * @param whenFinished
+	 *            run once when all the rules have finished or been cancelled and none of them is
+	 *            running any more, or {@code null}. It is run by one of the evaluating threads, or
+	 *            by the calling thread if there are no rules.
+	 * @return a map from rules to result futures
+	 */
+	public static Map<IRule, Future<Result>> evaluateParallel(
+		Collection<IRule> rules, IItemCollection items, IPreferenceValueProvider preferences, int nThreads,
+		Runnable whenFinished) {
 		if (preferences == null) {
 			preferences = IPreferenceValueProvider.DEFAULT_VALUES;
 		}
 		if (nThreads < 1) {
 			nThreads = Runtime.getRuntime().availableProcessors();
 		}
-		Map<IRule, Future<Result>> resultFutures = new HashMap<>();
-		Queue<RunnableFuture<Result>> futureQueue = new ConcurrentLinkedQueue<>();
+		Map<IRule, RunnableFuture<Result>> evaluations = new HashMap<>();
+		IItemCollection sharedItems = new SharedScanItemCollection(items);
 		for (IRule rule : rules) {
-			RunnableFuture<Result> resultFuture = rule.evaluate(items, preferences);
-			resultFutures.put(rule, resultFuture);
-			futureQueue.add(resultFuture);
-		}
-		for (int i = 0; i < nThreads; i++) {
-			RuleEvaluator re = new RuleEvaluator(futureQueue);
-			Thread t = new Thread(re);
-			t.start();
+			RunnableFuture<Result> ruleFuture = rule.evaluate(sharedItems, preferences);
+			if (rule.getRequiredEvents().isEmpty()) {
+				evaluations.put(rule, ruleFuture);
+			} else {
+				evaluations.put(rule, checkRequiredEvents(rule, sharedItems, ruleFuture));
+			}
 		}
-		return resultFutures;
+		RuleScheduler.getShared().schedule(evaluations, nThreads, whenFinished);
+		return new HashMap<IRule, Future<Result>>(evaluations);
 	}
 
-	private static class RuleEvaluator implements Runnable {
-		private Queue<RunnableFuture<Result>> futureQueue;
-
-		public RuleEvaluator(Queue<RunnableFuture<Result>> futureQueue) {
-			this.futureQueue = futureQueue;
-		}
-
-		@Override
-		public void run() {
-			RunnableFuture<Result> resultFuture;
-			while ((resultFuture = futureQueue.poll()) != null) {
-				resultFuture.run();
+	/*
+	 * Wrap a rule evaluation so that it only runs if the required events of the rule are available.
+	 */
+	private static RunnableFuture<Result> checkRequiredEvents(
+		final IRule rule, final IItemCollection items, final RunnableFuture<Result> ruleFuture) {
+		return new FutureTask<Result>(new Callable<Result>() {
+			@Override
+			public Result call() throws Exception {
+				Result requiredEventsResult = getRequiredEventsResult(rule, items);
+				if (requiredEventsResult != null) {
+					ruleFuture.cancel(false);
+					return requiredEventsResult;
+				}
+				ruleFuture.run();
+				try {
+					return ruleFuture.get();
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof Exception) {
+						throw (Exception) cause;
+					} else if (cause instanceof Error) {
+						throw (Error) cause;
+					}
+					throw e;
+				}
 			}
-		}
+		}) {
+			@Override
+			public boolean cancel(boolean mayInterruptIfRunning) {
+				ruleFuture.cancel(mayInterruptIfRunning);
+				return super.cancel(mayInterruptIfRunning);
+			}
+		};
 	}
 
 	/**
@@ -1293,6 +1452,10 @@ public class RulesToolkit {
 	 */
 	// FIXME: Generalize this a bit, get the top N frames
 	public static String getSecondFrameInMostCommonTrace(IItemCollection items) {
+		return items.getDerivedValue(SECOND_FRAME_IN_MOST_COMMON_TRACE);
+	}
+
+	private static String calculateSecondFrameInMostCommonTrace(IItemCollection items) {
 		FrameSeparator sep = new FrameSeparator(FrameSeparator.FrameCategorization.LINE, false);
 		StacktraceModel stacktraceModel = new StacktraceModel(false, sep, items);
 		Branch firstBranch = stacktraceModel.getRootFork().getBranch(0);
@@ -1412,6 +1575,10 @@ public class RulesToolkit {
 	 * @return the earliest start time in the provided collection
 	 */
 	public static IQuantity getEarliestStartTime(IItemCollection items) {
+		return items.getDerivedValue(EARLIEST_START_TIME);
+	}
+
+	private static IQuantity calculateEarliestStartTime(IItemCollection items) {
 		IQuantity earliestStartTime = null;
 		for (IItemIterable iItemIterable : items) {
 			IMemberAccessor<IQuantity, IItem> startTimeAccessor = JfrAttributes.START_TIME
@@ -1472,6 +1639,10 @@ public class RulesToolkit {
 	 * @return the latest end time in the provided collection
 	 */
 	public static IQuantity getLatestEndTime(IItemCollection items) {
+		return items.getDerivedValue(LATEST_END_TIME);
+	}
+
+	private static IQuantity calculateLatestEndTime(IItemCollection items) {
 		IQuantity latestEndTime = null;
 		for (IItemIterable iItemIterable : items) {
 			IMemberAccessor<IQuantity, IItem> endTimeAccessor = JfrAttributes.END_TIME
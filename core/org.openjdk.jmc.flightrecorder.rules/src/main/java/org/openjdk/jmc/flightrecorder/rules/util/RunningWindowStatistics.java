@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.rules.util;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Count, sum, minimum and maximum of the values in a sliding window, updated incrementally as
+ * values enter and leave the window.
+ * <p>
+ * Values enter the window at the end using {@link #add(double)} and leave it from the start using
+ * {@link #removeFirst()}, as when two pointers are advanced through ordered items. The minimum and
+ * maximum are tracked using monotonic queues, so all operations take amortized constant time
+ * regardless of the window size.
+ * <p>
+ * The sum is updated by adding and subtracting values, so it may accumulate rounding errors if
+ * values of very different magnitudes are passed through the window.
+ */
+public final class RunningWindowStatistics {
+
+	private double[] values = new double[16];
+	// Sequence number of the first value in the window, and of the next value to add
+	private long head;
+	private long tail;
+	private double sum;
+	// Sequence numbers of the values that may become the minimum or maximum of the window
+	private final SequenceQueue minQueue = new SequenceQueue();
+	private final SequenceQueue maxQueue = new SequenceQueue();
+
+	/**
+	 * Add a value at the end of the window.
+	 *
+	 * @param value
+	 *            value to add
+	 */
+	public void add(double value) {
+		if (tail - head == values.length) {
+			double[] newValues = new double[values.length * 2];
+			for (long i = head; i < tail; i++) {
+				newValues[(int) (i % newValues.length)] = get(i);
+			}
+			values = newValues;
+		}
+		values[(int) (tail % values.length)] = value;
+		while (!minQueue.isEmpty() && get(minQueue.peekLast()) >= value) {
+			minQueue.removeLast();
+		}
+		minQueue.addLast(tail);
+		while (!maxQueue.isEmpty() && get(maxQueue.peekLast()) <= value) {
+			maxQueue.removeLast();
+		}
+		maxQueue.addLast(tail);
+		tail++;
+		sum += value;
+	}
+
+	/**
+	 * Remove the value at the start of the window.
+	 *
+	 * @return the removed value
+	 * @throws NoSuchElementException
+	 *             if the window is empty
+	 */
+	public double removeFirst() {
+		if (head == tail) {
+			throw new NoSuchElementException();
+		}
+		double value = get(head);
+		if (minQueue.peekFirst() == head) {
+			minQueue.removeFirst();
+		}
+		if (maxQueue.peekFirst() == head) {
+			maxQueue.removeFirst();
+		}
+		head++;
+		sum = head == tail ? 0 : sum - value;
+		return value;
+	}
+
+	/**
+	 * @return the number of values in the window
+	 */
+	public int getCount() {
+		return (int) (tail - head);
+	}
+
+	/**
+	 * @return the sum of the values in the window, 0 if the window is empty
+	 */
+	public double getSum() {
+		return sum;
+	}
+
+	/**
+	 * @return the average of the values in the window, {@link Double#NaN} if the window is empty
+	 */
+	public double getAverage() {
+		return head == tail ? Double.NaN : sum / (tail - head);
+	}
+
+	/**
+	 * @return the lowest value in the window, {@link Double#NaN} if the window is empty
+	 */
+	public double getMin() {
+		return minQueue.isEmpty() ? Double.NaN : get(minQueue.peekFirst());
+	}
+
+	/**
+	 * @return the highest value in the window, {@link Double#NaN} if the window is empty
+	 */
+	public double getMax() {
+		return maxQueue.isEmpty() ? Double.NaN : get(maxQueue.peekFirst());
+	}
+
+	private double get(long sequence) {
+		return values[(int) (sequence % values.length)];
+	}
+
+	/**
+	 * A double ended queue of sequence numbers, backed by a growable ring buffer.
+	 */
+	private static final class SequenceQueue {
+		private long[] elements = new long[16];
+		private int first;
+		private int size;
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		long peekFirst() {
+			return elements[first];
+		}
+
+		long peekLast() {
+			return elements[(first + size - 1) % elements.length];
+		}
+
+		void addLast(long sequence) {
+			if (size == elements.length) {
+				long[] newElements = Arrays.copyOfRange(elements, first, first + elements.length * 2);
+				System.arraycopy(elements, 0, newElements, elements.length - first, first);
+				elements = newElements;
+				first = 0;
+			}
+			elements[(first + size) % elements.length] = sequence;
+			size++;
+		}
+
+		void removeFirst() {
+			first = (first + 1) % elements.length;
+			size--;
+		}
+
+		void removeLast() {
+			size--;
+		}
+	}
+}
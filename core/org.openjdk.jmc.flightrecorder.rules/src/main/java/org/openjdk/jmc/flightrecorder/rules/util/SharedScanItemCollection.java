@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.rules.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.openjdk.jmc.common.item.AggregationBatch;
+import org.openjdk.jmc.common.item.DerivedValueCache;
+import org.openjdk.jmc.common.item.IAggregator;
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.item.IItemConsumer;
+import org.openjdk.jmc.common.item.IItemFilter;
+import org.openjdk.jmc.common.item.IItemIterable;
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.IRange;
+
+/**
+ * An item collection that shares aggregate values and scans between all rules that are evaluated
+ * together.
+ * <p>
+ * Many rules calculate the same aggregates, using the filter and aggregator constants in
+ * {@code JdkFilters} and {@code JdkAggregators}. This collection remembers the aggregate values for
+ * each chain of applied filters, so that each distinct aggregate is only calculated once. If
+ * several rules request the same aggregate at the same time, then the other rules wait for the
+ * first one to calculate it.
+ * <p>
+ * Different aggregates are calculated together when possible. Aggregates that are requested while
+ * another aggregate is being calculated are collected, and when the calculation is done, all the
+ * collected aggregates for the same chain of filters are calculated in a single pass over the items
+ * using an {@link AggregationBatch}. Since the rules are evaluated in parallel, this lets rules
+ * that start at the same time share their scans.
+ * <p>
+ * Filters and aggregators are compared by identity, since they in general do not implement
+ * equality. Aggregates that use filters or aggregators created for each call are therefore
+ * calculated each time, just as for the underlying collection.
+ * <p>
+ * Other values that several rules calculate from the items, such as the recording time range, are
+ * shared in the same way by {@link #getDerivedValue(Function)}. The functions are given this
+ * collection, so the aggregates that they use are also shared.
+ */
+class SharedScanItemCollection implements IItemCollection {
+
+	private final IItemCollection items;
+	private final List<IItemFilter> filters;
+	private final ScanBatcher batcher;
+	private final DerivedValueCache values;
+
+	SharedScanItemCollection(IItemCollection items) {
+		// The values are only kept while the rules are evaluated, so there is no need to limit them
+		this(items, Collections.<IItemFilter> emptyList(), createBatcher(items),
+				new DerivedValueCache(Integer.MAX_VALUE));
+	}
+
+	private SharedScanItemCollection(IItemCollection items, List<IItemFilter> filters, ScanBatcher batcher,
+			DerivedValueCache values) {
+		this.items = items;
+		this.filters = filters;
+		this.batcher = batcher;
+		this.values = values;
+	}
+
+	private static ScanBatcher createBatcher(IItemCollection items) {
+		// Incremental collections keep aggregate states for each segment, which a full scan would bypass
+		return items instanceof IncrementalItemCollection ? null : new ScanBatcher();
+	}
+
+	@Override
+	public Iterator<IItemIterable> iterator() {
+		return items.iterator();
+	}
+
+	@Override
+	public IItemCollection apply(IItemFilter filter) {
+		List<IItemFilter> newFilters = new ArrayList<>(filters.size() + 1);
+		newFilters.addAll(filters);
+		newFilters.add(filter);
+		return new SharedScanItemCollection(items.apply(filter), newFilters, batcher, values.forFilter(filter));
+	}
+
+	@Override
+	public <V, C extends IItemConsumer<C>> V getAggregate(final IAggregator<V, C> aggregator) {
+		return values.get(aggregator, new Supplier<V>() {
+
+			@Override
+			public V get() {
+				if (batcher == null) {
+					return items.getAggregate(aggregator);
+				}
+				return batcher.aggregate(items, filters, aggregator);
+			}
+		});
+	}
+
+	@Override
+	public <V> V getDerivedValue(final Function<IItemCollection, V> function) {
+		return values.get(function, new Supplier<V>() {
+
+			@Override
+			public V get() {
+				return function.apply(SharedScanItemCollection.this);
+			}
+		});
+	}
+
+	@Override
+	public boolean hasItems() {
+		return items.hasItems();
+	}
+
+	@Override
+	public Set<IRange<IQuantity>> getTimeRanges() {
+		return items.getTimeRanges();
+	}
+
+	/**
+	 * An aggregate that is waiting to be calculated.
+	 */
+	private static final class Request<V, C extends IItemConsumer<C>> {
+		final List<IItemFilter> filters;
+		final IAggregator<V, C> aggregator;
+		AggregationBatch.Aggregate<V> aggregate;
+		V value;
+		boolean done;
+		boolean failed;
+
+		Request(List<IItemFilter> filters, IAggregator<V, C> aggregator) {
+			this.filters = filters;
+			this.aggregator = aggregator;
+		}
+
+		void calculate(IItemCollection items) {
+			value = items.getAggregate(aggregator);
+		}
+
+		void addTo(AggregationBatch batch) {
+			aggregate = batch.add(aggregator);
+		}
+
+		void collect() {
+			value = aggregate.getValue();
+		}
+	}
+
+	/**
+	 * Calculates aggregates for all collections created from the same collection. Only one thread
+	 * at a time scans the items for each chain of filters. The requests for a chain of filters that
+	 * arrive meanwhile are queued, and are all calculated by the next scan for that chain.
+	 */
+	private static final class ScanBatcher {
+		private final List<Request<?, ?>> pending = new ArrayList<>();
+		private final List<List<IItemFilter>> scanning = new ArrayList<>();
+
+		<V, C extends IItemConsumer<C>> V aggregate(
+			IItemCollection items, List<IItemFilter> filters, IAggregator<V, C> aggregator) {
+			Request<V, C> request = new Request<>(filters, aggregator);
+			List<Request<?, ?>> batch = new ArrayList<>();
+			synchronized (this) {
+				pending.add(request);
+				try {
+					while (!request.done && isScanning(filters)) {
+						wait();
+					}
+				} catch (InterruptedException e) {
+					pending.remove(request);
+					Thread.currentThread().interrupt();
+					return items.getAggregate(aggregator);
+				}
+				if (!request.done) {
+					scanning.add(filters);
+					Iterator<Request<?, ?>> it = pending.iterator();
+					while (it.hasNext()) {
+						Request<?, ?> r = it.next();
+						if (isSameFilters(r.filters, filters)) {
+							batch.add(r);
+							it.remove();
+						}
+					}
+				}
+			}
+			if (!batch.isEmpty()) {
+				scan(items, filters, batch);
+			}
+			if (request.failed) {
+				return items.getAggregate(aggregator);
+			}
+			return request.value;
+		}
+
+		private void scan(IItemCollection items, List<IItemFilter> filters, List<Request<?, ?>> batch) {
+			boolean failed = true;
+			try {
+				if (batch.size() == 1) {
+					batch.get(0).calculate(items);
+				} else {
+					AggregationBatch aggregationBatch = new AggregationBatch();
+					for (Request<?, ?> r : batch) {
+						r.addTo(aggregationBatch);
+					}
+					aggregationBatch.execute(items);
+					for (Request<?, ?> r : batch) {
+						r.collect();
+					}
+				}
+				failed = false;
+			} catch (RuntimeException e) {
+				if (batch.size() == 1) {
+					throw e;
+				}
+				// Calculate the requests separately instead, so that only the failing aggregator fails
+			} finally {
+				synchronized (this) {
+					for (Request<?, ?> r : batch) {
+						r.failed = failed;
+						r.done = true;
+					}
+					for (Iterator<List<IItemFilter>> it = scanning.iterator(); it.hasNext();) {
+						if (it.next() == filters) {
+							it.remove();
+							break;
+						}
+					}
+					notifyAll();
+				}
+			}
+		}
+
+		private boolean isScanning(List<IItemFilter> filters) {
+			for (List<IItemFilter> f : scanning) {
+				if (isSameFilters(f, filters)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private static boolean isSameFilters(List<IItemFilter> a, List<IItemFilter> b) {
+			if (a.size() != b.size()) {
+				return false;
+			}
+			for (int i = 0; i < a.size(); i++) {
+				if (a.get(i) != b.get(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
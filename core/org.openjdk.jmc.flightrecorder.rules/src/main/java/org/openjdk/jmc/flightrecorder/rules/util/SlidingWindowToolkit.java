@@ -32,20 +32,25 @@
  */
 package org.openjdk.jmc.flightrecorder.rules.util;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.FutureTask;
 
+import org.openjdk.jmc.common.item.IAttribute;
 import org.openjdk.jmc.common.item.IItem;
 import org.openjdk.jmc.common.item.IItemCollection;
 import org.openjdk.jmc.common.item.IItemFilter;
+import org.openjdk.jmc.common.item.IItemIterable;
 import org.openjdk.jmc.common.item.IMemberAccessor;
 import org.openjdk.jmc.common.item.ItemFilters;
 import org.openjdk.jmc.common.unit.IQuantity;
 import org.openjdk.jmc.common.unit.IRange;
+import org.openjdk.jmc.common.unit.IUnit;
 import org.openjdk.jmc.common.unit.QuantityRange;
 import org.openjdk.jmc.common.util.Pair;
 import org.openjdk.jmc.flightrecorder.JfrAttributes;
@@ -90,14 +95,14 @@ public class SlidingWindowToolkit {
 
 		IQuantity windowStart = null;
 
-		List<IItem> windowItems = new ArrayList<>();
+		Deque<IItem> windowItems = new ArrayDeque<>();
 
 		for (Iterator<IItem> iterator = items; iterator.hasNext() && callback.shouldContinue();) {
 			IItem item = iterator.next();
 			if (windowItems.isEmpty()) {
 				windowStart = posAccessor.getMember(item);
 			} else {
-				windowStart = posAccessor.getMember(windowItems.get(0));
+				windowStart = posAccessor.getMember(windowItems.getFirst());
 			}
 			windowItems.add(item);
 			IQuantity windowEnd = posAccessor.getMember(item);
@@ -113,17 +118,13 @@ public class SlidingWindowToolkit {
 			// FIXME: What should we do about empty time intervals?
 			if (slideSize == null) {
 				if (windowItems.size() > 1) {
-					windowItems.remove(0);
+					windowItems.removeFirst();
 				}
 			} else {
 				IQuantity newStart = windowStart.add(slideSize);
-				for (Iterator<IItem> it = windowItems.iterator(); it.hasNext() && callback.shouldContinue();) {
-					IItem wi = it.next();
-					if (posAccessor.getMember(wi).compareTo(newStart) < 0) {
-						it.remove();
-					} else {
-						break;
-					}
+				while (!windowItems.isEmpty() && callback.shouldContinue()
+						&& posAccessor.getMember(windowItems.getFirst()).compareTo(newStart) < 0) {
+					windowItems.removeFirst();
 				}
 			}
 		}
@@ -139,9 +140,11 @@ public class SlidingWindowToolkit {
 	}
 
 	/**
-	 * Runs a sliding window through all items, by calculating the window start and end and filter
-	 * through all the items. Suitable if the items are not guaranteed to be ordered, but is slower
-	 * than the ordered version.
+	 * Runs a sliding window through all items, by calculating the window start and end and
+	 * selecting the items in each window. Suitable if the items are not guaranteed to be ordered.
+	 * The items of each window are selected by a time range filter, which item collections loaded
+	 * from recordings answer using their time index, so the cost of a window is proportional to the
+	 * number of items in it.
 	 *
 	 * @param callback
 	 *            method that can do calculations on the items in the window.
@@ -158,9 +161,11 @@ public class SlidingWindowToolkit {
 	}
 
 	/**
-	 * Runs a sliding window through all items, by calculating the window start and end and filter
-	 * through all the items. Suitable if the items are not guaranteed to be ordered, but is slower
-	 * than the ordered version.
+	 * Runs a sliding window through all items, by calculating the window start and end and
+	 * selecting the items in each window. Suitable if the items are not guaranteed to be ordered.
+	 * The items of each window are selected by a time range filter, which item collections loaded
+	 * from recordings answer using their time index, so the cost of a window is proportional to the
+	 * number of items in it.
 	 *
 	 * @param callback
 	 *            method that can do calculations on the items in the window.
@@ -334,14 +339,23 @@ public class SlidingWindowToolkit {
 		final IUnorderedWindowValueFunction<V> valueFunction, final Comparator<V> valueComparator, boolean max,
 		boolean includeIntersecting) {
 
-		final List<Pair<V, IRange<IQuantity>>> valueList = new ArrayList<>();
+		final boolean findMax = max;
+		final List<Pair<V, IRange<IQuantity>>> minMaxWindow = new ArrayList<>(1);
 
 		slidingWindowUnordered(new IUnorderedWindowVisitor() {
 			@Override
 			public void visitWindow(IItemCollection items, IQuantity startTime, IQuantity endTime) {
 				V value = valueFunction.getValue(items, startTime, endTime);
 				if (value != null) {
-					valueList.add(new Pair<>(value, QuantityRange.createWithEnd(startTime, endTime)));
+					// Keep the first of equal windows
+					if (minMaxWindow.isEmpty()) {
+						minMaxWindow.add(new Pair<>(value, QuantityRange.createWithEnd(startTime, endTime)));
+					} else {
+						int comparison = valueComparator.compare(value, minMaxWindow.get(0).left);
+						if (findMax ? comparison > 0 : comparison < 0) {
+							minMaxWindow.set(0, new Pair<>(value, QuantityRange.createWithEnd(startTime, endTime)));
+						}
+					}
 				}
 			}
 
@@ -350,17 +364,180 @@ public class SlidingWindowToolkit {
 				return !cancellationSupplier.isCancelled();
 			}
 		}, items, windowSize, slideSize, includeIntersecting);
-		Comparator<Pair<V, IRange<IQuantity>>> comparator = new Comparator<Pair<V, IRange<IQuantity>>>() {
-			@Override
-			public int compare(Pair<V, IRange<IQuantity>> o1, Pair<V, IRange<IQuantity>> o2) {
-				return valueComparator.compare(o1.left, o2.left);
+		return minMaxWindow.isEmpty() ? null : minMaxWindow.get(0);
+	}
+
+	/**
+	 * Visitor interface used when calling {@link SlidingWindowToolkit#slidingWindowStatistics}
+	 */
+	public interface IWindowStatisticsVisitor {
+		void visitWindow(RunningWindowStatistics statistics, IQuantity startTime, IQuantity endTime);
+
+		boolean shouldContinue();
+	}
+
+	/**
+	 * Runs a sliding window through the values of an attribute, keeping the count, sum, minimum and
+	 * maximum of the values in the window. The windows are the same as those of
+	 * {@link #slidingWindowUnordered(IUnorderedWindowVisitor, IItemCollection, IQuantity, IQuantity)},
+	 * with the items that have an end time within the window.
+	 * <p>
+	 * Only the items that enter the window when it slides are selected from the item collection.
+	 * Their values are added to the running statistics, and the values of the items that have left
+	 * the window are removed from them, so no window is aggregated from scratch. Items that have no
+	 * value for the attribute are ignored.
+	 *
+	 * @param callback
+	 *            method that can do calculations on the statistics of the window
+	 * @param items
+	 *            input items
+	 * @param attribute
+	 *            the attribute to get values from
+	 * @param unit
+	 *            the unit to keep the values in
+	 * @param windowSize
+	 *            size for the sliding window
+	 * @param slideSize
+	 *            how big the slide should be
+	 */
+	public static void slidingWindowStatistics(
+		IWindowStatisticsVisitor callback, IItemCollection items, IAttribute<IQuantity> attribute, IUnit unit,
+		IQuantity windowSize, IQuantity slideSize) {
+		IQuantity first = RulesToolkit.getEarliestEndTime(items);
+		IQuantity last = RulesToolkit.getLatestEndTime(items);
+
+		if (first == null) {
+			return;
+		}
+
+		RunningWindowStatistics statistics = new RunningWindowStatistics();
+		// End times of the values in the statistics, in the same order
+		Deque<IQuantity> endTimes = new ArrayDeque<>();
+		IQuantity windowStart = first;
+		IQuantity windowEnd = windowStart.add(windowSize);
+		IItemFilter entering = ItemFilters.interval(JfrAttributes.END_TIME, windowStart, true, windowEnd, true);
+		do {
+			addValues(items.apply(entering), attribute, unit, statistics, endTimes);
+			while (!endTimes.isEmpty() && endTimes.getFirst().compareTo(windowStart) < 0) {
+				endTimes.removeFirst();
+				statistics.removeFirst();
 			}
-		};
-		if (valueList.isEmpty()) {
-			return null;
+
+			callback.visitWindow(statistics, windowStart, windowEnd);
+
+			IQuantity nextEnd = windowEnd.add(slideSize);
+			entering = ItemFilters.interval(JfrAttributes.END_TIME, windowEnd, false, nextEnd, true);
+			windowStart = windowStart.add(slideSize);
+			windowEnd = nextEnd;
+		} while (windowStart.compareTo(last) < 0 && callback.shouldContinue());
+	}
+
+	private static final class WindowValue {
+		final IQuantity endTime;
+		final double value;
+
+		WindowValue(IQuantity endTime, double value) {
+			this.endTime = endTime;
+			this.value = value;
 		}
-		Pair<V, IRange<IQuantity>> minMaxWindow = max ? Collections.max(valueList, comparator)
-				: Collections.min(valueList, comparator);
-		return minMaxWindow;
+	}
+
+	private static final Comparator<WindowValue> END_TIME_ORDER = new Comparator<WindowValue>() {
+
+		@Override
+		public int compare(WindowValue o1, WindowValue o2) {
+			return o1.endTime.compareTo(o2.endTime);
+		}
+	};
+
+	/*
+	 * Add the values of items to the statistics in end time order. The items all end after the
+	 * values that are already in the statistics, so the statistics stay ordered by end time.
+	 */
+	private static void addValues(
+		IItemCollection items, IAttribute<IQuantity> attribute, IUnit unit, RunningWindowStatistics statistics,
+		Deque<IQuantity> endTimes) {
+		List<WindowValue> values = new ArrayList<>();
+		for (IItemIterable ii : items) {
+			IMemberAccessor<IQuantity, IItem> valueAccessor = attribute.getAccessor(ii.getType());
+			IMemberAccessor<IQuantity, IItem> endAccessor = JfrAttributes.END_TIME.getAccessor(ii.getType());
+			if (valueAccessor == null || endAccessor == null) {
+				continue;
+			}
+			for (IItem item : ii) {
+				IQuantity value = valueAccessor.getMember(item);
+				if (value != null) {
+					values.add(new WindowValue(endAccessor.getMember(item), value.doubleValueIn(unit)));
+				}
+			}
+		}
+		// Stable sort, so values with equal end times keep their order
+		Collections.sort(values, END_TIME_ORDER);
+		for (WindowValue value : values) {
+			statistics.add(value.value);
+			endTimes.add(value.endTime);
+		}
+	}
+
+	/**
+	 * Value function used when calling
+	 * {@link SlidingWindowToolkit#slidingWindowStatisticsMinMaxValue}
+	 */
+	public interface IWindowStatisticsValueFunction {
+		IQuantity getValue(RunningWindowStatistics statistics, IQuantity startTime, IQuantity endTime);
+	}
+
+	/**
+	 * Calculates max/min window quantity value of the statistics of an attribute. See
+	 * {@link #slidingWindowStatistics(IWindowStatisticsVisitor, IItemCollection, IAttribute, IUnit, IQuantity, IQuantity)}.
+	 *
+	 * @param items
+	 *            items to use for evaluation
+	 * @param attribute
+	 *            the attribute to get values from
+	 * @param unit
+	 *            the unit to keep the values in
+	 * @param windowSize
+	 *            window size
+	 * @param cancellationSupplier
+	 *            if the evaluation should be cancelled
+	 * @param valueFunction
+	 *            provides the window value for the statistics of the window
+	 * @param max
+	 *            true to get the max value, false to get min value
+	 * @return min/max window value and range
+	 */
+	public static Pair<IQuantity, IRange<IQuantity>> slidingWindowStatisticsMinMaxValue(
+		IItemCollection items, IAttribute<IQuantity> attribute, IUnit unit, IQuantity windowSize,
+		final FutureTask<Result> cancellationSupplier, final IWindowStatisticsValueFunction valueFunction,
+		boolean max) {
+		IQuantity slideSize = windowSize.getUnit().quantity(windowSize.ratioTo(windowSize.getUnit().quantity(2)));
+
+		final boolean findMax = max;
+		final List<Pair<IQuantity, IRange<IQuantity>>> minMaxWindow = new ArrayList<>(1);
+
+		slidingWindowStatistics(new IWindowStatisticsVisitor() {
+			@Override
+			public void visitWindow(RunningWindowStatistics statistics, IQuantity startTime, IQuantity endTime) {
+				IQuantity value = valueFunction.getValue(statistics, startTime, endTime);
+				if (value != null) {
+					// Keep the first of equal windows
+					if (minMaxWindow.isEmpty()) {
+						minMaxWindow.add(new Pair<>(value, QuantityRange.createWithEnd(startTime, endTime)));
+					} else {
+						int comparison = value.compareTo(minMaxWindow.get(0).left);
+						if (findMax ? comparison > 0 : comparison < 0) {
+							minMaxWindow.set(0, new Pair<>(value, QuantityRange.createWithEnd(startTime, endTime)));
+						}
+					}
+				}
+			}
+
+			@Override
+			public boolean shouldContinue() {
+				return !cancellationSupplier.isCancelled();
+			}
+		}, items, attribute, unit, windowSize, slideSize);
+		return minMaxWindow.isEmpty() ? null : minMaxWindow.get(0);
 	}
 }
@@ -37,42 +37,79 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import org.openjdk.jmc.common.collection.IteratorToolkit;
+import org.openjdk.jmc.common.item.DerivedValueCache;
 import org.openjdk.jmc.common.item.IAggregator;
 import org.openjdk.jmc.common.item.IItem;
 import org.openjdk.jmc.common.item.IItemCollection;
 import org.openjdk.jmc.common.item.IItemConsumer;
+import org.openjdk.jmc.common.item.IItemConsumerFactory;
 import org.openjdk.jmc.common.item.IItemFilter;
 import org.openjdk.jmc.common.item.IItemIterable;
 import org.openjdk.jmc.common.item.IType;
+import org.openjdk.jmc.common.item.ItemFilterCompiler;
 import org.openjdk.jmc.common.unit.IQuantity;
 import org.openjdk.jmc.common.unit.IRange;
 import org.openjdk.jmc.common.util.PredicateToolkit;
 import org.openjdk.jmc.flightrecorder.internal.EventArray;
 import org.openjdk.jmc.flightrecorder.internal.EventArrays;
+import org.openjdk.jmc.flightrecorder.internal.EventTimeIndex;
 
 /**
  * Implementation of {@link IItemCollection} using {@link IItemIterable} iterators.
+ * <p>
+ * Filters that limit the start time, end time or lifetime of the items are answered using the time
+ * index of each event array, so that only the events within the time range are scanned. The filters
+ * are compiled into predicates for each event type using {@link ItemFilterCompiler}.
+ * <p>
+ * Aggregates can optionally be computed in parallel, by consuming ranges of the event arrays on a
+ * fork/join pool and merging the consumers. This is only done for aggregators that are
+ * {@link IAggregator#isParallelSafe() parallel safe}, other aggregates are still computed serially.
+ * <p>
+ * Derived values are cached in a {@link DerivedValueCache} that is shared by a loaded collection
+ * and all collections created from it by applying filters.
  */
 class EventCollection implements IItemCollection {
 
+	/**
+	 * If set to {@code true}, aggregates are computed in parallel using the common fork/join pool,
+	 * for the aggregators that report that they are {@link IAggregator#isParallelSafe() parallel
+	 * safe}.
+	 */
+	private static final String PARALLEL_AGGREGATION_PROPERTY_KEY = "org.openjdk.jmc.flightrecorder.aggregation.parallel"; //$NON-NLS-1$
+	/**
+	 * The maximum number of events consumed by each task in parallel aggregation.
+	 */
+	private static final String AGGREGATION_TASK_SIZE_PROPERTY_KEY = "org.openjdk.jmc.flightrecorder.aggregation.taskSize"; //$NON-NLS-1$
+	private static final int DEFAULT_TASK_SIZE = 1 << 14;
+
 	private static class EventTypeEntry implements IItemIterable {
 
 		EventTypeEntry(EventArray events) {
-			this.events = events;
-			predicate = PredicateToolkit.truePredicate();
+			this(events, PredicateToolkit.<IItem> truePredicate(), 0, events.size());
 		}
 
-		EventTypeEntry(EventArray events, Predicate<IItem> predicate) {
+		EventTypeEntry(EventArray events, Predicate<IItem> predicate, int from, int to) {
 			this.events = events;
 			this.predicate = predicate;
+			this.from = from;
+			this.to = to;
 		}
 
 		final EventArray events;
 		final Predicate<IItem> predicate;
+		// The range of events that may match the predicate, found using the time index
+		final int from;
+		final int to;
 
 		@Override
 		public IType<IItem> getType() {
@@ -81,7 +118,7 @@ class EventCollection implements IItemCollection {
 
 		@Override
 		public Iterator<IItem> iterator() {
-			return buildIterator(events.getEvents(), predicate);
+			return buildIterator(events, from, to, predicate);
 		}
 
 		@Override
@@ -100,13 +137,26 @@ class EventCollection implements IItemCollection {
 				}
 				return c;
 			}
-			return events.getEvents().length;
+			return to - from;
 		}
 
 		@Override
 		public EventTypeEntry apply(Predicate<IItem> filter) {
 			Predicate<IItem> newPredicate = PredicateToolkit.and(Arrays.asList(filter, predicate));
-			return new EventTypeEntry(events, newPredicate);
+			return new EventTypeEntry(events, newPredicate, from, to);
+		}
+
+		EventTypeEntry apply(Predicate<IItem> filter, EventTimeIndex.Bounds bounds) {
+			EventTypeEntry entry = apply(filter);
+			if (bounds != null && !PredicateToolkit.isFalseGuaranteed(entry.predicate)) {
+				EventTimeIndex index = events.getTimeIndex();
+				if (index.isAvailable()) {
+					int newFrom = Math.max(from, index.getFromIndex(bounds));
+					int newTo = Math.max(newFrom, Math.min(to, index.getToIndex(bounds)));
+					return new EventTypeEntry(events, entry.predicate, newFrom, newTo);
+				}
+			}
+			return entry;
 		}
 
 	}
@@ -114,6 +164,7 @@ class EventCollection implements IItemCollection {
 	private final Set<IType<IItem>> types = new HashSet<>();
 	private final ArrayList<EventTypeEntry> items;
 	private final Set<IRange<IQuantity>> chunkRanges;
+	private final DerivedValueCache derivedValues;
 
 	static IItemCollection build(EventArrays events) {
 		ArrayList<EventTypeEntry> items = new ArrayList<>(events.getArrays().length);
@@ -121,12 +172,14 @@ class EventCollection implements IItemCollection {
 			EventTypeEntry entry = new EventTypeEntry(ea);
 			items.add(entry);
 		}
-		return new EventCollection(items, events.getChunkTimeranges());
+		return new EventCollection(items, events.getChunkTimeranges(), new DerivedValueCache());
 	}
 
-	private EventCollection(ArrayList<EventTypeEntry> items, Set<IRange<IQuantity>> chunkRanges) {
+	private EventCollection(ArrayList<EventTypeEntry> items, Set<IRange<IQuantity>> chunkRanges,
+			DerivedValueCache derivedValues) {
 		this.items = items;
 		this.chunkRanges = chunkRanges;
+		this.derivedValues = derivedValues;
 		for (EventTypeEntry e : items) {
 			types.add(e.events.getType());
 		}
@@ -135,22 +188,23 @@ class EventCollection implements IItemCollection {
 	@Override
 	public EventCollection apply(IItemFilter filter) {
 		ArrayList<EventTypeEntry> newEntries = new ArrayList<>();
+		EventTimeIndex.Bounds bounds = EventTimeIndex.getBounds(filter);
 		for (EventTypeEntry e : items) {
-			EventTypeEntry newEntry = e.apply(filter.getPredicate(e.events.getType()));
+			EventTypeEntry newEntry = e.apply(ItemFilterCompiler.compile(filter, e.events.getType()), bounds);
 			if (PredicateToolkit.isTrueGuaranteed(newEntry.predicate)) {
 				newEntries.add(e);
 			} else if (!PredicateToolkit.isFalseGuaranteed(newEntry.predicate)) {
 				newEntries.add(newEntry);
 			}
 		}
-		return new EventCollection(newEntries, chunkRanges);
+		return new EventCollection(newEntries, chunkRanges, derivedValues.forFilter(filter));
 	}
 
-	private static Iterator<IItem> buildIterator(IItem[] array, Predicate<? super IItem> filter) {
+	private static Iterator<IItem> buildIterator(EventArray events, int from, int to, Predicate<? super IItem> filter) {
 		if (isFiltered(filter)) {
-			return IteratorToolkit.filter(IteratorToolkit.of(array), filter);
+			return IteratorToolkit.filter(events.iterator(from, to), filter);
 		} else {
-			return IteratorToolkit.of(array);
+			return events.iterator(from, to);
 		}
 	}
 
@@ -176,9 +230,95 @@ class EventCollection implements IItemCollection {
 
 	@Override
 	public <V, C extends IItemConsumer<C>> V getAggregate(IAggregator<V, C> aggregator) {
+		if (aggregator.isParallelSafe() && Boolean.getBoolean(PARALLEL_AGGREGATION_PROPERTY_KEY)) {
+			int taskSize = Math.max(1, Integer.getInteger(AGGREGATION_TASK_SIZE_PROPERTY_KEY, DEFAULT_TASK_SIZE));
+			long count = 0;
+			for (EventTypeEntry e : items) {
+				if (aggregator.acceptType(e.getType())) {
+					count += e.to - e.from;
+				}
+			}
+			if (count > taskSize) {
+				return aggregateParallel(aggregator, taskSize);
+			}
+		}
 		return aggregate(aggregator, items.iterator());
 	}
 
+	/**
+	 * Aggregate the items by splitting the event arrays into ranges that are consumed in parallel.
+	 * The consumers for the ranges of each event array are merged in event order, so that the
+	 * aggregator gets one consumer per type, just like when aggregating serially.
+	 */
+	private <V, C extends IItemConsumer<C>> V aggregateParallel(
+		final IAggregator<V, C> aggregator, final int taskSize) {
+		final List<AggregationTask<C>> tasks = new ArrayList<>();
+		for (EventTypeEntry e : items) {
+			if (aggregator.acceptType(e.getType())) {
+				tasks.add(new AggregationTask<>(aggregator, e, e.from, e.to, taskSize));
+			}
+		}
+		ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+		List<C> consumers = new ArrayList<>(tasks.size());
+		for (AggregationTask<C> task : tasks) {
+			consumers.add(task.join());
+		}
+		return aggregator.getValue(consumers.iterator());
+	}
+
+	private static class AggregationTask<C extends IItemConsumer<C>> extends RecursiveTask<C> {
+		private static final long serialVersionUID = 1L;
+
+		private final IItemConsumerFactory<C> consumerFactory;
+		private final EventTypeEntry entry;
+		private final int from;
+		private final int to;
+		private final int taskSize;
+
+		AggregationTask(IItemConsumerFactory<C> consumerFactory, EventTypeEntry entry, int from, int to, int taskSize) {
+			this.consumerFactory = consumerFactory;
+			this.entry = entry;
+			this.from = from;
+			this.to = to;
+			this.taskSize = taskSize;
+		}
+
+		@Override
+		protected C compute() {
+			if (to - from <= taskSize) {
+				C consumer = consumerFactory.newItemConsumer(entry.getType());
+				EventArray events = entry.events;
+				Predicate<IItem> predicate = entry.predicate;
+				if (isFiltered(predicate)) {
+					for (int i = from; i < to; i++) {
+						IItem event = events.getEvent(i);
+						if (predicate.test(event)) {
+							consumer.consume(event);
+						}
+					}
+				} else {
+					for (int i = from; i < to; i++) {
+						consumer.consume(events.getEvent(i));
+					}
+				}
+				return consumer;
+			}
+			int middle = (from + to) >>> 1;
+			AggregationTask<C> first = new AggregationTask<>(consumerFactory, entry, from, middle, taskSize);
+			AggregationTask<C> second = new AggregationTask<>(consumerFactory, entry, middle, to, taskSize);
+			second.fork();
+			C consumer = first.compute();
+			return consumer.merge(second.join());
+		}
+	}
+
 	private static <V, C extends IItemConsumer<C>> V aggregate(
 		final IAggregator<V, C> aggregator, final Iterator<? extends IItemIterable> items) {
 		return aggregator.getValue(new Iterator<C>() {
@@ -218,6 +358,17 @@ class EventCollection implements IItemCollection {
 		});
 	}
 
+	@Override
+	public <V> V getDerivedValue(final Function<IItemCollection, V> function) {
+		return derivedValues.get(function, new Supplier<V>() {
+
+			@Override
+			public V get() {
+				return function.apply(EventCollection.this);
+			}
+		});
+	}
+
 	@Override
 	public Set<IRange<IQuantity>> getTimeRanges() {
 		return chunkRanges;
@@ -36,14 +36,20 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.SequenceInputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import org.openjdk.jmc.common.io.IOToolkit;
 import org.openjdk.jmc.common.item.IItemCollection;
 import org.openjdk.jmc.flightrecorder.internal.EventArrays;
 import org.openjdk.jmc.flightrecorder.internal.FlightRecordingLoader;
+import org.openjdk.jmc.flightrecorder.internal.IChunkSupplier;
+import org.openjdk.jmc.flightrecorder.internal.parser.Chunk;
 import org.openjdk.jmc.flightrecorder.parser.IParserExtension;
 import org.openjdk.jmc.flightrecorder.parser.ParserExtensionRegistry;
 
@@ -53,21 +59,85 @@ import org.openjdk.jmc.flightrecorder.parser.ParserExtensionRegistry;
  */
 public class JfrLoaderToolkit {
 
+	/**
+	 * If this system property is set to {@code true}, then uncompressed recording files are memory
+	 * mapped instead of being read into heap buffers.
+	 */
+	private static final String MAPPED_PARSER_PROPERTY_KEY = "org.openjdk.jmc.flightrecorder.parser.mapped"; //$NON-NLS-1$
+
 	/**
 	 * @param files
 	 *            the files to read the recording from
 	 * @param extensions
 	 *            the extensions to use when parsing the file
+	 * @param pool
+	 *            the pool to load chunks in, or {@code null} to use a new pool
 	 * @return an object holding an array of EventArrays (one event type per EventArray)
 	 */
-	private static EventArrays loadFile(List<File> files, List<? extends IParserExtension> extensions)
+	private static EventArrays loadFile(
+		List<File> files, List<? extends IParserExtension> extensions, ForkJoinPool pool)
 			throws IOException, CouldNotLoadRecordingException {
+		if (Boolean.getBoolean(MAPPED_PARSER_PROPERTY_KEY) && !files.isEmpty() && !hasCompressedFile(files)) {
+			return loadMappedFiles(files, extensions, pool);
+		}
 		List<InputStream> streams = new ArrayList<>(files.size());
 		for (File file : files) {
 			streams.add(IOToolkit.openUncompressedStream(file));
 		}
 		try (InputStream stream = new SequenceInputStream(Collections.enumeration(streams))) {
-			return FlightRecordingLoader.loadStream(stream, extensions, false, true);
+			return FlightRecordingLoader.loadStream(stream, extensions, false, true, pool);
+		}
+	}
+
+	private static boolean hasCompressedFile(List<File> files) throws IOException {
+		for (File file : files) {
+			if (IOToolkit.isCompressedFile(file)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param files
+	 *            the uncompressed files to memory map the recording from
+	 * @param extensions
+	 *            the extensions to use when parsing the file
+	 * @param pool
+	 *            the pool to load chunks in, or {@code null} to use a new pool
+	 * @return an object holding an array of EventArrays (one event type per EventArray)
+	 */
+	private static EventArrays loadMappedFiles(
+		List<File> files, List<? extends IParserExtension> extensions, ForkJoinPool pool)
+			throws IOException, CouldNotLoadRecordingException {
+		List<FileChannel> channels = new ArrayList<>(files.size());
+		try {
+			final List<IChunkSupplier> suppliers = new ArrayList<>(files.size());
+			for (File file : files) {
+				FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+				channels.add(channel);
+				suppliers.add(FlightRecordingLoader.createChunkSupplier(channel));
+			}
+			IChunkSupplier chunkSupplier = new IChunkSupplier() {
+				private final Iterator<IChunkSupplier> iterator = suppliers.iterator();
+				private IChunkSupplier current = iterator.next();
+
+				@Override
+				public Chunk getNextChunk(byte[] reusableBuffer) throws CouldNotLoadRecordingException, IOException {
+					Chunk chunk = current.getNextChunk(reusableBuffer);
+					while (chunk == null && iterator.hasNext()) {
+						current = iterator.next();
+						chunk = current.getNextChunk(reusableBuffer);
+					}
+					return chunk;
+				}
+			};
+			// Mapped buffers stay valid after the channels have been closed
+			return FlightRecordingLoader.readChunks(null, extensions, chunkSupplier, false, true, pool);
+		} finally {
+			for (FileChannel channel : channels) {
+				IOToolkit.closeSilently(channel);
+			}
 		}
 	}
 
@@ -138,7 +208,26 @@ public class JfrLoaderToolkit {
 	 */
 	public static IItemCollection loadEvents(List<File> files, List<? extends IParserExtension> extensions)
 			throws IOException, CouldNotLoadRecordingException {
-		return EventCollection.build(loadFile(files, extensions));
+		return loadEvents(files, extensions, null);
+	}
+
+	/**
+	 * Loads a recording from a sequence of potentially zipped or gzipped file using the supplied
+	 * parser extensions and thread pool. The pool is not shut down after loading, so it can be
+	 * shared between concurrent loads to bound the total number of parser threads.
+	 *
+	 * @param files
+	 *            the files to read the recording from
+	 * @param extensions
+	 *            the extensions to use when parsing the file
+	 * @param pool
+	 *            the pool to load chunks in, or {@code null} to use a new pool for this load only
+	 * @return the events in the recording
+	 */
+	public static IItemCollection loadEvents(
+		List<File> files, List<? extends IParserExtension> extensions, ForkJoinPool pool)
+			throws IOException, CouldNotLoadRecordingException {
+		return EventCollection.build(loadFile(files, extensions, pool));
 	}
 
 }
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.QuantityRange;
+import org.openjdk.jmc.common.unit.UnitLookup;
+
+/**
+ * The result of scanning the chunks of a recording file, which can be stored in a sidecar file next
+ * to the recording. The index holds the position, size and time range of each chunk. This makes it
+ * possible to choose which chunks to load from a recording that has been opened before without
+ * scanning the chunk headers again. The events are still parsed when the chunks are loaded, so this
+ * is not a cache of the parsed recording.
+ * <p>
+ * Resolved constant pools, event counts and event data are deliberately not stored. Event values
+ * include stack traces, arbitrary structs and types created by parser extensions, none of which
+ * have a serialized form, and reading such data back would rebuild the same objects as parsing the
+ * chunks does.
+ * <p>
+ * A stored index is only used if the size and modification time of the recording are unchanged and
+ * the chunk headers at the indexed positions have the same checksum as when the index was written.
+ */
+public final class ChunkScanIndex {
+
+	private static final Logger LOGGER = Logger.getLogger(ChunkScanIndex.class.getName());
+	/**
+	 * If this system property is set to {@code true}, then chunk scan indexes are stored in sidecar
+	 * files next to the recordings.
+	 */
+	private static final String INDEX_PROPERTY_KEY = "org.openjdk.jmc.flightrecorder.parser.chunkindex"; //$NON-NLS-1$
+	private static final String INDEX_FILE_SUFFIX = ".chunks"; //$NON-NLS-1$
+	private static final int INDEX_MAGIC = 0x4A4D4349; // JMCI
+	private static final int INDEX_VERSION = 2;
+	// Large enough to cover the header of both chunk format versions
+	private static final int CHUNK_HEADER_HASH_SIZE = 68;
+
+	private final List<ChunkInfo> chunks;
+
+	private ChunkScanIndex(List<ChunkInfo> chunks) {
+		this.chunks = Collections.unmodifiableList(chunks);
+	}
+
+	/**
+	 * Create an index from scanned chunks.
+	 *
+	 * @param chunks
+	 *            the chunks of the recording, as returned by
+	 *            {@link FlightRecordingLoader#readChunkInfo(IChunkSupplier)}
+	 * @return a new index
+	 */
+	public static ChunkScanIndex create(List<ChunkInfo> chunks) {
+		return new ChunkScanIndex(new ArrayList<>(chunks));
+	}
+
+	/**
+	 * @return the chunks of the recording, in file order
+	 */
+	public List<ChunkInfo> getChunks() {
+		return chunks;
+	}
+
+	/**
+	 * @return {@code true} if chunk scan indexes should be read from and written to sidecar files
+	 */
+	public static boolean isEnabled() {
+		return Boolean.getBoolean(INDEX_PROPERTY_KEY);
+	}
+
+	/**
+	 * @param recording
+	 *            an uncompressed recording file
+	 * @return the sidecar file used for storing the index of the recording
+	 */
+	public static File getIndexFile(File recording) {
+		return new File(recording.getParentFile(), recording.getName() + INDEX_FILE_SUFFIX);
+	}
+
+	/**
+	 * Read the stored index of a recording.
+	 *
+	 * @param recording
+	 *            an uncompressed recording file
+	 * @return the stored index, or {@code null} if there is no index or if it does not match the
+	 *         current contents of the recording file
+	 */
+	public static ChunkScanIndex read(File recording) {
+		File indexFile = getIndexFile(recording);
+		if (!indexFile.isFile()) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+			if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION) {
+				return null;
+			}
+			if (in.readLong() != recording.length() || in.readLong() != recording.lastModified()) {
+				return null;
+			}
+			long headerHash = in.readLong();
+			int chunkCount = in.readInt();
+			List<ChunkInfo> chunks = new ArrayList<>(chunkCount);
+			for (int i = 0; i < chunkCount; i++) {
+				long position = in.readLong();
+				long size = in.readLong();
+				IQuantity start = UnitLookup.EPOCH_NS.quantity(in.readLong());
+				IQuantity end = UnitLookup.EPOCH_NS.quantity(in.readLong());
+				chunks.add(new ChunkInfo(position, size, QuantityRange.createWithEnd(start, end)));
+			}
+			if (headerHash != hashChunkHeaders(recording, chunks)) {
+				return null;
+			}
+			return new ChunkScanIndex(chunks);
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Could not read chunk scan index " + indexFile, e); //$NON-NLS-1$
+			return null;
+		}
+	}
+
+	/**
+	 * Store the index of a recording in a sidecar file. Failure to write the index, for example
+	 * because the directory of the recording is not writable, is logged and otherwise ignored.
+	 *
+	 * @param recording
+	 *            the uncompressed recording file that the index was created for
+	 * @return {@code true} if the index was written
+	 */
+	public boolean write(File recording) {
+		File indexFile = getIndexFile(recording);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)))) {
+			out.writeInt(INDEX_MAGIC);
+			out.writeInt(INDEX_VERSION);
+			out.writeLong(recording.length());
+			out.writeLong(recording.lastModified());
+			out.writeLong(hashChunkHeaders(recording, chunks));
+			out.writeInt(chunks.size());
+			for (ChunkInfo chunk : chunks) {
+				out.writeLong(chunk.getChunkPosistion());
+				out.writeLong(chunk.getChunkSize());
+				out.writeLong(chunk.getChunkRange().getStart().clampedLongValueIn(UnitLookup.EPOCH_NS));
+				out.writeLong(chunk.getChunkRange().getEnd().clampedLongValueIn(UnitLookup.EPOCH_NS));
+			}
+			return true;
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Could not write chunk scan index " + indexFile, e); //$NON-NLS-1$
+			indexFile.delete();
+			return false;
+		}
+	}
+
+	private static long hashChunkHeaders(File recording, List<ChunkInfo> chunks) throws IOException {
+		CRC32 crc = new CRC32();
+		byte[] header = new byte[CHUNK_HEADER_HASH_SIZE];
+		try (RandomAccessFile raf = new RandomAccessFile(recording, "r")) { //$NON-NLS-1$
+			for (ChunkInfo chunk : chunks) {
+				int length = (int) Math.min(header.length, chunk.getChunkSize());
+				raf.seek(chunk.getChunkPosistion());
+				raf.readFully(header, 0, length);
+				crc.update(header, 0, length);
+			}
+		}
+		return crc.getValue();
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.internal;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.openjdk.jmc.common.item.IItem;
+import org.openjdk.jmc.common.item.IType;
+import org.openjdk.jmc.flightrecorder.internal.parser.EventColumns;
+
+/**
+ * An event array where the field values are stored in columns. No items are kept for the events.
+ * Items are created when the events are requested, as flyweights referring to a row in the columns,
+ * and items for the same row are equal.
+ */
+public class ColumnarEventArray extends EventArray {
+
+	private final EventColumns columns;
+
+	/**
+	 * @param columns
+	 *            the columns holding the values of the events, in array order
+	 * @param type
+	 *            the type of these events
+	 * @param typeCategory
+	 *            a string array defining a path-like category for the event type
+	 */
+	public ColumnarEventArray(EventColumns columns, IType<IItem> type, String[] typeCategory) {
+		super(type, typeCategory);
+		this.columns = columns;
+	}
+
+	@Override
+	public IItem[] getEvents() {
+		IItem[] events = new IItem[columns.size()];
+		for (int i = 0; i < events.length; i++) {
+			events[i] = columns.getItem(i);
+		}
+		return events;
+	}
+
+	@Override
+	public int size() {
+		return columns.size();
+	}
+
+	@Override
+	public IItem getEvent(int index) {
+		return columns.getItem(index);
+	}
+
+	@Override
+	public Iterator<IItem> iterator(final int from, final int to) {
+		if (from < 0 || from > to || to > columns.size()) {
+			throw new IllegalArgumentException("Cannot iterate from " + from + " to " + to //$NON-NLS-1$ //$NON-NLS-2$
+					+ " over " + columns.size() + " events"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		return new Iterator<IItem>() {
+			private int next = from;
+
+			@Override
+			public boolean hasNext() {
+				return next < to;
+			}
+
+			@Override
+			public IItem next() {
+				if (next >= to) {
+					throw new NoSuchElementException();
+				}
+				return columns.getItem(next++);
+			}
+		};
+	}
+}
@@ -32,6 +32,9 @@
  */
 package org.openjdk.jmc.flightrecorder.internal;
 
+import java.util.Iterator;
+
+import org.openjdk.jmc.common.collection.IteratorToolkit;
 import org.openjdk.jmc.common.item.IItem;
 import org.openjdk.jmc.common.item.IType;
 
@@ -43,6 +46,7 @@ public class EventArray {
 	private final IItem[] events;
 	private final IType<IItem> type;
 	private final String[] typeCategory;
+	private volatile EventTimeIndex timeIndex;
 
 	/**
 	 * @param events
@@ -58,10 +62,61 @@ public class EventArray {
 		this.typeCategory = typeCategory;
 	}
 
+	/**
+	 * Create an event array for subclasses that do not store the events as an array of items. Such
+	 * subclasses must override all methods that access the events.
+	 *
+	 * @param type
+	 *            the type of the events
+	 * @param typeCategory
+	 *            a string array defining a path-like category for the event type
+	 */
+	protected EventArray(IType<IItem> type, String[] typeCategory) {
+		this(null, type, typeCategory);
+	}
+
+	/**
+	 * Get the events as an array. Prefer {@link #size()}, {@link #getEvent(int)} and
+	 * {@link #iterator(int, int)}, since subclasses may have to create the array on each call.
+	 *
+	 * @return the events
+	 */
 	public IItem[] getEvents() {
 		return events;
 	}
 
+	/**
+	 * @return the number of events
+	 */
+	public int size() {
+		return events.length;
+	}
+
+	/**
+	 * Get an event. Subclasses may create the item on each call, but will then return equal items
+	 * for the same index.
+	 *
+	 * @param index
+	 *            event index
+	 * @return the event
+	 */
+	public IItem getEvent(int index) {
+		return events[index];
+	}
+
+	/**
+	 * Iterate over a range of the events.
+	 *
+	 * @param from
+	 *            index of the first event, inclusive
+	 * @param to
+	 *            index of the last event, exclusive
+	 * @return an iterator over the events in the range
+	 */
+	public Iterator<IItem> iterator(int from, int to) {
+		return IteratorToolkit.of(events, from, to);
+	}
+
 	public IType<IItem> getType() {
 		return type;
 	}
@@ -69,4 +124,19 @@ public class EventArray {
 	public String[] getTypeCategory() {
 		return typeCategory;
 	}
+
+	/**
+	 * Get the time index of the events. The index is built when first requested.
+	 *
+	 * @return the time index, which may not be available for range lookups
+	 */
+	public EventTimeIndex getTimeIndex() {
+		EventTimeIndex index = timeIndex;
+		if (index == null) {
+			// Concurrent callers may build the index more than once, but will get equivalent indexes
+			index = EventTimeIndex.build(this);
+			timeIndex = index;
+		}
+		return index;
+	}
 }
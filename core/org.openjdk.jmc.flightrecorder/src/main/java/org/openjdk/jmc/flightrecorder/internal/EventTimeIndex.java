@@ -0,0 +1,389 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.internal;
+
+import org.openjdk.jmc.common.item.IItem;
+import org.openjdk.jmc.common.item.IItemFilter;
+import org.openjdk.jmc.common.item.ILongAccessor;
+import org.openjdk.jmc.common.item.IMemberAccessor;
+import org.openjdk.jmc.common.item.ItemFilters;
+import org.openjdk.jmc.common.item.PersistableItemFilter.Kind;
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.IRange;
+import org.openjdk.jmc.common.unit.IUnit;
+import org.openjdk.jmc.common.unit.QuantitiesToolkit;
+import org.openjdk.jmc.flightrecorder.JfrAttributes;
+
+/**
+ * Time index for the events of an {@link EventArray}, used to answer time range filters by range
+ * lookups instead of by scanning all events.
+ * <p>
+ * The index is only built for event arrays that are sorted by start time, which is how the
+ * recording loader creates them. It holds the start times, and the highest end time of the events
+ * up to each index. When the times can be read as primitive values in a common unit, they are kept
+ * in long arrays, and quantities are only created for the few values visited by lookups. The start
+ * times are used to find the events starting in a time range, and the highest end times to skip the
+ * events that have all ended before a time range. The events found through the index are a superset
+ * of the matching events, so the filter predicate must still be applied to them.
+ */
+public final class EventTimeIndex {
+
+	/**
+	 * Time bounds that all items accepted by a filter must be within. A {@code null} bound means
+	 * that the filter does not limit the items in that direction.
+	 */
+	public static final class Bounds {
+		private IQuantity minStart;
+		private IQuantity maxStart;
+		private IQuantity minEnd;
+		private IQuantity maxEnd;
+
+		boolean isLimited() {
+			return minStart != null || maxStart != null || minEnd != null || maxEnd != null;
+		}
+
+		private void limitStart(IQuantity min, IQuantity max) {
+			minStart = maximum(minStart, min);
+			maxStart = minimum(maxStart, max);
+		}
+
+		private void limitEnd(IQuantity min, IQuantity max) {
+			minEnd = maximum(minEnd, min);
+			maxEnd = minimum(maxEnd, max);
+		}
+
+		private static IQuantity maximum(IQuantity a, IQuantity b) {
+			return a == null || (b != null && b.compareTo(a) > 0) ? b : a;
+		}
+
+		private static IQuantity minimum(IQuantity a, IQuantity b) {
+			return a == null || (b != null && b.compareTo(a) < 0) ? b : a;
+		}
+	}
+
+	private static final EventTimeIndex NO_INDEX = new EventTimeIndex(null, null, false);
+
+	private final TimeColumn startTimes;
+	private final TimeColumn maxEndTimes;
+	// True if no event ends before it starts, so that an upper end time limit also limits start time
+	private final boolean ordered;
+
+	private EventTimeIndex(TimeColumn startTimes, TimeColumn maxEndTimes, boolean ordered) {
+		this.startTimes = startTimes;
+		this.maxEndTimes = maxEndTimes;
+		this.ordered = ordered;
+	}
+
+	static EventTimeIndex build(EventArray events) {
+		IMemberAccessor<IQuantity, IItem> startAccessor = JfrAttributes.START_TIME.getAccessor(events.getType());
+		IMemberAccessor<IQuantity, IItem> endAccessor = JfrAttributes.END_TIME.getAccessor(events.getType());
+		if (startAccessor == null || endAccessor == null) {
+			return NO_INDEX;
+		}
+		if (startAccessor instanceof ILongAccessor && endAccessor instanceof ILongAccessor) {
+			@SuppressWarnings("unchecked")
+			EventTimeIndex index = buildPrimitive(events, (ILongAccessor<IItem>) startAccessor,
+					(ILongAccessor<IItem>) endAccessor);
+			if (index != null) {
+				return index;
+			}
+		}
+		int size = events.size();
+		IQuantity[] startTimes = new IQuantity[size];
+		IQuantity[] maxEndTimes = new IQuantity[size];
+		boolean ordered = true;
+		IQuantity maxEnd = null;
+		for (int i = 0; i < size; i++) {
+			IItem item = events.getEvent(i);
+			IQuantity start = startAccessor.getMember(item);
+			IQuantity end = endAccessor.getMember(item);
+			if (start == null || end == null || (i > 0 && start.compareTo(startTimes[i - 1]) < 0)) {
+				return NO_INDEX;
+			}
+			ordered &= end.compareTo(start) >= 0;
+			maxEnd = maxEnd == null || end.compareTo(maxEnd) > 0 ? end : maxEnd;
+			startTimes[i] = start;
+			maxEndTimes[i] = maxEnd;
+		}
+		return new EventTimeIndex(createColumn(startTimes), createColumn(maxEndTimes), ordered);
+	}
+
+	/**
+	 * Create a column of time values read as quantities. The values are kept as long values if they
+	 * all are stored as long values in the same unit, which is the case for most recordings even
+	 * when the accessors can not read primitive values.
+	 */
+	private static TimeColumn createColumn(IQuantity[] values) {
+		if (values.length == 0) {
+			return new QuantityColumn(values);
+		}
+		IUnit unit = values[0].getUnit();
+		long[] longValues = new long[values.length];
+		for (int i = 0; i < values.length; i++) {
+			if (values[i].getUnit() != unit || !QuantitiesToolkit.isLongStored(values[i])) {
+				return new QuantityColumn(values);
+			}
+			longValues[i] = values[i].longValue();
+		}
+		return new LongColumn(longValues, unit);
+	}
+
+	/**
+	 * Build an index of primitive time values, which is possible when all start and end times are
+	 * available as long values in one unit.
+	 *
+	 * @return the index, or {@code null} if the times can not be indexed as long values
+	 */
+	private static EventTimeIndex buildPrimitive(
+		EventArray events, ILongAccessor<IItem> startAccessor, ILongAccessor<IItem> endAccessor) {
+		int size = events.size();
+		if (size == 0) {
+			return null;
+		}
+		IUnit unit = startAccessor.getLongUnit(events.getEvent(0));
+		if (unit == null) {
+			return null;
+		}
+		long[] startTimes = new long[size];
+		long[] maxEndTimes = new long[size];
+		boolean ordered = true;
+		long maxEnd = Long.MIN_VALUE;
+		for (int i = 0; i < size; i++) {
+			IItem item = events.getEvent(i);
+			if (startAccessor.getLongUnit(item) != unit || endAccessor.getLongUnit(item) != unit) {
+				return null;
+			}
+			long start = startAccessor.getLong(item);
+			long end = endAccessor.getLong(item);
+			if (i > 0 && start < startTimes[i - 1]) {
+				return NO_INDEX;
+			}
+			ordered &= end >= start;
+			maxEnd = Math.max(maxEnd, end);
+			startTimes[i] = start;
+			maxEndTimes[i] = maxEnd;
+		}
+		return new EventTimeIndex(new LongColumn(startTimes, unit), new LongColumn(maxEndTimes, unit), ordered);
+	}
+
+	/**
+	 * Sorted time values, stored either as quantities or as primitive values in a common unit.
+	 */
+	private static abstract class TimeColumn {
+
+		abstract int size();
+
+		/**
+		 * @return a negative number, zero or a positive number if the value at the index is less
+		 *         than, equal to or greater than the given value
+		 */
+		abstract int compare(int index, IQuantity value);
+	}
+
+	private static final class QuantityColumn extends TimeColumn {
+		private final IQuantity[] values;
+
+		QuantityColumn(IQuantity[] values) {
+			this.values = values;
+		}
+
+		@Override
+		int size() {
+			return values.length;
+		}
+
+		@Override
+		int compare(int index, IQuantity value) {
+			return values[index].compareTo(value);
+		}
+	}
+
+	private static final class LongColumn extends TimeColumn {
+		private final long[] values;
+		private final IUnit unit;
+
+		LongColumn(long[] values, IUnit unit) {
+			this.values = values;
+			this.unit = unit;
+		}
+
+		@Override
+		int size() {
+			return values.length;
+		}
+
+		@Override
+		int compare(int index, IQuantity value) {
+			if (value.getUnit() == unit && QuantitiesToolkit.isLongStored(value)) {
+				return Long.compare(values[index], value.longValue());
+			}
+			// Only done for the few values visited by a binary search
+			return unit.quantity(values[index]).compareTo(value);
+		}
+	}
+
+	/**
+	 * Get the time bounds of a filter. Time limits on {@link JfrAttributes#START_TIME},
+	 * {@link JfrAttributes#END_TIME} and {@link JfrAttributes#LIFETIME} are recognized, also when
+	 * they are combined with other filters using {@link ItemFilters#and(IItemFilter...)}.
+	 *
+	 * @param filter
+	 *            the filter to get bounds for
+	 * @return the bounds of the filter, or {@code null} if the filter does not limit the time of
+	 *         the items
+	 */
+	public static Bounds getBounds(IItemFilter filter) {
+		Bounds bounds = new Bounds();
+		addBounds(filter, bounds);
+		return bounds.isLimited() ? bounds : null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void addBounds(IItemFilter filter, Bounds bounds) {
+		if (filter instanceof ItemFilters.Composite) {
+			ItemFilters.Composite composite = (ItemFilters.Composite) filter;
+			if (!composite.isUnion()) {
+				for (IItemFilter f : composite.getFilters()) {
+					addBounds(f, bounds);
+				}
+			}
+		} else if (filter instanceof ItemFilters.AttributeValue) {
+			ItemFilters.AttributeValue<?> value = (ItemFilters.AttributeValue<?>) filter;
+			Object attribute = value.getAttribute();
+			if (attribute == JfrAttributes.START_TIME) {
+				addLimit(value.getKind(), (IQuantity) value.getValue(), bounds, true);
+			} else if (attribute == JfrAttributes.END_TIME) {
+				addLimit(value.getKind(), (IQuantity) value.getValue(), bounds, false);
+			} else if (attribute == JfrAttributes.LIFETIME) {
+				IRange<IQuantity> range = (IRange<IQuantity>) value.getValue();
+				if (value.getKind() == Kind.RANGE_INTERSECTS) {
+					bounds.limitStart(null, range.getEnd());
+					bounds.limitEnd(range.getStart(), null);
+				} else if (value.getKind() == Kind.RANGE_CONTAINED) {
+					bounds.limitStart(range.getStart(), null);
+					bounds.limitEnd(null, range.getEnd());
+				}
+			}
+		}
+	}
+
+	private static void addLimit(Kind kind, IQuantity limit, Bounds bounds, boolean start) {
+		IQuantity min = null;
+		IQuantity max = null;
+		switch (kind) {
+		case MORE:
+		case MORE_OR_EQUAL:
+			min = limit;
+			break;
+		case LESS:
+		case LESS_OR_EQUAL:
+			max = limit;
+			break;
+		default:
+			return;
+		}
+		if (start) {
+			bounds.limitStart(min, max);
+		} else {
+			bounds.limitEnd(min, max);
+		}
+	}
+
+	/**
+	 * @return {@code true} if the index can be used for range lookups
+	 */
+	public boolean isAvailable() {
+		return startTimes != null;
+	}
+
+	/**
+	 * Get the lowest event index that may be within some bounds.
+	 *
+	 * @param bounds
+	 *            time bounds
+	 * @return the index of the first event that may be within the bounds
+	 */
+	public int getFromIndex(Bounds bounds) {
+		int from = 0;
+		if (bounds.minStart != null) {
+			from = firstNotBelow(startTimes, bounds.minStart);
+		}
+		if (bounds.minEnd != null) {
+			from = Math.max(from, firstNotBelow(maxEndTimes, bounds.minEnd));
+		}
+		return from;
+	}
+
+	/**
+	 * Get the index after the highest event index that may be within some bounds.
+	 *
+	 * @param bounds
+	 *            time bounds
+	 * @return the index after the last event that may be within the bounds
+	 */
+	public int getToIndex(Bounds bounds) {
+		IQuantity maxStart = bounds.maxStart;
+		if (ordered && bounds.maxEnd != null) {
+			maxStart = Bounds.minimum(maxStart, bounds.maxEnd);
+		}
+		return maxStart == null ? startTimes.size() : firstAbove(startTimes, maxStart);
+	}
+
+	private static int firstNotBelow(TimeColumn sorted, IQuantity value) {
+		int low = 0;
+		int high = sorted.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (sorted.compare(mid, value) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private static int firstAbove(TimeColumn sorted, IQuantity value) {
+		int low = 0;
+		int high = sorted.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (sorted.compare(mid, value) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
@@ -37,16 +37,21 @@ import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -56,6 +61,7 @@ import org.openjdk.jmc.flightrecorder.internal.parser.Chunk;
 import org.openjdk.jmc.flightrecorder.internal.parser.LoaderContext;
 import org.openjdk.jmc.flightrecorder.internal.parser.v0.ChunkLoaderV0;
 import org.openjdk.jmc.flightrecorder.internal.parser.v1.ChunkLoaderV1;
+import org.openjdk.jmc.flightrecorder.parser.IEventSinkFactory;
 import org.openjdk.jmc.flightrecorder.parser.IParserExtension;
 import org.openjdk.jmc.flightrecorder.parser.ParserExtensionRegistry;
 
@@ -66,7 +72,18 @@ public final class FlightRecordingLoader {
 
 	private static final Logger LOGGER = Logger.getLogger(FlightRecordingLoader.class.getName());
 	private static final String SINGLE_THREADED_PARSER_PROPERTY_KEY = "org.openjdk.jmc.flightrecorder.parser.singlethreaded"; //$NON-NLS-1$
-	private static final int MIN_MEMORY_PER_THREAD = 300 * 1024 * 1024; // Unless the chunks are very big, 300MB of available memory per parallel chunk load should be plenty
+	private static final String COLUMNAR_PARSER_PROPERTY_KEY = "org.openjdk.jmc.flightrecorder.parser.columnar"; //$NON-NLS-1$
+	/**
+	 * Number of threads to use for loading chunks when no pool is supplied. Defaults to the number
+	 * of available processors.
+	 */
+	private static final String PARSER_THREADS_PROPERTY_KEY = "org.openjdk.jmc.flightrecorder.parser.threads"; //$NON-NLS-1$
+	/**
+	 * Number of bytes of heap that may be reserved for chunks that are loaded in parallel. Defaults
+	 * to half of the currently available memory.
+	 */
+	private static final String MEMORY_BUDGET_PROPERTY_KEY = "org.openjdk.jmc.flightrecorder.parser.memorybudget"; //$NON-NLS-1$
+	private static final int MEMORY_PER_CHUNK_BYTE = 10; // Rough estimate of heap needed for the chunk data and the events parsed from it
 	private static final short VERSION_0 = 0; // JDK7 & JDK8
 	private static final short VERSION_1 = 1; // JDK9 & JDK10
 	private static final short VERSION_2 = 2; // JDK11
@@ -93,7 +110,27 @@ public final class FlightRecordingLoader {
 	public static EventArrays loadStream(
 		InputStream stream, List<? extends IParserExtension> extensions, boolean hideExperimentals,
 		boolean ignoreTruncatedChunk) throws CouldNotLoadRecordingException, IOException {
-		return readChunks(null, extensions, createChunkSupplier(stream), hideExperimentals, ignoreTruncatedChunk);
+		return loadStream(stream, extensions, hideExperimentals, ignoreTruncatedChunk, null);
+	}
+
+	/**
+	 * Read events from an input stream of JFR data.
+	 *
+	 * @param stream
+	 *            input stream
+	 * @param extensions
+	 *            the extensions to use when parsing the data
+	 * @param hideExperimentals
+	 *            if {@code true}, then events of types marked as experimental will be ignored when
+	 *            reading the data
+	 * @param pool
+	 *            the pool to load chunks in, or {@code null} to use a new pool
+	 * @return an array of EventArrays (one event type per EventArray)
+	 */
+	public static EventArrays loadStream(
+		InputStream stream, List<? extends IParserExtension> extensions, boolean hideExperimentals,
+		boolean ignoreTruncatedChunk, ForkJoinPool pool) throws CouldNotLoadRecordingException, IOException {
+		return readChunks(null, extensions, createChunkSupplier(stream), hideExperimentals, ignoreTruncatedChunk, pool);
 	}
 
 	public static IChunkSupplier createChunkSupplier(final InputStream input)
@@ -144,6 +181,53 @@ public final class FlightRecordingLoader {
 
 	}
 
+	/**
+	 * Create a chunk supplier that memory maps the chunks of a file instead of reading them into
+	 * byte arrays. Chunks are mapped one at a time, so each chunk must be smaller than 2 GB.
+	 * <p>
+	 * Note that the mapped memory is not released until the mapped buffers have been garbage
+	 * collected, which on some platforms prevents the file from being deleted.
+	 *
+	 * @param channel
+	 *            channel of an uncompressed recording file
+	 * @return a chunk supplier for the file
+	 */
+	public static IChunkSupplier createChunkSupplier(final FileChannel channel)
+			throws CouldNotLoadRecordingException, IOException {
+		return new IChunkSupplier() {
+			private long chunkStart;
+			private Chunk lastChunk;
+
+			@Override
+			public Chunk getNextChunk(byte[] reusableBuffer) throws CouldNotLoadRecordingException, IOException {
+				if (lastChunk != null) {
+					// The position of the last chunk has been moved to its end when it was loaded
+					chunkStart += lastChunk.getPosition();
+				}
+				long remaining = channel.size() - chunkStart;
+				if (remaining <= 0) {
+					return null;
+				}
+				ByteBuffer mapped = channel.map(MapMode.READ_ONLY, chunkStart, Math.min(remaining, Integer.MAX_VALUE));
+				lastChunk = createChunkInput(mapped, reusableBuffer);
+				return lastChunk;
+			}
+		};
+	}
+
+	private static Chunk createChunkInput(ByteBuffer input, byte[] reusableBuffer)
+			throws CouldNotLoadRecordingException, IOException {
+		if (input.limit() < FLIGHT_RECORDER_MAGIC.length) {
+			throw new InvalidJfrFileException();
+		}
+		for (int i = 0; i < FLIGHT_RECORDER_MAGIC.length; i++) {
+			if (input.get(i) != FLIGHT_RECORDER_MAGIC[i]) {
+				throw new InvalidJfrFileException();
+			}
+		}
+		return new Chunk(input, FLIGHT_RECORDER_MAGIC.length, reusableBuffer);
+	}
+
 	private static Chunk createChunkInput(DataInput input, int firstByte, byte[] reusableBuffer)
 			throws CouldNotLoadRecordingException, IOException {
 		int i = 0;
@@ -195,80 +279,185 @@ public final class FlightRecordingLoader {
 	public static EventArrays readChunks(
 		Runnable monitor, List<? extends IParserExtension> extensions, IChunkSupplier chunkSupplier,
 		boolean hideExperimentals, boolean ignoreTruncatedChunk) throws CouldNotLoadRecordingException, IOException {
-		LoaderContext context = new LoaderContext(extensions, hideExperimentals);
-		Runtime rt = Runtime.getRuntime();
-		long availableMemory = rt.maxMemory() - rt.totalMemory() + rt.freeMemory();
-		long maxBuffersCount = Math.min(Math.max(availableMemory / MIN_MEMORY_PER_THREAD, 1),
-				rt.availableProcessors() - 1);
+		return readChunks(monitor, extensions, chunkSupplier, hideExperimentals, ignoreTruncatedChunk, null);
+	}
 
-		ExecutorService threadPool;
-		if (Boolean.getBoolean(SINGLE_THREADED_PARSER_PROPERTY_KEY)) {
-			threadPool = Executors.newSingleThreadExecutor();
-		} else {
-			threadPool = Executors.newCachedThreadPool();
+	/**
+	 * Read chunks in parallel. Chunks are admitted to the pool as long as the estimated memory
+	 * needed for loading them fits within the memory budget, and no more chunks are queued than
+	 * there are threads in the pool. Large chunks are additionally split into segments that are
+	 * decoded in parallel in the same pool.
+	 *
+	 * @param monitor
+	 *            called each time a chunk has been loaded, may be {@code null}
+	 * @param extensions
+	 *            the extensions to use when parsing the data
+	 * @param chunkSupplier
+	 *            chunk data source
+	 * @param hideExperimentals
+	 *            if {@code true}, then events of types marked as experimental will be ignored
+	 * @param ignoreTruncatedChunk
+	 *            if {@code true}, then a truncated last chunk will be ignored
+	 * @param pool
+	 *            the pool to load chunks in, or {@code null} to use a new pool that is shut down
+	 *            when loading is done. A supplied pool is not shut down, which means that it can be
+	 *            shared by concurrent loads.
+	 * @return an array of EventArrays (one event type per EventArray)
+	 */
+	public static EventArrays readChunks(
+		Runnable monitor, List<? extends IParserExtension> extensions, IChunkSupplier chunkSupplier,
+		boolean hideExperimentals, boolean ignoreTruncatedChunk, ForkJoinPool pool)
+			throws CouldNotLoadRecordingException, IOException {
+		LoaderContext context = new LoaderContext(extensions, hideExperimentals,
+				Boolean.getBoolean(COLUMNAR_PARSER_PROPERTY_KEY));
+		boolean singleThreaded = Boolean.getBoolean(SINGLE_THREADED_PARSER_PROPERTY_KEY);
+		ForkJoinPool threadPool = pool;
+		if (threadPool == null) {
+			threadPool = new ForkJoinPool(singleThreaded ? 1 : getParserThreads());
 		}
+		ExecutorService segmentPool = singleThreaded ? null : threadPool;
+		int maxOutstanding = singleThreaded ? 1 : threadPool.getParallelism();
+		long memoryBudget = getMemoryBudget();
 
 		int chunkCount = 0;
 		try {
 			ExecutorCompletionService<byte[]> service = new ExecutorCompletionService<>(threadPool);
+			Map<Future<byte[]>, Long> reservations = new HashMap<>();
+			long reservedMemory = 0;
 			byte[] buffer = new byte[0];
-			int outstanding = 0;
 			Set<Long> loadedChunkTimestamps = new HashSet<>();
 			IChunkLoader chunkLoader;
-			while ((chunkLoader = createChunkLoader(chunkSupplier, context, buffer, ignoreTruncatedChunk)) != null) {
+			while ((chunkLoader = createChunkLoader(chunkSupplier, context, buffer, segmentPool,
+					ignoreTruncatedChunk)) != null) {
 				Long ts = chunkLoader.getTimestamp();
 				if (!loadedChunkTimestamps.contains(ts)) {
 					loadedChunkTimestamps.add(ts);
-					service.submit(chunkLoader);
-					chunkCount++;
-					outstanding++;
-					// Recover buffer from finished chunk loader for reuse or create a new buffer
-					Future<byte[]> available = service.poll();
-					if (available != null) {
-						buffer = available.get();
+					long memoryEstimate = chunkLoader.getChunkSize() * MEMORY_PER_CHUNK_BYTE;
+					byte[] freeBuffer = null;
+					// Wait for loaders to finish until the chunk fits, but always admit at least one chunk
+					while (!reservations.isEmpty() && (reservations.size() >= maxOutstanding
+							|| reservedMemory + memoryEstimate > memoryBudget)) {
+						Future<byte[]> done = service.take();
+						reservedMemory -= reservations.remove(done);
+						freeBuffer = done.get();
 						sendProgress(monitor);
-						outstanding--;
-					} else if (outstanding < maxBuffersCount) {
-						buffer = new byte[0];
-					} else {
-						buffer = service.take().get();
+					}
+					reservations.put(service.submit(chunkLoader), memoryEstimate);
+					reservedMemory += memoryEstimate;
+					chunkCount++;
+					// Recover buffer from finished chunk loaders for reuse or create a new buffer
+					Future<byte[]> done;
+					while ((done = service.poll()) != null) {
+						reservedMemory -= reservations.remove(done);
+						freeBuffer = done.get();
 						sendProgress(monitor);
-						outstanding--;
 					}
+					buffer = freeBuffer != null ? freeBuffer : new byte[0];
 				}
 			}
 			// Wait for all outstanding loaders to complete
-			while (outstanding > 0) {
-				service.take().get();
+			while (!reservations.isEmpty()) {
+				Future<byte[]> done = service.take();
+				reservations.remove(done);
+				done.get();
 				sendProgress(monitor);
-				outstanding--;
 			}
-			if (chunkCount == 0) {
+			if (chunkCount == 0 && context.getTimeRange() == null) {
 				// Recordings without any chunks are not allowed
 				throw new InvalidJfrFileException("No readable chunks in recording"); //$NON-NLS-1$
 			}
 		} catch (InterruptedException e) {
 			throw new CouldNotLoadRecordingException(e);
 		} catch (ExecutionException e) {
-			Throwable cause = e.getCause();
-			if (cause instanceof Error) {
-				throw ((Error) cause);
-			} else if (cause instanceof RuntimeException) {
-				throw ((RuntimeException) cause);
-			} else if (cause instanceof IOException) {
-				throw ((IOException) cause);
-			} else if (cause instanceof CouldNotLoadRecordingException) {
-				throw ((CouldNotLoadRecordingException) cause);
-			} else {
-				throw new CouldNotLoadRecordingException(cause);
-			}
+			throw unwrapLoadException(e.getCause());
 		} finally {
-			threadPool.shutdownNow();
+			if (pool == null) {
+				threadPool.shutdownNow();
+			}
 		}
 		LOGGER.fine("Loaded JFR with " + chunkCount + " chunks"); //$NON-NLS-1$ //$NON-NLS-2$
 		return context.buildEventArrays();
 	}
 
+	private static int getParserThreads() {
+		int threads = Integer.getInteger(PARSER_THREADS_PROPERTY_KEY, Runtime.getRuntime().availableProcessors());
+		return Math.max(threads, 1);
+	}
+
+	private static long getMemoryBudget() {
+		Long budget = Long.getLong(MEMORY_BUDGET_PROPERTY_KEY);
+		if (budget != null) {
+			return budget;
+		}
+		Runtime rt = Runtime.getRuntime();
+		long availableMemory = rt.maxMemory() - rt.totalMemory() + rt.freeMemory();
+		return availableMemory / 2;
+	}
+
+	/**
+	 * Read chunks one at a time in the calling thread and pass the events directly to an event sink
+	 * factory instead of storing them. The buffer used for the chunk data is reused for the next
+	 * chunk, and the constants of a chunk are released when it has been read, so the memory used is
+	 * bounded by the largest chunk rather than by the whole recording.
+	 * <p>
+	 * Events are passed on in the order that they are read from the chunks, which is not
+	 * necessarily sorted by time. Event sinks are created for each chunk that contains events of a
+	 * type. {@link IEventSinkFactory#flush()} is called when all chunks have been read.
+	 *
+	 * @param extensions
+	 *            the extensions to use when parsing the data
+	 * @param chunkSupplier
+	 *            chunk data source
+	 * @param sinkFactory
+	 *            the factory to pass event types and events to, after they have passed through the
+	 *            extensions
+	 * @param hideExperimentals
+	 *            if {@code true}, then events of types marked as experimental will be ignored
+	 * @param ignoreTruncatedChunk
+	 *            if {@code true}, then a truncated last chunk will be ignored
+	 */
+	public static void streamChunks(
+		List<? extends IParserExtension> extensions, IChunkSupplier chunkSupplier, IEventSinkFactory sinkFactory,
+		boolean hideExperimentals, boolean ignoreTruncatedChunk) throws CouldNotLoadRecordingException, IOException {
+		LoaderContext context = new LoaderContext(extensions, hideExperimentals, sinkFactory);
+		int chunkCount = 0;
+		byte[] buffer = new byte[0];
+		Set<Long> loadedChunkTimestamps = new HashSet<>();
+		IChunkLoader chunkLoader;
+		while ((chunkLoader = createChunkLoader(chunkSupplier, context, buffer, null, ignoreTruncatedChunk)) != null) {
+			if (loadedChunkTimestamps.add(chunkLoader.getTimestamp())) {
+				try {
+					buffer = chunkLoader.call();
+				} catch (Exception e) {
+					throw unwrapLoadException(e);
+				}
+				// The events of the chunk have been passed on, so its constants are no longer needed
+				context.clearConstantPools();
+				chunkCount++;
+			}
+		}
+		if (chunkCount == 0 && context.getTimeRange() == null) {
+			// Recordings without any chunks are not allowed
+			throw new InvalidJfrFileException("No readable chunks in recording"); //$NON-NLS-1$
+		}
+		LOGGER.fine("Streamed JFR with " + chunkCount + " chunks"); //$NON-NLS-1$ //$NON-NLS-2$
+		context.getSinkFactory().flush();
+	}
+
+	private static CouldNotLoadRecordingException unwrapLoadException(Throwable cause) throws IOException {
+		if (cause instanceof Error) {
+			throw ((Error) cause);
+		} else if (cause instanceof RuntimeException) {
+			throw ((RuntimeException) cause);
+		} else if (cause instanceof IOException) {
+			throw ((IOException) cause);
+		} else if (cause instanceof CouldNotLoadRecordingException) {
+			return (CouldNotLoadRecordingException) cause;
+		} else {
+			return new CouldNotLoadRecordingException(cause);
+		}
+	}
+
 	private static void sendProgress(Runnable listener) {
 		if (listener != null) {
 			listener.run();
@@ -283,26 +472,37 @@ public final class FlightRecordingLoader {
 	 * @param buffer
 	 *            Initial byte array to use for storing chunk data. See
 	 *            {@link IChunkSupplier#getNextChunk(byte[])}.
+	 * @param segmentExecutor
+	 *            executor for decoding segments of large chunks in parallel, or {@code null} to
+	 *            decode each chunk in a single thread
 	 * @param ignoreTruncatedChunk
 	 *            if true, then any exceptions caused by getting and reading the next chunk will be
 	 *            ignored and instead make the method return null
 	 * @return a new chunk loader or null if no more data is available from the chunk supplier
 	 */
 	private static IChunkLoader createChunkLoader(
-		IChunkSupplier chunkSupplier, LoaderContext context, byte[] buffer, boolean ignoreTruncatedChunk)
-			throws CouldNotLoadRecordingException, IOException {
+		IChunkSupplier chunkSupplier, LoaderContext context, byte[] buffer, ExecutorService segmentExecutor,
+		boolean ignoreTruncatedChunk) throws CouldNotLoadRecordingException, IOException {
 		try {
-			Chunk chunk = chunkSupplier.getNextChunk(buffer);
-			if (chunk != null) {
+			Chunk chunk;
+			while ((chunk = chunkSupplier.getNextChunk(buffer)) != null) {
+				IChunkLoader loader;
 				switch (chunk.getMajorVersion()) {
 				case VERSION_0:
-					return ChunkLoaderV0.create(chunk, context);
+					loader = ChunkLoaderV0.create(chunk, context);
+					break;
 				case VERSION_1:
 				case VERSION_2:
-					return ChunkLoaderV1.create(chunk, context);
+					loader = ChunkLoaderV1.create(chunk, context, segmentExecutor);
+					break;
 				default:
 					throw new VersionNotSupportedException();
 				}
+				if (loader != null) {
+					return loader;
+				}
+				// The chunk was skipped since it ends before the time range to load
+				buffer = chunk.getReusableBuffer();
 			}
 		} catch (IOException e) {
 			if (ignoreTruncatedChunk) {
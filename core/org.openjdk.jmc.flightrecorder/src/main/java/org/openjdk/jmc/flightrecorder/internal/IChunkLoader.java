@@ -48,6 +48,12 @@ public interface IChunkLoader extends Callable<byte[]> {
 	 */
 	long getTimestamp();
 
+	/**
+	 * @return The size of the chunk data in bytes. This is used to estimate the amount of memory
+	 *         needed to load the chunk.
+	 */
+	long getChunkSize();
+
 	/**
 	 * Perform the chunk loading.
 	 *
@@ -33,7 +33,10 @@
 package org.openjdk.jmc.flightrecorder.internal.parser;
 
 import java.io.DataInput;
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import org.openjdk.jmc.flightrecorder.internal.InvalidJfrFileException;
@@ -41,9 +44,13 @@ import org.openjdk.jmc.flightrecorder.internal.util.DataInputToolkit;
 
 /**
  * Class for handling data belonging to a single chunk.
+ * <p>
+ * The chunk data is either read from a {@link DataInput} into a byte array, or accessed directly
+ * from a {@link ByteBuffer} (typically memory mapped) holding the chunk data starting at index 0.
  */
 public class Chunk {
 	private final DataInput input;
+	private final ByteBuffer mappedData;
 	private final short majorVersion;
 	private final short minorVersion;
 	private int position;
@@ -58,7 +65,27 @@ public class Chunk {
 	 *            a byte array for holding read chunk data
 	 */
 	public Chunk(DataInput input, int offset, byte[] reusableBuffer) throws IOException, InvalidJfrFileException {
+		this(input, null, offset, reusableBuffer);
+	}
+
+	/**
+	 * @param mappedData
+	 *            buffer holding the chunk data, starting at index 0 of the buffer. The buffer may
+	 *            extend past the end of the chunk.
+	 * @param offset
+	 *            initial position
+	 * @param reusableBuffer
+	 *            a byte array for holding chunk data that is explicitly copied using
+	 *            {@link #fill(long)}
+	 */
+	public Chunk(ByteBuffer mappedData, int offset, byte[] reusableBuffer) throws IOException, InvalidJfrFileException {
+		this(null, mappedData, offset, reusableBuffer);
+	}
+
+	private Chunk(DataInput input, ByteBuffer mappedData, int offset, byte[] reusableBuffer)
+			throws IOException, InvalidJfrFileException {
 		this.input = input;
+		this.mappedData = mappedData;
 		this.data = reusableBuffer;
 		position = offset;
 		byte[] buffer = fill(offset + 2 * DataInputToolkit.SHORT_SIZE);
@@ -92,12 +119,48 @@ public class Chunk {
 			data = Arrays.copyOf(data, (int) (fillUpTo * 1.2));
 		}
 		if (fillUpTo > position) {
-			input.readFully(data, position, fillUpTo - position);
+			if (mappedData == null) {
+				input.readFully(data, position, fillUpTo - position);
+			} else {
+				checkMappedLimit(fillUpTo);
+				ByteBuffer view = mappedData.duplicate();
+				// Cast to Buffer to stay compatible with the Java 8 API
+				((Buffer) view).position(position);
+				view.get(data, position, fillUpTo - position);
+			}
 			position = fillUpTo;
 		}
 		return data;
 	}
 
+	/**
+	 * Get a buffer with chunk data up to a specified position. For a chunk backed by a byte buffer,
+	 * the returned buffer is a view of the backing buffer and no data is copied. Otherwise the data
+	 * is read into the chunk byte array, as with {@link #fill(long)}, and the array is wrapped.
+	 *
+	 * @param upToPosition
+	 *            position that the returned buffer must contain data up to
+	 * @return a buffer with the chunk data, starting at index 0
+	 */
+	public ByteBuffer getBuffer(long upToPosition) throws IOException, InvalidJfrFileException {
+		if (mappedData == null) {
+			return ByteBuffer.wrap(fill(upToPosition));
+		}
+		int limit = getArrayPosition(upToPosition);
+		checkMappedLimit(limit);
+		position = Math.max(position, limit);
+		ByteBuffer view = mappedData.duplicate();
+		((Buffer) view).limit(limit);
+		return view;
+	}
+
+	private void checkMappedLimit(int upToPosition) throws EOFException {
+		if (upToPosition > mappedData.limit()) {
+			throw new EOFException("Chunk data ends at " + mappedData.limit() + ", expected at least " //$NON-NLS-1$ //$NON-NLS-2$
+					+ upToPosition + " bytes"); //$NON-NLS-1$
+		}
+	}
+
 	/**
 	 * Skip reading data from the input source up to a specified position. Note that the skipped
 	 * data can not be read later from the same input source.
@@ -108,8 +171,19 @@ public class Chunk {
 	public void skip(long upToPosition) throws IOException, InvalidJfrFileException {
 		int skipUpTo = getArrayPosition(upToPosition);
 		if (skipUpTo > position) {
-			int skipped = input.skipBytes(skipUpTo - position);
-			position += skipped;
+			if (mappedData == null) {
+				while (position < skipUpTo) {
+					int skipped = input.skipBytes(skipUpTo - position);
+					if (skipped <= 0) {
+						// Some streams can not skip past internal boundaries, so read a byte to get past them
+						input.readByte();
+						skipped = 1;
+					}
+					position += skipped;
+				}
+			} else {
+				position = Math.min(skipUpTo, mappedData.limit());
+			}
 		}
 	}
 
@@ -0,0 +1,640 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.internal.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openjdk.jmc.common.IDisplayable;
+import org.openjdk.jmc.common.item.IDoubleAccessor;
+import org.openjdk.jmc.common.item.IItem;
+import org.openjdk.jmc.common.item.ILongAccessor;
+import org.openjdk.jmc.common.item.IMemberAccessor;
+import org.openjdk.jmc.common.item.IType;
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.IUnit;
+import org.openjdk.jmc.flightrecorder.internal.parser.ItemBuilder.IItemFactory;
+
+/**
+ * Column based storage of the events of one event type. Each field is stored in a separate column.
+ * Quantity fields where all values are stored as integers (or all as floating point numbers) in a
+ * common unit are stored in primitive arrays, and the quantity objects are only created when the
+ * value is requested. All other fields are stored as references, which for constant pool values
+ * means that the event only refers to the single shared constant instance.
+ * <p>
+ * During parsing, there is one instance of this class per lane, which is only accessed by a single
+ * thread. The events are represented by small flyweight items that only hold a reference to the
+ * columns and a row index, which are used to sort the events. When all events have been read, the
+ * events of the sorted arrays are copied to new instances using {@link #compact(Collection)}, after
+ * which the flyweights are no longer needed. Items for the compacted columns are created when
+ * requested, see {@link #getItem(int)}.
+ */
+public final class EventColumns implements IItemFactory {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final IType<IItem> type;
+	private final Column[] columns;
+	private int size;
+	private int capacity;
+
+	EventColumns(IType<IItem> type, int fieldCount) {
+		this(type, fieldCount, INITIAL_CAPACITY);
+	}
+
+	private EventColumns(IType<IItem> type, int fieldCount, int capacity) {
+		this.type = type;
+		this.capacity = capacity;
+		columns = new Column[fieldCount];
+		for (int i = 0; i < fieldCount; i++) {
+			columns[i] = new UndecidedColumn();
+		}
+	}
+
+	@Override
+	public IItem createEvent(Object ... values) {
+		ensureCapacity(size + 1);
+		appendRow(values, size);
+		return new ColumnarItem(this, size++);
+	}
+
+	private void appendRow(Object[] values, int row) {
+		for (int i = 0; i < columns.length; i++) {
+			columns[i] = columns[i].set(row, values[i], capacity);
+		}
+	}
+
+	private void ensureCapacity(int minCapacity) {
+		if (minCapacity > capacity) {
+			int newCapacity = capacity < 1000 ? capacity * 4 : (capacity * 3) / 2 + 1;
+			capacity = Math.max(newCapacity, minCapacity);
+			for (Column c : columns) {
+				c.grow(capacity);
+			}
+		}
+	}
+
+	/**
+	 * @return the event type of the events in the columns
+	 */
+	public IType<IItem> getType() {
+		return type;
+	}
+
+	/**
+	 * @return the number of events
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of columns, which is the same as the number of fields in the event type
+	 */
+	public int getColumnCount() {
+		return columns.length;
+	}
+
+	/**
+	 * Create an item for an event. Items are not kept by the columns, but items for the same row
+	 * are equal.
+	 *
+	 * @param row
+	 *            event index
+	 * @return an item backed by the columns
+	 */
+	public IItem getItem(int row) {
+		return new ColumnarItem(this, row);
+	}
+
+	/**
+	 * Get a field value. Quantities stored in primitive columns are created when requested, but
+	 * recently created quantities are reused for equal values.
+	 *
+	 * @param column
+	 *            column index
+	 * @param row
+	 *            event index
+	 * @return the field value
+	 */
+	public Object getValue(int column, int row) {
+		return columns[column].get(row);
+	}
+
+	/**
+	 * @param column
+	 *            column index
+	 * @return {@code true} if the column is stored as primitive {@code long} values, see
+	 *         {@link #getLong(int, int)}
+	 */
+	public boolean isLongColumn(int column) {
+		return columns[column] instanceof LongColumn;
+	}
+
+	/**
+	 * @param column
+	 *            column index
+	 * @return {@code true} if the column is stored as primitive {@code double} values, see
+	 *         {@link #getDouble(int, int)}
+	 */
+	public boolean isDoubleColumn(int column) {
+		return columns[column] instanceof DoubleColumn;
+	}
+
+	/**
+	 * @param column
+	 *            column index
+	 * @return the unit of all values in a primitive column, or {@code null} if the column does not
+	 *         store primitive values
+	 */
+	public IUnit getUnit(int column) {
+		Column c = columns[column];
+		return c instanceof PrimitiveColumn ? ((PrimitiveColumn) c).unit : null;
+	}
+
+	/**
+	 * @param column
+	 *            index of a primitive column
+	 * @param row
+	 *            event index
+	 * @return {@code true} if the event does not have a value in the column
+	 */
+	public boolean isNull(int column, int row) {
+		BitSet nulls = ((PrimitiveColumn) columns[column]).nulls;
+		return nulls != null && nulls.get(row);
+	}
+
+	/**
+	 * Get a value from a long column without creating a quantity object. The value is expressed in
+	 * the unit given by {@link #getUnit(int)}.
+	 *
+	 * @param column
+	 *            index of a long column
+	 * @param row
+	 *            event index
+	 * @return the numerical value, or 0 if the value is null
+	 */
+	public long getLong(int column, int row) {
+		return ((LongColumn) columns[column]).values[row];
+	}
+
+	/**
+	 * Get a value from a double column without creating a quantity object. The value is expressed
+	 * in the unit given by {@link #getUnit(int)}.
+	 *
+	 * @param column
+	 *            index of a double column
+	 * @param row
+	 *            event index
+	 * @return the numerical value, or 0 if the value is null
+	 */
+	public double getDouble(int column, int row) {
+		return ((DoubleColumn) columns[column]).values[row];
+	}
+
+	/**
+	 * Copy the events in sorted arrays to new columns, one instance per array, in array order. The
+	 * arrays must only contain items created by instances of this class. The new columns are sized
+	 * for the number of events, and the values are copied one column at a time. Each column of the
+	 * source instances is released as soon as it has been copied, so that only one column is held
+	 * twice at any time. The source instances and their items can not be used afterwards.
+	 *
+	 * @param arrays
+	 *            items in the wanted order
+	 * @return the new columns, in the same order as the arrays
+	 */
+	static List<EventColumns> compact(Collection<IItem[]> arrays) {
+		List<EventColumns> compacted = new ArrayList<>(arrays.size());
+		Map<EventColumns, Boolean> sources = new IdentityHashMap<>();
+		for (IItem[] events : arrays) {
+			EventColumns first = ((ColumnarItem) events[0]).columns;
+			EventColumns target = new EventColumns(first.type, first.columns.length, events.length);
+			target.size = events.length;
+			compacted.add(target);
+			for (IItem event : events) {
+				sources.put(((ColumnarItem) event).columns, Boolean.TRUE);
+			}
+		}
+		if (compacted.isEmpty()) {
+			return compacted;
+		}
+		int columnCount = compacted.get(0).columns.length;
+		for (int c = 0; c < columnCount; c++) {
+			int a = 0;
+			for (IItem[] events : arrays) {
+				EventColumns target = compacted.get(a++);
+				Column column = target.columns[c];
+				for (int i = 0; i < events.length; i++) {
+					ColumnarItem item = (ColumnarItem) events[i];
+					column = column.copy(i, item.columns.columns[c], item.index, target.capacity);
+				}
+				target.columns[c] = column;
+			}
+			for (EventColumns source : sources.keySet()) {
+				source.columns[c] = null;
+			}
+		}
+		return compacted;
+	}
+
+	static IMemberAccessor<Object, IItem> getAccessor(int column) {
+		return new ColumnAccessor(column);
+	}
+
+	/**
+	 * Accessor for a column. Aggregators can read values in primitive columns through the
+	 * {@link ILongAccessor} and {@link IDoubleAccessor} interfaces, without creating quantities.
+	 */
+	private static final class ColumnAccessor
+			implements IMemberAccessor<Object, IItem>, ILongAccessor<IItem>, IDoubleAccessor<IItem> {
+
+		private final int column;
+
+		ColumnAccessor(int column) {
+			this.column = column;
+		}
+
+		@Override
+		public Object getMember(IItem o) {
+			ColumnarItem item = (ColumnarItem) o;
+			return item.columns.columns[column].get(item.index);
+		}
+
+		@Override
+		public IUnit getLongUnit(IItem o) {
+			ColumnarItem item = (ColumnarItem) o;
+			Column c = item.columns.columns[column];
+			return c instanceof LongColumn ? ((LongColumn) c).getUnit(item.index) : null;
+		}
+
+		@Override
+		public long getLong(IItem o) {
+			ColumnarItem item = (ColumnarItem) o;
+			return ((LongColumn) item.columns.columns[column]).values[item.index];
+		}
+
+		@Override
+		public IUnit getDoubleUnit(IItem o) {
+			ColumnarItem item = (ColumnarItem) o;
+			Column c = item.columns.columns[column];
+			return c instanceof DoubleColumn ? ((DoubleColumn) c).getUnit(item.index) : null;
+		}
+
+		@Override
+		public double getDouble(IItem o) {
+			ColumnarItem item = (ColumnarItem) o;
+			return ((DoubleColumn) item.columns.columns[column]).values[item.index];
+		}
+	}
+
+	private static final class ColumnarItem implements IItem {
+
+		private final EventColumns columns;
+		private final int index;
+
+		ColumnarItem(EventColumns columns, int index) {
+			this.columns = columns;
+			this.index = index;
+		}
+
+		@Override
+		public IType<IItem> getType() {
+			return columns.type;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(columns) * 31 + index;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj instanceof ColumnarItem) {
+				ColumnarItem other = (ColumnarItem) obj;
+				return columns == other.columns && index == other.index;
+			}
+			return false;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder(columns.type.toString());
+			for (int i = 0; i < columns.columns.length; i++) {
+				Object o = columns.getValue(i, index);
+				sb.append(' ');
+				if (o instanceof IQuantity) {
+					sb.append(((IQuantity) o).displayUsing(IDisplayable.AUTO));
+				} else {
+					sb.append(o);
+				}
+			}
+			return sb.toString();
+		}
+	}
+
+	private static abstract class Column {
+
+		abstract Object get(int row);
+
+		/**
+		 * Set a value. If the value can not be stored in this column, then a column that can store
+		 * all values is returned.
+		 *
+		 * @return the column that holds the value
+		 */
+		abstract Column set(int row, Object value, int capacity);
+
+		/**
+		 * Set a value to the value in a row of another column.
+		 *
+		 * @return the column that holds the value
+		 */
+		Column copy(int row, Column source, int sourceRow, int capacity) {
+			return set(row, source.get(sourceRow), capacity);
+		}
+
+		abstract void grow(int capacity);
+	}
+
+	/**
+	 * Column for which no non-null value has been set yet.
+	 */
+	private static final class UndecidedColumn extends Column {
+
+		@Override
+		Object get(int row) {
+			return null;
+		}
+
+		@Override
+		Column set(int row, Object value, int capacity) {
+			if (value == null) {
+				return this;
+			}
+			Column column = PrimitiveColumn.accepts(value) ? PrimitiveColumn.create((IQuantity) value, capacity)
+					: new ObjectColumn(capacity);
+			if (row > 0 && column instanceof PrimitiveColumn) {
+				((PrimitiveColumn) column).setNulls(0, row);
+			}
+			return column.set(row, value, capacity);
+		}
+
+		@Override
+		void grow(int capacity) {
+		}
+	}
+
+	private static final class ObjectColumn extends Column {
+
+		private Object[] values;
+
+		ObjectColumn(int capacity) {
+			values = new Object[capacity];
+		}
+
+		@Override
+		Object get(int row) {
+			return values[row];
+		}
+
+		@Override
+		Column set(int row, Object value, int capacity) {
+			values[row] = value;
+			return this;
+		}
+
+		@Override
+		void grow(int capacity) {
+			values = Arrays.copyOf(values, capacity);
+		}
+	}
+
+	private static abstract class PrimitiveColumn extends Column {
+
+		private static final int QUANTITY_CACHE_SIZE = 256;
+
+		final IUnit unit;
+		BitSet nulls;
+		// Recently created quantities, indexed by a hash of their values. Quantities are immutable, so
+		// concurrent readers may replace each other's entries but will never see an inconsistent one.
+		private IQuantity[] quantities;
+
+		PrimitiveColumn(IUnit unit) {
+			this.unit = unit;
+		}
+
+		static boolean accepts(Object value) {
+			return value instanceof IQuantity && ((IQuantity) value).getUnit() != null;
+		}
+
+		static PrimitiveColumn create(IQuantity value, int capacity) {
+			if (value.numberValue() instanceof Long) {
+				return new LongColumn(value.getUnit(), capacity);
+			}
+			return new DoubleColumn(value.getUnit(), capacity);
+		}
+
+		void setNulls(int fromRow, int toRow) {
+			if (nulls == null) {
+				nulls = new BitSet();
+			}
+			nulls.set(fromRow, toRow);
+		}
+
+		@Override
+		Object get(int row) {
+			if (nulls != null && nulls.get(row)) {
+				return null;
+			}
+			return getQuantity(row);
+		}
+
+		@Override
+		Column set(int row, Object value, int capacity) {
+			if (value == null) {
+				setNulls(row, row + 1);
+				return this;
+			}
+			if (value instanceof IQuantity) {
+				IQuantity quantity = (IQuantity) value;
+				if (isSameUnit(quantity.getUnit()) && setQuantity(row, quantity)) {
+					return this;
+				}
+			}
+			// Fall back to storing quantity objects
+			ObjectColumn objects = new ObjectColumn(capacity);
+			for (int i = 0; i < row; i++) {
+				objects.values[i] = get(i);
+			}
+			return objects.set(row, value, capacity);
+		}
+
+		/**
+		 * @return the unit of the value in a row, or {@code null} if the row has no value
+		 */
+		IUnit getUnit(int row) {
+			return nulls != null && nulls.get(row) ? null : unit;
+		}
+
+		/**
+		 * Get the cache slot for a value. Slots must be verified against the value in the slot.
+		 */
+		IQuantity[] getQuantityCache() {
+			IQuantity[] cache = quantities;
+			if (cache == null) {
+				cache = new IQuantity[QUANTITY_CACHE_SIZE];
+				quantities = cache;
+			}
+			return cache;
+		}
+
+		static int getQuantitySlot(long bits) {
+			return (int) ((bits ^ (bits >>> 32)) * 0x9E3779B9L) >>> 24;
+		}
+
+		boolean isPrimitiveCopy(Column source, int sourceRow) {
+			if (getClass() == source.getClass()) {
+				PrimitiveColumn primitive = (PrimitiveColumn) source;
+				return primitive.unit == unit && (primitive.nulls == null || !primitive.nulls.get(sourceRow));
+			}
+			return false;
+		}
+
+		private boolean isSameUnit(IUnit other) {
+			// Equal units may still be displayed differently, so the identifiers must match too
+			return unit == other || (unit.equals(other) && unit.getIdentifier().equals(other.getIdentifier()));
+		}
+
+		abstract IQuantity getQuantity(int row);
+
+		abstract boolean setQuantity(int row, IQuantity quantity);
+	}
+
+	private static final class LongColumn extends PrimitiveColumn {
+
+		private long[] values;
+
+		LongColumn(IUnit unit, int capacity) {
+			super(unit);
+			values = new long[capacity];
+		}
+
+		@Override
+		IQuantity getQuantity(int row) {
+			long value = values[row];
+			IQuantity[] cache = getQuantityCache();
+			int slot = getQuantitySlot(value);
+			IQuantity quantity = cache[slot];
+			if (quantity == null || quantity.longValue() != value) {
+				quantity = unit.quantity(value);
+				cache[slot] = quantity;
+			}
+			return quantity;
+		}
+
+		@Override
+		Column copy(int row, Column source, int sourceRow, int capacity) {
+			if (isPrimitiveCopy(source, sourceRow)) {
+				values[row] = ((LongColumn) source).values[sourceRow];
+				return this;
+			}
+			return super.copy(row, source, sourceRow, capacity);
+		}
+
+		@Override
+		boolean setQuantity(int row, IQuantity quantity) {
+			if (quantity.numberValue() instanceof Long) {
+				values[row] = quantity.longValue();
+				return true;
+			}
+			return false;
+		}
+
+		@Override
+		void grow(int capacity) {
+			values = Arrays.copyOf(values, capacity);
+		}
+	}
+
+	private static final class DoubleColumn extends PrimitiveColumn {
+
+		private double[] values;
+
+		DoubleColumn(IUnit unit, int capacity) {
+			super(unit);
+			values = new double[capacity];
+		}
+
+		@Override
+		IQuantity getQuantity(int row) {
+			double value = values[row];
+			long bits = Double.doubleToLongBits(value);
+			IQuantity[] cache = getQuantityCache();
+			int slot = getQuantitySlot(bits);
+			IQuantity quantity = cache[slot];
+			if (quantity == null || Double.doubleToLongBits(quantity.doubleValue()) != bits) {
+				quantity = unit.quantity(value);
+				cache[slot] = quantity;
+			}
+			return quantity;
+		}
+
+		@Override
+		Column copy(int row, Column source, int sourceRow, int capacity) {
+			if (isPrimitiveCopy(source, sourceRow)) {
+				values[row] = ((DoubleColumn) source).values[sourceRow];
+				return this;
+			}
+			return super.copy(row, source, sourceRow, capacity);
+		}
+
+		@Override
+		boolean setQuantity(int row, IQuantity quantity) {
+			if (quantity.numberValue() instanceof Double) {
+				values[row] = quantity.doubleValue();
+				return true;
+			}
+			return false;
+		}
+
+		@Override
+		void grow(int capacity) {
+			values = Arrays.copyOf(values, capacity);
+		}
+	}
+}
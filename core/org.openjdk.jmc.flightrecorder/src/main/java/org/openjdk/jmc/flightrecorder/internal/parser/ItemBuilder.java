@@ -35,11 +35,15 @@ package org.openjdk.jmc.flightrecorder.internal.parser;
 import java.util.List;
 
 import org.openjdk.jmc.common.IDisplayable;
+import org.openjdk.jmc.common.item.IDoubleAccessor;
 import org.openjdk.jmc.common.item.IItem;
+import org.openjdk.jmc.common.item.ILongAccessor;
 import org.openjdk.jmc.common.item.IMemberAccessor;
 import org.openjdk.jmc.common.item.IType;
 import org.openjdk.jmc.common.unit.ContentType;
 import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.IUnit;
+import org.openjdk.jmc.common.unit.QuantitiesToolkit;
 import org.openjdk.jmc.common.unit.StructContentType;
 import org.openjdk.jmc.flightrecorder.parser.ValueField;
 
@@ -243,7 +247,38 @@ class ItemBuilder {
 		}
 	}
 
-	private static final IMemberAccessor<Object, IItem> A1_0 = new IMemberAccessor<Object, IItem>() {
+	/**
+	 * Accessor for the values stored in the items. Quantity values can also be read as primitive
+	 * values in their own unit, which lets aggregators and filters skip the unit conversions.
+	 */
+	private static abstract class ValueAccessor
+			implements IMemberAccessor<Object, IItem>, ILongAccessor<IItem>, IDoubleAccessor<IItem> {
+
+		@Override
+		public IUnit getLongUnit(IItem item) {
+			Object value = getMember(item);
+			return value instanceof IQuantity && QuantitiesToolkit.isLongStored((IQuantity) value)
+					? ((IQuantity) value).getUnit() : null;
+		}
+
+		@Override
+		public long getLong(IItem item) {
+			return ((IQuantity) getMember(item)).longValue();
+		}
+
+		@Override
+		public IUnit getDoubleUnit(IItem item) {
+			Object value = getMember(item);
+			return value instanceof IQuantity ? ((IQuantity) value).getUnit() : null;
+		}
+
+		@Override
+		public double getDouble(IItem item) {
+			return ((IQuantity) getMember(item)).doubleValue();
+		}
+	}
+
+	private static final ValueAccessor A1_0 = new ValueAccessor() {
 
 		@Override
 		public Object getMember(IItem o) {
@@ -251,7 +286,7 @@ class ItemBuilder {
 		}
 	};
 
-	private static final IMemberAccessor<Object, IItem> A3_1 = new IMemberAccessor<Object, IItem>() {
+	private static final ValueAccessor A3_1 = new ValueAccessor() {
 
 		@Override
 		public Object getMember(IItem o) {
@@ -259,7 +294,7 @@ class ItemBuilder {
 		}
 	};
 
-	private static final IMemberAccessor<Object, IItem> A3_2 = new IMemberAccessor<Object, IItem>() {
+	private static final ValueAccessor A3_2 = new ValueAccessor() {
 
 		@Override
 		public Object getMember(IItem o) {
@@ -267,7 +302,7 @@ class ItemBuilder {
 		}
 	};
 
-	private static final IMemberAccessor<Object, IItem> A5_3 = new IMemberAccessor<Object, IItem>() {
+	private static final ValueAccessor A5_3 = new ValueAccessor() {
 
 		@Override
 		public Object getMember(IItem o) {
@@ -275,7 +310,7 @@ class ItemBuilder {
 		}
 	};
 
-	private static final IMemberAccessor<Object, IItem> A5_4 = new IMemberAccessor<Object, IItem>() {
+	private static final ValueAccessor A5_4 = new ValueAccessor() {
 
 		@Override
 		public Object getMember(IItem o) {
@@ -283,7 +318,7 @@ class ItemBuilder {
 		}
 	};
 
-	private static final IMemberAccessor<Object, IItem> A7_5 = new IMemberAccessor<Object, IItem>() {
+	private static final ValueAccessor A7_5 = new ValueAccessor() {
 
 		@Override
 		public Object getMember(IItem o) {
@@ -291,7 +326,7 @@ class ItemBuilder {
 		}
 	};
 
-	private static final IMemberAccessor<Object, IItem> A7_6 = new IMemberAccessor<Object, IItem>() {
+	private static final ValueAccessor A7_6 = new ValueAccessor() {
 
 		@Override
 		public Object getMember(IItem o) {
@@ -299,7 +334,7 @@ class ItemBuilder {
 		}
 	};
 
-	private static final IMemberAccessor<Object, IItem> A9_7 = new IMemberAccessor<Object, IItem>() {
+	private static final ValueAccessor A9_7 = new ValueAccessor() {
 
 		@Override
 		public Object getMember(IItem o) {
@@ -307,7 +342,7 @@ class ItemBuilder {
 		}
 	};
 
-	private static final IMemberAccessor<Object, IItem> A9_8 = new IMemberAccessor<Object, IItem>() {
+	private static final ValueAccessor A9_8 = new ValueAccessor() {
 
 		@Override
 		public Object getMember(IItem o) {
@@ -315,7 +350,7 @@ class ItemBuilder {
 		}
 	};
 
-	private static final IMemberAccessor<Object, IItem> A11_9 = new IMemberAccessor<Object, IItem>() {
+	private static final ValueAccessor A11_9 = new ValueAccessor() {
 
 		@Override
 		public Object getMember(IItem o) {
@@ -323,7 +358,7 @@ class ItemBuilder {
 		}
 	};
 
-	private static final IMemberAccessor<Object, IItem> A11_10 = new IMemberAccessor<Object, IItem>() {
+	private static final ValueAccessor A11_10 = new ValueAccessor() {
 
 		@Override
 		public Object getMember(IItem o) {
@@ -331,7 +366,7 @@ class ItemBuilder {
 		}
 	};
 
-	private static final IMemberAccessor<Object, IItem> A13_11 = new IMemberAccessor<Object, IItem>() {
+	private static final ValueAccessor A13_11 = new ValueAccessor() {
 
 		@Override
 		public Object getMember(IItem o) {
@@ -339,7 +374,7 @@ class ItemBuilder {
 		}
 	};
 
-	private static final IMemberAccessor<Object, IItem> A13_12 = new IMemberAccessor<Object, IItem>() {
+	private static final ValueAccessor A13_12 = new ValueAccessor() {
 
 		@Override
 		public Object getMember(IItem o) {
@@ -347,7 +382,7 @@ class ItemBuilder {
 		}
 	};
 
-	private static final IMemberAccessor<Object, IItem> A15_13 = new IMemberAccessor<Object, IItem>() {
+	private static final ValueAccessor A15_13 = new ValueAccessor() {
 
 		@Override
 		public Object getMember(IItem o) {
@@ -355,7 +390,7 @@ class ItemBuilder {
 		}
 	};
 
-	private static final IMemberAccessor<Object, IItem> A15_14 = new IMemberAccessor<Object, IItem>() {
+	private static final ValueAccessor A15_14 = new ValueAccessor() {
 
 		@Override
 		public Object getMember(IItem o) {
@@ -363,7 +398,7 @@ class ItemBuilder {
 		}
 	};
 
-	private static final IMemberAccessor<Object, IItem> A17_15 = new IMemberAccessor<Object, IItem>() {
+	private static final ValueAccessor A17_15 = new ValueAccessor() {
 
 		@Override
 		public Object getMember(IItem o) {
@@ -371,7 +406,7 @@ class ItemBuilder {
 		}
 	};
 
-	private static final IMemberAccessor<Object, IItem> A17_16 = new IMemberAccessor<Object, IItem>() {
+	private static final ValueAccessor A17_16 = new ValueAccessor() {
 
 		@Override
 		public Object getMember(IItem o) {
@@ -379,7 +414,7 @@ class ItemBuilder {
 		}
 	};
 
-	private static final class ArrayItemAccessor implements IMemberAccessor<Object, IItem> {
+	private static final class ArrayItemAccessor extends ValueAccessor {
 
 		private final int index;
 
@@ -560,16 +595,29 @@ class ItemBuilder {
 		}
 	}
 
+	/**
+	 * Add fields to an event type for events that are created by {@link EventColumns}.
+	 */
+	static void addColumnFields(StructContentType<IItem> et, List<ValueField> dataStructure) {
+		for (int i = 0; i < dataStructure.size(); i++) {
+			addField(et, dataStructure.get(i), EventColumns.getAccessor(i));
+		}
+	}
+
 	@SafeVarargs
-	@SuppressWarnings("unchecked")
-	private static <M> void addFields(
+	private static void addFields(
 		StructContentType<IItem> et, List<ValueField> dataStructure, IMemberAccessor<?, IItem> ... accessors) {
 		for (int i = 0; i < dataStructure.size(); i++) {
 			ValueField vf = dataStructure.get(i);
 			IMemberAccessor<?, IItem> a = accessors.length > 0 ? accessors[i] : new ArrayItemAccessor(i);
-			et.addField(vf.getIdentifier(), (ContentType<M>) vf.getContentType(), vf.getName(), vf.getDescription(),
-					(IMemberAccessor<M, IItem>) a);
+			addField(et, vf, a);
 		}
 	}
 
+	@SuppressWarnings("unchecked")
+	private static <M> void addField(StructContentType<IItem> et, ValueField vf, IMemberAccessor<?, IItem> a) {
+		et.addField(vf.getIdentifier(), (ContentType<M>) vf.getContentType(), vf.getName(), vf.getDescription(),
+				(IMemberAccessor<M, IItem>) a);
+	}
+
 }
@@ -44,37 +44,101 @@ import org.openjdk.jmc.common.item.IAttribute;
 import org.openjdk.jmc.common.item.IItem;
 import org.openjdk.jmc.common.unit.IQuantity;
 import org.openjdk.jmc.common.unit.IRange;
+import org.openjdk.jmc.common.unit.QuantityRange;
 import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
 import org.openjdk.jmc.flightrecorder.JfrAttributes;
+import org.openjdk.jmc.flightrecorder.internal.ColumnarEventArray;
 import org.openjdk.jmc.flightrecorder.internal.EventArray;
 import org.openjdk.jmc.flightrecorder.internal.EventArrays;
 import org.openjdk.jmc.flightrecorder.internal.parser.RepositoryBuilder.EventTypeEntry;
 import org.openjdk.jmc.flightrecorder.internal.util.CanonicalConstantMap;
 import org.openjdk.jmc.flightrecorder.parser.IEventSinkFactory;
 import org.openjdk.jmc.flightrecorder.parser.IParserExtension;
+import org.openjdk.jmc.flightrecorder.parser.filter.FilterExtension;
 
 /**
  * The heart of the loading process. Manages a pool of reusable byte buffers to load chunks in.
  * Collects all loaded chunks and combines them to a FlightRecording.
  */
 public class LoaderContext {
-	private final RepositoryBuilder repositoryBuilder = new RepositoryBuilder();
+	private final RepositoryBuilder repositoryBuilder; // null if events are passed to an external sink factory
 	private final IEventSinkFactory sinkFactory;
 	private final ConcurrentHashMap<Object, CanonicalConstantMap<Object>> constantsByType = new ConcurrentHashMap<>();
 	private final boolean hideExperimentals;
 	private final List<? extends IParserExtension> extensions;
 	private final Set<IRange<IQuantity>> chunkRanges;
+	private final boolean columnar;
+	private final IRange<IQuantity> timeRange;
 
 	public LoaderContext(List<? extends IParserExtension> extensions, boolean hideExperimentals) {
+		this(extensions, hideExperimentals, false);
+	}
+
+	/**
+	 * @param extensions
+	 *            the extensions to use when parsing the data
+	 * @param hideExperimentals
+	 *            if {@code true}, then events of types marked as experimental will be ignored
+	 * @param columnar
+	 *            if {@code true}, then events are stored in columns, see {@link EventColumns}
+	 */
+	public LoaderContext(List<? extends IParserExtension> extensions, boolean hideExperimentals, boolean columnar) {
+		this(extensions, hideExperimentals, columnar, new RepositoryBuilder(columnar));
+	}
+
+	/**
+	 * Create a context that passes events to a sink factory instead of storing them. Event arrays
+	 * can not be built from such a context.
+	 *
+	 * @param extensions
+	 *            the extensions to use when parsing the data
+	 * @param hideExperimentals
+	 *            if {@code true}, then events of types marked as experimental will be ignored
+	 * @param lastSinkFactory
+	 *            the sink factory that receives events after they have passed through the
+	 *            extensions
+	 */
+	public LoaderContext(List<? extends IParserExtension> extensions, boolean hideExperimentals,
+			IEventSinkFactory lastSinkFactory) {
+		this(extensions, hideExperimentals, false, lastSinkFactory);
+	}
+
+	private LoaderContext(List<? extends IParserExtension> extensions, boolean hideExperimentals, boolean columnar,
+			IEventSinkFactory lastSinkFactory) {
 		this.extensions = extensions;
 		this.hideExperimentals = hideExperimentals;
-		IEventSinkFactory sinkFactory = repositoryBuilder;
+		this.columnar = columnar;
+		repositoryBuilder = lastSinkFactory instanceof RepositoryBuilder ? (RepositoryBuilder) lastSinkFactory : null;
+		IEventSinkFactory sinkFactory = lastSinkFactory;
 		// Traverse the list in reverse order so that the first element will create outermost sink factory
 		for (int i = extensions.size() - 1; i >= 0; i--) {
 			sinkFactory = extensions.get(i).getEventSinkFactory(sinkFactory);
 		}
 		this.sinkFactory = sinkFactory;
 		this.chunkRanges = new HashSet<>();
+		this.timeRange = getFilterTimeRange(extensions);
+	}
+
+	private static IRange<IQuantity> getFilterTimeRange(List<? extends IParserExtension> extensions) {
+		IRange<IQuantity> timeRange = null;
+		for (IParserExtension extension : extensions) {
+			if (extension instanceof FilterExtension && ((FilterExtension) extension).getFilter() != null) {
+				IRange<IQuantity> range = ((FilterExtension) extension).getFilter().getTimeRange();
+				if (range == null) {
+					continue;
+				} else if (timeRange == null) {
+					timeRange = range;
+				} else {
+					// An empty intersection ends before it starts and will not overlap anything
+					IQuantity start = range.getStart().compareTo(timeRange.getStart()) > 0 ? range.getStart()
+							: timeRange.getStart();
+					IQuantity end = range.getEnd().compareTo(timeRange.getEnd()) < 0 ? range.getEnd()
+							: timeRange.getEnd();
+					timeRange = QuantityRange.createWithEnd(start, end);
+				}
+			}
+		}
+		return timeRange;
 	}
 
 	public CanonicalConstantMap<Object> getConstantPool(Object poolKey) {
@@ -83,6 +147,16 @@ public class LoaderContext {
 		return existing == null ? newMap : existing;
 	}
 
+	/**
+	 * Forget the canonical constants of the chunks that have been loaded so far. Used when events
+	 * are passed to an external sink factory, so that the constants of a chunk are not kept after
+	 * the chunk has been read. Later chunks will not share constant instances with earlier chunks.
+	 * Must not be called while a chunk is being loaded.
+	 */
+	public void clearConstantPools() {
+		constantsByType.clear();
+	}
+
 	public boolean hideExperimentals() {
 		return hideExperimentals;
 	}
@@ -101,12 +175,37 @@ public class LoaderContext {
 		return sinkFactory;
 	}
 
+	/**
+	 * @return the time range of events to load, as given by the on load filters of the extensions,
+	 *         or {@code null} if events should be loaded regardless of time
+	 */
+	public IRange<IQuantity> getTimeRange() {
+		return timeRange;
+	}
+
+	/**
+	 * Check if a chunk may contain events in the time range to load. Events are written to the
+	 * chunk that is current when they end, so a chunk that ends before the time range can be
+	 * skipped. A chunk that starts after the time range can still contain events that started
+	 * within it.
+	 *
+	 * @param chunkRange
+	 *            the time range of a chunk
+	 * @return {@code true} if the chunk must be read
+	 */
+	public boolean isChunkInTimeRange(IRange<IQuantity> chunkRange) {
+		return timeRange == null || chunkRange.getEnd().compareTo(timeRange.getStart()) >= 0;
+	}
+
 	public void addChunkRange(IRange<IQuantity> chunkRange) {
 		this.chunkRanges.add(chunkRange);
 	}
 
 	@SuppressWarnings("deprecation")
 	public EventArrays buildEventArrays() throws CouldNotLoadRecordingException {
+		if (repositoryBuilder == null) {
+			throw new IllegalStateException("Events are not stored by this context"); //$NON-NLS-1$
+		}
 		sinkFactory.flush();
 		Iterator<EventTypeEntry> eventTypes = repositoryBuilder.getEventTypes();
 		ArrayList<EventArray> eventArrays = new ArrayList<>();
@@ -127,6 +226,10 @@ public class LoaderContext {
 			if (sortedArrays.isEmpty()) {
 				// include all event types, even if there are no events
 				eventArrays.add(new EventArray(new IItem[] {}, ete.eventType, ete.category));
+			} else if (columnar) {
+				for (EventColumns columns : EventColumns.compact(sortedArrays)) {
+					eventArrays.add(new ColumnarEventArray(columns, ete.eventType, ete.category));
+				}
 			} else {
 				for (IItem[] ea : sortedArrays) {
 					eventArrays.add(new EventArray(ea, ete.eventType, ete.category));
@@ -66,6 +66,16 @@ import org.openjdk.jmc.flightrecorder.parser.ValueField;
 class RepositoryBuilder implements IEventSinkFactory {
 	private static final Logger LOGGER = Logger.getLogger(RepositoryBuilder.class.getName());
 	private final Map<String, EventTypeEntry> eventTypes = new HashMap<>();
+	private final boolean columnar;
+
+	/**
+	 * @param columnar
+	 *            if {@code true}, then events are stored in {@link EventColumns} instead of in one
+	 *            object per event
+	 */
+	RepositoryBuilder(boolean columnar) {
+		this.columnar = columnar;
+	}
 
 	@Override
 	public IEventSink create(
@@ -93,10 +103,15 @@ class RepositoryBuilder implements IEventSinkFactory {
 		}
 	}
 
-	private static EventTypeEntry createEventTypeEntry(
+	private EventTypeEntry createEventTypeEntry(
 		String identifier, String label, String[] category, String description, List<ValueField> dataStructure) {
 		StructContentType<IItem> eventType = new StructContentType<>(identifier, label, description);
-		IItemFactory itemFactory = ItemBuilder.createItemFactory(eventType, dataStructure);
+		IItemFactory itemFactory = null;
+		if (columnar) {
+			ItemBuilder.addColumnFields(eventType, dataStructure);
+		} else {
+			itemFactory = ItemBuilder.createItemFactory(eventType, dataStructure);
+		}
 		IMemberAccessor<IQuantity, IItem> stAccessor = JfrAttributes.START_TIME.getAccessor(eventType);
 		IMemberAccessor<IQuantity, IItem> etAccessor = JfrAttributes.END_TIME.getAccessor(eventType);
 		if (stAccessor != null && stAccessor != etAccessor) {
@@ -140,7 +155,7 @@ class RepositoryBuilder implements IEventSinkFactory {
 	abstract static class EventTypeEntry {
 		final StructContentType<IItem> eventType;
 		final String[] category;
-		final IItemFactory itemFactory;
+		final IItemFactory itemFactory; // null if events are stored in columns
 		final List<ValueField> dataStructure;
 		private EventTypeEntry next; // Linked list of event types with the same original identifier
 
@@ -167,6 +182,13 @@ class RepositoryBuilder implements IEventSinkFactory {
 			return false;
 		}
 
+		/**
+		 * @return a factory for the events of a new lane
+		 */
+		IItemFactory createLaneItemFactory() {
+			return itemFactory != null ? itemFactory : new EventColumns(eventType, dataStructure.size());
+		}
+
 		abstract Collection<IItem[]> buildSortedArrays();
 
 		abstract IEventSink createSink();
@@ -202,10 +224,11 @@ class RepositoryBuilder implements IEventSinkFactory {
 			return new IEventSink() {
 
 				private final DisjointBuilder<IItem> events = createLane();
+				private final IItemFactory laneItemFactory = createLaneItemFactory();
 
 				@Override
 				public void addEvent(Object[] values) {
-					events.add(itemFactory.createEvent(values));
+					events.add(laneItemFactory.createEvent(values));
 				}
 
 			};
@@ -261,10 +284,11 @@ class RepositoryBuilder implements IEventSinkFactory {
 			return new IEventSink() {
 
 				private final SimpleArray<IItem> events = createLane();
+				private final IItemFactory laneItemFactory = createLaneItemFactory();
 
 				@Override
 				public void addEvent(Object[] values) {
-					events.add(itemFactory.createEvent(values));
+					events.add(laneItemFactory.createEvent(values));
 				}
 
 			};
@@ -99,4 +99,9 @@ public class ChunkLoaderV0 implements IChunkLoader {
 	public long getTimestamp() {
 		return metadata.getStartTime().longValue();
 	}
+
+	@Override
+	public long getChunkSize() {
+		return structure.getChunkSize();
+	}
 }
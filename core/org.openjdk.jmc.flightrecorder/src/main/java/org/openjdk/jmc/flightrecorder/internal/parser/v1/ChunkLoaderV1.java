@@ -33,7 +33,13 @@
 package org.openjdk.jmc.flightrecorder.internal.parser.v1;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
 import org.openjdk.jmc.flightrecorder.internal.ChunkInfo;
@@ -47,15 +53,30 @@ import org.openjdk.jmc.flightrecorder.internal.util.ParserToolkit;
 public class ChunkLoaderV1 implements IChunkLoader {
 
 	private final static long CONSTANT_POOL_EVENT_TYPE = 1;
+	/**
+	 * System property for the minimum number of bytes of event data in each segment when decoding
+	 * the events of a chunk in parallel.
+	 */
+	private static final String MIN_SEGMENT_SIZE_PROPERTY_KEY = "org.openjdk.jmc.flightrecorder.parser.segmentsize"; //$NON-NLS-1$
+	private static final long DEFAULT_MIN_SEGMENT_SIZE = 16 * 1024 * 1024;
 
 	private final ChunkStructure header;
-	private final byte[] data;
+	private final ByteBuffer data;
+	private final byte[] reusableBuffer;
 	private final LoaderContext context;
+	private final ExecutorService segmentExecutor;
 
 	public ChunkLoaderV1(ChunkStructure header, byte[] data, LoaderContext context) {
+		this(header, ByteBuffer.wrap(data), data, context, null);
+	}
+
+	public ChunkLoaderV1(ChunkStructure header, ByteBuffer data, byte[] reusableBuffer, LoaderContext context,
+			ExecutorService segmentExecutor) {
 		this.header = header;
 		this.data = data;
+		this.reusableBuffer = reusableBuffer;
 		this.context = context;
+		this.segmentExecutor = segmentExecutor;
 		context.addChunkRange(header.getChunkRange());
 	}
 
@@ -80,8 +101,19 @@ public class ChunkLoaderV1 implements IChunkLoader {
 		manager.resolveConstants();
 
 		// Read events
-		long index = header.getBodyStartOffset();
-		while (index < header.getChunkSize()) {
+		long[] segments = findSegments(input);
+		if (segments.length > 2) {
+			readSegments(segments, input, manager);
+		} else {
+			readEvents(input, manager, header.getBodyStartOffset(), header.getChunkSize());
+		}
+		return reusableBuffer;
+	}
+
+	private static void readEvents(SeekableInputStream input, TypeManager manager, long start, long end)
+			throws IOException, CouldNotLoadRecordingException {
+		long index = start;
+		while (index < end) {
 			input.seek(index);
 			int size = input.readInt();
 			long type = input.readLong();
@@ -93,7 +125,82 @@ public class ChunkLoaderV1 implements IChunkLoader {
 			}
 			index += size;
 		}
-		return data;
+	}
+
+	/**
+	 * Find the boundaries of segments of the event data that can be decoded independently. Only the
+	 * size prefix of each event is read to find the boundaries.
+	 *
+	 * @return an array of segment boundaries, starting with the start of the first segment and
+	 *         ending with the end of the last segment
+	 */
+	private long[] findSegments(SeekableInputStream input) throws IOException, CouldNotLoadRecordingException {
+		long start = header.getBodyStartOffset();
+		long end = header.getChunkSize();
+		long minSegmentSize = Math.max(Long.getLong(MIN_SEGMENT_SIZE_PROPERTY_KEY, DEFAULT_MIN_SEGMENT_SIZE), 1);
+		long segmentCount = Math.min((end - start) / minSegmentSize, Runtime.getRuntime().availableProcessors());
+		if (segmentExecutor == null || segmentCount < 2) {
+			return new long[] {start, end};
+		}
+		long segmentSize = (end - start) / segmentCount;
+		List<Long> boundaries = new ArrayList<>();
+		boundaries.add(start);
+		long nextBoundary = start + segmentSize;
+		long index = start;
+		while (index < end) {
+			if (index >= nextBoundary) {
+				boundaries.add(index);
+				nextBoundary = index + segmentSize;
+			}
+			input.seek(index);
+			int size = input.readInt();
+			if (size <= 0) {
+				throw new CouldNotLoadRecordingException("Found event with invalid size (" + size + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			index += size;
+		}
+		boundaries.add(end);
+		long[] segments = new long[boundaries.size()];
+		for (int i = 0; i < segments.length; i++) {
+			segments[i] = boundaries.get(i);
+		}
+		return segments;
+	}
+
+	/**
+	 * Decode the event segments concurrently. Each segment gets its own input and type manager, and
+	 * therefore its own event sinks, which means that the events of each segment end up in separate
+	 * lanes that are merged when the event arrays are built.
+	 */
+	private void readSegments(long[] segments, SeekableInputStream input, TypeManager manager) throws Exception {
+		List<Callable<Void>> tasks = new ArrayList<>(segments.length - 1);
+		for (int i = 0; i < segments.length - 1; i++) {
+			// Segment managers are created in this thread since they share the type entries of the chunk
+			final TypeManager segmentManager = i == 0 ? manager : manager.createSegmentManager(context);
+			final SeekableInputStream segmentInput = i == 0 ? input
+					: SeekableInputStream.build(data, header.isIntegersCompressed());
+			final long start = segments[i];
+			final long end = segments[i + 1];
+			tasks.add(new Callable<Void>() {
+
+				@Override
+				public Void call() throws Exception {
+					readEvents(segmentInput, segmentManager, start, end);
+					return null;
+				}
+			});
+		}
+		for (Future<Void> f : segmentExecutor.invokeAll(tasks)) {
+			try {
+				f.get();
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw (Exception) cause;
+			}
+		}
 	}
 
 	private static long readConstantPoolEvent(IDataInput input, TypeManager manager)
@@ -115,9 +222,29 @@ public class ChunkLoaderV1 implements IChunkLoader {
 
 	public static IChunkLoader create(Chunk input, LoaderContext context)
 			throws IOException, CouldNotLoadRecordingException {
+		return create(input, context, null);
+	}
+
+	/**
+	 * @param input
+	 *            chunk to load
+	 * @param context
+	 *            loader context to send event data to
+	 * @param segmentExecutor
+	 *            executor for decoding segments of large chunks in parallel, or {@code null} to
+	 *            decode all events in the thread loading the chunk
+	 * @return a chunk loader, or {@code null} if the chunk ends before the time range to load and
+	 *         has been skipped
+	 */
+	public static IChunkLoader create(Chunk input, LoaderContext context, ExecutorService segmentExecutor)
+			throws IOException, CouldNotLoadRecordingException {
 		ChunkStructure header = new ChunkStructure(input);
-		byte[] data = input.fill(header.getChunkSize());
-		return new ChunkLoaderV1(header, data, context);
+		if (!context.isChunkInTimeRange(header.getChunkRange())) {
+			input.skip(header.getChunkSize());
+			return null;
+		}
+		ByteBuffer data = input.getBuffer(header.getChunkSize());
+		return new ChunkLoaderV1(header, data, input.getReusableBuffer(), context, segmentExecutor);
 	}
 
 	public static ChunkInfo getInfo(Chunk input, long position) throws IOException, CouldNotLoadRecordingException {
@@ -129,4 +256,9 @@ public class ChunkLoaderV1 implements IChunkLoader {
 	public long getTimestamp() {
 		return header.getStartTimeNanos();
 	}
+
+	@Override
+	public long getChunkSize() {
+		return header.getChunkSize();
+	}
 }
@@ -33,12 +33,18 @@
 package org.openjdk.jmc.flightrecorder.internal.parser.v1;
 
 import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 
 import org.openjdk.jmc.flightrecorder.internal.util.DataInputToolkit;
 
 /**
- * Byte array input stream that is not synchronized, not checked and which
+ * Byte buffer input stream that is not synchronized, not checked and which
+ * <p>
+ * The buffer may either wrap a byte array or be a direct (e.g. memory mapped) buffer. All reads use
+ * absolute positions, so the position and limit of the buffer itself are never changed.
  */
 class SeekableInputStream implements IDataInput {
 	private static final byte STRING_ENCODING_NULL = 0;
@@ -48,18 +54,23 @@ class SeekableInputStream implements IDataInput {
 	private static final byte STRING_ENCODING_CHAR_ARRAY = 4;
 	private static final byte STRING_ENCODING_LATIN1_BYTE_ARRAY = 5;
 
-	private final byte[] buffer;
+	private final ByteBuffer buffer;
+	private final StringTable stringTable = StringTable.create();
 	private int pos;
 
 	public SeekableInputStream(byte[] buffer) {
+		this(ByteBuffer.wrap(buffer));
+	}
+
+	public SeekableInputStream(ByteBuffer buffer) {
 		this.buffer = buffer;
 	}
 
 	public void seek(long pos) throws IOException {
-		if (pos >= 0 && pos < buffer.length) {
+		if (pos >= 0 && pos < buffer.limit()) {
 			this.pos = (int) pos;
 		} else {
-			throw new IOException("Seeking for " + pos + " in buffer of length " + buffer.length); //$NON-NLS-1$ //$NON-NLS-2$
+			throw new IOException("Seeking for " + pos + " in buffer of length " + buffer.limit()); //$NON-NLS-1$ //$NON-NLS-2$
 		}
 	}
 
@@ -70,82 +81,89 @@ class SeekableInputStream implements IDataInput {
 	public void readFully(byte[] dst, int off, int len) {
 		int start = pos;
 		pos += len;
-		System.arraycopy(buffer, start, dst, off, len);
+		if (buffer.hasArray()) {
+			System.arraycopy(buffer.array(), buffer.arrayOffset() + start, dst, off, len);
+		} else {
+			ByteBuffer view = buffer.duplicate();
+			// Cast to Buffer to stay compatible with the Java 8 API
+			((Buffer) view).position(start);
+			view.get(dst, off, len);
+		}
 	}
 
 	@Override
 	public boolean readBoolean() throws IOException {
-		boolean value = DataInputToolkit.readBoolean(buffer, pos);
+		boolean value = buffer.get(pos) != 0;
 		pos += DataInputToolkit.BOOLEAN_SIZE;
 		return value;
 	}
 
 	@Override
 	public byte readByte() throws IOException {
-		byte value = DataInputToolkit.readByte(buffer, pos);
+		byte value = buffer.get(pos);
 		pos += DataInputToolkit.BYTE_SIZE;
 		return value;
 	}
 
 	@Override
 	public int readUnsignedByte() throws IOException {
-		int value = DataInputToolkit.readUnsignedByte(buffer, pos);
+		int value = buffer.get(pos) & 0xFF;
 		pos += DataInputToolkit.BYTE_SIZE;
 		return value;
 	}
 
 	@Override
 	public short readShort() throws IOException {
-		short value = DataInputToolkit.readShort(buffer, pos);
+		short value = buffer.getShort(pos);
 		pos += DataInputToolkit.SHORT_SIZE;
 		return value;
 	}
 
 	@Override
 	public int readUnsignedShort() throws IOException {
-		int value = DataInputToolkit.readUnsignedShort(buffer, pos);
+		int value = buffer.getShort(pos) & 0xFFFF;
 		pos += DataInputToolkit.SHORT_SIZE;
 		return value;
 	}
 
 	@Override
 	public char readChar() throws IOException {
-		char value = DataInputToolkit.readChar(buffer, pos);
+		char value = buffer.getChar(pos);
 		pos += DataInputToolkit.CHAR_SIZE;
 		return value;
 	}
 
 	@Override
 	public int readInt() throws IOException {
-		int value = DataInputToolkit.readInt(buffer, pos);
+		int value = buffer.getInt(pos);
 		pos += DataInputToolkit.INTEGER_SIZE;
 		return value;
 	}
 
 	@Override
 	public long readUnsignedInt() throws IOException {
-		long value = DataInputToolkit.readUnsignedInt(buffer, pos);
+		long value = buffer.getInt(pos) & 0xFFFFFFFFL;
 		pos += DataInputToolkit.INTEGER_SIZE;
 		return value;
 	}
 
 	@Override
 	public long readLong() throws IOException {
-		long value = DataInputToolkit.readLong(buffer, pos);
+		long value = buffer.getLong(pos);
 		pos += DataInputToolkit.LONG_SIZE;
 		return value;
 	}
 
 	@Override
 	public float readFloat() throws IOException {
-		float value = DataInputToolkit.readFloat(buffer, pos);
+		float value = buffer.getFloat(pos);
 		pos += DataInputToolkit.FLOAT_SIZE;
 		return value;
 	}
 
 	@Override
 	public double readDouble() throws IOException {
-		double value = DataInputToolkit.readDouble(buffer, pos);
+		double value = buffer.getDouble(pos);
 		pos += DataInputToolkit.DOUBLE_SIZE;
 		return value;
 	}
@@ -162,18 +180,76 @@ class SeekableInputStream implements IDataInput {
 			int size = readInt();
 			int start = pos;
 			pos += size;
-			return new String(buffer, start, size,
-					encoding == STRING_ENCODING_UTF8_BYTE_ARRAY ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1);
+			return getString(start, size, encoding);
 		case STRING_ENCODING_CHAR_ARRAY:
 			int charCount = readInt();
-			char[] c = new char[charCount];
+			int charStart = pos;
+			skipChars(charCount);
+			return getString(charStart, pos - charStart, encoding);
+		default:
+			throw new IOException("Disallowed raw string encoding: " + encoding); //$NON-NLS-1$
+		}
+	}
+
+	private String getString(int start, int size, byte encoding) throws IOException {
+		return stringTable == null ? decodeString(start, size, encoding)
+				: stringTable.get(this, buffer, start, size, encoding);
+	}
+
+	/**
+	 * Decode a string from its raw encoded bytes. Does not change the read position.
+	 *
+	 * @param start
+	 *            position of the first encoded byte, after the length
+	 * @param size
+	 *            number of encoded bytes
+	 * @param encoding
+	 *            one of the byte array or char array string encodings
+	 * @return the decoded string
+	 */
+	String decodeString(int start, int size, byte encoding) throws IOException {
+		if (encoding == STRING_ENCODING_CHAR_ARRAY) {
+			char[] c = new char[size / DataInputToolkit.CHAR_SIZE];
 			for (int i = 0; i < c.length; i++) {
-				c[i] = readChar();
+				c[i] = buffer.getChar(start + i * DataInputToolkit.CHAR_SIZE);
 			}
 			return new String(c);
-		default:
-			throw new IOException("Disallowed raw string encoding: " + encoding); //$NON-NLS-1$
 		}
+		Charset charset = encoding == STRING_ENCODING_UTF8_BYTE_ARRAY ? StandardCharsets.UTF_8
+				: StandardCharsets.ISO_8859_1;
+		if (buffer.hasArray()) {
+			return new String(buffer.array(), buffer.arrayOffset() + start, size, charset);
+		}
+		byte[] bytes = new byte[size];
+		ByteBuffer view = buffer.duplicate();
+		((Buffer) view).position(start);
+		view.get(bytes);
+		return new String(bytes, charset);
+	}
+
+	/**
+	 * Decode chars that are encoded as compressed integers. Does not change the read position.
+	 */
+	final String decodeCompressedChars(int start, int size) throws IOException {
+		// Each compressed char ends with a byte that has the high bit cleared
+		int charCount = 0;
+		for (int i = start; i < start + size; i++) {
+			if (buffer.get(i) >= 0) {
+				charCount++;
+			}
+		}
+		int readPos = pos;
+		pos = start;
+		char[] c = new char[charCount];
+		for (int i = 0; i < c.length; i++) {
+			c[i] = readChar();
+		}
+		pos = readPos;
+		return new String(c);
+	}
+
+	void skipChars(int charCount) throws IOException {
+		pos += charCount * DataInputToolkit.CHAR_SIZE;
 	}
 
 	@Override
@@ -189,17 +265,7 @@ class SeekableInputStream implements IDataInput {
 			pos += size;
 			return;
 		case STRING_ENCODING_CHAR_ARRAY:
-			int charCount = readInt();
-			/*
-			 * NOTE: Could skip ahead unless in "compressed" subclass.
-			 *
-			 * With the way compact strings work in JDK 9, one would think that there are very few
-			 * real life cases where this non-standard "compressed longs" encoding would be
-			 * beneficial over either (modified) UTF-8 or just dumping the char[].
-			 */
-			for (int i = 0; i < charCount; i++) {
-				readChar();
-			}
+			skipChars(readInt());
 			return;
 		case STRING_ENCODING_CONSTANT_POOL:
 			readLong();
@@ -212,10 +278,25 @@ class SeekableInputStream implements IDataInput {
 
 	private static class CompressedIntsDataInput extends SeekableInputStream {
 
-		public CompressedIntsDataInput(byte[] buffer) {
+		public CompressedIntsDataInput(ByteBuffer buffer) {
 			super(buffer);
 		}
 
+		@Override
+		String decodeString(int start, int size, byte encoding) throws IOException {
+			if (encoding != STRING_ENCODING_CHAR_ARRAY) {
+				return super.decodeString(start, size, encoding);
+			}
+			return decodeCompressedChars(start, size);
+		}
+
+		@Override
+		void skipChars(int charCount) throws IOException {
+			for (int i = 0; i < charCount; i++) {
+				readChar();
+			}
+		}
+
 		@Override
 		public short readShort() throws IOException {
 			return (short) readCompressedLong();
@@ -261,6 +342,10 @@ class SeekableInputStream implements IDataInput {
 	}
 
 	static SeekableInputStream build(byte[] data, boolean compressedInts) {
+		return build(ByteBuffer.wrap(data), compressedInts);
+	}
+
+	static SeekableInputStream build(ByteBuffer data, boolean compressedInts) {
 		return compressedInts ? new CompressedIntsDataInput(data) : new SeekableInputStream(data);
 	}
 
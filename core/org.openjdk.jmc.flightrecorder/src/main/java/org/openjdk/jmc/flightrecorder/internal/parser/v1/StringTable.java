@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.internal.parser.v1;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * A bounded cache of decoded strings, keyed on the raw encoded bytes. Strings that are repeated in
+ * the input, such as thread names and file paths in event fields, are resolved to one canonical
+ * instance without building an intermediate string for each occurrence.
+ * <p>
+ * The table is set associative: a string can only be placed in one of a few entries selected by the
+ * hash of its bytes, and the least recently used of those entries is evicted when a new string is
+ * added. The table is not synchronized and is intended to be used by a single input stream.
+ */
+final class StringTable {
+	private static final String STRING_TABLE_SIZE_PROPERTY_KEY = "org.openjdk.jmc.flightrecorder.parser.stringtablesize"; //$NON-NLS-1$
+	private static final int DEFAULT_SIZE = 1024;
+	private static final int WAYS = 4;
+	/**
+	 * Longer strings are unlikely to be repeated often enough to be worth the cost of comparing
+	 * them, so they are decoded directly.
+	 */
+	private static final int MAX_CACHED_LENGTH = 256;
+	private static final int SIZE = getTableSize();
+
+	private final int setMask;
+	private final int[] hashes;
+	private final byte[] encodings;
+	private final byte[][] keys;
+	private final String[] values;
+	private final long[] lastUse;
+	private long clock;
+
+	private StringTable(int size) {
+		setMask = size / WAYS - 1;
+		hashes = new int[size];
+		encodings = new byte[size];
+		keys = new byte[size][];
+		values = new String[size];
+		lastUse = new long[size];
+	}
+
+	/**
+	 * @return a new string table, or {@code null} if string tables have been disabled
+	 */
+	static StringTable create() {
+		return SIZE > 0 ? new StringTable(SIZE) : null;
+	}
+
+	/**
+	 * Get the string for a range of encoded bytes, decoding and adding it to the table if it is not
+	 * already present.
+	 *
+	 * @param input
+	 *            input used to decode the string if it is not present
+	 * @param buffer
+	 *            buffer holding the encoded bytes
+	 * @param start
+	 *            absolute position of the first byte in the buffer
+	 * @param size
+	 *            number of bytes
+	 * @param encoding
+	 *            the string encoding, used as part of the key
+	 * @return the decoded string
+	 */
+	String get(SeekableInputStream input, ByteBuffer buffer, int start, int size, byte encoding) throws IOException {
+		if (size > MAX_CACHED_LENGTH) {
+			return input.decodeString(start, size, encoding);
+		}
+		int hash = encoding;
+		for (int i = start; i < start + size; i++) {
+			hash = 31 * hash + buffer.get(i);
+		}
+		int set = ((hash ^ (hash >>> 16)) & setMask) * WAYS;
+		int victim = set;
+		for (int i = set; i < set + WAYS; i++) {
+			String value = values[i];
+			if (value == null) {
+				victim = i;
+				break;
+			}
+			if (hashes[i] == hash && encodings[i] == encoding && keys[i].length == size
+					&& matches(keys[i], buffer, start)) {
+				lastUse[i] = ++clock;
+				return value;
+			}
+			if (lastUse[i] < lastUse[victim]) {
+				victim = i;
+			}
+		}
+		byte[] key = new byte[size];
+		ByteBuffer view = buffer.duplicate();
+		// Cast to Buffer to stay compatible with the Java 8 API
+		((Buffer) view).position(start);
+		view.get(key);
+		String value = input.decodeString(start, size, encoding);
+		hashes[victim] = hash;
+		encodings[victim] = encoding;
+		keys[victim] = key;
+		values[victim] = value;
+		lastUse[victim] = ++clock;
+		return value;
+	}
+
+	private static boolean matches(byte[] key, ByteBuffer buffer, int start) {
+		for (int i = 0; i < key.length; i++) {
+			if (key[i] != buffer.get(start + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int getTableSize() {
+		int size = Integer.getInteger(STRING_TABLE_SIZE_PROPERTY_KEY, DEFAULT_SIZE);
+		if (size <= 0) {
+			return 0;
+		}
+		// Round up to a power of two number of sets
+		return Integer.highestOneBit(Math.max(size / WAYS, 1) * 2 - 1) * WAYS;
+	}
+}
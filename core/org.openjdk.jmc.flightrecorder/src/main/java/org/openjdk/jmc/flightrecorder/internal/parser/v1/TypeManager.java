@@ -35,7 +35,9 @@ package org.openjdk.jmc.flightrecorder.internal.parser.v1;
 import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -43,11 +45,15 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.openjdk.jmc.common.collection.FastAccessNumberMap;
+import org.openjdk.jmc.common.item.IAttribute;
 import org.openjdk.jmc.common.unit.ContentType;
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.IRange;
 import org.openjdk.jmc.common.unit.IUnit;
 import org.openjdk.jmc.common.unit.StructContentType;
 import org.openjdk.jmc.common.unit.UnitLookup;
 import org.openjdk.jmc.common.util.LabeledIdentifier;
+import org.openjdk.jmc.flightrecorder.JfrAttributes;
 import org.openjdk.jmc.flightrecorder.internal.InvalidJfrFileException;
 import org.openjdk.jmc.flightrecorder.internal.parser.LoaderContext;
 import org.openjdk.jmc.flightrecorder.internal.parser.v1.ChunkMetadata.AnnotatedElement;
@@ -77,6 +83,7 @@ import org.openjdk.jmc.flightrecorder.internal.parser.v1.ValueReaders.Reflective
 import org.openjdk.jmc.flightrecorder.internal.parser.v1.ValueReaders.StringReader;
 import org.openjdk.jmc.flightrecorder.internal.parser.v1.ValueReaders.StructReader;
 import org.openjdk.jmc.flightrecorder.internal.parser.v1.ValueReaders.TicksTimestampReader;
+import org.openjdk.jmc.flightrecorder.internal.util.CanonicalConstantMap;
 import org.openjdk.jmc.flightrecorder.internal.util.JfrInternalConstants;
 import org.openjdk.jmc.flightrecorder.messages.internal.Messages;
 import org.openjdk.jmc.flightrecorder.parser.IEventSink;
@@ -146,6 +153,8 @@ class TypeManager {
 		final ClassElement element;
 		final FastAccessNumberMap<Object> constants;
 		private IValueReader reader;
+		// Keys of the constants read in this chunk, only kept for types that are interned across chunks
+		private List<Long> constantKeys;
 
 		TypeEntry(ClassElement element) {
 			this(element, new FastAccessNumberMap<>());
@@ -157,6 +166,19 @@ class TypeManager {
 		TypeEntry(ClassElement element, FastAccessNumberMap<Object> constants) {
 			this.element = element;
 			this.constants = constants;
+			if (isMethodType() || isStackTraceType()) {
+				constantKeys = new ArrayList<>();
+			}
+		}
+
+		boolean isMethodType() {
+			return STRUCT_TYPE_METHOD.equals(element.typeIdentifier)
+					|| STRUCT_TYPE_METHOD_2.equals(element.typeIdentifier);
+		}
+
+		boolean isStackTraceType() {
+			return STRUCT_TYPE_STACK_TRACE.equals(element.typeIdentifier)
+					|| STRUCT_TYPE_STACK_TRACE_2.equals(element.typeIdentifier);
 		}
 
 		public IValueReader getReader() throws InvalidJfrFileException {
@@ -283,13 +305,28 @@ class TypeManager {
 			}
 		}
 
+		/**
+		 * Replace the resolved constants of this chunk with equal instances shared by all chunks in
+		 * the recording.
+		 */
+		void internConstants() {
+			if (constantKeys != null) {
+				for (Long key : constantKeys) {
+					constants.put(key, internConstant(key, constants.get(key)));
+				}
+				constantKeys = null;
+			}
+		}
+
 		void readConstant(IDataInput input) throws InvalidJfrFileException, IOException {
-			// FIXME: Constant lookup can perhaps be optimized (across chunks)
 			long constantIndex = input.readLong();
 			Object value = constants.get(constantIndex);
 			if (value == null) {
 				value = getReader().read(input, true);
 				constants.put(constantIndex, value);
+				if (constantKeys != null) {
+					constantKeys.add(constantIndex);
+				}
 			} else {
 				getReader().skip(input);
 			}
@@ -302,6 +339,9 @@ class TypeManager {
 		private Object[] reusableStruct;
 		private IEventSink eventSink;
 		private LabeledIdentifier eventType;
+		// Set if events outside the time range to load can be skipped after reading the first fields
+		private IRange<IQuantity> timeRange;
+		private boolean hasDuration;
 
 		EventTypeEntry(ClassElement element) {
 			this.element = element;
@@ -309,13 +349,43 @@ class TypeManager {
 		}
 
 		void readEvent(IDataInput input) throws InvalidJfrFileException, IOException {
-			for (int i = 0; i < valueReaders.size(); i++) {
+			int i = 0;
+			if (timeRange != null) {
+				IQuantity startTime = (IQuantity) valueReaders.get(0).read(input, false);
+				if (startTime.compareTo(timeRange.getEnd()) > 0) {
+					return;
+				}
+				reusableStruct[0] = startTime;
+				i = 1;
+				if (startTime.compareTo(timeRange.getStart()) < 0) {
+					if (!hasDuration) {
+						return;
+					}
+					IQuantity duration = (IQuantity) valueReaders.get(1).read(input, false);
+					if (startTime.add(duration).compareTo(timeRange.getStart()) < 0) {
+						return;
+					}
+					reusableStruct[1] = duration;
+					i = 2;
+				}
+			}
+			for (; i < valueReaders.size(); i++) {
 				reusableStruct[i] = valueReaders.get(i).read(input, false);
 			}
 			eventSink.addEvent(reusableStruct);
 		}
 
-		LabeledIdentifier getValueType() {
+		private boolean isTimeField(int index, IAttribute<IQuantity> attribute, ContentType<?> contentType)
+				throws InvalidJfrFileException {
+			if (element.getFieldCount() <= index || valueReaders.size() <= index) {
+				return false;
+			}
+			FieldElement fe = element.fields.get(index);
+			return !fe.isArray() && attribute.getIdentifier().equals(fe.fieldIdentifier)
+					&& valueReaders.get(index).getContentType() == contentType;
+		}
+
+		synchronized LabeledIdentifier getValueType() {
 			if (eventType == null) {
 				eventType = new LabeledIdentifier(element.typeIdentifier, element.classId, element.label,
 						element.description);
@@ -365,19 +435,36 @@ class TypeManager {
 				if (skipFields.size() > 0) {
 					eventSink = new SkipFieldsEventSink(eventSink, skipFields, reusableStruct.length);
 				}
+				if (context.getTimeRange() != null && isTimeField(0, JfrAttributes.START_TIME, UnitLookup.TIMESTAMP)) {
+					timeRange = context.getTimeRange();
+					hasDuration = isTimeField(1, JfrAttributes.DURATION, UnitLookup.TIMESPAN);
+				}
 			}
 		}
 	}
 
 	// NOTE: Using constant pool id as identifier.
-	private final Map<Long, StructContentType<Object[]>> structTypes = new HashMap<>();
-	private final FastAccessNumberMap<TypeEntry> otherTypes = new FastAccessNumberMap<>();
+	private final Map<Long, StructContentType<Object[]>> structTypes;
+	private final FastAccessNumberMap<TypeEntry> otherTypes;
 	private final FastAccessNumberMap<EventTypeEntry> eventTypes = new FastAccessNumberMap<>();
 	private final ChunkStructure header;
+	private final List<ClassElement> classList;
+	// Recording wide pools of interned constants
+	private final CanonicalConstantMap<Object> methodConstants;
+	private final CanonicalConstantMap<Object> frameConstants;
+	private final CanonicalConstantMap<Object> stackTraceConstants;
+	// Interned instances of the methods of this chunk, only set while interning constants
+	private Map<Object, Object> chunkMethods;
 
 	TypeManager(List<ClassElement> classList, LoaderContext context, ChunkStructure header)
 			throws InvalidJfrFileException, IOException {
 		this.header = header;
+		this.classList = classList;
+		methodConstants = context.getConstantPool(JfrMethod.class);
+		frameConstants = context.getConstantPool(JfrFrame.class);
+		stackTraceConstants = context.getConstantPool(JfrStackTrace.class);
+		structTypes = new HashMap<>();
+		otherTypes = new FastAccessNumberMap<>();
 		for (ClassElement ce : classList) {
 			if (ce.isEventType()) {
 				eventTypes.put(ce.classId, new EventTypeEntry(ce));
@@ -397,6 +484,34 @@ class TypeManager {
 		}
 	}
 
+	/**
+	 * Create a type manager for reading events from a separate segment of the chunk. The new type
+	 * manager shares the constants of this one, but has its own event sinks so that events can be
+	 * read by both concurrently. Must be called after the constants have been resolved, and not
+	 * concurrently with reading events.
+	 */
+	private TypeManager(TypeManager parent, LoaderContext context) throws InvalidJfrFileException, IOException {
+		header = parent.header;
+		classList = parent.classList;
+		methodConstants = parent.methodConstants;
+		frameConstants = parent.frameConstants;
+		stackTraceConstants = parent.stackTraceConstants;
+		structTypes = parent.structTypes;
+		otherTypes = parent.otherTypes;
+		for (ClassElement ce : classList) {
+			if (ce.isEventType()) {
+				eventTypes.put(ce.classId, new EventTypeEntry(ce));
+			}
+		}
+		for (EventTypeEntry ce : eventTypes) {
+			ce.init(context);
+		}
+	}
+
+	TypeManager createSegmentManager(LoaderContext context) throws InvalidJfrFileException, IOException {
+		return new TypeManager(this, context);
+	}
+
 	void readEvent(long typeId, IDataInput input) throws InvalidJfrFileException, IOException {
 		EventTypeEntry entry = eventTypes.get(typeId);
 		if (entry == null) {
@@ -419,6 +534,141 @@ class TypeManager {
 		for (TypeEntry classEntry : otherTypes) {
 			classEntry.resolveConstants();
 		}
+		// Methods are interned first so that the frames of new stack traces can refer to interned methods
+		chunkMethods = new IdentityHashMap<>();
+		try {
+			for (TypeEntry classEntry : otherTypes) {
+				if (classEntry.isMethodType()) {
+					classEntry.internConstants();
+				}
+			}
+			for (TypeEntry classEntry : otherTypes) {
+				if (classEntry.isStackTraceType()) {
+					classEntry.internConstants();
+				}
+			}
+		} finally {
+			chunkMethods = null;
+		}
+	}
+
+	/**
+	 * Get the recording wide instance of a constant. Only methods and stack traces are interned.
+	 * Classes and threads are not, since their equality does not take all their fields into
+	 * account.
+	 * <p>
+	 * Methods are identified by their constant pool index together with their class and class
+	 * loader, since the equality of methods only compares class names and would merge methods of
+	 * classes with the same name from different class loaders. The constant pool index of a method
+	 * is the same in all chunks of a recording. Frames and stack traces are identified by the
+	 * interned instances they refer to. The constants of the chunk are never modified, new frames
+	 * and stack traces are created for the interned instances.
+	 */
+	private Object internConstant(long constantIndex, Object constant) {
+		if (constant instanceof JfrMethod) {
+			JfrMethod method = (JfrMethod) constant;
+			Object canonical = ((InternKey) methodConstants.canonicalize(new InternKey(method,
+					new Object[] {constantIndex, method.type, method.name, method.descriptor, method.modifiers,
+							method.hidden, getClassLoader(method.type), getModifiers(method.type),
+							getPackage(method.type)},
+					new Object[0]))).constant;
+			chunkMethods.put(method, canonical);
+			return canonical;
+		} else if (constant instanceof JfrStackTrace) {
+			JfrStackTrace trace = (JfrStackTrace) constant;
+			if (!(trace.frames instanceof Object[])) {
+				return trace;
+			}
+			Object[] frames = ((Object[]) trace.frames).clone();
+			for (int i = 0; i < frames.length; i++) {
+				if (frames[i] instanceof JfrFrame) {
+					frames[i] = internFrame((JfrFrame) frames[i]);
+				}
+			}
+			JfrStackTrace internedTrace = new JfrStackTrace();
+			internedTrace.frames = Arrays.asList(frames);
+			internedTrace.truncated = trace.truncated;
+			return ((InternKey) stackTraceConstants
+					.canonicalize(new InternKey(internedTrace, new Object[] {trace.truncated}, frames))).constant;
+		}
+		return constant;
+	}
+
+	private Object internFrame(JfrFrame frame) {
+		Object method = frame.method;
+		if (method != null) {
+			Object internedMethod = chunkMethods.get(method);
+			// Methods that were not interned can only be shared by frames referring to the same instance
+			method = internedMethod != null ? internedMethod : method;
+		}
+		JfrFrame internedFrame = new JfrFrame();
+		internedFrame.method = method;
+		internedFrame.lineNumber = frame.lineNumber;
+		internedFrame.bytecodeIndex = frame.bytecodeIndex;
+		// Use the converted frame type so that the hash code does not change later
+		internedFrame.type = frame.getType();
+		return ((InternKey) frameConstants.canonicalize(new InternKey(internedFrame,
+				new Object[] {internedFrame.lineNumber, internedFrame.bytecodeIndex, internedFrame.type},
+				new Object[] {method}))).constant;
+	}
+
+	private static Object getClassLoader(Object type) {
+		return type instanceof JfrJavaClass ? ((JfrJavaClass) type).classLoader : null;
+	}
+
+	private static Object getModifiers(Object type) {
+		return type instanceof JfrJavaClass ? ((JfrJavaClass) type).modifiers : null;
+	}
+
+	private static Object getPackage(Object type) {
+		return type instanceof JfrJavaClass ? ((JfrJavaClass) type)._package : null;
+	}
+
+	/**
+	 * Key of an interned constant. Values are compared by equality, while references to other
+	 * interned constants are compared by identity.
+	 */
+	private static class InternKey {
+		final Object constant;
+		private final Object[] values;
+		private final Object[] references;
+		private final int hashCode;
+
+		InternKey(Object constant, Object[] values, Object[] references) {
+			this.constant = constant;
+			this.values = values;
+			this.references = references;
+			int hash = Arrays.hashCode(values);
+			for (Object reference : references) {
+				hash = 31 * hash + System.identityHashCode(reference);
+			}
+			hashCode = hash;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			} else if (obj instanceof InternKey) {
+				InternKey other = (InternKey) obj;
+				if (hashCode != other.hashCode || references.length != other.references.length
+						|| !Arrays.equals(values, other.values)) {
+					return false;
+				}
+				for (int i = 0; i < references.length; i++) {
+					if (references[i] != other.references[i]) {
+						return false;
+					}
+				}
+				return true;
+			}
+			return false;
+		}
 	}
 
 	private TypeEntry getTypeEntry(long typeId) throws InvalidJfrFileException {
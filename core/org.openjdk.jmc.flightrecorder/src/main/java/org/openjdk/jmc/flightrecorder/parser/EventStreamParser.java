@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.openjdk.jmc.common.io.IOToolkit;
+import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.JfrLoaderToolkit;
+import org.openjdk.jmc.flightrecorder.internal.FlightRecordingLoader;
+
+/**
+ * Single pass parsing of binary JFR data. Unlike {@link JfrLoaderToolkit}, which stores all events
+ * of a recording in memory, the methods in this class pass each event to an
+ * {@link IEventSinkFactory} provided by the caller as soon as it has been read. This makes it
+ * possible to process recordings that are much larger than the available heap. The parser only
+ * keeps the data and constants of the chunk that is being read, so apart from what the sinks keep,
+ * the heap usage is bounded by the largest chunk in the recording rather than by the whole
+ * recording. Constant values, such as stack traces, are therefore not shared between chunks.
+ * <p>
+ * The chunks are read one at a time in the calling thread and events are passed to the sinks in the
+ * order that they are stored in each chunk. This means that the events are generally not sorted by
+ * time. For each chunk, {@link IEventSinkFactory#create(String, String, String[], String, List)
+ * IEventSinkFactory.create} is called for every event type present in the chunk, so the same event
+ * type will normally be seen multiple times. When all chunks have been read,
+ * {@link IEventSinkFactory#flush()} is called.
+ * <p>
+ * The events pass through the parser extensions before they reach the sink factory, in the same way
+ * as when loading a recording into memory. This means that the event types and values are the same
+ * as for events loaded with {@link JfrLoaderToolkit}.
+ */
+public final class EventStreamParser {
+
+	private EventStreamParser() {
+	}
+
+	/**
+	 * Parse a potentially zipped or gzipped input stream using the parser extensions loaded from
+	 * the java service loader.
+	 *
+	 * @param stream
+	 *            the input stream to read the recording from
+	 * @param sinkFactory
+	 *            the sink factory to pass the events to
+	 */
+	public static void parse(InputStream stream, IEventSinkFactory sinkFactory)
+			throws IOException, CouldNotLoadRecordingException {
+		parse(stream, ParserExtensionRegistry.getParserExtensions(), sinkFactory);
+	}
+
+	/**
+	 * Parse a potentially zipped or gzipped input stream using the supplied parser extensions.
+	 *
+	 * @param stream
+	 *            the input stream to read the recording from
+	 * @param extensions
+	 *            the extensions to use when parsing the data
+	 * @param sinkFactory
+	 *            the sink factory to pass the events to
+	 */
+	public static void parse(
+		InputStream stream, List<? extends IParserExtension> extensions, IEventSinkFactory sinkFactory)
+			throws IOException, CouldNotLoadRecordingException {
+		try (InputStream in = IOToolkit.openUncompressedStream(stream)) {
+			FlightRecordingLoader.streamChunks(extensions, FlightRecordingLoader.createChunkSupplier(in), sinkFactory,
+					false, true);
+		}
+	}
+
+	/**
+	 * Parse a potentially zipped or gzipped file using the parser extensions loaded from the java
+	 * service loader.
+	 *
+	 * @param file
+	 *            the file to read the recording from
+	 * @param sinkFactory
+	 *            the sink factory to pass the events to
+	 */
+	public static void parse(File file, IEventSinkFactory sinkFactory)
+			throws IOException, CouldNotLoadRecordingException {
+		parse(Collections.singletonList(file), ParserExtensionRegistry.getParserExtensions(), sinkFactory);
+	}
+
+	/**
+	 * Parse a recording from a sequence of potentially zipped or gzipped files using the supplied
+	 * parser extensions. The files are read in list order, which makes it possible to process a
+	 * series of rotated recording files in a single pass.
+	 *
+	 * @param files
+	 *            the files to read the recording from
+	 * @param extensions
+	 *            the extensions to use when parsing the data
+	 * @param sinkFactory
+	 *            the sink factory to pass the events to
+	 */
+	public static void parse(
+		List<File> files, List<? extends IParserExtension> extensions, IEventSinkFactory sinkFactory)
+			throws IOException, CouldNotLoadRecordingException {
+		List<InputStream> streams = new ArrayList<>(files.size());
+		try {
+			for (File file : files) {
+				streams.add(IOToolkit.openUncompressedStream(file));
+			}
+		} catch (IOException e) {
+			for (InputStream stream : streams) {
+				IOToolkit.closeSilently(stream);
+			}
+			throw e;
+		}
+		try (InputStream stream = new SequenceInputStream(Collections.enumeration(streams))) {
+			FlightRecordingLoader.streamChunks(extensions, FlightRecordingLoader.createChunkSupplier(stream),
+					sinkFactory, false, true);
+		}
+	}
+}
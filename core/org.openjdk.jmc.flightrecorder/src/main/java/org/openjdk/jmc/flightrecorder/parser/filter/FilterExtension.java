@@ -33,15 +33,23 @@
 package org.openjdk.jmc.flightrecorder.parser.filter;
 
 import java.util.List;
+import java.util.function.Predicate;
 
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.IRange;
+import org.openjdk.jmc.flightrecorder.JfrAttributes;
 import org.openjdk.jmc.flightrecorder.parser.IEventSink;
 import org.openjdk.jmc.flightrecorder.parser.IEventSinkFactory;
 import org.openjdk.jmc.flightrecorder.parser.IParserExtension;
 import org.openjdk.jmc.flightrecorder.parser.ValueField;
 
 /**
- * Parser extension for skipping event types that should be filtered out using a
+ * Parser extension for skipping event types and events that should be filtered out using a
  * {@link IOnLoadFilter}.
+ * <p>
+ * The time range of the filter is also used by the parser to skip chunks and events before they are
+ * read. Events are still checked against the time range here, for parser versions that can not skip
+ * events.
  */
 public class FilterExtension implements IParserExtension {
 
@@ -65,9 +73,24 @@ public class FilterExtension implements IParserExtension {
 			public IEventSink create(
 				String identifier, String label, String[] category, String description,
 				List<ValueField> dataStructure) {
-				if (recordingLoadFilter == null || recordingLoadFilter.allowEventType(identifier)) {
-					IEventSink subSink = subFactory.create(identifier, label, category, description, dataStructure);
-					return subSink;
+				if (recordingLoadFilter == null) {
+					return subFactory.create(identifier, label, category, description, dataStructure);
+				} else if (recordingLoadFilter.allowEventType(identifier)) {
+					final IEventSink subSink = subFactory.create(identifier, label, category, description,
+							dataStructure);
+					final Predicate<Object[]> eventPredicate = createEventPredicate(identifier, dataStructure);
+					if (eventPredicate == null) {
+						return subSink;
+					}
+					return new IEventSink() {
+
+						@Override
+						public void addEvent(Object[] values) {
+							if (eventPredicate.test(values)) {
+								subSink.addEvent(values);
+							}
+						}
+					};
 				} else {
 					return SKIP_SINK;
 				}
@@ -84,4 +107,66 @@ public class FilterExtension implements IParserExtension {
 	public String getValueInterpretation(String eventTypeId, String fieldId) {
 		return null;
 	}
+
+	/**
+	 * @return the filter used by this extension, may be {@code null}
+	 */
+	public IOnLoadFilter getFilter() {
+		return recordingLoadFilter;
+	}
+
+	private Predicate<Object[]> createEventPredicate(String identifier, List<ValueField> dataStructure) {
+		Predicate<Object[]> predicate = recordingLoadFilter.getEventPredicate(identifier, dataStructure);
+		IRange<IQuantity> timeRange = recordingLoadFilter.getTimeRange();
+		if (timeRange == null) {
+			return predicate;
+		}
+		Predicate<Object[]> timePredicate = createTimePredicate(timeRange, dataStructure);
+		if (timePredicate == null) {
+			return predicate;
+		}
+		return predicate == null ? timePredicate : timePredicate.and(predicate);
+	}
+
+	private static Predicate<Object[]> createTimePredicate(
+		final IRange<IQuantity> timeRange, List<ValueField> dataStructure) {
+		int startIndex = -1;
+		int endIndex = -1;
+		int durationIndex = -1;
+		for (int i = 0; i < dataStructure.size(); i++) {
+			ValueField vf = dataStructure.get(i);
+			if (vf.matches(JfrAttributes.START_TIME)) {
+				startIndex = i;
+			} else if (vf.matches(JfrAttributes.END_TIME)) {
+				endIndex = i;
+			} else if (vf.matches(JfrAttributes.DURATION)) {
+				durationIndex = i;
+			}
+		}
+		if (startIndex < 0 && endIndex < 0) {
+			return null;
+		}
+		final int start = startIndex;
+		final int end = endIndex;
+		final int duration = durationIndex;
+		return new Predicate<Object[]>() {
+
+			@Override
+			public boolean test(Object[] values) {
+				IQuantity startTime = start < 0 ? null : (IQuantity) values[start];
+				IQuantity endTime = end < 0 ? null : (IQuantity) values[end];
+				if (endTime == null) {
+					endTime = (startTime != null && duration >= 0 && values[duration] != null)
+							? startTime.add((IQuantity) values[duration]) : startTime;
+				} else if (startTime == null) {
+					startTime = (duration >= 0 && values[duration] != null)
+							? endTime.subtract((IQuantity) values[duration]) : endTime;
+				}
+				if (startTime == null) {
+					return true;
+				}
+				return startTime.compareTo(timeRange.getEnd()) <= 0 && endTime.compareTo(timeRange.getStart()) >= 0;
+			}
+		};
+	}
 }
@@ -32,6 +32,13 @@
  */
 package org.openjdk.jmc.flightrecorder.parser.filter;
 
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.IRange;
+import org.openjdk.jmc.flightrecorder.parser.ValueField;
+
 /**
  * Filter used when loading a recording.
  */
@@ -46,4 +53,30 @@ public interface IOnLoadFilter {
 	 */
 	boolean allowEventType(String eventTypeId);
 
+	/**
+	 * Time range of the events to load. Events that do not overlap the range are skipped. The
+	 * parser uses the range to skip chunks that do not overlap it, and to skip events after reading
+	 * only their start time and duration.
+	 *
+	 * @return the time range of events to load, or {@code null} to load events regardless of time
+	 */
+	default IRange<IQuantity> getTimeRange() {
+		return null;
+	}
+
+	/**
+	 * Predicate for allowing events based on their field values. This is called once for each
+	 * allowed event type in each chunk, and the returned predicate is then evaluated for each event
+	 * of that type before any item is created for it.
+	 *
+	 * @param eventTypeId
+	 *            Event type identifier
+	 * @param dataStructure
+	 *            the fields of the event type
+	 * @return a predicate on the field values of an event, in the same order as
+	 *         {@code dataStructure}, or {@code null} if all events of the type are allowed
+	 */
+	default Predicate<Object[]> getEventPredicate(String eventTypeId, List<ValueField> dataStructure) {
+		return null;
+	}
 }
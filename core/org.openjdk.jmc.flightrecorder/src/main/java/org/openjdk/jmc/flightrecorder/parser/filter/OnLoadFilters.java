@@ -34,14 +34,47 @@ package org.openjdk.jmc.flightrecorder.parser.filter;
 
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.IRange;
+import org.openjdk.jmc.common.unit.QuantityRange;
+import org.openjdk.jmc.flightrecorder.parser.ValueField;
+
 /**
  * Utility methods for creating {@link IOnLoadFilter}s
  */
 public class OnLoadFilters {
 
+	/**
+	 * Base class for filters that add to the restrictions of another filter.
+	 */
+	private static class DelegatingFilter implements IOnLoadFilter {
+		protected final IOnLoadFilter delegate;
+
+		DelegatingFilter(IOnLoadFilter delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public boolean allowEventType(String eventTypeId) {
+			return delegate.allowEventType(eventTypeId);
+		}
+
+		@Override
+		public IRange<IQuantity> getTimeRange() {
+			return delegate.getTimeRange();
+		}
+
+		@Override
+		public Predicate<Object[]> getEventPredicate(String eventTypeId, List<ValueField> dataStructure) {
+			return delegate.getEventPredicate(eventTypeId, dataStructure);
+		}
+	}
+
 	public static final IOnLoadFilter ALLOW_ALL_FILTER = new IOnLoadFilter() {
 
 		@Override
@@ -119,4 +152,77 @@ public class OnLoadFilters {
 			}
 		};
 	}
+
+	/**
+	 * Filter that only allows events overlapping a time range, in addition to the restrictions of
+	 * another filter. If the other filter also has a time range, then the intersection of the
+	 * ranges is used.
+	 *
+	 * @param filter
+	 *            the filter to add the time range to
+	 * @param timeRange
+	 *            the time range of events to load
+	 * @return a filter
+	 */
+	public static IOnLoadFilter withTimeRange(IOnLoadFilter filter, final IRange<IQuantity> timeRange) {
+		return new DelegatingFilter(filter) {
+
+			@Override
+			public IRange<IQuantity> getTimeRange() {
+				IRange<IQuantity> otherRange = delegate.getTimeRange();
+				if (otherRange == null) {
+					return timeRange;
+				}
+				IQuantity start = max(timeRange.getStart(), otherRange.getStart());
+				IQuantity end = min(timeRange.getEnd(), otherRange.getEnd());
+				// An empty intersection is represented by a range that ends before it starts
+				return QuantityRange.createWithEnd(start, end);
+			}
+		};
+	}
+
+	/**
+	 * Filter that only allows events where a field value matches a predicate, in addition to the
+	 * restrictions of another filter. Events of types that do not have the field are not affected.
+	 *
+	 * @param filter
+	 *            the filter to add the predicate to
+	 * @param fieldId
+	 *            the identifier of the field to check
+	 * @param fieldPredicate
+	 *            the predicate that the field value must match
+	 * @return a filter
+	 */
+	public static IOnLoadFilter withFieldPredicate(
+		IOnLoadFilter filter, final String fieldId, final Predicate<Object> fieldPredicate) {
+		return new DelegatingFilter(filter) {
+
+			@Override
+			public Predicate<Object[]> getEventPredicate(String eventTypeId, List<ValueField> dataStructure) {
+				Predicate<Object[]> otherPredicate = delegate.getEventPredicate(eventTypeId, dataStructure);
+				for (int i = 0; i < dataStructure.size(); i++) {
+					if (dataStructure.get(i).getIdentifier().equals(fieldId)) {
+						final int index = i;
+						Predicate<Object[]> predicate = new Predicate<Object[]>() {
+
+							@Override
+							public boolean test(Object[] values) {
+								return fieldPredicate.test(values[index]);
+							}
+						};
+						return otherPredicate == null ? predicate : otherPredicate.and(predicate);
+					}
+				}
+				return otherPredicate;
+			}
+		};
+	}
+
+	private static IQuantity max(IQuantity a, IQuantity b) {
+		return a.compareTo(b) >= 0 ? a : b;
+	}
+
+	private static IQuantity min(IQuantity a, IQuantity b) {
+		return a.compareTo(b) <= 0 ? a : b;
+	}
 }
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.common.test.collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.openjdk.jmc.common.collection.LogHistogram;
+
+public class LogHistogramTest {
+
+	private static final double ACCURACY = 0.01;
+
+	@Test
+	public void testQuantilesWithinAccuracy() {
+		Random random = new Random(4711);
+		double[] values = new double[10000];
+		LogHistogram histogram = new LogHistogram(ACCURACY, 2048);
+		for (int i = 0; i < values.length; i++) {
+			// Log normal, like typical latencies
+			values[i] = Math.exp(random.nextGaussian() * 3 + 10);
+			histogram.add(values[i]);
+		}
+		Arrays.sort(values);
+		assertEquals(values.length, histogram.getCount());
+		assertQuantiles(values, histogram);
+		assertEquals(values[0], histogram.getQuantile(0), 0);
+		assertEquals(values[values.length - 1], histogram.getQuantile(1), 0);
+	}
+
+	@Test
+	public void testNegativeAndZeroValues() {
+		double[] values = new double[201];
+		LogHistogram histogram = new LogHistogram(ACCURACY, 2048);
+		for (int i = 0; i < values.length; i++) {
+			values[i] = (i - 100) * 1.5;
+			histogram.add(values[i]);
+		}
+		assertQuantiles(values, histogram);
+		assertEquals(0, histogram.getQuantile(0.5), 0);
+		List<LogHistogram.Bucket> buckets = histogram.getBuckets();
+		long count = 0;
+		for (int i = 0; i < buckets.size(); i++) {
+			LogHistogram.Bucket bucket = buckets.get(i);
+			assertTrue(bucket.getLowerBound() <= bucket.getValue() && bucket.getValue() <= bucket.getUpperBound());
+			if (i > 0) {
+				assertTrue(buckets.get(i - 1).getUpperBound() <= bucket.getLowerBound());
+			}
+			count += bucket.getCount();
+		}
+		assertEquals(values.length, count);
+	}
+
+	@Test
+	public void testMergeEqualsSingleHistogram() {
+		Random random = new Random(17);
+		LogHistogram all = new LogHistogram(ACCURACY, 2048);
+		LogHistogram first = new LogHistogram(ACCURACY, 2048);
+		LogHistogram second = new LogHistogram(ACCURACY, 2048);
+		for (int i = 0; i < 5000; i++) {
+			double value = random.nextDouble() * (i < 2500 ? 1e3 : 1e9);
+			all.add(value);
+			(i < 2500 ? first : second).add(value);
+		}
+		first.merge(second);
+		assertEquals(all.getCount(), first.getCount());
+		assertEquals(all.getMin(), first.getMin(), 0);
+		assertEquals(all.getMax(), first.getMax(), 0);
+		for (double q = 0; q <= 1; q += 0.01) {
+			assertEquals(all.getQuantile(q), first.getQuantile(q), 0);
+		}
+	}
+
+	@Test
+	public void testCollapseKeepsHighQuantiles() {
+		LogHistogram histogram = new LogHistogram(ACCURACY, 64);
+		double[] values = new double[1000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = Math.pow(1.05, i);
+		}
+		// Add in falling order so that the lowest buckets are collapsed as the range grows downwards
+		for (int i = values.length - 1; i >= 0; i--) {
+			histogram.add(values[i]);
+		}
+		assertTrue(histogram.getBuckets().size() <= 64);
+		assertEquals(values.length, histogram.getCount());
+		double p99 = values[(int) (0.99 * (values.length - 1))];
+		assertEquals(p99, histogram.getQuantile(0.99), p99 * ACCURACY);
+		assertEquals(values[values.length - 1], histogram.getQuantile(1), 0);
+	}
+
+	@Test
+	public void testEmpty() {
+		LogHistogram histogram = new LogHistogram(ACCURACY, 2048);
+		assertEquals(0, histogram.getCount());
+		assertTrue(Double.isNaN(histogram.getQuantile(0.5)));
+		assertTrue(histogram.getBuckets().isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMergeDifferentAccuracy() {
+		new LogHistogram(ACCURACY, 2048).merge(new LogHistogram(ACCURACY * 2, 2048));
+	}
+
+	private static void assertQuantiles(double[] sortedValues, LogHistogram histogram) {
+		for (double q : new double[] {0.01, 0.1, 0.5, 0.9, 0.99, 0.999}) {
+			double expected = sortedValues[(int) (q * (sortedValues.length - 1))];
+			assertEquals("Quantile " + q, expected, histogram.getQuantile(q), Math.abs(expected) * ACCURACY);
+		}
+	}
+}
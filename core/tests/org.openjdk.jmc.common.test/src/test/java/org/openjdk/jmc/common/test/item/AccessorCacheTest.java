@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.common.test.item;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.openjdk.jmc.common.item.Attribute;
+import org.openjdk.jmc.common.item.IMemberAccessor;
+import org.openjdk.jmc.common.item.IType;
+import org.openjdk.jmc.common.unit.StructContentType;
+import org.openjdk.jmc.common.unit.UnitLookup;
+
+@SuppressWarnings("nls")
+public class AccessorCacheTest {
+
+	private static class CountingAttribute extends Attribute<String> {
+		final AtomicInteger resolveCount = new AtomicInteger();
+		final boolean provideCustom;
+
+		CountingAttribute(String identifier, boolean provideCustom) {
+			super(identifier, identifier, null, UnitLookup.PLAIN_TEXT);
+			this.provideCustom = provideCustom;
+		}
+
+		@Override
+		public <U> IMemberAccessor<String, U> customAccessor(IType<U> type) {
+			resolveCount.incrementAndGet();
+			if (!provideCustom) {
+				return null;
+			}
+			return new IMemberAccessor<String, U>() {
+				@Override
+				public String getMember(U inObject) {
+					return "custom";
+				}
+			};
+		}
+	}
+
+	@Test
+	public void testCustomAccessorResolvedOnce() {
+		StructContentType<Object> type = new StructContentType<>("test.type", "Test", null);
+		CountingAttribute attribute = new CountingAttribute("test.custom", true);
+		IMemberAccessor<String, Object> accessor = attribute.getAccessor(type);
+		assertNotNull(accessor);
+		assertSame(accessor, attribute.getAccessor(type));
+		assertEquals(1, attribute.resolveCount.get());
+	}
+
+	@Test
+	public void testMissingAccessorResolvedOnce() {
+		StructContentType<Object> type = new StructContentType<>("test.type", "Test", null);
+		CountingAttribute attribute = new CountingAttribute("test.missing", false);
+		assertNull(attribute.getAccessor(type));
+		assertNull(attribute.getAccessor(type));
+		assertEquals(1, attribute.resolveCount.get());
+	}
+
+	@Test
+	public void testAddFieldClearsCache() {
+		StructContentType<Object> type = new StructContentType<>("test.type", "Test", null);
+		CountingAttribute attribute = new CountingAttribute("test.field", false);
+		assertNull(attribute.getAccessor(type));
+		IMemberAccessor<String, Object> field = new IMemberAccessor<String, Object>() {
+			@Override
+			public String getMember(Object inObject) {
+				return "field";
+			}
+		};
+		type.addField("test.field", UnitLookup.PLAIN_TEXT, "Field", null, field);
+		assertSame(field, attribute.getAccessor(type));
+	}
+
+	@Test
+	public void testAddFieldWhileResolving() {
+		final StructContentType<Object> type = new StructContentType<>("test.type", "Test", null);
+		final IMemberAccessor<String, Object> field = new IMemberAccessor<String, Object>() {
+			@Override
+			public String getMember(Object inObject) {
+				return "field";
+			}
+		};
+		CountingAttribute attribute = new CountingAttribute("test.field", false) {
+			@Override
+			public <U> IMemberAccessor<String, U> customAccessor(IType<U> t) {
+				if (resolveCount.get() == 0) {
+					// Change the type after the lookup has found that it has no such field
+					type.addField("test.field", UnitLookup.PLAIN_TEXT, "Field", null, field);
+				}
+				return super.customAccessor(t);
+			}
+		};
+		assertNull(attribute.getAccessor(type));
+		assertSame(field, attribute.getAccessor(type));
+		assertSame(field, attribute.getAccessor(type));
+		assertEquals(1, attribute.resolveCount.get());
+	}
+
+	@Test
+	public void testConcurrentLookups() throws Exception {
+		final StructContentType<Object> type = new StructContentType<>("test.type", "Test", null);
+		final List<CountingAttribute> attributes = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			attributes.add(new CountingAttribute("test.attr" + i, i % 3 != 0));
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<List<IMemberAccessor<String, Object>>>> results = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				results.add(executor.submit(new Callable<List<IMemberAccessor<String, Object>>>() {
+					@Override
+					public List<IMemberAccessor<String, Object>> call() {
+						List<IMemberAccessor<String, Object>> accessors = new ArrayList<>();
+						for (CountingAttribute attribute : attributes) {
+							accessors.add(attribute.getAccessor(type));
+						}
+						return accessors;
+					}
+				}));
+			}
+			List<IMemberAccessor<String, Object>> first = results.get(0).get();
+			for (Future<List<IMemberAccessor<String, Object>>> result : results) {
+				List<IMemberAccessor<String, Object>> accessors = result.get();
+				for (int i = 0; i < attributes.size(); i++) {
+					assertSame(first.get(i), accessors.get(i));
+					assertEquals(i % 3 == 0, accessors.get(i) == null);
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * 
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.common.test.item;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.openjdk.jmc.common.item.AggregationBatch;
+import org.openjdk.jmc.common.item.AggregationBatch.Aggregate;
+import org.openjdk.jmc.common.item.Aggregators;
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.item.IItemFilter;
+import org.openjdk.jmc.common.item.ItemFilters;
+import org.openjdk.jmc.common.test.MCTestCase;
+import org.openjdk.jmc.common.test.mock.item.MockAggregators;
+import org.openjdk.jmc.common.test.mock.item.MockAttributes;
+import org.openjdk.jmc.common.test.mock.item.MockCollections;
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.UnitLookup;
+
+public class AggregationBatchTest extends MCTestCase {
+	private static final IItemFilter LARGE_VALUES = ItemFilters.more(MockAttributes.DOUBLE_VALUE,
+			UnitLookup.NUMBER_UNITY.quantity(500));
+
+	@Test
+	public void testSameAsSeparateAggregates() {
+		Number[] values = MockCollections.generateNumberArray(400, 999);
+		List<Number> largeValues = new ArrayList<>();
+		for (Number value : values) {
+			if (value.doubleValue() > 500) {
+				largeValues.add(value);
+			}
+		}
+		IItemCollection items = MockCollections.getNumberCollection(values);
+		IItemCollection largeItems = MockCollections
+				.getNumberCollection(largeValues.toArray(new Number[largeValues.size()]));
+		AggregationBatch batch = new AggregationBatch();
+		Aggregate<IQuantity> sum = batch.add(MockAggregators.SUM);
+		Aggregate<IQuantity> stddev = batch.add(MockAggregators.STDDEV);
+		Aggregate<IQuantity> count = batch.add(Aggregators.count());
+		Aggregate<IQuantity> largeSum = batch.add(LARGE_VALUES, MockAggregators.SUM);
+		Aggregate<IQuantity> largeCount = batch.add(LARGE_VALUES, Aggregators.count());
+		batch.execute(items);
+
+		Assert.assertEquals(items.getAggregate(MockAggregators.SUM), sum.getValue());
+		Assert.assertEquals(items.getAggregate(MockAggregators.STDDEV), stddev.getValue());
+		Assert.assertEquals(400, count.getValue().longValue());
+		Assert.assertEquals(largeItems.getAggregate(MockAggregators.SUM), largeSum.getValue());
+		Assert.assertEquals(largeValues.size(), largeCount.getValue().longValue());
+	}
+
+	@Test
+	public void testEmptyCollection() {
+		IItemCollection items = MockCollections.getNumberCollection(MockCollections.generateNumberArray(0, 1));
+		AggregationBatch batch = new AggregationBatch();
+		Aggregate<IQuantity> sum = batch.add(MockAggregators.SUM);
+		Aggregate<IQuantity> count = batch.add(Aggregators.count());
+		batch.execute(items);
+		Assert.assertEquals(items.getAggregate(MockAggregators.SUM), sum.getValue());
+		Assert.assertEquals(0, count.getValue().longValue());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testValueBeforeExecute() {
+		AggregationBatch batch = new AggregationBatch();
+		batch.add(MockAggregators.SUM).getValue();
+	}
+}
@@ -32,6 +32,9 @@
  */
 package org.openjdk.jmc.common.test.item;
 
+import java.util.Arrays;
+import java.util.Map;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -44,6 +47,8 @@ import org.openjdk.jmc.common.test.mock.item.MockAttributes;
 import org.openjdk.jmc.common.test.mock.item.MockCollections;
 import org.openjdk.jmc.common.item.IItemCollection;
 import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.IRange;
+import org.openjdk.jmc.common.unit.UnitLookup;
 
 @SuppressWarnings("nls")
 public class AggregatorTest extends MCTestCase {
@@ -166,6 +171,17 @@ public class AggregatorTest extends MCTestCase {
 		Assert.assertEquals(aggregate.doubleValue(), 0, EPSILON);
 	}
 
+	@Test
+	public void testMixedUnitPrimitiveAggregators() {
+		IItemCollection mockCollection = MockCollections
+				.getNumberCollection(MockCollections.generateNumberArray(10, 1));
+		// The first value sets the unit to milliseconds, so the rest must be read from the double values
+		IQuantity sum = mockCollection.getAggregate(Aggregators.sum(MockAttributes.MIXED_UNIT_INDEX_VALUE));
+		Assert.assertEquals(45.0, sum.doubleValueIn(UnitLookup.SECOND), EPSILON);
+		IQuantity avg = mockCollection.getAggregate(Aggregators.avg(MockAttributes.MIXED_UNIT_INDEX_VALUE));
+		Assert.assertEquals(4.5, avg.doubleValueIn(UnitLookup.SECOND), EPSILON);
+	}
+
 	@Test
 	public void testAdvancedMinAggregator() {
 		IItemCollection mockCollection = MockCollections.getNumberCollection(new Number[] {101, 10, 135, 10});
@@ -194,6 +210,48 @@ public class AggregatorTest extends MCTestCase {
 		Assert.assertEquals(10.0d, aggregate.doubleValue(), EPSILON);
 	}
 
+	@Test
+	public void testQuantileAggregators() {
+		Number[] values = MockCollections.generateNumberArray(400, 999);
+		IItemCollection mockDoubleCollection = MockCollections.getNumberCollection(values);
+		double[] sorted = new double[values.length];
+		for (int i = 0; i < values.length; i++) {
+			sorted[i] = values[i].doubleValue();
+		}
+		Arrays.sort(sorted);
+		// The quantile is within 1% of the value with rank quantile * (count - 1)
+		double median = sorted[(int) (0.5 * (sorted.length - 1))];
+		Assert.assertEquals(median, mockDoubleCollection.getAggregate(MockAggregators.MEDIAN).doubleValue(),
+				median * 0.01);
+		double p99 = sorted[(int) (0.99 * (sorted.length - 1))];
+		Assert.assertEquals(p99, mockDoubleCollection.getAggregate(MockAggregators.P99).doubleValue(), p99 * 0.01);
+	}
+
+	@Test
+	public void testQuantileAggregatorZeroElement() {
+		IItemCollection mockDoubleCollection = MockCollections
+				.getNumberCollection(MockCollections.generateNumberArray(0, 1));
+		Assert.assertNull(mockDoubleCollection.getAggregate(MockAggregators.MEDIAN));
+	}
+
+	@Test
+	public void testLogHistogramAggregator() {
+		IItemCollection mockDoubleCollection = MockCollections
+				.getNumberCollection(MockCollections.generateNumberArray(400, 999));
+		Map<IRange<IQuantity>, Long> histogram = mockDoubleCollection.getAggregate(MockAggregators.HISTOGRAM);
+		long count = 0;
+		IQuantity previousEnd = null;
+		for (Map.Entry<IRange<IQuantity>, Long> bucket : histogram.entrySet()) {
+			Assert.assertTrue(bucket.getValue() > 0);
+			if (previousEnd != null) {
+				Assert.assertTrue(previousEnd.compareTo(bucket.getKey().getStart()) <= 0);
+			}
+			previousEnd = bucket.getKey().getEnd();
+			count += bucket.getValue();
+		}
+		Assert.assertEquals(400, count);
+	}
+
 	@Test
 	public void testAdvancedMaxAggregatorLastElementNull() {
 		IItemCollection mockCollection = MockCollections.getNumberCollection(new Number[] {101, null, 135, null});
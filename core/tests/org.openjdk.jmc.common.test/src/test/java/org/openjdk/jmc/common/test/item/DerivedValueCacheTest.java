@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.common.test.item;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+import org.openjdk.jmc.common.item.DerivedValueCache;
+import org.openjdk.jmc.common.item.IItemFilter;
+import org.openjdk.jmc.common.item.ItemFilters;
+
+@SuppressWarnings("nls")
+public class DerivedValueCacheTest {
+
+	private static final IItemFilter FILTER = ItemFilters.type("test.type");
+
+	private static class CountingSupplier implements Supplier<Object> {
+		final AtomicInteger calculations = new AtomicInteger();
+
+		@Override
+		public Object get() {
+			calculations.incrementAndGet();
+			return new Object();
+		}
+	}
+
+	@Test
+	public void testCalculatedOnce() {
+		DerivedValueCache cache = new DerivedValueCache();
+		Object calculation = new Object();
+		CountingSupplier supplier = new CountingSupplier();
+		Object value = cache.get(calculation, supplier);
+		assertSame(value, cache.get(calculation, supplier));
+		assertEquals(1, supplier.calculations.get());
+		assertNotSame(value, cache.get(new Object(), supplier));
+		assertEquals(2, supplier.calculations.get());
+	}
+
+	@Test
+	public void testFilterViews() {
+		DerivedValueCache cache = new DerivedValueCache();
+		Object calculation = new Object();
+		CountingSupplier supplier = new CountingSupplier();
+		Object value = cache.get(calculation, supplier);
+		Object filteredValue = cache.forFilter(FILTER).get(calculation, supplier);
+		assertNotSame(value, filteredValue);
+		assertSame(filteredValue, cache.forFilter(FILTER).get(calculation, supplier));
+		assertNotSame(filteredValue, cache.forFilter(ItemFilters.type("test.type")).get(calculation, supplier));
+		assertNotSame(filteredValue, cache.forFilter(FILTER).forFilter(FILTER).get(calculation, supplier));
+		assertEquals(4, supplier.calculations.get());
+	}
+
+	@Test
+	public void testMaxSize() {
+		DerivedValueCache cache = new DerivedValueCache(1);
+		Object calculation = new Object();
+		CountingSupplier supplier = new CountingSupplier();
+		cache.get(calculation, supplier);
+		cache.get(calculation, supplier);
+		cache.forFilter(FILTER).get(calculation, supplier);
+		cache.forFilter(FILTER).get(calculation, supplier);
+		assertEquals(2, supplier.calculations.get());
+		// Evicted by the filtered value
+		cache.get(calculation, supplier);
+		assertEquals(3, supplier.calculations.get());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEvicted() {
+		DerivedValueCache cache = new DerivedValueCache(2);
+		Object first = new Object();
+		Object second = new Object();
+		CountingSupplier supplier = new CountingSupplier();
+		Object firstValue = cache.get(first, supplier);
+		cache.get(second, supplier);
+		assertSame(firstValue, cache.get(first, supplier));
+		// Values for calculations created for each call evict the least recently used value
+		for (int i = 0; i < 10; i++) {
+			cache.get(new Object(), supplier);
+			assertSame(firstValue, cache.get(first, supplier));
+		}
+		assertEquals(12, supplier.calculations.get());
+		cache.get(second, supplier);
+		assertEquals(13, supplier.calculations.get());
+	}
+
+	@Test
+	public void testFailureNotCached() {
+		DerivedValueCache cache = new DerivedValueCache();
+		Object calculation = new Object();
+		final AtomicInteger calculations = new AtomicInteger();
+		Supplier<Object> failing = new Supplier<Object>() {
+			@Override
+			public Object get() {
+				if (calculations.incrementAndGet() == 1) {
+					throw new IllegalStateException();
+				}
+				return "value";
+			}
+		};
+		try {
+			cache.get(calculation, failing);
+			fail("Expected exception");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+		assertEquals("value", cache.get(calculation, failing));
+		assertEquals("value", cache.get(calculation, failing));
+		assertEquals(2, calculations.get());
+	}
+
+	@Test
+	public void testConcurrentRequests() throws Exception {
+		final DerivedValueCache cache = new DerivedValueCache();
+		final Object calculation = new Object();
+		final CountingSupplier supplier = new CountingSupplier();
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Object>> results = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				results.add(executor.submit(new Callable<Object>() {
+					@Override
+					public Object call() throws Exception {
+						start.await();
+						return cache.get(calculation, supplier);
+					}
+				}));
+			}
+			start.countDown();
+			Object first = results.get(0).get();
+			for (Future<Object> result : results) {
+				assertSame(first, result.get());
+			}
+			assertEquals(1, supplier.calculations.get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -32,9 +32,12 @@
  */
 package org.openjdk.jmc.common.test.mock.item;
 
+import java.util.Map;
+
 import org.openjdk.jmc.common.item.Aggregators;
 import org.openjdk.jmc.common.item.IAggregator;
 import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.IRange;
 
 public final class MockAggregators {
 	public static final IAggregator<IQuantity, ?> SUM = Aggregators.sum(MockAttributes.DOUBLE_VALUE);
@@ -42,4 +45,8 @@ public final class MockAggregators {
 	public static final IAggregator<IQuantity, ?> VARIANCEP = Aggregators.variancep(MockAttributes.DOUBLE_VALUE);
 	public static final IAggregator<IQuantity, ?> STDDEV = Aggregators.stddev(MockAttributes.DOUBLE_VALUE);
 	public static final IAggregator<IQuantity, ?> STDDEVP = Aggregators.stddevp(MockAttributes.DOUBLE_VALUE);
+	public static final IAggregator<IQuantity, ?> MEDIAN = Aggregators.quantile(MockAttributes.DOUBLE_VALUE, 0.5);
+	public static final IAggregator<IQuantity, ?> P99 = Aggregators.quantile(MockAttributes.DOUBLE_VALUE, 0.99);
+	public static final IAggregator<Map<IRange<IQuantity>, Long>, ?> HISTOGRAM = Aggregators
+			.logHistogram(MockAttributes.DOUBLE_VALUE);
 }
@@ -42,6 +42,7 @@ import org.openjdk.jmc.common.unit.UnitLookup;
 public class MockAttributes {
 	public static final String DOUBLE_VALUE_ID = "mock/doubletype";
 	public static final String LONG_INDEX_ID = "mock/index";
+	public static final String MIXED_UNIT_INDEX_ID = "mock/mixedunitindex";
 	/*
 	 * NOTE: Need to be the same as the actual attribute used in Flight Recorder. Maybe use constant
 	 * from somewhere else? If stacktrace mocking is moved to flightrecorder.test then we could
@@ -53,6 +54,11 @@ public class MockAttributes {
 			UnitLookup.NUMBER);
 	public static final IAttribute<IQuantity> INDEX_VALUE = Attribute.attr(LONG_INDEX_ID, "The index for an item",
 			UnitLookup.NUMBER);
+	/**
+	 * The index in seconds, read as a long in seconds or as a double in milliseconds.
+	 */
+	public static final IAttribute<IQuantity> MIXED_UNIT_INDEX_VALUE = Attribute.attr(MIXED_UNIT_INDEX_ID,
+			"The index with primitive values in different units", UnitLookup.TIMESPAN);
 	public static final IAttribute<IMCStackTrace> STACKTRACE_VALUE = Attribute.attr(STACKTRACE_ID, "A stack trace",
 			UnitLookup.STACKTRACE);
 }
@@ -42,9 +42,12 @@ import org.openjdk.jmc.common.item.Attribute;
 import org.openjdk.jmc.common.item.IAccessorKey;
 import org.openjdk.jmc.common.item.IAttribute;
 import org.openjdk.jmc.common.item.ICanonicalAccessorFactory;
+import org.openjdk.jmc.common.item.IDoubleAccessor;
+import org.openjdk.jmc.common.item.ILongAccessor;
 import org.openjdk.jmc.common.item.IMemberAccessor;
 import org.openjdk.jmc.common.item.IType;
 import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.IUnit;
 import org.openjdk.jmc.common.unit.UnitLookup;
 
 @SuppressWarnings("nls")
@@ -59,8 +62,11 @@ public class MockNumberType implements IType<MockItem<Number, MockNumberType>> {
 		keys.put(accessorKey, new AttributeDescription(MockAttributes.DOUBLE_VALUE));
 		accessorKey = (IAccessorKey) Attribute.attr(MockAttributes.LONG_INDEX_ID, UnitLookup.NUMBER);
 		keys.put(accessorKey, new AttributeDescription(MockAttributes.INDEX_VALUE));
+		accessorKey = (IAccessorKey) Attribute.attr(MockAttributes.MIXED_UNIT_INDEX_ID, UnitLookup.TIMESPAN);
+		keys.put(accessorKey, new AttributeDescription(MockAttributes.MIXED_UNIT_INDEX_VALUE));
 		attributes.add(MockAttributes.DOUBLE_VALUE);
 		attributes.add(MockAttributes.INDEX_VALUE);
+		attributes.add(MockAttributes.MIXED_UNIT_INDEX_VALUE);
 	}
 
 	@Override
@@ -106,10 +112,41 @@ public class MockNumberType implements IType<MockItem<Number, MockNumberType>> {
 					return UnitLookup.NUMBER_UNITY.quantity(inObject.getValue());
 				}
 			};
+		} else if (attribute.getIdentifier().equals(MockAttributes.MIXED_UNIT_INDEX_ID)) {
+			return (IMemberAccessor<M, MockItem<Number, MockNumberType>>) new MixedUnitIndexAccessor();
 		}
 		throw new UnsupportedOperationException("Not supported by the testing framwork.");
 	}
 
+	private static class MixedUnitIndexAccessor implements IMemberAccessor<IQuantity, MockItem<Number, MockNumberType>>,
+			ILongAccessor<MockItem<Number, MockNumberType>>, IDoubleAccessor<MockItem<Number, MockNumberType>> {
+
+		@Override
+		public IQuantity getMember(MockItem<Number, MockNumberType> inObject) {
+			return UnitLookup.MILLISECOND.quantity(getDouble(inObject));
+		}
+
+		@Override
+		public IUnit getLongUnit(MockItem<Number, MockNumberType> inObject) {
+			return UnitLookup.SECOND;
+		}
+
+		@Override
+		public long getLong(MockItem<Number, MockNumberType> inObject) {
+			return inObject.getIndex();
+		}
+
+		@Override
+		public IUnit getDoubleUnit(MockItem<Number, MockNumberType> inObject) {
+			return UnitLookup.MILLISECOND;
+		}
+
+		@Override
+		public double getDouble(MockItem<Number, MockNumberType> inObject) {
+			return inObject.getIndex() * 1000.0;
+		}
+	}
+
 	@Override
 	public String getIdentifier() {
 		return MockTypeIDs.MOCK_NUMBER_TYPE;
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.test.rules.jdk;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openjdk.jmc.common.test.TestToolkit;
+import org.openjdk.jmc.common.test.io.IOResource;
+import org.openjdk.jmc.common.util.XmlToolkit;
+import org.openjdk.jmc.flightrecorder.rules.Severity;
+import org.openjdk.jmc.flightrecorder.rules.report.JfrRulesBatchReport;
+import org.openjdk.jmc.flightrecorder.rules.report.JfrRulesBatchReport.Format;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+@SuppressWarnings("nls")
+public class JfrRulesBatchReportTest {
+	private static final int RECORDING_COUNT = 2;
+
+	private File directory;
+	private List<File> recordings;
+
+	@Before
+	public void before() throws IOException {
+		directory = Files.createTempDirectory("batchreport").toFile();
+		recordings = new ArrayList<>();
+		Iterator<IOResource> jfrs = TestToolkit.getResourcesInDirectory(JfrRulesBatchReportTest.class,
+				TestRulesWithJfr.RECORDINGS_DIR, TestRulesWithJfr.RECORDINGS_INDEXFILE).iterator();
+		for (int i = 0; i < RECORDING_COUNT; i++) {
+			IOResource jfr = jfrs.next();
+			File file = new File(directory, jfr.getName());
+			try (InputStream in = jfr.open()) {
+				Files.copy(in, file.toPath());
+			}
+			recordings.add(file);
+		}
+	}
+
+	@After
+	public void after() {
+		for (File file : recordings) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	@Test
+	public void testFindRecordings() throws IOException {
+		Assert.assertEquals(recordings, JfrRulesBatchReport.findRecordings(directory.getPath()));
+		Assert.assertEquals(recordings, JfrRulesBatchReport.findRecordings(new File(directory, "*.jfr").getPath()));
+		Assert.assertEquals(Arrays.asList(recordings.get(0)),
+				JfrRulesBatchReport.findRecordings(recordings.get(0).getPath()));
+	}
+
+	@Test
+	public void testJsonLines() throws Exception {
+		List<File> files = new ArrayList<>(recordings);
+		File missing = new File(directory, "missing.jfr");
+		files.add(missing);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int failed = new JfrRulesBatchReport(Format.JSONL, Severity.OK, false).setThreads(2).printReports(files, out);
+
+		Assert.assertEquals(1, failed);
+		String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+		Assert.assertEquals(files.size(), lines.length);
+		for (String line : lines) {
+			Assert.assertTrue(line, line.startsWith("{\"file\":") && line.endsWith("}"));
+			if (line.contains("missing.jfr")) {
+				Assert.assertTrue(line, line.contains("\"error\":"));
+			} else {
+				Assert.assertTrue(line, line.contains("\"rules\":[{\"id\":"));
+			}
+		}
+	}
+
+	@Test
+	public void testXml() throws IOException, InterruptedException, SAXException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int failed = new JfrRulesBatchReport(Format.XML, Severity.INFO, true).setMemoryBudget(1)
+				.printReports(recordings, out);
+
+		Assert.assertEquals(0, failed);
+		Document doc = XmlToolkit.loadDocumentFromStream(new ByteArrayInputStream(out.toByteArray()));
+		Assert.assertEquals("reportcollection", doc.getDocumentElement().getTagName());
+		Assert.assertEquals(RECORDING_COUNT, doc.getElementsByTagName("report").getLength());
+		Assert.assertEquals(0, doc.getElementsByTagName("error").getLength());
+	}
+
+	@Test(timeout = 60000)
+	public void testTimeout() throws IOException, InterruptedException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		// Reservations held by timed out recordings would keep the other recordings from being analyzed
+		int failed = new JfrRulesBatchReport(Format.JSONL, Severity.OK, false).setThreads(2).setMemoryBudget(1)
+				.setTimeout(1).printReports(recordings, out);
+
+		Assert.assertEquals(RECORDING_COUNT, failed);
+		String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+		Assert.assertEquals(RECORDING_COUNT, lines.length);
+		for (String line : lines) {
+			Assert.assertTrue(line, line.contains("Timed out after 1 ms"));
+		}
+	}
+}
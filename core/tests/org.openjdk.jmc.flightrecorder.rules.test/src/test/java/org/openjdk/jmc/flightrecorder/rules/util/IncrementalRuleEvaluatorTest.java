@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.rules.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import org.openjdk.jmc.common.item.Aggregators;
+import org.openjdk.jmc.common.item.IAggregator;
+import org.openjdk.jmc.common.item.ICopyableItemConsumer;
+import org.openjdk.jmc.common.item.IItem;
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.item.IItemConsumer;
+import org.openjdk.jmc.common.item.IType;
+import org.openjdk.jmc.common.test.io.IOResource;
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.UnitLookup;
+import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.JfrAttributes;
+import org.openjdk.jmc.flightrecorder.jdk.JdkFilters;
+import org.openjdk.jmc.flightrecorder.rules.IRule;
+import org.openjdk.jmc.flightrecorder.test.util.PrintoutsToolkit;
+import org.openjdk.jmc.flightrecorder.test.util.RecordingToolkit;
+
+@SuppressWarnings("nls")
+public class IncrementalRuleEvaluatorTest {
+
+	private static class CountingConsumer implements IItemConsumer<CountingConsumer> {
+		final AtomicLong consumed;
+		long count;
+
+		CountingConsumer(AtomicLong consumed) {
+			this.consumed = consumed;
+		}
+
+		@Override
+		public void consume(IItem item) {
+			consumed.incrementAndGet();
+			count++;
+		}
+
+		@Override
+		public CountingConsumer merge(CountingConsumer other) {
+			count += other.count;
+			return this;
+		}
+	}
+
+	private static class CopyableCountingConsumer extends CountingConsumer
+			implements ICopyableItemConsumer<CountingConsumer> {
+
+		CopyableCountingConsumer(AtomicLong consumed) {
+			super(consumed);
+		}
+
+		@Override
+		public CountingConsumer copy() {
+			CountingConsumer copy = new CopyableCountingConsumer(consumed);
+			copy.count = count;
+			return copy;
+		}
+	}
+
+	private static class CountingAggregator extends Aggregators.MergingAggregator<IQuantity, CountingConsumer> {
+		private final AtomicLong consumed = new AtomicLong();
+		private final boolean copyable;
+
+		CountingAggregator(boolean copyable) {
+			super("count", null, UnitLookup.NUMBER);
+			this.copyable = copyable;
+		}
+
+		@Override
+		public boolean acceptType(IType<IItem> type) {
+			return true;
+		}
+
+		@Override
+		public CountingConsumer newItemConsumer(IType<IItem> type) {
+			return copyable ? new CopyableCountingConsumer(consumed) : new CountingConsumer(consumed);
+		}
+
+		@Override
+		public IQuantity getValue(CountingConsumer consumer) {
+			return UnitLookup.NUMBER_UNITY.quantity(consumer.count);
+		}
+	}
+
+	@Test
+	public void testAggregatesOverSegments() throws IOException, CouldNotLoadRecordingException {
+		IItemCollection events = loadEvents();
+		IncrementalRuleEvaluator evaluator = createEvaluator();
+		evaluator.addEvents(events);
+		evaluator.addEvents(loadEvents());
+		IItemCollection items = evaluator.getItems();
+
+		assertEquals(count(events) * 2, count(items));
+		assertEquals(count(events.apply(JdkFilters.EXECUTION_SAMPLE)) * 2,
+				count(items.apply(JdkFilters.EXECUTION_SAMPLE)));
+		assertEquals(events.getAggregate(Aggregators.max(JfrAttributes.END_TIME)),
+				items.getAggregate(Aggregators.max(JfrAttributes.END_TIME)));
+		assertEquals(events.getTimeRanges(), items.getTimeRanges());
+	}
+
+	@Test
+	public void testOnlyNewSegmentsConsumed() throws IOException, CouldNotLoadRecordingException {
+		IItemCollection events = loadEvents();
+		long eventCount = count(events);
+		CountingAggregator aggregator = new CountingAggregator(true);
+		IncrementalRuleEvaluator evaluator = createEvaluator();
+
+		evaluator.addEvents(events);
+		assertEquals(eventCount, evaluator.getItems().getAggregate(aggregator).longValue());
+		assertEquals(eventCount, aggregator.consumed.get());
+		// The value must not be affected by the aggregator merging the consumers
+		assertEquals(eventCount, evaluator.getItems().getAggregate(aggregator).longValue());
+		assertEquals(eventCount, aggregator.consumed.get());
+
+		evaluator.addEvents(loadEvents());
+		assertEquals(eventCount * 2, evaluator.getItems().getAggregate(aggregator).longValue());
+		assertEquals(eventCount * 2, aggregator.consumed.get());
+	}
+
+	@Test
+	public void testNotCopyableAggregate() throws IOException, CouldNotLoadRecordingException {
+		IItemCollection events = loadEvents();
+		long eventCount = count(events);
+		IAggregator<IQuantity, ?> sampleCount = Aggregators.filter(Aggregators.count(), JdkFilters.EXECUTION_SAMPLE);
+		long samples = events.getAggregate(sampleCount).longValue();
+		CountingAggregator aggregator = new CountingAggregator(false);
+		IncrementalRuleEvaluator evaluator = createEvaluator();
+
+		// Each request consumes all segments once
+		evaluator.addEvents(events);
+		assertEquals(samples, evaluator.getItems().getAggregate(sampleCount).longValue());
+		assertEquals(eventCount, evaluator.getItems().getAggregate(aggregator).longValue());
+		assertEquals(eventCount, aggregator.consumed.get());
+		assertEquals(samples, evaluator.getItems().getAggregate(sampleCount).longValue());
+		assertEquals(eventCount, evaluator.getItems().getAggregate(aggregator).longValue());
+		assertEquals(eventCount * 2, aggregator.consumed.get());
+
+		evaluator.addEvents(loadEvents());
+		assertEquals(samples * 2, evaluator.getItems().getAggregate(sampleCount).longValue());
+		assertEquals(eventCount * 2, evaluator.getItems().getAggregate(aggregator).longValue());
+		assertEquals(eventCount * 4, aggregator.consumed.get());
+	}
+
+	@Test
+	public void testAddRecordingOnlyAddsNewChunks() throws IOException, CouldNotLoadRecordingException {
+		IOResource recording = PrintoutsToolkit.getTestResources()[0].getResource(0);
+		File file = File.createTempFile("incremental", ".jfr");
+		try {
+			try (InputStream stream = recording.open()) {
+				Files.copy(stream, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			IncrementalRuleEvaluator evaluator = createEvaluator();
+			assertTrue(evaluator.addRecording(file));
+			assertFalse(evaluator.addRecording(file));
+			assertEquals(count(loadEvents()), count(evaluator.getItems()));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testDroppedChunksEvicted() throws IOException, CouldNotLoadRecordingException {
+		IOResource first = PrintoutsToolkit.getTestResources()[0].getResource(0);
+		IOResource second = PrintoutsToolkit.getTestResources()[1].getResource(0);
+		IItemCollection secondEvents = RecordingToolkit.getFlightRecording(second);
+		long secondCount = count(secondEvents);
+		long secondSampleCount = count(secondEvents.apply(JdkFilters.EXECUTION_SAMPLE));
+		CountingAggregator aggregator = new CountingAggregator(true);
+		File file = File.createTempFile("incremental", ".jfr");
+		try {
+			try (InputStream firstStream = first.open(); InputStream secondStream = second.open()) {
+				Files.copy(new SequenceInputStream(firstStream, secondStream), file.toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+			IncrementalRuleEvaluator evaluator = createEvaluator();
+			assertTrue(evaluator.addRecording(file));
+			assertEquals(count(loadEvents()) + secondCount, evaluator.getItems().getAggregate(aggregator).longValue());
+			assertEquals(count(loadEvents().apply(JdkFilters.EXECUTION_SAMPLE)) + secondSampleCount,
+					evaluator.getItems().apply(JdkFilters.EXECUTION_SAMPLE).getAggregate(aggregator).longValue());
+			long consumed = aggregator.consumed.get();
+
+			// The next dump no longer contains the chunks of the first recording
+			try (InputStream secondStream = second.open()) {
+				Files.copy(secondStream, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			assertTrue(evaluator.addRecording(file));
+			assertEquals(secondCount, count(evaluator.getItems()));
+			assertEquals(secondCount, evaluator.getItems().getAggregate(aggregator).longValue());
+			assertEquals(secondSampleCount,
+					evaluator.getItems().apply(JdkFilters.EXECUTION_SAMPLE).getAggregate(aggregator).longValue());
+			// The remaining chunks are not consumed again
+			assertEquals(consumed, aggregator.consumed.get());
+			assertFalse(evaluator.addRecording(file));
+		} finally {
+			file.delete();
+		}
+	}
+
+	private static IncrementalRuleEvaluator createEvaluator() {
+		return new IncrementalRuleEvaluator(Collections.<IRule> emptyList(), null);
+	}
+
+	private static long count(IItemCollection items) {
+		return items.getAggregate(Aggregators.count()).longValue();
+	}
+
+	private static IItemCollection loadEvents() throws IOException, CouldNotLoadRecordingException {
+		return RecordingToolkit.getFlightRecording(PrintoutsToolkit.getTestResources()[0]);
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.rules.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.item.IItemIterable;
+import org.openjdk.jmc.common.test.io.IOResourceSet;
+import org.openjdk.jmc.common.util.IPreferenceValueProvider;
+import org.openjdk.jmc.common.util.TypedPreference;
+import org.openjdk.jmc.flightrecorder.rules.IRule;
+import org.openjdk.jmc.flightrecorder.rules.Result;
+import org.openjdk.jmc.flightrecorder.rules.util.RulesToolkit.EventAvailability;
+import org.openjdk.jmc.flightrecorder.test.util.PrintoutsToolkit;
+import org.openjdk.jmc.flightrecorder.test.util.RecordingToolkit;
+
+@SuppressWarnings("nls")
+public class RequiredEventsTest {
+
+	private static final String UNKNOWN_TYPE = "test.UnknownType";
+
+	private static class RequiringRule implements IRule {
+		private final Map<String, EventAvailability> requiredEvents;
+		private final AtomicInteger evaluations = new AtomicInteger();
+
+		RequiringRule(Map<String, EventAvailability> requiredEvents) {
+			this.requiredEvents = requiredEvents;
+		}
+
+		@Override
+		public RunnableFuture<Result> evaluate(IItemCollection items, IPreferenceValueProvider valueProvider) {
+			return new FutureTask<>(new Callable<Result>() {
+				@Override
+				public Result call() throws Exception {
+					evaluations.incrementAndGet();
+					return new Result(RequiringRule.this, 0, "evaluated");
+				}
+			});
+		}
+
+		@Override
+		public Collection<TypedPreference<?>> getConfigurationAttributes() {
+			return Collections.emptyList();
+		}
+
+		@Override
+		public String getId() {
+			return "RequiringRule";
+		}
+
+		@Override
+		public String getName() {
+			return "Requiring Rule";
+		}
+
+		@Override
+		public String getTopic() {
+			return null;
+		}
+
+		@Override
+		public Map<String, EventAvailability> getRequiredEvents() {
+			return requiredEvents;
+		}
+	}
+
+	@Test
+	public void testRequiredEvents() throws Exception {
+		for (IOResourceSet resourceSet : PrintoutsToolkit.getTestResources()) {
+			IItemCollection items = RecordingToolkit.getFlightRecording(resourceSet);
+			String name = resourceSet.getResource(0).getName();
+			String availableType = getAvailableType(items);
+
+			RequiringRule available = new RequiringRule(
+					RequiredEventsBuilder.create().addEventType(availableType, EventAvailability.AVAILABLE).build());
+			assertNull(name, RulesToolkit.getRequiredEventsResult(available, items));
+			Result result = evaluate(available, items);
+			assertEquals(name, "evaluated", result.getShortDescription());
+			assertEquals(name, 1, available.evaluations.get());
+
+			RequiringRule unknown = new RequiringRule(
+					RequiredEventsBuilder.create().addEventType(availableType, EventAvailability.AVAILABLE)
+							.addEventType(UNKNOWN_TYPE, EventAvailability.NONE).build());
+			Result expected = RulesToolkit.getEventAvailabilityResult(unknown, items, EventAvailability.UNKNOWN,
+					UNKNOWN_TYPE);
+			Result requiredEventsResult = RulesToolkit.getRequiredEventsResult(unknown, items);
+			assertNotNull(name, requiredEventsResult);
+			assertEquals(name, expected.getShortDescription(), requiredEventsResult.getShortDescription());
+			result = evaluate(unknown, items);
+			assertEquals(name, Result.NOT_APPLICABLE, result.getScore(), 0);
+			assertEquals(name, expected.getShortDescription(), result.getShortDescription());
+			assertEquals(name, 0, unknown.evaluations.get());
+		}
+	}
+
+	private static String getAvailableType(IItemCollection items) {
+		for (IItemIterable iterable : items) {
+			if (iterable.hasItems()) {
+				return iterable.getType().getIdentifier();
+			}
+		}
+		throw new AssertionError("No events");
+	}
+
+	private static Result evaluate(IRule rule, IItemCollection items) throws Exception {
+		Map<IRule, Future<Result>> results = RulesToolkit.evaluateParallel(Collections.singleton(rule), items, null, 0);
+		return results.get(rule).get(10, TimeUnit.SECONDS);
+	}
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.rules.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.test.io.IOResourceSet;
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.util.IPreferenceValueProvider;
+import org.openjdk.jmc.common.util.TypedPreference;
+import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.jdk.JdkFilters;
+import org.openjdk.jmc.flightrecorder.rules.IRule;
+import org.openjdk.jmc.flightrecorder.rules.Result;
+import org.openjdk.jmc.flightrecorder.test.util.PrintoutsToolkit;
+import org.openjdk.jmc.flightrecorder.test.util.RecordingToolkit;
+
+@SuppressWarnings("nls")
+public class RuleSchedulerTest {
+
+	private static class BusyRule implements IRule {
+		private final String id;
+		private final long busyMillis;
+		private final AtomicInteger evaluations = new AtomicInteger();
+
+		BusyRule(String id, long busyMillis) {
+			this.id = id;
+			this.busyMillis = busyMillis;
+		}
+
+		@Override
+		public RunnableFuture<Result> evaluate(IItemCollection items, IPreferenceValueProvider valueProvider) {
+			return new FutureTask<>(new Callable<Result>() {
+				@Override
+				public Result call() throws Exception {
+					evaluations.incrementAndGet();
+					// Keep the thread busy, since the scheduler measures the CPU time of the rules
+					long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(busyMillis);
+					while (System.nanoTime() < end) {
+						// Spin
+					}
+					return null;
+				}
+			});
+		}
+
+		@Override
+		public Collection<TypedPreference<?>> getConfigurationAttributes() {
+			return null;
+		}
+
+		@Override
+		public String getId() {
+			return id;
+		}
+
+		@Override
+		public String getName() {
+			return id;
+		}
+
+		@Override
+		public String getTopic() {
+			return null;
+		}
+	}
+
+	@Test
+	public void testSlowestRulesFirst() throws Exception {
+		RuleScheduler scheduler = new RuleScheduler(2);
+		BusyRule fast = new BusyRule("fast", 0);
+		BusyRule slow = new BusyRule("slow", 50);
+		BusyRule unknown = new BusyRule("unknown", 0);
+		evaluate(scheduler, 2, fast, slow);
+		// The cost is recorded by the evaluating thread just after the result is set
+		long deadline = System.currentTimeMillis() + 10000;
+		while (!scheduler.getOrder(Arrays.<IRule> asList(fast, slow)).equals(Arrays.asList("slow", "fast"))
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(Arrays.asList("slow", "fast"), scheduler.getOrder(Arrays.<IRule> asList(fast, slow)));
+		assertEquals(Arrays.asList("unknown", "slow", "fast"),
+				scheduler.getOrder(Arrays.<IRule> asList(fast, slow, unknown)));
+	}
+
+	@Test
+	public void testMoreRulesThanThreads() throws Exception {
+		RuleScheduler scheduler = new RuleScheduler(2);
+		BusyRule[] rules = new BusyRule[10];
+		for (int i = 0; i < rules.length; i++) {
+			rules[i] = new BusyRule("rule" + i, 1);
+		}
+		evaluate(scheduler, 100, rules);
+		evaluate(scheduler, 1, rules);
+		for (BusyRule rule : rules) {
+			assertEquals(rule.getId(), 2, rule.evaluations.get());
+		}
+	}
+
+	@Test
+	public void testFinishedWhenCancelledRuleReturns() throws Exception {
+		RuleScheduler scheduler = new RuleScheduler(2);
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch finished = new CountDownLatch(1);
+		RunnableFuture<Result> future = new FutureTask<>(new Callable<Result>() {
+			@Override
+			public Result call() throws Exception {
+				started.countDown();
+				// Ignore interrupts, like a rule that is busy calculating
+				while (true) {
+					try {
+						release.await();
+						return null;
+					} catch (InterruptedException e) {
+						// Keep waiting
+					}
+				}
+			}
+		});
+		Map<IRule, RunnableFuture<Result>> evaluations = new LinkedHashMap<>();
+		evaluations.put(new BusyRule("ignoresInterrupts", 0), future);
+		scheduler.schedule(evaluations, 2, new Runnable() {
+			@Override
+			public void run() {
+				finished.countDown();
+			}
+		});
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		future.cancel(true);
+		assertTrue(future.isDone());
+		assertFalse(finished.await(100, TimeUnit.MILLISECONDS));
+		release.countDown();
+		assertTrue(finished.await(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testSharedDerivedValues() throws IOException, CouldNotLoadRecordingException {
+		final AtomicInteger calculations = new AtomicInteger();
+		Function<IItemCollection, IQuantity> function = new Function<IItemCollection, IQuantity>() {
+			@Override
+			public IQuantity apply(IItemCollection items) {
+				calculations.incrementAndGet();
+				return RulesToolkit.getEarliestStartTime(items);
+			}
+		};
+		for (IOResourceSet resourceSet : PrintoutsToolkit.getTestResources()) {
+			IItemCollection items = RecordingToolkit.getFlightRecording(resourceSet);
+			String name = resourceSet.getResource(0).getName();
+			calculations.set(0);
+			IQuantity start = items.getDerivedValue(function);
+			assertEquals(name, start, items.getDerivedValue(function));
+			assertEquals(name, 1, calculations.get());
+
+			calculations.set(0);
+			IItemCollection sharedItems = new SharedScanItemCollection(items);
+			assertEquals(name, start, sharedItems.getDerivedValue(function));
+			assertEquals(name, start, sharedItems.getDerivedValue(function));
+			assertEquals(name, 1, calculations.get());
+			IQuantity gcStart = sharedItems.apply(JdkFilters.GARBAGE_COLLECTION).getDerivedValue(function);
+			assertEquals(name, gcStart, sharedItems.apply(JdkFilters.GARBAGE_COLLECTION).getDerivedValue(function));
+			assertEquals(name, RulesToolkit.getEarliestStartTime(items.apply(JdkFilters.GARBAGE_COLLECTION)), gcStart);
+			assertEquals(name, 2, calculations.get());
+		}
+	}
+
+	private static void evaluate(RuleScheduler scheduler, int parallelism, IRule ... rules)
+			throws InterruptedException, ExecutionException, TimeoutException {
+		Map<IRule, RunnableFuture<Result>> evaluations = new LinkedHashMap<>();
+		for (IRule rule : rules) {
+			evaluations.put(rule, rule.evaluate(null, null));
+		}
+		scheduler.schedule(evaluations, parallelism);
+		for (RunnableFuture<Result> future : evaluations.values()) {
+			future.get(10, TimeUnit.SECONDS);
+			assertTrue(future.isDone());
+		}
+	}
+}
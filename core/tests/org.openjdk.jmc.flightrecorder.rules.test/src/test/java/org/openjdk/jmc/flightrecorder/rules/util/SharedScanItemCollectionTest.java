@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.rules.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import org.openjdk.jmc.common.item.Aggregators;
+import org.openjdk.jmc.common.item.IAggregator;
+import org.openjdk.jmc.common.item.IItem;
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.item.IItemConsumer;
+import org.openjdk.jmc.common.item.IItemFilter;
+import org.openjdk.jmc.common.item.IItemIterable;
+import org.openjdk.jmc.common.item.IType;
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.IRange;
+import org.openjdk.jmc.common.unit.UnitLookup;
+import org.openjdk.jmc.flightrecorder.JfrAttributes;
+import org.openjdk.jmc.flightrecorder.jdk.JdkFilters;
+import org.openjdk.jmc.flightrecorder.test.util.PrintoutsToolkit;
+import org.openjdk.jmc.flightrecorder.test.util.RecordingToolkit;
+
+@SuppressWarnings("nls")
+public class SharedScanItemCollectionTest {
+
+	private static class ScanCountingCollection implements IItemCollection {
+		private final IItemCollection items;
+		private final AtomicInteger scans;
+
+		ScanCountingCollection(IItemCollection items, AtomicInteger scans) {
+			this.items = items;
+			this.scans = scans;
+		}
+
+		@Override
+		public Iterator<IItemIterable> iterator() {
+			scans.incrementAndGet();
+			return items.iterator();
+		}
+
+		@Override
+		public IItemCollection apply(IItemFilter filter) {
+			return new ScanCountingCollection(items.apply(filter), scans);
+		}
+
+		@Override
+		public <V, C extends IItemConsumer<C>> V getAggregate(IAggregator<V, C> aggregator) {
+			scans.incrementAndGet();
+			return items.getAggregate(aggregator);
+		}
+
+		@Override
+		public boolean hasItems() {
+			return items.hasItems();
+		}
+
+		@Override
+		public Set<IRange<IQuantity>> getTimeRanges() {
+			return items.getTimeRanges();
+		}
+	}
+
+	private static class BlockingConsumer implements IItemConsumer<BlockingConsumer> {
+		private final BlockingAggregator aggregator;
+		long count;
+
+		BlockingConsumer(BlockingAggregator aggregator) {
+			this.aggregator = aggregator;
+		}
+
+		@Override
+		public void consume(IItem item) {
+			aggregator.started.countDown();
+			try {
+				aggregator.release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			count++;
+		}
+
+		@Override
+		public BlockingConsumer merge(BlockingConsumer other) {
+			count += other.count;
+			return this;
+		}
+	}
+
+	private static class BlockingAggregator extends Aggregators.MergingAggregator<IQuantity, BlockingConsumer> {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		BlockingAggregator() {
+			super("blocking", null, UnitLookup.NUMBER);
+		}
+
+		@Override
+		public boolean acceptType(IType<IItem> type) {
+			return true;
+		}
+
+		@Override
+		public BlockingConsumer newItemConsumer(IType<IItem> type) {
+			return new BlockingConsumer(this);
+		}
+
+		@Override
+		public IQuantity getValue(BlockingConsumer consumer) {
+			return UnitLookup.NUMBER_UNITY.quantity(consumer.count);
+		}
+	}
+
+	private static class AggregateThread<V> extends Thread {
+		private final FutureTask<V> task;
+
+		AggregateThread(final IItemCollection items, final IAggregator<V, ?> aggregator) {
+			this(new FutureTask<>(new Callable<V>() {
+				@Override
+				public V call() throws Exception {
+					return items.getAggregate(aggregator);
+				}
+			}));
+		}
+
+		private AggregateThread(FutureTask<V> task) {
+			super(task);
+			this.task = task;
+			start();
+		}
+
+		V getValue() throws Exception {
+			return task.get();
+		}
+
+		void awaitWaiting() throws InterruptedException {
+			while (getState() != State.WAITING) {
+				Thread.sleep(10);
+			}
+		}
+	}
+
+	@Test(timeout = 60000)
+	public void testConcurrentAggregatesShareScan() throws Exception {
+		IItemCollection events = RecordingToolkit.getFlightRecording(PrintoutsToolkit.getTestResources()[0]);
+		AtomicInteger scans = new AtomicInteger();
+		IItemCollection sharedItems = new SharedScanItemCollection(new ScanCountingCollection(events, scans));
+		IItemFilter filter = JdkFilters.EXECUTION_SAMPLE;
+
+		BlockingAggregator blocking = new BlockingAggregator();
+		AggregateThread<IQuantity> blockingThread = new AggregateThread<>(sharedItems.apply(filter), blocking);
+		assertTrue(blocking.started.await(10, TimeUnit.SECONDS));
+		// Requested while the blocking aggregate is calculated, so they should be calculated together
+		IAggregator<IQuantity, ?> count = Aggregators.count();
+		IAggregator<IQuantity, ?> longest = Aggregators.max(JfrAttributes.DURATION);
+		AggregateThread<IQuantity> countThread = new AggregateThread<>(sharedItems.apply(filter), count);
+		AggregateThread<IQuantity> longestThread = new AggregateThread<>(sharedItems.apply(filter), longest);
+		countThread.awaitWaiting();
+		longestThread.awaitWaiting();
+		blocking.release.countDown();
+
+		IItemCollection samples = events.apply(filter);
+		assertEquals(samples.getAggregate(Aggregators.count()), blockingThread.getValue());
+		assertEquals(samples.getAggregate(count), countThread.getValue());
+		assertEquals(samples.getAggregate(longest), longestThread.getValue());
+		assertEquals(2, scans.get());
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.rules.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.openjdk.jmc.common.item.Aggregators;
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.item.IAggregator;
+import org.openjdk.jmc.common.item.IItemFilter;
+import org.openjdk.jmc.common.item.ItemFilters;
+import org.openjdk.jmc.common.test.io.IOResourceSet;
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.QuantityRange;
+import org.openjdk.jmc.common.unit.UnitLookup;
+import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.JfrAttributes;
+import org.openjdk.jmc.flightrecorder.test.util.PrintoutsToolkit;
+import org.openjdk.jmc.flightrecorder.test.util.RecordingToolkit;
+import org.openjdk.jmc.flightrecorder.rules.util.SlidingWindowToolkit.IUnorderedWindowVisitor;
+import org.openjdk.jmc.flightrecorder.rules.util.SlidingWindowToolkit.IWindowStatisticsVisitor;
+
+@SuppressWarnings("nls")
+public class SlidingWindowToolkitTest {
+
+	@Test
+	public void testUnorderedWindowsMatchFilters() throws IOException, CouldNotLoadRecordingException {
+		for (IOResourceSet resourceSet : PrintoutsToolkit.getTestResources()) {
+			IItemCollection items = RecordingToolkit.getFlightRecording(resourceSet);
+			String name = resourceSet.getResource(0).getName();
+			checkWindows(name, items, false);
+			checkWindows(name, items, true);
+		}
+	}
+
+	private static void checkWindows(
+		final String name, final IItemCollection items, final boolean includeIntersecting) {
+		final List<Long> windowCounts = new ArrayList<>();
+		SlidingWindowToolkit.slidingWindowUnordered(new IUnorderedWindowVisitor() {
+
+			@Override
+			public void visitWindow(IItemCollection windowItems, IQuantity startTime, IQuantity endTime) {
+				IItemFilter filter = includeIntersecting
+						? ItemFilters.rangeIntersects(JfrAttributes.LIFETIME,
+								QuantityRange.createWithEnd(startTime, endTime))
+						: ItemFilters.interval(JfrAttributes.END_TIME, startTime, true, endTime, true);
+				IQuantity expected = items.apply(filter).getAggregate(Aggregators.count());
+				assertEquals(name + " window at " + startTime, expected, windowItems.getAggregate(Aggregators.count()));
+				windowCounts.add(expected.longValue());
+			}
+
+			@Override
+			public boolean shouldContinue() {
+				return true;
+			}
+		}, items, UnitLookup.SECOND.quantity(1), UnitLookup.MILLISECOND.quantity(500), includeIntersecting);
+		assertTrue(name + " has no windows", !windowCounts.isEmpty());
+	}
+
+	@Test
+	public void testWindowStatisticsMatchAggregates() throws IOException, CouldNotLoadRecordingException {
+		for (IOResourceSet resourceSet : PrintoutsToolkit.getTestResources()) {
+			final IItemCollection items = RecordingToolkit.getFlightRecording(resourceSet)
+					.apply(ItemFilters.hasAttribute(JfrAttributes.DURATION));
+			final String name = resourceSet.getResource(0).getName();
+			final List<Long> windowCounts = new ArrayList<>();
+			SlidingWindowToolkit.slidingWindowStatistics(new IWindowStatisticsVisitor() {
+
+				@Override
+				public void visitWindow(RunningWindowStatistics statistics, IQuantity startTime, IQuantity endTime) {
+					String window = name + " window at " + startTime;
+					IItemCollection windowItems = items
+							.apply(ItemFilters.interval(JfrAttributes.END_TIME, startTime, true, endTime, true));
+					long count = windowItems.getAggregate(Aggregators.count()).longValue();
+					assertEquals(window, count, statistics.getCount());
+					if (count > 0) {
+						double sum = getValue(windowItems, Aggregators.sum(JfrAttributes.DURATION));
+						assertEquals(window, sum, statistics.getSum(), Math.max(1, sum * 1e-9));
+						assertEquals(window, getValue(windowItems, Aggregators.min(JfrAttributes.DURATION)),
+								statistics.getMin(), 0);
+						assertEquals(window, getValue(windowItems, Aggregators.max(JfrAttributes.DURATION)),
+								statistics.getMax(), 0);
+					}
+					windowCounts.add(count);
+				}
+
+				@Override
+				public boolean shouldContinue() {
+					return true;
+				}
+			}, items, JfrAttributes.DURATION, UnitLookup.NANOSECOND, UnitLookup.SECOND.quantity(1),
+					UnitLookup.MILLISECOND.quantity(500));
+			assertTrue(name + " has no windows", !windowCounts.isEmpty());
+		}
+	}
+
+	private static double getValue(IItemCollection items, IAggregator<IQuantity, ?> aggregator) {
+		return items.getAggregate(aggregator).doubleValueIn(UnitLookup.NANOSECOND);
+	}
+
+	@Test
+	public void testRunningWindowStatistics() {
+		double[] values = {5, 3, 8, 1, 1, 9, 2, 7, 4, 6, 0, 3};
+		RunningWindowStatistics statistics = new RunningWindowStatistics();
+		int windowSize = 4;
+		for (int i = 0; i < 40; i++) {
+			statistics.add(values[i % values.length]);
+			if (statistics.getCount() > windowSize) {
+				assertEquals(values[(i - windowSize) % values.length], statistics.removeFirst(), 0);
+			}
+			double sum = 0;
+			double min = Double.MAX_VALUE;
+			double max = -Double.MAX_VALUE;
+			for (int j = Math.max(0, i - windowSize + 1); j <= i; j++) {
+				double v = values[j % values.length];
+				sum += v;
+				min = Math.min(min, v);
+				max = Math.max(max, v);
+			}
+			assertEquals(Math.min(i + 1, windowSize), statistics.getCount());
+			assertEquals(sum, statistics.getSum(), 0.0001);
+			assertEquals(min, statistics.getMin(), 0);
+			assertEquals(max, statistics.getMax(), 0);
+		}
+		while (statistics.getCount() > 0) {
+			statistics.removeFirst();
+		}
+		assertTrue(Double.isNaN(statistics.getMin()));
+		assertEquals(0, statistics.getSum(), 0);
+	}
+
+	@Test
+	public void testRunningWindowStatisticsGrowth() {
+		RunningWindowStatistics statistics = new RunningWindowStatistics();
+		for (int i = 0; i < 100; i++) {
+			statistics.add(i);
+		}
+		for (int i = 0; i < 50; i++) {
+			statistics.removeFirst();
+			statistics.add(-i);
+		}
+		assertEquals(100, statistics.getCount());
+		assertEquals(-49, statistics.getMin(), 0);
+		assertEquals(99, statistics.getMax(), 0);
+	}
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * 
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openjdk.jmc.common.item.Aggregators;
+import org.openjdk.jmc.common.item.IAttribute;
+import org.openjdk.jmc.common.item.IItem;
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.item.IItemFilter;
+import org.openjdk.jmc.common.item.IItemIterable;
+import org.openjdk.jmc.common.item.ILongAccessor;
+import org.openjdk.jmc.common.item.IMemberAccessor;
+import org.openjdk.jmc.common.item.ItemFilters;
+import org.openjdk.jmc.common.test.io.IOResourceSet;
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.IUnit;
+import org.openjdk.jmc.common.unit.UnitLookup;
+import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.JfrAttributes;
+import org.openjdk.jmc.flightrecorder.jdk.JdkAttributes;
+import org.openjdk.jmc.flightrecorder.test.util.PrintoutsToolkit;
+import org.openjdk.jmc.flightrecorder.test.util.RecordingToolkit;
+
+/**
+ * Verifies that recordings loaded with columnar event storage give the same printouts as the
+ * checked in baselines, and the same aggregates as recordings loaded with row based storage.
+ */
+@SuppressWarnings("nls")
+public class ColumnarLoadingTest {
+	private static final String COLUMNAR_PARSER_PROPERTY_KEY = "org.openjdk.jmc.flightrecorder.parser.columnar";
+
+	@Test
+	public void testColumnarAggregates() throws IOException, CouldNotLoadRecordingException {
+		List<IAttribute<IQuantity>> attributes = Arrays.asList(JfrAttributes.DURATION, JfrAttributes.START_TIME,
+				JfrAttributes.END_TIME, JdkAttributes.ALLOCATION_SIZE, JdkAttributes.TLAB_SIZE, JdkAttributes.HEAP_USED,
+				JdkAttributes.JVM_TOTAL);
+		for (IOResourceSet resourceSet : PrintoutsToolkit.getTestResources()) {
+			IItemCollection items = RecordingToolkit.getFlightRecording(resourceSet);
+			IItemCollection columnarItems;
+			System.setProperty(COLUMNAR_PARSER_PROPERTY_KEY, Boolean.TRUE.toString());
+			try {
+				columnarItems = RecordingToolkit.getFlightRecording(resourceSet);
+			} finally {
+				System.clearProperty(COLUMNAR_PARSER_PROPERTY_KEY);
+			}
+			String name = resourceSet.getResource(0).getName();
+			for (IAttribute<IQuantity> attribute : attributes) {
+				String message = name + ": " + attribute.getIdentifier();
+				Assert.assertEquals(message, items.getAggregate(Aggregators.min(attribute)),
+						columnarItems.getAggregate(Aggregators.min(attribute)));
+				Assert.assertEquals(message, items.getAggregate(Aggregators.max(attribute)),
+						columnarItems.getAggregate(Aggregators.max(attribute)));
+				Assert.assertEquals(message, items.getAggregate(Aggregators.itemWithMax(attribute)) == null,
+						columnarItems.getAggregate(Aggregators.itemWithMax(attribute)) == null);
+				if (attribute != JfrAttributes.START_TIME && attribute != JfrAttributes.END_TIME) {
+					Assert.assertEquals(message, items.getAggregate(Aggregators.sum(attribute)),
+							columnarItems.getAggregate(Aggregators.sum(attribute)));
+					Assert.assertEquals(message, items.getAggregate(Aggregators.avg(attribute)),
+							columnarItems.getAggregate(Aggregators.avg(attribute)));
+					Assert.assertEquals(message, items.getAggregate(Aggregators.stddev(attribute)),
+							columnarItems.getAggregate(Aggregators.stddev(attribute)));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testPrimitiveTimeAccessors() throws IOException, CouldNotLoadRecordingException {
+		for (IOResourceSet resourceSet : PrintoutsToolkit.getTestResources()) {
+			checkPrimitiveTimeAccessors(resourceSet.getResource(0).getName(), loadColumnar(resourceSet));
+			checkPrimitiveTimeAccessors(resourceSet.getResource(0).getName() + " (rows)",
+					RecordingToolkit.getFlightRecording(resourceSet));
+		}
+	}
+
+	private static void checkPrimitiveTimeAccessors(String name, IItemCollection items) {
+		long primitiveCount = 0;
+		for (IItemIterable iterable : items) {
+			for (IAttribute<IQuantity> attribute : Arrays.asList(JfrAttributes.START_TIME, JfrAttributes.END_TIME,
+					JfrAttributes.DURATION)) {
+				IMemberAccessor<IQuantity, IItem> accessor = attribute.getAccessor(iterable.getType());
+				if (!(accessor instanceof ILongAccessor)) {
+					continue;
+				}
+				@SuppressWarnings("unchecked")
+				ILongAccessor<IItem> longAccessor = (ILongAccessor<IItem>) accessor;
+				for (IItem item : iterable) {
+					IUnit unit = longAccessor.getLongUnit(item);
+					if (unit != null) {
+						Assert.assertEquals(name + ": " + attribute.getIdentifier(), accessor.getMember(item),
+								unit.quantity(longAccessor.getLong(item)));
+						primitiveCount++;
+					}
+				}
+			}
+		}
+		Assert.assertTrue(name + ": no primitive time values", primitiveCount > 0);
+	}
+
+	@Test
+	public void testColumnarTimeFilters() throws IOException, CouldNotLoadRecordingException {
+		for (IOResourceSet resourceSet : PrintoutsToolkit.getTestResources()) {
+			IItemCollection items = RecordingToolkit.getFlightRecording(resourceSet);
+			IItemCollection columnarItems = loadColumnar(resourceSet);
+			String name = resourceSet.getResource(0).getName();
+			IQuantity first = items.getAggregate(Aggregators.min(JfrAttributes.START_TIME));
+			IQuantity last = items.getAggregate(Aggregators.max(JfrAttributes.END_TIME));
+			IQuantity third = last.subtract(first).multiply(1.0 / 3);
+			IQuantity from = UnitLookup.EPOCH_NS.quantity(first.add(third).clampedLongValueIn(UnitLookup.EPOCH_NS));
+			IQuantity to = UnitLookup.EPOCH_NS.quantity(last.subtract(third).clampedLongValueIn(UnitLookup.EPOCH_NS));
+			List<IItemFilter> filters = Arrays.asList(ItemFilters.moreOrEqual(JfrAttributes.START_TIME, from),
+					ItemFilters.less(JfrAttributes.END_TIME, to),
+					ItemFilters.and(ItemFilters.more(JfrAttributes.END_TIME, from),
+							ItemFilters.lessOrEqual(JfrAttributes.START_TIME, to)));
+			for (IItemFilter filter : filters) {
+				Assert.assertEquals(name + ": " + filter, items.apply(filter).getAggregate(Aggregators.count()),
+						columnarItems.apply(filter).getAggregate(Aggregators.count()));
+			}
+		}
+	}
+
+	@Test
+	public void testColumnarItemsEqual() throws IOException, CouldNotLoadRecordingException {
+		for (IOResourceSet resourceSet : PrintoutsToolkit.getTestResources()) {
+			IItemCollection items = loadColumnar(resourceSet);
+			String name = resourceSet.getResource(0).getName();
+			for (IItemIterable iterable : items) {
+				Iterator<IItem> first = iterable.iterator();
+				Iterator<IItem> second = iterable.iterator();
+				while (first.hasNext()) {
+					IItem item = first.next();
+					IItem other = second.next();
+					Assert.assertEquals(name, item, other);
+					Assert.assertEquals(name, item.hashCode(), other.hashCode());
+				}
+				Assert.assertFalse(name, second.hasNext());
+			}
+		}
+	}
+
+	private static IItemCollection loadColumnar(IOResourceSet resourceSet)
+			throws IOException, CouldNotLoadRecordingException {
+		System.setProperty(COLUMNAR_PARSER_PROPERTY_KEY, Boolean.TRUE.toString());
+		try {
+			return RecordingToolkit.getFlightRecording(resourceSet);
+		} finally {
+			System.clearProperty(COLUMNAR_PARSER_PROPERTY_KEY);
+		}
+	}
+
+	@Test
+	public void testColumnarRecordings() throws IOException, CouldNotLoadRecordingException {
+		for (IOResourceSet resourceSet : PrintoutsToolkit.getTestResources()) {
+			IItemCollection items;
+			System.setProperty(COLUMNAR_PARSER_PROPERTY_KEY, Boolean.TRUE.toString());
+			try {
+				items = RecordingToolkit.getFlightRecording(resourceSet);
+			} finally {
+				System.clearProperty(COLUMNAR_PARSER_PROPERTY_KEY);
+			}
+			List<String> parsedEvents = PrintoutsToolkit.getEventsAsStrings(items);
+			List<String> expectedEvents;
+			try {
+				expectedEvents = PrintoutsToolkit.getEventsFromPrintout(resourceSet);
+			} catch (Exception e) {
+				throw new IOException(resourceSet.getResource(0).getName() + ": Could not read baseline file", e);
+			}
+			Assert.assertEquals(resourceSet.getResource(0).getName() + ": wrong number of events",
+					expectedEvents.size(), parsedEvents.size());
+			for (int i = 0; i < expectedEvents.size(); i++) {
+				Assert.assertEquals(resourceSet.getResource(0).getName() + ": events did not match expected",
+						expectedEvents.get(i), parsedEvents.get(i));
+			}
+		}
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openjdk.jmc.common.IMCFrame;
+import org.openjdk.jmc.common.IMCMethod;
+import org.openjdk.jmc.common.IMCStackTrace;
+import org.openjdk.jmc.common.io.IOToolkit;
+import org.openjdk.jmc.common.item.IItem;
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.item.IItemIterable;
+import org.openjdk.jmc.common.item.IMemberAccessor;
+import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.JfrAttributes;
+import org.openjdk.jmc.flightrecorder.JfrLoaderToolkit;
+import org.openjdk.jmc.flightrecorder.test.util.RecordingToolkit;
+
+import jdk.jfr.Recording;
+
+/**
+ * Verifies that equal stack traces and methods are represented by the same instance, also when they
+ * come from different chunks.
+ */
+@SuppressWarnings("nls")
+public class ConstantInterningTest {
+
+	private static final String[] MULTI_CHUNK_RECORDINGS = {"flush_metadata.jfr", "flush_incremental_metadata.jfr"};
+
+	@Test
+	public void testInternedStackTraces() throws IOException, CouldNotLoadRecordingException {
+		for (String recording : MULTI_CHUNK_RECORDINGS) {
+			IItemCollection items = RecordingToolkit.getNamedRecording(recording);
+			Map<IMCStackTrace, IMCStackTrace> traces = new HashMap<>();
+			Map<IMCMethod, IMCMethod> methods = new HashMap<>();
+			for (IItemIterable ii : items) {
+				IMemberAccessor<IMCStackTrace, IItem> accessor = JfrAttributes.EVENT_STACKTRACE
+						.getAccessor(ii.getType());
+				if (accessor == null) {
+					continue;
+				}
+				for (IItem item : ii) {
+					IMCStackTrace trace = accessor.getMember(item);
+					if (trace == null) {
+						continue;
+					}
+					IMCStackTrace first = traces.get(trace);
+					if (first == null) {
+						traces.put(trace, trace);
+						for (IMCFrame frame : trace.getFrames()) {
+							IMCMethod firstMethod = methods.get(frame.getMethod());
+							if (firstMethod == null) {
+								methods.put(frame.getMethod(), frame.getMethod());
+							} else {
+								Assert.assertSame(recording + ": equal methods should be interned", firstMethod,
+										frame.getMethod());
+							}
+						}
+					} else {
+						Assert.assertSame(recording + ": equal stack traces should be interned", first, trace);
+					}
+				}
+			}
+			Assert.assertFalse(recording + ": expected stack traces", traces.isEmpty());
+		}
+	}
+
+	@Test
+	public void testClassLoadersNotMerged() throws Exception {
+		File file = File.createTempFile("interning", ".jfr");
+		try {
+			try (Recording recording = new Recording()) {
+				recording.enable("jdk.ThreadSleep").withThreshold(Duration.ZERO).withStackTrace();
+				recording.start();
+				// The same class name defined by two class loaders
+				for (int i = 0; i < 2; i++) {
+					new DefiningClassLoader().define(Sleeper.class.getName()).getMethod("sleep").invoke(null);
+				}
+				recording.stop();
+				recording.dump(file.toPath());
+			}
+			Set<IMCMethod> methods = Collections.newSetFromMap(new IdentityHashMap<IMCMethod, Boolean>());
+			for (IItemIterable ii : JfrLoaderToolkit.loadEvents(file)) {
+				IMemberAccessor<IMCStackTrace, IItem> accessor = JfrAttributes.EVENT_STACKTRACE
+						.getAccessor(ii.getType());
+				if (accessor == null) {
+					continue;
+				}
+				for (IItem item : ii) {
+					IMCStackTrace trace = accessor.getMember(item);
+					for (IMCFrame frame : trace == null ? Collections.<IMCFrame> emptyList() : trace.getFrames()) {
+						if (Sleeper.class.getName().equals(frame.getMethod().getType().getFullName())) {
+							methods.add(frame.getMethod());
+						}
+					}
+				}
+			}
+			Assert.assertEquals("methods of classes from different class loaders should not be merged", 2,
+					methods.size());
+		} finally {
+			file.delete();
+		}
+	}
+
+	public static class Sleeper {
+		public static void sleep() throws InterruptedException {
+			Thread.sleep(1);
+		}
+	}
+
+	private static class DefiningClassLoader extends ClassLoader {
+		DefiningClassLoader() {
+			super(ConstantInterningTest.class.getClassLoader());
+		}
+
+		Class<?> define(String name) throws IOException {
+			InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class");
+			try {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				IOToolkit.copy(in, out);
+				byte[] bytes = out.toByteArray();
+				return defineClass(name, bytes, 0, bytes.length);
+			} finally {
+				IOToolkit.closeSilently(in);
+			}
+		}
+	}
+}
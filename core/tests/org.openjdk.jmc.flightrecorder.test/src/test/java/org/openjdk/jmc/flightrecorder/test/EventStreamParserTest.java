@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * 
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.item.IItemIterable;
+import org.openjdk.jmc.common.test.io.IOResource;
+import org.openjdk.jmc.common.test.io.IOResourceSet;
+import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.parser.EventStreamParser;
+import org.openjdk.jmc.flightrecorder.parser.IEventSink;
+import org.openjdk.jmc.flightrecorder.parser.IEventSinkFactory;
+import org.openjdk.jmc.flightrecorder.parser.ValueField;
+import org.openjdk.jmc.flightrecorder.test.util.PrintoutsToolkit;
+import org.openjdk.jmc.flightrecorder.test.util.RecordingToolkit;
+
+/**
+ * Verifies that streaming the events of a recording gives the same events as loading it.
+ */
+@SuppressWarnings("nls")
+public class EventStreamParserTest {
+
+	private static class CountingSinkFactory implements IEventSinkFactory {
+		final Map<String, Long> counts = new HashMap<>();
+		boolean flushed;
+
+		@Override
+		public IEventSink create(
+			final String identifier, String label, String[] category, String description,
+			final List<ValueField> dataStructure) {
+			if (!counts.containsKey(identifier)) {
+				counts.put(identifier, 0L);
+			}
+			return new IEventSink() {
+
+				@Override
+				public void addEvent(Object[] values) {
+					Assert.assertEquals(dataStructure.size(), values.length);
+					counts.put(identifier, counts.get(identifier) + 1);
+				}
+			};
+		}
+
+		@Override
+		public void flush() {
+			flushed = true;
+		}
+	}
+
+	@Test
+	public void testStreamedEventCounts() throws IOException, CouldNotLoadRecordingException {
+		for (IOResourceSet resourceSet : PrintoutsToolkit.getTestResources()) {
+			IOResource resource = resourceSet.getResource(0);
+			CountingSinkFactory sinkFactory = new CountingSinkFactory();
+			try (InputStream is = resource.open()) {
+				EventStreamParser.parse(is, sinkFactory);
+			}
+			Assert.assertTrue(resource.getName() + ": sink factory was not flushed", sinkFactory.flushed);
+
+			IItemCollection items = RecordingToolkit.getFlightRecording(resourceSet);
+			Map<String, Long> loadedCounts = new HashMap<>();
+			for (IItemIterable iterable : items) {
+				String id = iterable.getType().getIdentifier();
+				Long count = loadedCounts.get(id);
+				loadedCounts.put(id, (count == null ? 0 : count) + iterable.getItemCount());
+			}
+			for (Map.Entry<String, Long> e : loadedCounts.entrySet()) {
+				if (e.getValue() > 0) {
+					Assert.assertEquals(resource.getName() + ": wrong number of " + e.getKey() + " events",
+							e.getValue(), sinkFactory.counts.get(e.getKey()));
+				}
+			}
+		}
+	}
+}
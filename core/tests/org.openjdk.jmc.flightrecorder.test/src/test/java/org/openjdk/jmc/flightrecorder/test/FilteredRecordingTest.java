@@ -36,17 +36,28 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import org.openjdk.jmc.common.item.Aggregators;
+import org.openjdk.jmc.common.item.IItem;
 import org.openjdk.jmc.common.item.IItemCollection;
 import org.openjdk.jmc.common.item.IItemIterable;
+import org.openjdk.jmc.common.item.IMemberAccessor;
 import org.openjdk.jmc.common.test.io.IOResourceSet;
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.IRange;
+import org.openjdk.jmc.common.unit.QuantityRange;
 import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.JfrAttributes;
 import org.openjdk.jmc.flightrecorder.JfrLoaderToolkit;
+import org.openjdk.jmc.flightrecorder.jdk.JdkAttributes;
 import org.openjdk.jmc.flightrecorder.parser.IParserExtension;
 import org.openjdk.jmc.flightrecorder.parser.ParserExtensionRegistry;
 import org.openjdk.jmc.flightrecorder.parser.filter.FilterExtension;
@@ -89,6 +100,111 @@ public class FilteredRecordingTest {
 				"Expected event types matching '" + JVM_INFORMATION_REGEXP + "'");
 	}
 
+	@Test
+	public void testTimeRangeFilter() throws IOException, CouldNotLoadRecordingException {
+		for (IOResourceSet resourceSet : PrintoutsToolkit.getTestResources()) {
+			IItemCollection allItems;
+			try (InputStream recordingStream = resourceSet.getResource(0).open()) {
+				allItems = JfrLoaderToolkit.loadEvents(recordingStream);
+			}
+			IQuantity first = null;
+			IQuantity last = null;
+			for (IItemIterable ii : allItems) {
+				IMemberAccessor<IQuantity, IItem> startAccessor = JfrAttributes.START_TIME.getAccessor(ii.getType());
+				IMemberAccessor<IQuantity, IItem> endAccessor = JfrAttributes.END_TIME.getAccessor(ii.getType());
+				for (IItem item : ii) {
+					IQuantity start = startAccessor.getMember(item);
+					IQuantity end = endAccessor.getMember(item);
+					first = first == null || start.compareTo(first) < 0 ? start : first;
+					last = last == null || end.compareTo(last) > 0 ? end : last;
+				}
+			}
+			IQuantity third = last.subtract(first).multiply(1.0 / 3);
+			IRange<IQuantity> window = QuantityRange.createWithEnd(first.add(third), last.subtract(third));
+			long expectedCount = countItemsInRange(allItems, window);
+
+			try (InputStream recordingStream = resourceSet.getResource(0).open()) {
+				List<IParserExtension> extensions = new ArrayList<>(ParserExtensionRegistry.getParserExtensions());
+				extensions
+						.add(new FilterExtension(OnLoadFilters.withTimeRange(OnLoadFilters.ALLOW_ALL_FILTER, window)));
+				IItemCollection items = JfrLoaderToolkit.loadEvents(recordingStream, extensions);
+				long count = countItemsInRange(items, window);
+				Assert.assertEquals(resourceSet.getResource(0).getName() + ": events outside of time range", count,
+						items.getAggregate(Aggregators.count()).longValue());
+				Assert.assertEquals(resourceSet.getResource(0).getName() + ": wrong number of events", expectedCount,
+						count);
+			}
+		}
+	}
+
+	@Test
+	public void testFieldPredicateFilter() throws IOException, CouldNotLoadRecordingException {
+		IOnLoadFilter filter = OnLoadFilters.withFieldPredicate(OnLoadFilters.ALLOW_ALL_FILTER,
+				JdkAttributes.GC_ID.getIdentifier(), new Predicate<Object>() {
+
+					@Override
+					public boolean test(Object value) {
+						return false;
+					}
+				});
+		for (IOResourceSet resourceSet : PrintoutsToolkit.getTestResources()) {
+			IItemCollection allItems;
+			try (InputStream recordingStream = resourceSet.getResource(0).open()) {
+				allItems = JfrLoaderToolkit.loadEvents(recordingStream);
+			}
+			IItemCollection items;
+			try (InputStream recordingStream = resourceSet.getResource(0).open()) {
+				List<IParserExtension> extensions = new ArrayList<>(ParserExtensionRegistry.getParserExtensions());
+				extensions.add(new FilterExtension(filter));
+				items = JfrLoaderToolkit.loadEvents(recordingStream, extensions);
+			}
+			Map<String, Long> counts = countItemsByType(items);
+			for (Map.Entry<String, Long> entry : countItemsByType(allItems).entrySet()) {
+				Long count = counts.get(entry.getKey());
+				if (hasGcId(allItems, entry.getKey())) {
+					Assert.assertNull(entry.getKey() + " should have been filtered", count);
+				} else {
+					Assert.assertEquals(entry.getKey() + " should not have been filtered", entry.getValue(), count);
+				}
+			}
+		}
+	}
+
+	private static long countItemsInRange(IItemCollection items, IRange<IQuantity> range) {
+		long count = 0;
+		for (IItemIterable ii : items) {
+			IMemberAccessor<IQuantity, IItem> startAccessor = JfrAttributes.START_TIME.getAccessor(ii.getType());
+			IMemberAccessor<IQuantity, IItem> endAccessor = JfrAttributes.END_TIME.getAccessor(ii.getType());
+			for (IItem item : ii) {
+				if (startAccessor.getMember(item).compareTo(range.getEnd()) <= 0
+						&& endAccessor.getMember(item).compareTo(range.getStart()) >= 0) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	private static Map<String, Long> countItemsByType(IItemCollection items) {
+		Map<String, Long> counts = new HashMap<>();
+		for (IItemIterable ii : items) {
+			if (ii.getItemCount() > 0) {
+				Long count = counts.get(ii.getType().getIdentifier());
+				counts.put(ii.getType().getIdentifier(), (count == null ? 0 : count) + ii.getItemCount());
+			}
+		}
+		return counts;
+	}
+
+	private static boolean hasGcId(IItemCollection items, String typeId) {
+		for (IItemIterable ii : items) {
+			if (ii.getType().getIdentifier().equals(typeId)) {
+				return JdkAttributes.GC_ID.getAccessor(ii.getType()) != null;
+			}
+		}
+		return false;
+	}
+
 	private void checkFilter(
 		IOnLoadFilter onLoadFilter, String typeToCheck, boolean expect, String unexpectedAfterFilterString)
 			throws IOException, CouldNotLoadRecordingException, AssertionError {
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openjdk.jmc.common.item.Aggregators;
+import org.openjdk.jmc.common.item.Aggregators.CountConsumer;
+import org.openjdk.jmc.common.item.GroupingAggregator;
+import org.openjdk.jmc.common.item.GroupingAggregator.GroupEntry;
+import org.openjdk.jmc.common.item.GroupingAggregator.TopEntry;
+import org.openjdk.jmc.common.item.IAccessorFactory;
+import org.openjdk.jmc.common.item.IItem;
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.item.IItemIterable;
+import org.openjdk.jmc.common.item.IMemberAccessor;
+import org.openjdk.jmc.common.item.IType;
+import org.openjdk.jmc.common.test.io.IOResourceSet;
+import org.openjdk.jmc.common.util.PredicateToolkit;
+import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.JfrAttributes;
+import org.openjdk.jmc.flightrecorder.test.util.PrintoutsToolkit;
+import org.openjdk.jmc.flightrecorder.test.util.RecordingToolkit;
+
+/**
+ * Verifies grouped aggregates against counts calculated from iterating over all items.
+ */
+@SuppressWarnings("nls")
+public class GroupingAggregatorTest {
+
+	@Test
+	public void testGroupCounts() throws IOException, CouldNotLoadRecordingException {
+		for (IOResourceSet resourceSet : PrintoutsToolkit.getTestResources()) {
+			IItemCollection items = RecordingToolkit.getFlightRecording(resourceSet);
+			String name = resourceSet.getResource(0).getName();
+			checkGroupCounts(name, items, JfrAttributes.EVENT_THREAD);
+			checkGroupCounts(name, items, JfrAttributes.EVENT_STACKTRACE);
+			checkGroupCounts(name, items, JfrAttributes.EVENT_TYPE);
+		}
+	}
+
+	@Test
+	public void testTopCounts() throws IOException, CouldNotLoadRecordingException {
+		for (IOResourceSet resourceSet : PrintoutsToolkit.getTestResources()) {
+			IItemCollection items = RecordingToolkit.getFlightRecording(resourceSet);
+			String name = resourceSet.getResource(0).getName();
+			checkTopCounts(name, items, JfrAttributes.EVENT_THREAD);
+			checkTopCounts(name, items, JfrAttributes.EVENT_STACKTRACE);
+		}
+	}
+
+	private static <K> void checkGroupCounts(String name, IItemCollection items, IAccessorFactory<K> keyField) {
+		Map<K, Long> expected = countByKey(items, keyField);
+		Iterable<? extends GroupEntry<K, CountConsumer>> groups = items.getAggregate(GroupingAggregator.build("Count",
+				null, keyField, Aggregators.count(), PredicateToolkit.<IType<IItem>> truePredicate()));
+		int groupCount = 0;
+		for (GroupEntry<K, CountConsumer> group : groups) {
+			Assert.assertEquals(name + ": " + group.getKey(), expected.get(group.getKey()).longValue(),
+					group.getConsumer().getCount());
+			groupCount++;
+		}
+		Assert.assertEquals(name, expected.size(), groupCount);
+	}
+
+	private static <K> void checkTopCounts(String name, IItemCollection items, IAccessorFactory<K> keyField) {
+		Map<K, Long> expected = countByKey(items, keyField);
+		Predicate<IType<IItem>> all = PredicateToolkit.truePredicate();
+		long total = 0;
+		long max = 0;
+		for (long count : expected.values()) {
+			total += count;
+			max = Math.max(max, count);
+		}
+
+		// Exact when all keys fit
+		int capacity = Math.max(1, expected.size());
+		List<TopEntry<K>> exact = items
+				.getAggregate(GroupingAggregator.buildTopCounts("Top", null, keyField, all, capacity, capacity));
+		Assert.assertEquals(name, expected.size(), exact.size());
+		for (TopEntry<K> entry : exact) {
+			Assert.assertEquals(name, expected.get(entry.getKey()).longValue(), entry.getCount());
+			Assert.assertEquals(name, 0, entry.getMaxError());
+		}
+		if (!exact.isEmpty()) {
+			Assert.assertEquals(name, max, exact.get(0).getCount());
+		}
+
+		// Bounded when there are more keys than counters
+		int smallCapacity = 8;
+		List<TopEntry<K>> approximate = items
+				.getAggregate(GroupingAggregator.buildTopCounts("Top", null, keyField, all, 4, smallCapacity));
+		long previous = Long.MAX_VALUE;
+		for (TopEntry<K> entry : approximate) {
+			long count = expected.get(entry.getKey());
+			Assert.assertTrue(name, entry.getCount() <= previous);
+			Assert.assertTrue(name, entry.getCount() >= count);
+			Assert.assertTrue(name, entry.getCount() - entry.getMaxError() <= count);
+			previous = entry.getCount();
+		}
+		for (Map.Entry<K, Long> e : expected.entrySet()) {
+			if (e.getValue() > total / smallCapacity && e.getValue() > previous) {
+				boolean found = false;
+				for (TopEntry<K> entry : approximate) {
+					found |= entry.getKey().equals(e.getKey());
+				}
+				Assert.assertTrue(name + ": frequent key not found " + e.getKey(), found);
+			}
+		}
+	}
+
+	private static <K> Map<K, Long> countByKey(IItemCollection items, IAccessorFactory<K> keyField) {
+		Map<K, Long> counts = new HashMap<>();
+		for (IItemIterable ii : items) {
+			IMemberAccessor<? extends K, IItem> accessor = keyField.getAccessor(ii.getType());
+			if (accessor != null) {
+				for (IItem item : ii) {
+					K key = accessor.getMember(item);
+					if (key != null) {
+						Long count = counts.get(key);
+						counts.put(key, count == null ? 1 : count + 1);
+					}
+				}
+			}
+		}
+		return counts;
+	}
+}
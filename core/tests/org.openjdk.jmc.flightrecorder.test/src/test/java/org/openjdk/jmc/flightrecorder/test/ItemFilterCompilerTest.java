@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openjdk.jmc.common.item.Aggregators;
+import org.openjdk.jmc.common.item.IItem;
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.item.IItemFilter;
+import org.openjdk.jmc.common.item.IItemIterable;
+import org.openjdk.jmc.common.item.IMemberAccessor;
+import org.openjdk.jmc.common.item.IType;
+import org.openjdk.jmc.common.item.ItemFilterCompiler;
+import org.openjdk.jmc.common.item.ItemFilters;
+import org.openjdk.jmc.common.test.io.IOResourceSet;
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.QuantityRange;
+import org.openjdk.jmc.common.unit.UnitLookup;
+import org.openjdk.jmc.common.util.PredicateToolkit;
+import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.JfrAttributes;
+import org.openjdk.jmc.flightrecorder.jdk.JdkAttributes;
+import org.openjdk.jmc.flightrecorder.jdk.JdkFilters;
+import org.openjdk.jmc.flightrecorder.test.util.PrintoutsToolkit;
+import org.openjdk.jmc.flightrecorder.test.util.RecordingToolkit;
+
+/**
+ * Verifies that compiled filter predicates accept exactly the same items as the predicates created
+ * by the filters themselves.
+ */
+@SuppressWarnings("nls")
+public class ItemFilterCompilerTest {
+
+	@Test
+	public void testCompiledFilters() throws IOException, CouldNotLoadRecordingException {
+		for (IOResourceSet resourceSet : PrintoutsToolkit.getTestResources()) {
+			IItemCollection items = RecordingToolkit.getFlightRecording(resourceSet);
+			String name = resourceSet.getResource(0).getName();
+			for (IItemFilter filter : createFilters(items)) {
+				for (IItemIterable ii : items) {
+					Predicate<IItem> expected = filter.getPredicate(ii.getType());
+					Predicate<IItem> compiled = ItemFilterCompiler.compile(filter, ii.getType());
+					String message = name + ": " + ii.getType().getIdentifier() + ": " + filter;
+					// Compiled predicates may be constant in more cases, but never in fewer
+					if (PredicateToolkit.isTrueGuaranteed(expected)) {
+						Assert.assertTrue(message, PredicateToolkit.isTrueGuaranteed(compiled));
+					}
+					if (PredicateToolkit.isFalseGuaranteed(expected)) {
+						Assert.assertTrue(message, PredicateToolkit.isFalseGuaranteed(compiled));
+					}
+					for (IItem item : ii) {
+						Assert.assertEquals(message, expected.test(item), compiled.test(item));
+					}
+				}
+			}
+		}
+	}
+
+	private static List<IItemFilter> createFilters(IItemCollection items) {
+		Set<String> threadNames = new HashSet<>();
+		for (IItemIterable ii : items) {
+			IMemberAccessor<String, IItem> accessor = JdkAttributes.EVENT_THREAD_NAME.getAccessor(ii.getType());
+			if (accessor != null) {
+				for (IItem item : ii) {
+					String threadName = accessor.getMember(item);
+					if (threadName != null) {
+						threadNames.add(threadName);
+					}
+				}
+			}
+		}
+		Set<String> someThreadNames = new HashSet<>();
+		for (String threadName : threadNames) {
+			if (someThreadNames.size() < 3) {
+				someThreadNames.add(threadName);
+			}
+		}
+		String threadName = threadNames.isEmpty() ? "main" : threadNames.iterator().next();
+		String prefix = threadName.substring(0, Math.min(3, threadName.length()));
+		String suffix = threadName.substring(Math.max(0, threadName.length() - 3));
+
+		IQuantity first = items.getAggregate(Aggregators.min(JfrAttributes.START_TIME));
+		IQuantity last = items.getAggregate(Aggregators.max(JfrAttributes.END_TIME));
+		IQuantity middle = first.add(last.subtract(first).multiply(0.5));
+		IQuantity threshold = UnitLookup.MILLISECOND.quantity(1);
+
+		List<IItemFilter> filters = new ArrayList<>();
+		filters.add(ItemFilters.matches(JdkAttributes.EVENT_THREAD_NAME, threadName));
+		filters.add(ItemFilters.matches(JdkAttributes.EVENT_THREAD_NAME, prefix + ".*"));
+		filters.add(ItemFilters.matches(JdkAttributes.EVENT_THREAD_NAME, ".*" + suffix));
+		filters.add(ItemFilters.matches(JdkAttributes.EVENT_THREAD_NAME, ".*" + prefix + ".*"));
+		filters.add(ItemFilters.matches(JdkAttributes.EVENT_THREAD_NAME, ".*"));
+		filters.add(ItemFilters.matches(JdkAttributes.EVENT_THREAD_NAME, "[A-Z].*"));
+		filters.add(ItemFilters.matches(JdkAttributes.EVENT_THREAD_NAME, "(unclosed"));
+		filters.add(ItemFilters.notMatches(JdkAttributes.EVENT_THREAD_NAME, prefix + ".*"));
+		filters.add(ItemFilters.contains(JdkAttributes.EVENT_THREAD_NAME, prefix));
+		filters.add(ItemFilters.notContains(JdkAttributes.EVENT_THREAD_NAME, suffix));
+		filters.add(ItemFilters.memberOf(JdkAttributes.EVENT_THREAD_NAME, someThreadNames));
+		filters.add(ItemFilters.memberOf(JdkAttributes.EVENT_THREAD_NAME, threadNames));
+		filters.add(ItemFilters.memberOf(JdkAttributes.EVENT_THREAD_NAME, new TreeSet<>(someThreadNames)));
+		filters.add(ItemFilters.or(ItemFilters.equals(JdkAttributes.EVENT_THREAD_NAME, threadName),
+				ItemFilters.equals(JdkAttributes.EVENT_THREAD_NAME, "main")));
+		filters.add(ItemFilters.notEquals(JdkAttributes.EVENT_THREAD_NAME, threadName));
+		filters.add(ItemFilters.isNull(JdkAttributes.EVENT_THREAD_NAME));
+		filters.add(ItemFilters.isNotNull(JdkAttributes.EVENT_THREAD_NAME));
+		filters.add(ItemFilters.interval(JfrAttributes.START_TIME, first, true, middle, false));
+		filters.add(ItemFilters.and(ItemFilters.more(JfrAttributes.DURATION, threshold),
+				ItemFilters.matches(JdkAttributes.EVENT_THREAD_NAME, "[A-Z].*"),
+				ItemFilters.lessOrEqual(JfrAttributes.START_TIME, middle),
+				ItemFilters.less(JfrAttributes.DURATION, threshold.multiply(100))));
+		filters.add(ItemFilters.and(JdkFilters.GC_PAUSE, ItemFilters.moreOrEqual(JfrAttributes.DURATION, threshold)));
+		filters.add(ItemFilters.or(JdkFilters.THREAD_LATENCIES,
+				ItemFilters.not(ItemFilters.contains(JdkAttributes.EVENT_THREAD_NAME, prefix))));
+		filters.add(ItemFilters.rangeIntersects(JfrAttributes.LIFETIME, QuantityRange.createWithEnd(first, middle)));
+		filters.add(ItemFilters.and(ItemFilters.hasAttribute(JdkAttributes.GC_ID),
+				ItemFilters.not(ItemFilters.interval(JfrAttributes.END_TIME, first, false, middle, true))));
+		filters.add(ItemFilters.not(JdkFilters.EXECUTION_SAMPLE));
+		// The unknown filter must not be evaluated before the filters that guard it
+		filters.add(ItemFilters.and(ItemFilters.matches(JdkAttributes.EVENT_THREAD_NAME, "[A-Z].*"),
+				ItemFilters.isNotNull(JdkAttributes.EVENT_THREAD_NAME), new IItemFilter() {
+					@Override
+					public Predicate<IItem> getPredicate(IType<IItem> type) {
+						final IMemberAccessor<String, IItem> accessor = JdkAttributes.EVENT_THREAD_NAME
+								.getAccessor(type);
+						return new Predicate<IItem>() {
+							@Override
+							public boolean test(IItem item) {
+								return accessor.getMember(item).length() > 4;
+							}
+						};
+					}
+				}, ItemFilters.equals(JdkAttributes.EVENT_THREAD_NAME, threadName)));
+		return filters;
+	}
+}
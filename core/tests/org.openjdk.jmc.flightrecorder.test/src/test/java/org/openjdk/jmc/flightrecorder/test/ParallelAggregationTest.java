@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openjdk.jmc.common.IMCThread;
+import org.openjdk.jmc.common.item.Aggregators;
+import org.openjdk.jmc.common.item.GroupingAggregator;
+import org.openjdk.jmc.common.item.GroupingAggregator.GroupEntry;
+import org.openjdk.jmc.common.item.GroupingAggregator.IGroupsFinisher;
+import org.openjdk.jmc.common.item.IAggregator;
+import org.openjdk.jmc.common.item.IItem;
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.item.IItemConsumer;
+import org.openjdk.jmc.common.item.IType;
+import org.openjdk.jmc.common.item.ItemFilters;
+import org.openjdk.jmc.common.test.io.IOResourceSet;
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.UnitLookup;
+import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.JfrAttributes;
+import org.openjdk.jmc.flightrecorder.jdk.JdkFilters;
+import org.openjdk.jmc.flightrecorder.test.util.PrintoutsToolkit;
+import org.openjdk.jmc.flightrecorder.test.util.RecordingToolkit;
+
+/**
+ * Verifies that aggregating in parallel gives the same results as aggregating serially.
+ */
+@SuppressWarnings("nls")
+public class ParallelAggregationTest {
+	private static final String PARALLEL_PROPERTY = "org.openjdk.jmc.flightrecorder.aggregation.parallel";
+	private static final String TASK_SIZE_PROPERTY = "org.openjdk.jmc.flightrecorder.aggregation.taskSize";
+
+	@After
+	public void clearProperties() {
+		System.clearProperty(PARALLEL_PROPERTY);
+		System.clearProperty(TASK_SIZE_PROPERTY);
+	}
+
+	@Test
+	public void testParallelAggregates() throws IOException, CouldNotLoadRecordingException {
+		List<IAggregator<?, ?>> aggregators = new ArrayList<>();
+		aggregators.add(Aggregators.count());
+		aggregators.add(Aggregators.min(JfrAttributes.START_TIME));
+		aggregators.add(Aggregators.max(JfrAttributes.END_TIME));
+		aggregators.add(Aggregators.max(JfrAttributes.DURATION));
+		aggregators.add(Aggregators.itemWithMax(JfrAttributes.DURATION));
+		aggregators.add(Aggregators.sum(JfrAttributes.DURATION));
+		aggregators.add(Aggregators.avg(JfrAttributes.DURATION));
+		aggregators.add(Aggregators.stddev(JfrAttributes.DURATION));
+		aggregators.add(Aggregators.quantile(JfrAttributes.DURATION, 0.99));
+		aggregators.add(Aggregators.logHistogram(JfrAttributes.DURATION));
+		aggregators.add(Aggregators.distinct(JfrAttributes.EVENT_TYPE));
+		aggregators.add(Aggregators.distinct(JfrAttributes.EVENT_THREAD));
+		aggregators.add(Aggregators.filter(Aggregators.count(), JdkFilters.EXECUTION_SAMPLE));
+		aggregators.add(groupByThread(Aggregators.count()));
+		aggregators.add(groupByThread(Aggregators.sum(JfrAttributes.DURATION)));
+		aggregators.add(groupByThread(Aggregators.max(JfrAttributes.DURATION)));
+		aggregators.add(GroupingAggregator.buildMax("Max count per thread", null, JfrAttributes.EVENT_THREAD,
+				Aggregators.count()));
+
+		for (IOResourceSet resourceSet : PrintoutsToolkit.getTestResources()) {
+			IItemCollection items = RecordingToolkit.getFlightRecording(resourceSet);
+			IItemCollection filtered = items
+					.apply(ItemFilters.more(JfrAttributes.DURATION, UnitLookup.NANOSECOND.quantity(1000)));
+			String name = resourceSet.getResource(0).getName();
+			for (IAggregator<?, ?> aggregator : aggregators) {
+				Assert.assertTrue(aggregator.getName(), aggregator.isParallelSafe());
+				for (IItemCollection collection : new IItemCollection[] {items, filtered}) {
+					System.clearProperty(PARALLEL_PROPERTY);
+					Object expected = collection.getAggregate(aggregator);
+					System.setProperty(PARALLEL_PROPERTY, "true");
+					System.setProperty(TASK_SIZE_PROPERTY, "100");
+					Object actual = collection.getAggregate(aggregator);
+					assertEqualValues(name + ": " + aggregator.getName(), expected, actual);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Counts items, recording the threads that consume them. Does not declare that it is parallel
+	 * safe, so it must be consumed on the calling thread.
+	 */
+	private static class ThreadRecordingAggregator extends Aggregators.MergingAggregator<IQuantity, ThreadRecorder> {
+		final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+
+		ThreadRecordingAggregator() {
+			super("Thread recording count", null, UnitLookup.NUMBER);
+		}
+
+		@Override
+		public boolean acceptType(IType<IItem> type) {
+			return true;
+		}
+
+		@Override
+		public ThreadRecorder newItemConsumer(IType<IItem> type) {
+			return new ThreadRecorder(threads);
+		}
+
+		@Override
+		public IQuantity getValue(ThreadRecorder consumer) {
+			return UnitLookup.NUMBER_UNITY.quantity(consumer.count);
+		}
+	}
+
+	private static class ThreadRecorder implements IItemConsumer<ThreadRecorder> {
+		private final Set<Thread> threads;
+		long count;
+
+		ThreadRecorder(Set<Thread> threads) {
+			this.threads = threads;
+		}
+
+		@Override
+		public void consume(IItem item) {
+			threads.add(Thread.currentThread());
+			count++;
+		}
+
+		@Override
+		public ThreadRecorder merge(ThreadRecorder other) {
+			count += other.count;
+			return this;
+		}
+	}
+
+	@Test
+	public void testUnsafeAggregatorsConsumedSerially() throws IOException, CouldNotLoadRecordingException {
+		IItemCollection items = RecordingToolkit.getFlightRecording(PrintoutsToolkit.getTestResources()[0]);
+		System.setProperty(PARALLEL_PROPERTY, "true");
+		System.setProperty(TASK_SIZE_PROPERTY, "100");
+		ThreadRecordingAggregator aggregator = new ThreadRecordingAggregator();
+		Assert.assertEquals(items.getAggregate(Aggregators.count()), items.getAggregate(aggregator));
+		Assert.assertEquals(Collections.singleton(Thread.currentThread()), aggregator.threads);
+	}
+
+	private static void assertEqualValues(String message, Object expected, Object actual) {
+		if (expected instanceof IQuantity && actual instanceof IQuantity) {
+			// Sums of floating point values may be rounded differently when added in another order
+			double expectedValue = ((IQuantity) expected).doubleValue();
+			double actualValue = ((IQuantity) actual).doubleValue();
+			Assert.assertEquals(message, ((IQuantity) expected).getUnit(), ((IQuantity) actual).getUnit());
+			Assert.assertEquals(message, expectedValue, actualValue, Math.abs(expectedValue) * 1e-9);
+		} else {
+			Assert.assertEquals(message, expected, actual);
+		}
+	}
+
+	private static <C extends IItemConsumer<C>> IAggregator<Map<IMCThread, Object>, ?> groupByThread(
+		final IAggregator<?, C> aggregator) {
+		return GroupingAggregator.build("By thread: " + aggregator.getName(), null, JfrAttributes.EVENT_THREAD,
+				aggregator, new IGroupsFinisher<Map<IMCThread, Object>, IMCThread, C>() {
+
+					@Override
+					public IType<? super Map<IMCThread, Object>> getValueType() {
+						return UnitLookup.UNKNOWN;
+					}
+
+					@Override
+					public Map<IMCThread, Object> getValue(Iterable<? extends GroupEntry<IMCThread, C>> groups) {
+						Map<IMCThread, Object> values = new HashMap<>();
+						for (GroupEntry<IMCThread, C> group : groups) {
+							Object value = aggregator
+									.getValue(Collections.singletonList(group.getConsumer()).iterator());
+							values.put(group.getKey(),
+									value instanceof IQuantity ? ((IQuantity) value).doubleValue() : value);
+						}
+						return values;
+					}
+				});
+	}
+}
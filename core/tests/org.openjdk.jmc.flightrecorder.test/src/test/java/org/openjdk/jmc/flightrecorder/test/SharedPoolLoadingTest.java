@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openjdk.jmc.common.io.IOToolkit;
+import org.openjdk.jmc.common.test.io.IOResource;
+import org.openjdk.jmc.common.test.io.IOResourceSet;
+import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.JfrLoaderToolkit;
+import org.openjdk.jmc.flightrecorder.parser.ParserExtensionRegistry;
+import org.openjdk.jmc.flightrecorder.test.util.PrintoutsToolkit;
+import org.openjdk.jmc.flightrecorder.test.util.RecordingToolkit;
+
+/**
+ * Verifies that recordings loaded concurrently in a shared pool with a minimal memory budget give
+ * the same result as recordings loaded one at a time.
+ */
+@SuppressWarnings("nls")
+public class SharedPoolLoadingTest {
+	private static final String MEMORY_BUDGET_PROPERTY_KEY = "org.openjdk.jmc.flightrecorder.parser.memorybudget";
+
+	@Test
+	public void testSharedPool() throws Exception {
+		List<File> recordings = new ArrayList<>();
+		List<List<String>> expectedEvents = new ArrayList<>();
+		for (IOResourceSet resourceSet : PrintoutsToolkit.getTestResources()) {
+			IOResource resource = resourceSet.getResource(0);
+			File recording = RecordingToolkit.createResultFile("sharedPoolTest", "tmp_recording" + recordings.size(),
+					true);
+			try (InputStream is = resource.open()) {
+				IOToolkit.write(is, recording, false);
+			}
+			recordings.add(recording);
+			expectedEvents.add(PrintoutsToolkit.getEventsAsStrings(JfrLoaderToolkit.loadEvents(recording)));
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(2);
+		ExecutorService loaders = Executors.newFixedThreadPool(3);
+		System.setProperty(MEMORY_BUDGET_PROPERTY_KEY, "1");
+		try {
+			List<Future<List<String>>> results = new ArrayList<>();
+			for (File recording : recordings) {
+				results.add(loaders.submit(createLoader(recording, pool)));
+			}
+			for (int i = 0; i < recordings.size(); i++) {
+				Assert.assertEquals(recordings.get(i).getName() + ": events did not match", expectedEvents.get(i),
+						results.get(i).get());
+			}
+		} finally {
+			System.clearProperty(MEMORY_BUDGET_PROPERTY_KEY);
+			loaders.shutdownNow();
+			pool.shutdownNow();
+		}
+	}
+
+	private static Callable<List<String>> createLoader(final File recording, final ForkJoinPool pool) {
+		return new Callable<List<String>>() {
+
+			@Override
+			public List<String> call() throws IOException, CouldNotLoadRecordingException {
+				return PrintoutsToolkit.getEventsAsStrings(JfrLoaderToolkit.loadEvents(
+						Collections.singletonList(recording), ParserExtensionRegistry.getParserExtensions(), pool));
+			}
+		};
+	}
+}
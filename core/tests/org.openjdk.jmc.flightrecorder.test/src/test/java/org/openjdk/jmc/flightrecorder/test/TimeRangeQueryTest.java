@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.test;
+
+import java.io.IOException;
+import java.util.function.Predicate;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openjdk.jmc.common.item.Aggregators;
+import org.openjdk.jmc.common.item.IItem;
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.item.IItemFilter;
+import org.openjdk.jmc.common.item.IItemIterable;
+import org.openjdk.jmc.common.item.ItemFilters;
+import org.openjdk.jmc.common.test.io.IOResourceSet;
+import org.openjdk.jmc.common.unit.IQuantity;
+import org.openjdk.jmc.common.unit.IRange;
+import org.openjdk.jmc.common.unit.QuantityRange;
+import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.JfrAttributes;
+import org.openjdk.jmc.flightrecorder.jdk.JdkFilters;
+import org.openjdk.jmc.flightrecorder.test.util.PrintoutsToolkit;
+import org.openjdk.jmc.flightrecorder.test.util.RecordingToolkit;
+
+/**
+ * Verifies that time range filters, which are answered using the time index of the event arrays,
+ * give the same items as scanning all events with the filter predicate.
+ */
+@SuppressWarnings("nls")
+public class TimeRangeQueryTest {
+
+	@Test
+	public void testTimeRangeFilters() throws IOException, CouldNotLoadRecordingException {
+		for (IOResourceSet resourceSet : PrintoutsToolkit.getTestResources()) {
+			IItemCollection items = RecordingToolkit.getFlightRecording(resourceSet);
+			String name = resourceSet.getResource(0).getName();
+			IQuantity first = items.getAggregate(Aggregators.min(JfrAttributes.START_TIME));
+			IQuantity last = items.getAggregate(Aggregators.max(JfrAttributes.END_TIME));
+			IQuantity step = last.subtract(first).multiply(1.0 / 7);
+			for (int i = 0; i < 7; i++) {
+				IQuantity start = first.add(step.multiply(i));
+				IQuantity end = start.add(step.multiply(1.5));
+				IRange<IQuantity> range = QuantityRange.createWithEnd(start, end);
+				checkFilter(name, items, ItemFilters.interval(JfrAttributes.START_TIME, start, true, end, false));
+				checkFilter(name, items, ItemFilters.interval(JfrAttributes.END_TIME, start, false, end, true));
+				checkFilter(name, items, ItemFilters.rangeIntersects(JfrAttributes.LIFETIME, range));
+				checkFilter(name, items, ItemFilters.rangeContainedIn(JfrAttributes.LIFETIME, range));
+				checkFilter(name, items, ItemFilters.and(JdkFilters.GC_PAUSE,
+						ItemFilters.rangeIntersects(JfrAttributes.LIFETIME, range)));
+				checkFilter(name, items.apply(ItemFilters.moreOrEqual(JfrAttributes.END_TIME, start)),
+						ItemFilters.lessOrEqual(JfrAttributes.START_TIME, end));
+			}
+		}
+	}
+
+	private static void checkFilter(String name, IItemCollection items, IItemFilter filter) {
+		long expected = 0;
+		for (IItemIterable ii : items) {
+			Predicate<IItem> predicate = filter.getPredicate(ii.getType());
+			for (IItem item : ii) {
+				if (predicate.test(item)) {
+					expected++;
+				}
+			}
+		}
+		IItemCollection filtered = items.apply(filter);
+		long count = 0;
+		for (IItemIterable ii : filtered) {
+			Assert.assertEquals(name + ": item count for " + ii.getType().getIdentifier(), countItems(ii),
+					ii.getItemCount());
+			count += ii.getItemCount();
+		}
+		Assert.assertEquals(name + ": wrong number of items for " + filter, expected, count);
+		Assert.assertEquals(name + ": wrong aggregate for " + filter, expected,
+				filtered.getAggregate(Aggregators.count()).longValue());
+	}
+
+	private static long countItems(IItemIterable items) {
+		long count = 0;
+		for (@SuppressWarnings("unused")
+		IItem item : items) {
+			count++;
+		}
+		return count;
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ *
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The contents of this file are subject to the terms of either the Universal Permissive License
+ * v 1.0 as shown at http://oss.oracle.com/licenses/upl
+ *
+ * or the following license:
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted
+ * provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions
+ * and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided with
+ * the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openjdk.jmc.flightrecorder.test.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openjdk.jmc.common.io.IOToolkit;
+import org.openjdk.jmc.common.test.io.IOResourceSet;
+import org.openjdk.jmc.common.unit.UnitLookup;
+import org.openjdk.jmc.flightrecorder.CouldNotLoadRecordingException;
+import org.openjdk.jmc.flightrecorder.internal.ChunkInfo;
+import org.openjdk.jmc.flightrecorder.internal.ChunkScanIndex;
+import org.openjdk.jmc.flightrecorder.internal.FlightRecordingLoader;
+import org.openjdk.jmc.flightrecorder.test.util.PrintoutsToolkit;
+import org.openjdk.jmc.flightrecorder.test.util.RecordingToolkit;
+
+@SuppressWarnings("nls")
+public class ChunkScanIndexTest {
+
+	@Test
+	public void testWriteAndRead() throws IOException, CouldNotLoadRecordingException {
+		for (IOResourceSet resourceSet : PrintoutsToolkit.getTestResources()) {
+			File recording = RecordingToolkit.createResultFile("indexTest", "tmp_recording", true);
+			try (InputStream is = IOToolkit.openUncompressedStream(resourceSet.getResource(0).open())) {
+				IOToolkit.write(is, recording, false);
+			}
+			File indexFile = ChunkScanIndex.getIndexFile(recording);
+			indexFile.deleteOnExit();
+			Assert.assertNull(ChunkScanIndex.read(recording));
+
+			ChunkScanIndex index = createIndex(recording);
+			Assert.assertTrue(index.write(recording));
+			ChunkScanIndex storedIndex = ChunkScanIndex.read(recording);
+			Assert.assertNotNull(storedIndex);
+			Assert.assertEquals(index.getChunks().size(), storedIndex.getChunks().size());
+			for (int i = 0; i < index.getChunks().size(); i++) {
+				ChunkInfo expected = index.getChunks().get(i);
+				ChunkInfo actual = storedIndex.getChunks().get(i);
+				Assert.assertEquals(expected.getChunkPosistion(), actual.getChunkPosistion());
+				Assert.assertEquals(expected.getChunkSize(), actual.getChunkSize());
+				Assert.assertEquals(expected.getChunkRange().getStart().clampedLongValueIn(UnitLookup.EPOCH_NS),
+						actual.getChunkRange().getStart().clampedLongValueIn(UnitLookup.EPOCH_NS));
+				Assert.assertEquals(expected.getChunkRange().getEnd().clampedLongValueIn(UnitLookup.EPOCH_NS),
+						actual.getChunkRange().getEnd().clampedLongValueIn(UnitLookup.EPOCH_NS));
+			}
+
+			// Changing a chunk header without changing the size or modification time invalidates the index
+			long lastModified = recording.lastModified();
+			try (RandomAccessFile raf = new RandomAccessFile(recording, "rw")) {
+				raf.seek(20);
+				int b = raf.read();
+				raf.seek(20);
+				raf.write(b ^ 0xFF);
+			}
+			recording.setLastModified(lastModified);
+			Assert.assertNull(ChunkScanIndex.read(recording));
+			indexFile.delete();
+		}
+	}
+
+	private static ChunkScanIndex createIndex(File recording) throws IOException, CouldNotLoadRecordingException {
+		try (RandomAccessFile raf = new RandomAccessFile(recording, "r")) {
+			return ChunkScanIndex
+					.create(FlightRecordingLoader.readChunkInfo(FlightRecordingLoader.createChunkSupplier(raf)));
+		}
+	}
+}